@@ -21,6 +21,7 @@ import static java.util.Objects.requireNonNull;
 public class SharedLibraryLoader extends ResourceLoader {
 
     private final Object lock = new Object();
+    private volatile String libraryPath;
 
 
     private SharedLibraryLoader() {
@@ -80,10 +81,18 @@ public class SharedLibraryLoader extends ResourceLoader {
             for (Class clzz : classes) {
                 Native.register(clzz, absolutePath);
             }
+            libraryPath = absolutePath;
         }
     }
 
 
+    /**
+     * Path or name of the last registered library, null if no library was registered
+     */
+    public String getLibraryPath() {
+        return libraryPath;
+    }
+
     private static class SingletonHelper {
         private static final SharedLibraryLoader INSTANCE = new SharedLibraryLoader();
     }
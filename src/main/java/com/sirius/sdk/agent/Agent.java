@@ -1,20 +1,25 @@
 package com.sirius.sdk.agent;
 
 import com.sirius.sdk.agent.model.Endpoint;
+import com.sirius.sdk.agent.model.coprotocols.AbstractCoProtocolTransport;
 import com.sirius.sdk.agent.model.coprotocols.PairwiseCoProtocolTransport;
 import com.sirius.sdk.agent.model.coprotocols.TheirEndpointCoProtocolTransport;
 import com.sirius.sdk.agent.model.coprotocols.ThreadBasedCoProtocolTransport;
 import com.sirius.sdk.agent.model.pairwise.Pairwise;
 import com.sirius.sdk.agent.model.pairwise.TheirEndpoint;
+import com.sirius.sdk.agent.wallet.CachedDID;
 import com.sirius.sdk.agent.wallet.DynamicWallet;
 import com.sirius.sdk.encryption.P2PConnection;
 import com.sirius.sdk.errors.sirius_exceptions.*;
 import com.sirius.sdk.messaging.Message;
 import com.sirius.sdk.storage.abstract_storage.AbstractImmutableCollection;
+import com.sirius.sdk.storage.abstract_storage.KeyValueHandle;
 import com.sirius.sdk.utils.Pair;
 import org.json.JSONObject;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Agent connection in the self-sovereign identity ecosystem.
@@ -38,6 +43,8 @@ public class Agent extends TransportLayer {
 
     Map<String, Ledger> ledgers = new HashMap<>();
     WalletPairwiseList pairwiseList;
+    // pairwise list that resolves through the cache if it is enabled
+    AbstractPairwiseList cachedPairwiseList;
 
     MicroledgerList microledgers;
     AbstractImmutableCollection storage;
@@ -46,6 +53,22 @@ public class Agent extends TransportLayer {
 
     DynamicWallet wallet;
 
+    AgentRPCPool rpcPool;
+    int poolMaxSize = AgentRPCPool.DEF_MAX_SIZE;
+    int poolIdleTimeoutSec = AgentRPCPool.DEF_IDLE_TIMEOUT_SEC;
+    int poolWarmUpSize = 0;
+    int sharedConnectionsCount = 0;
+    int decodeThreads = 0;
+    int pairwiseCacheSize = 0;
+    int pairwiseCacheTtlSec = CachedPairwiseList.DEF_TTL_SEC;
+    boolean pairwiseCachePreload = false;
+    int didCacheSize = 0;
+    int didCacheTtlSec = CachedDID.DEF_TTL_SEC;
+    int didCacheNegativeTtlSec = CachedDID.DEF_NEGATIVE_TTL_SEC;
+    int ledgerCacheSize = 0;
+    KeyValueHandle ledgerCacheL2;
+    ExecutorService decodeExecutor;
+
     /**
      * @param serverAddress example https://my-cloud-provider.com
      * @param credentials   credentials that point websocket connection to your agent and server-side services like
@@ -88,19 +111,114 @@ public class Agent extends TransportLayer {
         this.storage = null;
     }
 
+    /**
+     * Configure pool of connections that are leased by co-protocol transports, call it before {@link #open()}
+     *
+     * @param maxSize        max count of co-protocol connections
+     * @param idleTimeoutSec idle connection is closed after this time
+     * @param warmUpSize     count of connections that are established on {@link #open()}
+     */
+    public void configureConnectionPool(int maxSize, int idleTimeoutSec, int warmUpSize) {
+        this.poolMaxSize = maxSize;
+        this.poolIdleTimeoutSec = idleTimeoutSec;
+        this.poolWarmUpSize = warmUpSize;
+    }
+
+    /**
+     * Run co-protocols over few shared connections instead of exclusive connection per co-protocol.
+     * Events are routed to co-protocols by {@link CoProtocolDemultiplexer}, call it before {@link #open()}
+     *
+     * @param sharedConnectionsCount count of shared connections, 0 disables sharing
+     */
+    public void configureCoProtocolsMultiplexing(int sharedConnectionsCount) {
+        this.sharedConnectionsCount = sharedConnectionsCount;
+    }
+
+    /**
+     * Unpack and parse inbound events by worker pool instead of the socket reader thread, call it before {@link #subscribe()}
+     *
+     * @param threads count of workers, 0 decodes events in the socket reader thread
+     */
+    public void configureInboundDecoding(int threads) {
+        this.decodeThreads = threads;
+    }
+
+    /**
+     * Resolve pairwise of inbound events by local cache instead of wallet search, call it before {@link #open()}
+     *
+     * @param size    max count of cached pairwise, 0 disables cache
+     * @param ttlSec  time to live of cached pairwise
+     * @param preload load all pairwise of the wallet on {@link #open()}
+     */
+    public void configurePairwiseCache(int size, int ttlSec, boolean preload) {
+        this.pairwiseCacheSize = size;
+        this.pairwiseCacheTtlSec = ttlSec;
+        this.pairwiseCachePreload = preload;
+    }
+
+    /**
+     * Resolve DID verkeys, metadata and endpoints by local cache instead of wallet calls (see
+     * {@link DynamicWallet#getCachedDid()}), call it before {@link #open()}
+     *
+     * @param size           max count of cached values per lookup, 0 disables cache
+     * @param ttlSec         time to live of cached values
+     * @param negativeTtlSec time to live of missing values
+     */
+    public void configureDidCache(int size, int ttlSec, int negativeTtlSec) {
+        this.didCacheSize = size;
+        this.didCacheTtlSec = ttlSec;
+        this.didCacheNegativeTtlSec = negativeTtlSec;
+    }
+
+    /**
+     * Resolve schemas and credential definitions by local cache instead of agent calls (see
+     * {@link DynamicWallet#getLedgerCache()}), call it before {@link #open()}
+     *
+     * @param size max count of artifacts of every kind kept on heap, 0 disables cache
+     * @param l2   persistent tier, i.e. database of {@link com.sirius.sdk.storage.impl.MappedKeyValueStorage}, may be null
+     */
+    public void configureLedgerCache(int size, KeyValueHandle l2) {
+        this.ledgerCacheSize = size;
+        this.ledgerCacheL2 = l2;
+    }
+
+    public AgentRPCPool getConnectionPool() {
+        return rpcPool;
+    }
+
     public void open() {
         try {
             rpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
             rpc.create();
+            rpcPool = new AgentRPCPool(serverAddress, credentials, p2p, timeout, poolMaxSize, poolIdleTimeoutSec);
+            rpcPool.setSharedSize(sharedConnectionsCount);
+            if (poolWarmUpSize > 0) {
+                rpcPool.warmUp(poolWarmUpSize);
+            }
             endpoints = rpc.getEndpoints();
             wallet = new DynamicWallet(rpc);
+            if (didCacheSize > 0) {
+                wallet.enableDidCache(didCacheSize, didCacheTtlSec, didCacheNegativeTtlSec);
+            }
+            if (ledgerCacheSize > 0) {
+                wallet.enableLedgerCache(ledgerCacheSize, ledgerCacheL2);
+            }
             if (storage == null) {
                 storage = new InWalletImmutableCollection(wallet.getNonSecrets());
             }
             for (String network : rpc.getNetworks()) {
-                ledgers.put(network, new Ledger(network, wallet.getLedger(), wallet.getAnoncreds(), wallet.getCache(), storage));
+                ledgers.put(network, new Ledger(network, wallet.getLedger(), wallet.getAnoncreds(), wallet.getLedgerCache(), storage));
+            }
+            pairwiseList = new WalletPairwiseList(wallet.getPairwise(), wallet.getCachedDid());
+            if (pairwiseCacheSize > 0) {
+                CachedPairwiseList pairwiseCache = new CachedPairwiseList(pairwiseList, pairwiseCacheSize, pairwiseCacheTtlSec);
+                if (pairwiseCachePreload) {
+                    pairwiseCache.preload(pairwiseList.listPairwise());
+                }
+                cachedPairwiseList = pairwiseCache;
+            } else {
+                cachedPairwiseList = pairwiseList;
             }
-            pairwiseList = new WalletPairwiseList(wallet.getPairwise(), wallet.getDid());
             microledgers = new MicroledgerList(rpc);
         } catch (SiriusFieldValueError siriusFieldValueError) {
             siriusFieldValueError.printStackTrace();
@@ -167,9 +285,16 @@ public class Agent extends TransportLayer {
         if (rpc != null) {
             rpc.close();
         }
+        if (rpcPool != null) {
+            rpcPool.close();
+        }
         if (events != null) {
             events.close();
         }
+        if (decodeExecutor != null) {
+            decodeExecutor.shutdown();
+            decodeExecutor = null;
+        }
         wallet = null;
     }
 
@@ -209,20 +334,43 @@ public class Agent extends TransportLayer {
         return microledgers;
     }
 
+    /**
+     * Pairwise list of the wallet, writes made through it bypass the cache of {@link #getCachedPairwiseList()}
+     * and become visible there after its TTL
+     */
     public WalletPairwiseList getPairwiseList() {
         checkIsOpen();
         return pairwiseList;
     }
 
+    /**
+     * Pairwise list that resolves through the cache configured by {@link #configurePairwiseCache(int, int, boolean)},
+     * the wallet list if cache is disabled. Writes made through it keep the cache consistent.
+     */
+    public AbstractPairwiseList getCachedPairwiseList() {
+        checkIsOpen();
+        return cachedPairwiseList;
+    }
+
     public Listener subscribe() {
         checkIsOpen();
         events = new AgentEvents(serverAddress, credentials, p2p, timeout);
+        if (decodeThreads > 0) {
+            if (decodeExecutor == null) {
+                decodeExecutor = Executors.newFixedThreadPool(decodeThreads, r -> {
+                    Thread thread = new Thread(r, "AgentEvents-decode");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            events.setDecodeExecutor(decodeExecutor, DecodeStage.DEF_CAPACITY);
+        }
         try {
             events.create();
         } catch (SiriusFieldValueError siriusFieldValueError) {
             siriusFieldValueError.printStackTrace();
         }
-        return new Listener(events, pairwiseList);
+        return new Listener(events, cachedPairwiseList);
 
     }
 
@@ -247,75 +395,67 @@ public class Agent extends TransportLayer {
 
     @Override
     public TheirEndpointCoProtocolTransport spawn(String myVerkey, TheirEndpoint endpoint) {
-        AgentRPC new_rpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
-        try {
-            new_rpc.create();
-            return new TheirEndpointCoProtocolTransport(myVerkey, endpoint, new_rpc);
-        } catch (SiriusFieldValueError siriusFieldValueError) {
-            siriusFieldValueError.printStackTrace();
+        AgentRPC newRpc = leaseRpc();
+        if (newRpc == null) {
+            return null;
         }
-        return null;
+        return pooled(new TheirEndpointCoProtocolTransport(myVerkey, endpoint, newRpc));
     }
 
     @Override
     public PairwiseCoProtocolTransport spawn(Pairwise pairwise) {
-        AgentRPC newRpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
-        try {
-            newRpc.create();
-            return new PairwiseCoProtocolTransport(pairwise, newRpc);
-        } catch (Exception e) {
-            e.printStackTrace();
+        AgentRPC newRpc = leaseRpc();
+        if (newRpc == null) {
+            return null;
         }
-        return null;
+        return pooled(new PairwiseCoProtocolTransport(pairwise, newRpc));
     }
 
     @Override
     public ThreadBasedCoProtocolTransport spawn(String thid, Pairwise pairwise) {
-        AgentRPC newRpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
-        try {
-            newRpc.create();
-            return new ThreadBasedCoProtocolTransport(thid, pairwise, newRpc, null);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return spawn(thid, pairwise, null);
     }
 
     @Override
     public ThreadBasedCoProtocolTransport spawn(String thid) {
-        AgentRPC newRpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
-        try {
-            newRpc.create();
-            return new ThreadBasedCoProtocolTransport(thid, null, newRpc, null);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return spawn(thid, null, null);
     }
 
     @Override
     public ThreadBasedCoProtocolTransport spawn(String thid, Pairwise pairwise, String pthid) {
-        AgentRPC newRpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
-        try {
-            newRpc.create();
-            return new ThreadBasedCoProtocolTransport(thid, pairwise, newRpc, pthid);
-        } catch (Exception e) {
-            e.printStackTrace();
+        AgentRPC newRpc = leaseRpc();
+        if (newRpc == null) {
+            return null;
         }
-        return null;
+        return pooled(new ThreadBasedCoProtocolTransport(thid, pairwise, newRpc, pthid));
     }
 
     @Override
     public ThreadBasedCoProtocolTransport spawn(String thid, String pthid) {
-        AgentRPC newRpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
+        return spawn(thid, null, pthid);
+    }
+
+    private AgentRPC leaseRpc() {
         try {
+            if (rpcPool != null) {
+                if (rpcPool.getSharedSize() > 0) {
+                    return rpcPool.leaseShared();
+                }
+                return rpcPool.lease();
+            }
+            AgentRPC newRpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
             newRpc.create();
-            return new ThreadBasedCoProtocolTransport(thid, null, newRpc, pthid);
+            return newRpc;
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
-}
-
 
+    private <T extends AbstractCoProtocolTransport> T pooled(T transport) {
+        if (rpcPool != null) {
+            transport.setPool(rpcPool, rpcPool.getSharedSize() > 0);
+        }
+        return transport;
+    }
+}
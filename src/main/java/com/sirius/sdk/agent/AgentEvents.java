@@ -9,8 +9,10 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
@@ -30,6 +32,7 @@ public class AgentEvents extends BaseAgentConnection {
     }
 
     String balancingGroup;
+    volatile DecodeStage decodeStage;
 
     public AgentEvents(String serverAddress, byte[] credentials, P2PConnection p2p, int timeout) {
         super(serverAddress, credentials, p2p, timeout);
@@ -59,26 +62,51 @@ public class AgentEvents extends BaseAgentConnection {
 
     }
 
+    /**
+     * Unpack and parse inbound messages by worker pool instead of the socket reader thread,
+     * messages are still handed out in arrival order.
+     *
+     * @param executor workers, null returns decoding to the reader thread
+     * @param capacity max count of decoded messages that are not pulled yet
+     */
+    public void setDecodeExecutor(Executor executor, int capacity) {
+        decodeStage = executor != null ? new DecodeStage(connector, this::decode, executor, capacity) : null;
+    }
+
     public CompletableFuture<Message> pull() throws SiriusConnectionClosed, SiriusInvalidPayloadStructure {
         if (!connector.isOpen()) {
             throw new SiriusConnectionClosed("Open agent connection at first");
         }
-        return connector.read().thenApply(data -> {
-            try {
-                JSONObject payload = new JSONObject(new String(data, StandardCharsets.US_ASCII));
-                if (payload.has("protected")) {
-                    String message = p2p.unpack(payload.toString());
-                    log.log(Level.INFO, "Received protected message. Unpacked: " + message);
-                    return new Message(message);
-                } else {
-                    log.log(Level.INFO, "Received message: " + payload);
-                    return new Message(payload.toString());
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                return null;
-                //throw new SiriusInvalidPayloadStructure(e.getMessage());
+        DecodeStage stage = decodeStage;
+        if (stage != null) {
+            return stage.read();
+        }
+        CompletableFuture<byte[]> frame = connector.read();
+        CompletableFuture<Message> message = frame.thenApply(this::decode);
+        // reader that cancelled its pull releases the frame to the next reader
+        message.whenComplete((msg, e) -> {
+            if (e instanceof CancellationException) {
+                frame.cancel(false);
             }
         });
+        return message;
+    }
+
+    Message decode(byte[] data) {
+        try {
+            JSONObject payload = new JSONObject(new String(data, StandardCharsets.US_ASCII));
+            if (payload.has("protected")) {
+                String message = p2p.unpack(payload.toString());
+                log.log(Level.INFO, "Received protected message. Unpacked: " + message);
+                return new Message(message);
+            } else {
+                log.log(Level.INFO, "Received message: " + payload);
+                return new Message(payload.toString());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+            //throw new SiriusInvalidPayloadStructure(e.getMessage());
+        }
     }
 }
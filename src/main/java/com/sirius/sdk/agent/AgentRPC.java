@@ -2,6 +2,7 @@ package com.sirius.sdk.agent;
 
 import com.neovisionaries.ws.client.WebSocket;
 import com.sirius.sdk.agent.model.Endpoint;
+import com.sirius.sdk.base.InboundFrameDispatcher;
 import com.sirius.sdk.encryption.P2PConnection;
 import com.sirius.sdk.errors.sirius_exceptions.*;
 import com.sirius.sdk.messaging.Message;
@@ -9,6 +10,7 @@ import com.sirius.sdk.messaging.Type;
 import com.sirius.sdk.rpc.AddressedTunnel;
 import com.sirius.sdk.rpc.Future;
 import com.sirius.sdk.rpc.Parsing;
+import com.sirius.sdk.rpc.RequestBatcher;
 import com.sirius.sdk.utils.Pair;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -17,6 +19,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.logging.Level;
 
 /**
  * RPC service.
@@ -31,6 +35,15 @@ public class AgentRPC extends BaseAgentConnection {
     boolean preferAgentSide;
     AddressedTunnel tunnelRpc;
     AddressedTunnel tunnelCoprotocols;
+    Map<String, PendingCall> pendingCalls = new ConcurrentHashMap<>();
+    CoProtocolDemultiplexer coprotocols = new CoProtocolDemultiplexer(InboundFrameDispatcher.DEF_CAPACITY);
+    Thread reader;
+    RequestBatcher batcher = null;
+    static final int READER_POLL_INTERVAL_SEC = 1;
+    /**
+     * Calls made with zero timeout are dropped from pending calls after this time if response is not received
+     */
+    public static final int DEF_PENDING_CALL_TTL_SEC = 600;
 
     public List<String> getNetworks() {
         return networks;
@@ -64,14 +77,80 @@ public class AgentRPC extends BaseAgentConnection {
      *
      * @param msgType
      * @param params
-     * @param waitResponse wait for response
+     * @param waitResponse wait for response, if false response is not expected and request is not tracked
      * @return
      */
     public Object remoteCall(String msgType,  RemoteParams params, boolean waitResponse)
             throws Exception {
+        return remoteCall(msgType, params, waitResponse, timeout);
+    }
+
+    /**
+     * Overload of {@link #remoteCall(String, RemoteParams, boolean)} with explicit timeout in seconds
+     */
+    public Object remoteCall(String msgType,  RemoteParams params, boolean waitResponse, int timeout)
+            throws Exception {
         if (!connector.isOpen()) {
             throw new SiriusConnectionClosed("Open agent connection at first");
         }
+        // response is not expected, so request is not registered in pending calls
+        CompletableFuture<Object> result = call(msgType, params, timeout, waitResponse);
+        if (waitResponse) {
+            try {
+                return result.get(timeout, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                result.completeExceptionally(new SiriusTimeoutRPC());
+                throw new SiriusTimeoutRPC();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        } else if (result.isCompletedExceptionally()) {
+            try {
+                result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Call Agent services without blocking.
+     * <p>
+     * Request is registered in the table of pending promises and posted immediately, so many calls
+     * may be pipelined over the same tunnel. Responses are routed to callers by ~thread.thid
+     * in the single reader of this connection.
+     *
+     * @param msgType
+     * @param params
+     * @return future that is completed with response value or with exception raised on server-side
+     */
+    public CompletableFuture<Object> remoteCallAsync(String msgType, RemoteParams params) {
+        return remoteCallAsync(msgType, params, timeout);
+    }
+
+    /**
+     * Overload of {@link #remoteCallAsync(String, RemoteParams)} with explicit timeout in seconds
+     */
+    public CompletableFuture<Object> remoteCallAsync(String msgType, RemoteParams params, int timeout) {
+        return call(msgType, params, timeout, true);
+    }
+
+    /**
+     * @param expectResponse register request in pending calls, otherwise future is completed when request is posted
+     */
+    private CompletableFuture<Object> call(String msgType, RemoteParams params, int timeout, boolean expectResponse) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        if (!connector.isOpen()) {
+            result.completeExceptionally(new SiriusConnectionClosed("Open agent connection at first"));
+            return result;
+        }
         long expirationTime = 0;
         if (timeout != 0) {
             expirationTime = (System.currentTimeMillis() + (timeout * 1000)) / 1000;
@@ -79,27 +158,84 @@ public class AgentRPC extends BaseAgentConnection {
 
         Future future = new Future(tunnelRpc, expirationTime);
         Message request = Parsing.buildRequest(msgType, future, params);
-        String payload = request.serialize();
-        Type msgTyp = Type.fromStr(msgType);
-        boolean isEncryptes = !"admin".equals(msgTyp.getProtocol()) && !"microledgers".equals(msgTyp.getProtocol());
+        boolean isEncrypted;
+        try {
+            Type msgTyp = Type.fromStr(msgType);
+            isEncrypted = !"admin".equals(msgTyp.getProtocol()) && !"microledgers".equals(msgTyp.getProtocol());
+        } catch (SiriusInvalidType e) {
+            result.completeExceptionally(e);
+            return result;
+        }
 
-        boolean isPosted = tunnelRpc.post(request, isEncryptes);
-        if (!isPosted) {
-            throw new SiriusRPCError();
+        String id = future.getId();
+        if (expectResponse) {
+            long deadline = expirationTime != 0 ? expirationTime : System.currentTimeMillis() / 1000 + DEF_PENDING_CALL_TTL_SEC;
+            pendingCalls.put(id, new PendingCall(future, result, deadline));
+            result.whenComplete((value, error) -> pendingCalls.remove(id));
         }
-        if (waitResponse) {
-            boolean success = future.waitPromise(timeout);
-            if (success) {
-                if (future.hasException()) {
-                    future.raiseException();
-                } else {
-                    return future.getValue();
-                }
+        try {
+            RequestBatcher currentBatcher = batcher;
+            if (currentBatcher != null) {
+                currentBatcher.post(request, isEncrypted).thenAccept(isPosted -> posted(result, isPosted, expectResponse));
             } else {
-                throw new SiriusTimeoutRPC();
+                posted(result, tunnelRpc.post(request, isEncrypted), expectResponse);
             }
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Request posting failed: " + e.getMessage());
+            pendingCalls.remove(id);
+            result.completeExceptionally(new SiriusRPCError());
+        }
+        return result;
+    }
+
+    private static void posted(CompletableFuture<Object> result, boolean isPosted, boolean expectResponse) {
+        if (!isPosted) {
+            result.completeExceptionally(new SiriusRPCError());
+        } else if (!expectResponse) {
+            result.complete(null);
         }
-        return null;
+    }
+
+    /**
+     * Coalesce requests issued by {@link #remoteCallAsync(String, RemoteParams)} to batch envelopes,
+     * so many calls are packed and sent in single frame. Server must support batch envelope
+     * ({@link Parsing#MSG_TYPE_BATCH}).
+     *
+     * @param maxBatchSize flush batch when it contains this count of requests
+     * @param lingerMs     flush batch not later than this time after the first request
+     */
+    public void enableBatching(int maxBatchSize, int lingerMs) {
+        disableBatching();
+        batcher = new RequestBatcher(tunnelRpc, maxBatchSize, lingerMs);
+    }
+
+    public void enableBatching() {
+        enableBatching(RequestBatcher.DEF_MAX_BATCH_SIZE, RequestBatcher.DEF_LINGER_MS);
+    }
+
+    /**
+     * Send pending batches and post next requests immediately
+     */
+    public void disableBatching() {
+        RequestBatcher current = batcher;
+        batcher = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    public boolean isBatchingEnabled() {
+        return batcher != null;
+    }
+
+    @Override
+    public void close() {
+        disableBatching();
+        super.close();
+    }
+
+    public CompletableFuture<Object> remoteCallAsync(String msgType) {
+        return remoteCallAsync(msgType, null);
     }
 
     public Object remoteCall(String msgType,  RemoteParams params)
@@ -142,6 +278,7 @@ public class AgentRPC extends BaseAgentConnection {
         }
         tunnelRpc = new AddressedTunnel(channel_rpc, connector, connector, p2p);
         tunnelCoprotocols = new AddressedTunnel(channel_sub_protocol, connector, connector, p2p);
+        startReader();
         //Extract active endpoints
         JSONArray endpointsArray = context.getJSONArrayFromJSON("~endpoints", null);
         List<Endpoint> endpointsCollection = new ArrayList<>();
@@ -203,6 +340,15 @@ public class AgentRPC extends BaseAgentConnection {
      */
     public Message sendMessage(Message message, List<String> their_vk, String endpoint,
                                String myVk, List<String> routingKeys, boolean coprotocol) throws SiriusConnectionClosed, SiriusRPCError, SiriusInvalidPayloadStructure {
+        return sendMessage(message, their_vk, endpoint, myVk, routingKeys, coprotocol, timeout);
+    }
+
+    /**
+     * Overload of {@link #sendMessage(Message, List, String, String, List, boolean)} with explicit timeout,
+     * so connection timeout is not changed when connection is shared by many co-protocols
+     */
+    public Message sendMessage(Message message, List<String> their_vk, String endpoint,
+                               String myVk, List<String> routingKeys, boolean coprotocol, int timeout) throws SiriusConnectionClosed, SiriusRPCError, SiriusInvalidPayloadStructure {
         if (!connector.isOpen()) {
             throw new SiriusConnectionClosed("Open agent connection at first");
         }
@@ -220,7 +366,7 @@ public class AgentRPC extends BaseAgentConnection {
             paramsBuilder.add("timeout", timeout);
             paramsBuilder.add("endpoint_address", endpoint);
             try {
-               response = remoteCall("did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/sirius_rpc/1.0/send_message", paramsBuilder.build());
+               response = remoteCall("did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/sirius_rpc/1.0/send_message", paramsBuilder.build(), true, timeout);
 
             } catch (Exception siriusRPCError) {
                 siriusRPCError.printStackTrace();
@@ -243,7 +389,7 @@ public class AgentRPC extends BaseAgentConnection {
             throw new SiriusRPCError(body);
         } else {
             if (coprotocol) {
-                return readProtocolMessage();
+                return coprotocols.readDefault(timeout);
             }
         }
 
@@ -331,7 +477,138 @@ public class AgentRPC extends BaseAgentConnection {
     }
 
     public Message readProtocolMessage() throws SiriusInvalidPayloadStructure {
-        return this.tunnelCoprotocols.receive(timeout);
+        return coprotocols.readDefault(timeout);
+    }
+
+    /**
+     * Discard co-protocol messages that were not routed to any subscription and were not read yet
+     *
+     * @return count of discarded messages
+     */
+    public int clearProtocolMessages() {
+        return coprotocols.clearDefault();
+    }
+
+    /**
+     * Router of co-protocol events received via this connection
+     */
+    public CoProtocolDemultiplexer getCoProtocols() {
+        return coprotocols;
+    }
+
+    private void startReader() {
+        reader = new Thread(this::readLoop, "AgentRPC-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Single reader of connection: completes pending promises by thread id,
+     * other messages are routed to co-protocols inbox.
+     */
+    private void readLoop() {
+        long lastSweep = System.currentTimeMillis();
+        while (true) {
+            CompletableFuture<byte[]> feat = connector.read();
+            byte[] payload = null;
+            try {
+                payload = feat.get(READER_POLL_INTERVAL_SEC, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                if (!feat.cancel(false)) {
+                    if (feat.isCompletedExceptionally()) {
+                        break;
+                    }
+                    payload = feat.join();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                break;
+            }
+            if (payload != null) {
+                dispatch(payload);
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastSweep >= READER_POLL_INTERVAL_SEC * 1000L) {
+                expirePendingCalls(now / 1000);
+                lastSweep = now;
+            }
+        }
+        for (PendingCall call : pendingCalls.values()) {
+            call.result.completeExceptionally(new SiriusConnectionClosed("Connection closed"));
+        }
+    }
+
+    private void dispatch(byte[] payload) {
+        Message message;
+        try {
+            message = tunnelRpc.decode(payload);
+        } catch (SiriusInvalidPayloadStructure e) {
+            log.log(Level.WARNING, "Skip invalid payload: " + e.getMessage());
+            return;
+        }
+        if (Parsing.MSG_TYPE_BATCH.equals(message.getType())) {
+            for (Message item : Parsing.unpackBatch(message)) {
+                dispatch(item);
+            }
+        } else {
+            dispatch(message);
+        }
+    }
+
+    private void dispatch(Message message) {
+        String responseId = Future.responseId(message);
+        if (responseId != null) {
+            PendingCall call = pendingCalls.get(responseId);
+            if (call != null) {
+                call.resolve(message);
+            } else {
+                log.log(Level.WARNING, "Unexpected response with id: " + responseId);
+            }
+            return;
+        }
+        coprotocols.route(message);
+    }
+
+    private void expirePendingCalls(long nowSec) {
+        for (PendingCall call : pendingCalls.values()) {
+            if (call.deadlineSec < nowSec) {
+                call.result.completeExceptionally(new SiriusTimeoutRPC());
+            }
+        }
+    }
+
+    /**
+     * Count of requests that are waiting for response
+     */
+    public int getPendingCallsCount() {
+        return pendingCalls.size();
+    }
+
+    static class PendingCall {
+        Future future;
+        CompletableFuture<Object> result;
+        // expiration time of request or default deadline of calls without timeout, in seconds
+        long deadlineSec;
+
+        PendingCall(Future future, CompletableFuture<Object> result, long deadlineSec) {
+            this.future = future;
+            this.result = result;
+            this.deadlineSec = deadlineSec;
+        }
+
+        void resolve(Message message) {
+            if (!future.tryResolve(message)) {
+                return;
+            }
+            try {
+                if (future.hasException()) {
+                    result.completeExceptionally(future.getFutureException());
+                } else {
+                    result.complete(future.getValue());
+                }
+            } catch (SiriusPendingOperation e) {
+                result.completeExceptionally(e);
+            }
+        }
     }
 
 }
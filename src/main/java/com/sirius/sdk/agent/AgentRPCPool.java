@@ -0,0 +1,483 @@
+package com.sirius.sdk.agent;
+
+import com.sirius.sdk.encryption.P2PConnection;
+import com.sirius.sdk.errors.sirius_exceptions.SiriusConnectionClosed;
+import com.sirius.sdk.errors.sirius_exceptions.SiriusFieldValueError;
+import com.sirius.sdk.errors.sirius_exceptions.SiriusTimeoutRPC;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of established {@link AgentRPC} connections.
+ * <p>
+ * Co-protocol transports lease connection from the pool instead of making new websocket connection
+ * and context handshake for every protocol run, and return it back on stop. Connections that are idle
+ * longer than idleTimeoutSec are closed in background.
+ * <p>
+ * Besides exclusive leases pool maintains few shared connections: events of co-protocols that share connection
+ * are routed by {@link CoProtocolDemultiplexer}, so count of concurrent co-protocols is not limited by socket count.
+ */
+public class AgentRPCPool {
+
+    public static final int DEF_MAX_SIZE = 32;
+    public static final int DEF_IDLE_TIMEOUT_SEC = 60;
+
+    /**
+     * Makes new established connection
+     */
+    public interface ConnectionFactory {
+        AgentRPC create() throws SiriusFieldValueError;
+    }
+
+    Logger log = Logger.getLogger(AgentRPCPool.class.getName());
+    ConnectionFactory factory;
+    int maxSize;
+    int idleTimeoutSec;
+    int leaseTimeoutSec;
+    int defaultTimeout;
+    Deque<IdleConnection> idle = new ArrayDeque<>();
+    // connections that are leased now, release of other instances is ignored
+    Set<AgentRPC> leased = Collections.newSetFromMap(new IdentityHashMap<>());
+    int totalCount = 0;
+    int sharedSize = 0;
+    int sharedPending = 0;
+    List<SharedConnection> shared = new ArrayList<>();
+    boolean closed = false;
+    ReentrantLock lock = new ReentrantLock();
+    Condition released = lock.newCondition();
+    ScheduledExecutorService reaper;
+
+    /**
+     * @param factory         makes new connection
+     * @param maxSize         max count of connections (leased and idle)
+     * @param idleTimeoutSec  idle connection is closed after this time
+     * @param leaseTimeoutSec how long to wait for released connection when pool is exhausted
+     * @param defaultTimeout  io timeout to restore on connection when it returns to the pool
+     */
+    public AgentRPCPool(ConnectionFactory factory, int maxSize, int idleTimeoutSec, int leaseTimeoutSec, int defaultTimeout) {
+        if (maxSize <= 0) {
+            throw new RuntimeException("Pool size must be > 0");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.idleTimeoutSec = idleTimeoutSec;
+        this.leaseTimeoutSec = leaseTimeoutSec;
+        this.defaultTimeout = defaultTimeout;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AgentRPCPool-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeoutSec / 2);
+        reaper.scheduleWithFixedDelay(this::reapIdle, period, period, TimeUnit.SECONDS);
+    }
+
+    public AgentRPCPool(String serverAddress, byte[] credentials, P2PConnection p2p, int timeout,
+                        int maxSize, int idleTimeoutSec) {
+        this(() -> {
+            AgentRPC rpc = new AgentRPC(serverAddress, credentials, p2p, timeout);
+            rpc.create();
+            if (!rpc.isOpen()) {
+                throw new SiriusFieldValueError("Connection was not established");
+            }
+            return rpc;
+        }, maxSize, idleTimeoutSec, timeout, timeout);
+    }
+
+    /**
+     * Take connection from the pool. Idle connection is reused if it is still open,
+     * otherwise new connection is established while pool is not exhausted.
+     *
+     * @return established connection, must be returned with {@link #release(AgentRPC)}
+     */
+    public AgentRPC lease() throws SiriusFieldValueError, SiriusTimeoutRPC, SiriusConnectionClosed {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(leaseTimeoutSec);
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new SiriusConnectionClosed("Pool is closed");
+                }
+                IdleConnection candidate = idle.pollFirst();
+                if (candidate != null) {
+                    if (candidate.rpc.isOpen()) {
+                        leased.add(candidate.rpc);
+                        return candidate.rpc;
+                    }
+                    // broken connection: drop it and try next one
+                    totalCount--;
+                    continue;
+                }
+                if (totalCount < maxSize) {
+                    totalCount++;
+                    break;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SiriusTimeoutRPC();
+                }
+                try {
+                    released.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SiriusTimeoutRPC();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        // establish connection outside of lock: handshake is slow
+        try {
+            AgentRPC rpc = factory.create();
+            if (rpc == null) {
+                throw new SiriusFieldValueError("Connection was not established");
+            }
+            markLeased(rpc);
+            return rpc;
+        } catch (SiriusFieldValueError | RuntimeException e) {
+            discardSlot();
+            throw e;
+        }
+    }
+
+    /**
+     * Return leased connection to the pool. Closed connections are dropped.
+     * Connections that are not leased from this pool (or were released already) are ignored.
+     */
+    public void release(AgentRPC rpc) {
+        if (rpc == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!leased.remove(rpc)) {
+                log.log(Level.WARNING, "Ignore release of connection that is not leased from the pool");
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        boolean keep = rpc.isOpen();
+        if (keep) {
+            rpc.clearProtocolMessages();
+            if (defaultTimeout > 0) {
+                rpc.setTimeout(defaultTimeout);
+            }
+        }
+        lock.lock();
+        try {
+            if (keep && !closed) {
+                idle.addFirst(new IdleConnection(rpc));
+                released.signal();
+                return;
+            }
+            totalCount--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (rpc.isOpen()) {
+            rpc.close();
+        }
+    }
+
+    /**
+     * @param sharedSize count of connections that are shared by co-protocols via {@link #leaseShared()}
+     */
+    public void setSharedSize(int sharedSize) {
+        lock.lock();
+        try {
+            this.sharedSize = sharedSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSharedSize() {
+        return sharedSize;
+    }
+
+    /**
+     * Take the least loaded shared connection. New shared connection is established while
+     * their count is less than shared size. Shared connection must not be closed or reconfigured by the caller.
+     *
+     * @return established connection, must be returned with {@link #releaseShared(AgentRPC)}
+     */
+    public AgentRPC leaseShared() throws SiriusFieldValueError, SiriusConnectionClosed {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new SiriusConnectionClosed("Pool is closed");
+            }
+            shared.removeIf(connection -> !connection.rpc.isOpen() && connection.leases == 0);
+            SharedConnection leastLoaded = null;
+            for (SharedConnection connection : shared) {
+                if (connection.rpc.isOpen() && (leastLoaded == null || connection.leases < leastLoaded.leases)) {
+                    leastLoaded = connection;
+                }
+            }
+            boolean canGrow = shared.size() + sharedPending < sharedSize;
+            if (leastLoaded != null && (leastLoaded.leases == 0 || !canGrow)) {
+                leastLoaded.leases++;
+                return leastLoaded.rpc;
+            }
+            if (!canGrow && leastLoaded == null) {
+                throw new SiriusConnectionClosed("Shared connections are not available");
+            }
+            sharedPending++;
+        } finally {
+            lock.unlock();
+        }
+        AgentRPC rpc = null;
+        try {
+            rpc = factory.create();
+            if (rpc == null) {
+                throw new SiriusFieldValueError("Connection was not established");
+            }
+        } finally {
+            lock.lock();
+            try {
+                sharedPending--;
+                if (rpc != null) {
+                    SharedConnection connection = new SharedConnection(rpc);
+                    connection.leases = 1;
+                    shared.add(connection);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return rpc;
+    }
+
+    /**
+     * Return shared connection
+     */
+    public void releaseShared(AgentRPC rpc) {
+        if (rpc == null) {
+            return;
+        }
+        boolean doClose = false;
+        lock.lock();
+        try {
+            for (SharedConnection connection : shared) {
+                if (connection.rpc == rpc) {
+                    connection.leases--;
+                    connection.lastUsed = System.currentTimeMillis();
+                    if (connection.leases <= 0 && (closed || !rpc.isOpen())) {
+                        shared.remove(connection);
+                        doClose = true;
+                    }
+                    break;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (doClose && rpc.isOpen()) {
+            rpc.close();
+        }
+    }
+
+    /**
+     * Count of co-protocols that use shared connections
+     */
+    public int getSharedLeasesCount() {
+        lock.lock();
+        try {
+            int count = 0;
+            for (SharedConnection connection : shared) {
+                count += connection.leases;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Establish connections in advance
+     *
+     * @param count desired count of idle connections, limited by pool size
+     * @return count of connections that were established
+     */
+    public int warmUp(int count) {
+        List<AgentRPC> established = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lock.lock();
+            try {
+                if (closed || totalCount >= maxSize || idle.size() + established.size() >= count) {
+                    break;
+                }
+                totalCount++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                AgentRPC rpc = factory.create();
+                if (rpc == null) {
+                    discardSlot();
+                    break;
+                }
+                markLeased(rpc);
+                established.add(rpc);
+            } catch (SiriusFieldValueError | RuntimeException e) {
+                log.log(Level.WARNING, "Warm up failed: " + e.getMessage());
+                discardSlot();
+                break;
+            }
+        }
+        for (AgentRPC rpc : established) {
+            release(rpc);
+        }
+        return established.size();
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Count of established connections: leased and idle
+     */
+    public int getTotalCount() {
+        lock.lock();
+        try {
+            return totalCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Close idle connections, leased connections will be closed on release
+     */
+    public void close() {
+        List<IdleConnection> toClose;
+        List<SharedConnection> sharedToClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            totalCount -= idle.size();
+            idle.clear();
+            sharedToClose = new ArrayList<>();
+            for (SharedConnection connection : shared) {
+                if (connection.leases <= 0) {
+                    sharedToClose.add(connection);
+                }
+            }
+            shared.removeAll(sharedToClose);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        reaper.shutdown();
+        for (IdleConnection connection : toClose) {
+            connection.rpc.close();
+        }
+        for (SharedConnection connection : sharedToClose) {
+            connection.rpc.close();
+        }
+    }
+
+    void reapIdle() {
+        long now = System.currentTimeMillis();
+        List<IdleConnection> toClose = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<IdleConnection> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                IdleConnection connection = iterator.next();
+                if (now - connection.idleSince >= idleTimeoutSec * 1000L || !connection.rpc.isOpen()) {
+                    iterator.remove();
+                    totalCount--;
+                    toClose.add(connection);
+                }
+            }
+            Iterator<SharedConnection> sharedIterator = shared.iterator();
+            while (sharedIterator.hasNext()) {
+                SharedConnection connection = sharedIterator.next();
+                if (connection.leases <= 0 && (now - connection.lastUsed >= idleTimeoutSec * 1000L || !connection.rpc.isOpen())) {
+                    sharedIterator.remove();
+                    toClose.add(new IdleConnection(connection.rpc));
+                }
+            }
+            if (!toClose.isEmpty()) {
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (IdleConnection connection : toClose) {
+            try {
+                connection.rpc.close();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void markLeased(AgentRPC rpc) {
+        lock.lock();
+        try {
+            leased.add(rpc);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discardSlot() {
+        lock.lock();
+        try {
+            totalCount--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static class SharedConnection {
+        AgentRPC rpc;
+        int leases = 0;
+        long lastUsed;
+
+        SharedConnection(AgentRPC rpc) {
+            this.rpc = rpc;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    static class IdleConnection {
+        AgentRPC rpc;
+        long idleSince;
+
+        IdleConnection(AgentRPC rpc) {
+            this.rpc = rpc;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+}
@@ -70,7 +70,11 @@ public abstract class BaseAgentConnection {
         try {
             payload = feat.get(getTimeout(), TimeUnit.SECONDS);
         } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            e.printStackTrace();
+            if (!feat.cancel(false) && !feat.isCompletedExceptionally()) {
+                payload = feat.join();
+            } else {
+                e.printStackTrace();
+            }
         }
         String msgString = new String(payload, StandardCharsets.UTF_8);
         log.log(Level.INFO, "Received message: " + msgString);
@@ -0,0 +1,201 @@
+package com.sirius.sdk.agent;
+
+import com.sirius.sdk.agent.model.pairwise.Pairwise;
+import com.sirius.sdk.utils.LruCache;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of pairwise list indexed by their DID and their verkey.
+ * <p>
+ * Resolving sender of every inbound event costs wallet search RPC, cached pairwise is resolved locally
+ * until its entry expires or is evicted. Writes that go through this list invalidate cached entries,
+ * writes made to the wallet directly become visible after TTL.
+ * Returned pairwise instances are shared between callers.
+ */
+public class CachedPairwiseList extends AbstractPairwiseList {
+
+    public static final int DEF_SIZE = 1024;
+    public static final int DEF_TTL_SEC = 300;
+
+    AbstractPairwiseList delegate;
+    long ttlMillis;
+    LruCache<String, Entry> byDid;
+    LruCache<String, Entry> byVerkey;
+    AtomicLong hits = new AtomicLong(0);
+    AtomicLong misses = new AtomicLong(0);
+
+    static class Entry {
+        Pairwise pairwise;
+        long expiresAt;
+
+        Entry(Pairwise pairwise, long expiresAt) {
+            this.pairwise = pairwise;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param delegate source of pairwise
+     * @param size     max count of cached pairwise
+     * @param ttlSec   time to live of cached pairwise
+     */
+    public CachedPairwiseList(AbstractPairwiseList delegate, int size, int ttlSec) {
+        this.delegate = delegate;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSec);
+        this.byDid = new LruCache<>(size);
+        this.byVerkey = new LruCache<>(size);
+    }
+
+    public CachedPairwiseList(AbstractPairwiseList delegate) {
+        this(delegate, DEF_SIZE, DEF_TTL_SEC);
+    }
+
+    @Override
+    public void create(Pairwise pairwise) {
+        delegate.create(pairwise);
+        invalidate(pairwise);
+    }
+
+    @Override
+    public void update(Pairwise pairwise) {
+        delegate.update(pairwise);
+        invalidate(pairwise);
+    }
+
+    @Override
+    public boolean isExists(String theirDid) {
+        if (lookup(byDid, theirDid) != null) {
+            return true;
+        }
+        return delegate.isExists(theirDid);
+    }
+
+    @Override
+    public void ensureExists(Pairwise pairwise) {
+        delegate.ensureExists(pairwise);
+        invalidate(pairwise);
+    }
+
+    @Override
+    public Pairwise loadForDid(String theirDid) {
+        Pairwise pairwise = lookup(byDid, theirDid);
+        if (pairwise == null) {
+            pairwise = delegate.loadForDid(theirDid);
+            put(pairwise);
+        }
+        return pairwise;
+    }
+
+    @Override
+    public Pairwise loadForVerkey(String theirVerkey) {
+        Pairwise pairwise = lookup(byVerkey, theirVerkey);
+        if (pairwise == null) {
+            pairwise = delegate.loadForVerkey(theirVerkey);
+            put(pairwise);
+        }
+        return pairwise;
+    }
+
+    /**
+     * Put pairwise to cache, i.e. result of listing wallet pairwise on startup
+     *
+     * @return count of cached pairwise
+     */
+    public int preload(Collection<Pairwise> pairwiseList) {
+        int count = 0;
+        for (Pairwise pairwise : pairwiseList) {
+            if (put(pairwise)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drop cached entries of pairwise by its their DID and verkey
+     */
+    public void invalidate(Pairwise pairwise) {
+        if (pairwise == null || pairwise.getTheir() == null) {
+            return;
+        }
+        invalidateDid(pairwise.getTheir().getDid());
+        invalidateVerkey(pairwise.getTheir().getVerkey());
+    }
+
+    public void invalidateDid(String theirDid) {
+        if (theirDid == null) {
+            return;
+        }
+        Entry entry = byDid.remove(theirDid);
+        if (entry != null && entry.pairwise.getTheir().getVerkey() != null) {
+            // their verkey may be rotated, so entry that is indexed by old verkey is dropped too
+            byVerkey.remove(entry.pairwise.getTheir().getVerkey());
+        }
+    }
+
+    public void invalidateVerkey(String theirVerkey) {
+        if (theirVerkey == null) {
+            return;
+        }
+        Entry entry = byVerkey.remove(theirVerkey);
+        if (entry != null && entry.pairwise.getTheir().getDid() != null) {
+            byDid.remove(entry.pairwise.getTheir().getDid());
+        }
+    }
+
+    public void clear() {
+        byDid.clear();
+        byVerkey.clear();
+    }
+
+    public int size() {
+        return byDid.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public AbstractPairwiseList getDelegate() {
+        return delegate;
+    }
+
+    private Pairwise lookup(LruCache<String, Entry> index, String key) {
+        if (key == null) {
+            return null;
+        }
+        Entry entry = index.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return entry.pairwise;
+        }
+        if (entry != null) {
+            index.remove(key);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private boolean put(Pairwise pairwise) {
+        if (pairwise == null || pairwise.getTheir() == null) {
+            return false;
+        }
+        Entry entry = new Entry(pairwise, System.currentTimeMillis() + ttlMillis);
+        String theirDid = pairwise.getTheir().getDid();
+        String theirVerkey = pairwise.getTheir().getVerkey();
+        if (theirDid != null) {
+            byDid.put(theirDid, entry);
+        }
+        if (theirVerkey != null) {
+            byVerkey.put(theirVerkey, entry);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,342 @@
+package com.sirius.sdk.agent;
+
+import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidPayloadStructure;
+import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidType;
+import com.sirius.sdk.messaging.Message;
+import com.sirius.sdk.messaging.Type;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Routes co-protocol events received via single connection to inbound queues of co-protocol transports.
+ * <p>
+ * Event is matched by ~thread.thid of its message at first, then by sender verkey and protocol of the message.
+ * Events that match no subscription are put to the default inbox.
+ * Reader of connection is never blocked: when inbound queue is full the event is discarded.
+ * <p>
+ * Several subscriptions may hold the same route, i.e. co-protocols of the same thread or counterparty that
+ * share leased connection. Route is reference counted: events go to the earliest holder and the route is
+ * removed when its last holder releases it, so server-side unsubscribe should be sent only then.
+ */
+public class CoProtocolDemultiplexer {
+
+    public static final int DEF_QUEUE_CAPACITY = 1024;
+    public static final String ANY_PROTOCOL = "*";
+
+    Logger log = Logger.getLogger(CoProtocolDemultiplexer.class.getName());
+    int queueCapacity;
+    Map<String, Route> byThread = new ConcurrentHashMap<>();
+    Map<String, Map<String, Route>> bySender = new ConcurrentHashMap<>();
+    BlockingQueue<Message> defaultInbox;
+
+    public CoProtocolDemultiplexer(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        this.defaultInbox = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    public CoProtocolDemultiplexer() {
+        this(DEF_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Subscribe to events of the thread
+     */
+    public Subscription subscribeThread(String thid) {
+        Subscription subscription = new Subscription();
+        subscription.addThread(thid);
+        return subscription;
+    }
+
+    /**
+     * Subscribe to events from sender
+     *
+     * @param senderVerkey verkey of the counterparty
+     * @param protocols    protocols of interest, empty list means any protocol
+     */
+    public Subscription subscribeP2P(String senderVerkey, List<String> protocols) {
+        Subscription subscription = new Subscription();
+        subscription.addSender(senderVerkey, protocols);
+        return subscription;
+    }
+
+    /**
+     * Put event to the queue of matched subscription
+     *
+     * @param event event received from co-protocols tunnel
+     * @return True if event was matched with subscription
+     */
+    public boolean route(Message event) {
+        Subscription subscription = match(event);
+        if (subscription != null) {
+            subscription.offer(event);
+            return true;
+        }
+        if (!defaultInbox.offer(event)) {
+            log.log(Level.WARNING, "Default co-protocol inbox is full, event is discarded: " + event.getId());
+        }
+        return false;
+    }
+
+    Subscription match(Message event) {
+        JSONObject payload = event.getJSONOBJECTFromJSON("message");
+        if (payload == null) {
+            return null;
+        }
+        JSONObject thread = payload.optJSONObject("~thread");
+        if (thread != null) {
+            Subscription subscription = findThread(thread.optString("thid", null));
+            if (subscription == null) {
+                subscription = findThread(thread.optString("pthid", null));
+            }
+            if (subscription != null) {
+                return subscription;
+            }
+        }
+        Subscription subscription = findThread(payload.optString("@id", null));
+        if (subscription != null) {
+            return subscription;
+        }
+        String senderVerkey = event.getStringFromJSON("sender_verkey");
+        if (senderVerkey == null) {
+            return null;
+        }
+        Map<String, Route> senderRoutes = bySender.get(senderVerkey);
+        if (senderRoutes == null) {
+            return null;
+        }
+        String type = payload.optString("@type", null);
+        if (type != null) {
+            try {
+                subscription = holder(senderRoutes.get(Type.fromStr(type).getProtocol()));
+                if (subscription != null) {
+                    return subscription;
+                }
+            } catch (SiriusInvalidType ignored) {
+            }
+        }
+        return holder(senderRoutes.get(ANY_PROTOCOL));
+    }
+
+    private Subscription findThread(String thid) {
+        if (thid == null) {
+            return null;
+        }
+        return holder(byThread.get(thid));
+    }
+
+    private static Subscription holder(Route route) {
+        return route != null ? route.first() : null;
+    }
+
+    /**
+     * Read event that was not routed to any subscription
+     */
+    public Message readDefault(int timeoutSec) throws SiriusInvalidPayloadStructure {
+        return poll(defaultInbox, timeoutSec);
+    }
+
+    /**
+     * Discard events of default inbox
+     *
+     * @return count of discarded events
+     */
+    public int clearDefault() {
+        List<Message> stale = new ArrayList<>();
+        defaultInbox.drainTo(stale);
+        return stale.size();
+    }
+
+    /**
+     * Count of active subscriptions keys: threads and senders
+     */
+    public int getRoutesCount() {
+        int count = byThread.size();
+        for (Map<String, Route> senderRoutes : bySender.values()) {
+            count += senderRoutes.size();
+        }
+        return count;
+    }
+
+    /**
+     * Count of subscriptions that hold route of the thread
+     */
+    public int getThreadHolders(String thid) {
+        Route route = byThread.get(thid);
+        return route != null ? route.holders.size() : 0;
+    }
+
+    static Message poll(BlockingQueue<Message> queue, int timeoutSec) throws SiriusInvalidPayloadStructure {
+        try {
+            Message message = queue.poll(timeoutSec, TimeUnit.SECONDS);
+            if (message != null) {
+                return message;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new SiriusInvalidPayloadStructure("Protocol message was not received in " + timeoutSec + " sec");
+    }
+
+    /**
+     * Subscriptions that hold the same route, modified under lock of the map entry
+     */
+    static class Route {
+        List<Subscription> holders = new CopyOnWriteArrayList<>();
+
+        Subscription first() {
+            Iterator<Subscription> iterator = holders.iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+
+    /**
+     * Inbound queue of single co-protocol transport
+     */
+    public class Subscription {
+        BlockingQueue<Message> queue = new LinkedBlockingQueue<>(queueCapacity);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        List<String[]> senders = new CopyOnWriteArrayList<>();
+        volatile boolean closed = false;
+
+        public void addThread(String thid) {
+            if (thid == null || closed || threads.contains(thid)) {
+                return;
+            }
+            byThread.compute(thid, (key, route) -> {
+                if (route == null) {
+                    route = new Route();
+                }
+                route.holders.add(this);
+                return route;
+            });
+            threads.add(thid);
+        }
+
+        /**
+         * Release route of the thread
+         *
+         * @return True if no other subscription holds the route, so the thread may be unsubscribed on server side
+         */
+        public boolean removeThread(String thid) {
+            if (thid == null || !threads.remove(thid)) {
+                return false;
+            }
+            return releaseThread(thid);
+        }
+
+        public void addSender(String senderVerkey, List<String> protocols) {
+            if (senderVerkey == null || closed) {
+                return;
+            }
+            List<String> keys = protocols == null || protocols.isEmpty() ? Collections.singletonList(ANY_PROTOCOL) : protocols;
+            for (String protocol : keys) {
+                if (holdsSender(senderVerkey, protocol)) {
+                    continue;
+                }
+                bySender.compute(senderVerkey, (key, senderRoutes) -> {
+                    if (senderRoutes == null) {
+                        senderRoutes = new ConcurrentHashMap<>();
+                    }
+                    senderRoutes.computeIfAbsent(protocol, p -> new Route()).holders.add(this);
+                    return senderRoutes;
+                });
+                senders.add(new String[]{senderVerkey, protocol});
+            }
+        }
+
+        /**
+         * Release routes of the sender
+         *
+         * @return protocols which routes are not held by other subscriptions anymore, so they may be unsubscribed
+         * on server side; {@link #ANY_PROTOCOL} stands for subscription to any protocol
+         */
+        public List<String> removeSender(String senderVerkey) {
+            List<String> released = new ArrayList<>();
+            for (String[] sender : senders) {
+                if (sender[0].equals(senderVerkey) && senders.remove(sender) && releaseSender(sender)) {
+                    released.add(sender[1]);
+                }
+            }
+            return released;
+        }
+
+        /**
+         * Read next event of this subscription
+         */
+        public Message read(int timeoutSec) throws SiriusInvalidPayloadStructure {
+            return poll(queue, timeoutSec);
+        }
+
+        public int size() {
+            return queue.size();
+        }
+
+        /**
+         * Release all routes of subscription, pending events are discarded
+         */
+        public void close() {
+            closed = true;
+            for (String thid : threads) {
+                releaseThread(thid);
+            }
+            threads.clear();
+            for (String[] sender : senders) {
+                releaseSender(sender);
+            }
+            senders.clear();
+            queue.clear();
+        }
+
+        void offer(Message event) {
+            if (!queue.offer(event)) {
+                log.log(Level.WARNING, "Co-protocol inbox is full, event is discarded: " + event.getId());
+            }
+        }
+
+        private boolean holdsSender(String senderVerkey, String protocol) {
+            for (String[] sender : senders) {
+                if (sender[0].equals(senderVerkey) && sender[1].equals(protocol)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean releaseThread(String thid) {
+            boolean[] last = {false};
+            byThread.computeIfPresent(thid, (key, route) -> {
+                if (!route.holders.remove(this)) {
+                    return route;
+                }
+                last[0] = route.holders.isEmpty();
+                return last[0] ? null : route;
+            });
+            return last[0];
+        }
+
+        private boolean releaseSender(String[] sender) {
+            boolean[] last = {false};
+            bySender.computeIfPresent(sender[0], (key, senderRoutes) -> {
+                Route route = senderRoutes.get(sender[1]);
+                if (route != null && route.holders.remove(this) && route.holders.isEmpty()) {
+                    senderRoutes.remove(sender[1]);
+                    last[0] = true;
+                }
+                return senderRoutes.isEmpty() ? null : senderRoutes;
+            });
+            return last[0];
+        }
+    }
+}
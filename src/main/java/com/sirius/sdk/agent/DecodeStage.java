@@ -0,0 +1,201 @@
+package com.sirius.sdk.agent;
+
+import com.sirius.sdk.base.ReadOnlyChannel;
+import com.sirius.sdk.messaging.Message;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Decode stage of inbound stream: frames are unpacked and parsed to messages by worker pool,
+ * thread that delivers frames (socket reader) only hands them to workers.
+ * <p>
+ * Messages are handed out in arrival order of their frames regardless of which one was decoded first,
+ * so order of messages of every sender is preserved: sender of protected frame is not known until it is decrypted.
+ * Stage stops reading the channel while capacity of decoded but not read messages is exhausted.
+ * <p>
+ * Reader is chosen only when message is decoded, so message of reader that was cancelled meanwhile
+ * goes to the next reader or waits for one.
+ */
+public class DecodeStage {
+
+    public static final int DEF_CAPACITY = 256;
+
+    ReadOnlyChannel source;
+    Function<byte[], Message> decoder;
+    Executor executor;
+    int capacity;
+    final Object lock = new Object();
+    // frames that are being decoded, in arrival order
+    Deque<CompletableFuture<Message>> decoding = new ArrayDeque<>();
+    // decoded messages that wait for reader
+    Deque<CompletableFuture<Message>> decoded = new ArrayDeque<>();
+    Deque<CompletableFuture<Message>> readers = new ArrayDeque<>();
+    boolean reading = false;
+    // single thread hands decoded messages to readers, so they are handed out in order
+    boolean delivering = false;
+    boolean redeliver = false;
+    Throwable failure = null;
+
+    /**
+     * @param source   channel of raw frames
+     * @param decoder  unpack and parse frame, it is called by workers
+     * @param executor workers
+     * @param capacity max count of decoded messages that are not read yet
+     */
+    public DecodeStage(ReadOnlyChannel source, Function<byte[], Message> decoder, Executor executor, int capacity) {
+        this.source = source;
+        this.decoder = decoder;
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Read next message.
+     * <p>
+     * Reader that is not interested in result anymore must cancel returned future,
+     * otherwise next message will be delivered to it.
+     *
+     * @return future that is completed with next message in arrival order
+     */
+    public CompletableFuture<Message> read() {
+        CompletableFuture<Message> result;
+        synchronized (lock) {
+            result = decoded.pollFirst();
+            if (result == null) {
+                result = new CompletableFuture<>();
+                if (failure != null && decoding.isEmpty()) {
+                    result.completeExceptionally(failure);
+                    return result;
+                }
+                readers.addLast(result);
+            }
+        }
+        pump();
+        return result;
+    }
+
+    /**
+     * Count of messages that were received but not read yet
+     */
+    public int size() {
+        synchronized (lock) {
+            return decoded.size() + decoding.size();
+        }
+    }
+
+    void pump() {
+        while (true) {
+            synchronized (lock) {
+                if (reading || failure != null || decoded.size() + decoding.size() >= capacity) {
+                    return;
+                }
+                reading = true;
+            }
+            CompletableFuture<byte[]> frame = source.read();
+            if (!frame.isDone()) {
+                frame.whenComplete((data, error) -> {
+                    onFrame(data, error);
+                    pump();
+                });
+                return;
+            }
+            try {
+                onFrame(frame.join(), null);
+            } catch (CompletionException e) {
+                onFrame(null, e);
+            }
+        }
+    }
+
+    private void onFrame(byte[] data, Throwable error) {
+        if (error != null) {
+            fail(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            return;
+        }
+        CompletableFuture<Message> message;
+        try {
+            message = CompletableFuture.supplyAsync(() -> decoder.apply(data), executor);
+        } catch (RejectedExecutionException e) {
+            message = CompletableFuture.completedFuture(decoder.apply(data));
+        }
+        synchronized (lock) {
+            reading = false;
+            decoding.addLast(message);
+        }
+        message.whenComplete((result, e) -> deliver());
+    }
+
+    /**
+     * Hand decoded messages at the head of arrival order to live readers
+     */
+    private void deliver() {
+        synchronized (lock) {
+            if (delivering) {
+                redeliver = true;
+                return;
+            }
+            delivering = true;
+        }
+        while (true) {
+            CompletableFuture<Message> head;
+            CompletableFuture<Message> reader;
+            synchronized (lock) {
+                head = decoding.peekFirst();
+                if (head == null || !head.isDone()) {
+                    if (redeliver) {
+                        redeliver = false;
+                        continue;
+                    }
+                    delivering = false;
+                    break;
+                }
+                reader = readers.pollFirst();
+                while (reader != null && reader.isDone()) {
+                    reader = readers.pollFirst();
+                }
+                if (reader == null) {
+                    decoded.addLast(decoding.pollFirst());
+                    continue;
+                }
+            }
+            // reader may be cancelled concurrently, then message is handed to the next one
+            if (transfer(head, reader)) {
+                synchronized (lock) {
+                    decoding.pollFirst();
+                }
+            }
+        }
+        // capacity was freed
+        pump();
+    }
+
+    private static boolean transfer(CompletableFuture<Message> message, CompletableFuture<Message> reader) {
+        try {
+            return reader.complete(message.join());
+        } catch (CompletionException e) {
+            return reader.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+        } catch (CancellationException e) {
+            return reader.completeExceptionally(e);
+        }
+    }
+
+    private void fail(Throwable error) {
+        Deque<CompletableFuture<Message>> pending;
+        synchronized (lock) {
+            reading = false;
+            failure = error;
+            pending = new ArrayDeque<>(readers);
+            readers.clear();
+        }
+        for (CompletableFuture<Message> reader : pending) {
+            reader.completeExceptionally(error);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.sirius.sdk.agent;
+
+import com.sirius.sdk.base.Flow;
+import com.sirius.sdk.messaging.Message;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Handles listener events by pool of workers while preserving order of events of every conversation.
+ * <p>
+ * Every event is put to the queue of shard selected by its key: sender verkey or ~thread.thid of its message,
+ * each shard is served by single worker, so events of the same key are handled sequentially in arrival order
+ * and different conversations are handled in parallel.
+ * Handlers are registered per message class (see {@link Message#registerMessageClass}),
+ * handler of the nearest superclass of restored message is called.
+ * <p>
+ * Dispatcher may be subscribed to {@link EventStream}: shard of the next event is not known in advance, so
+ * events are requested only while every shard has free space for all outstanding (requested and not received)
+ * events. Reader of the stream is never blocked: when conversation is hot its shard fills up and requesting
+ * stops until the worker drains it.
+ */
+public class EventDispatcher implements Flow.Subscriber<Event> {
+
+    public static final int DEF_QUEUE_CAPACITY = 1024;
+
+    public enum Sharding {
+        /**
+         * Events of the same pairwise are ordered
+         */
+        BY_SENDER,
+        /**
+         * Events of the same thread are ordered, events without thread are ordered by sender
+         */
+        BY_THREAD
+    }
+
+    Logger log = Logger.getLogger(EventDispatcher.class.getName());
+    Sharding sharding;
+    Shard[] shards;
+    Map<Class<? extends Message>, BiConsumer<Event, Message>> handlers = new ConcurrentHashMap<>();
+    volatile Consumer<Event> defaultHandler;
+    volatile Flow.Subscription subscription;
+    // events requested from subscription and not received yet, guarded by demandLock
+    long outstanding = 0;
+    final Object demandLock = new Object();
+    volatile boolean closed = false;
+
+    /**
+     * @param shardsCount   count of workers
+     * @param queueCapacity max count of queued events per shard, producer is blocked while queue is full
+     */
+    public EventDispatcher(int shardsCount, int queueCapacity, Sharding sharding) {
+        if (shardsCount <= 0 || queueCapacity <= 0) {
+            throw new RuntimeException("Shards count and queue capacity must be > 0");
+        }
+        this.sharding = sharding;
+        this.shards = new Shard[shardsCount];
+        for (int i = 0; i < shardsCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+    }
+
+    public EventDispatcher(int shardsCount) {
+        this(shardsCount, DEF_QUEUE_CAPACITY, Sharding.BY_SENDER);
+    }
+
+    /**
+     * Register handler of messages of the class and its subclasses
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Message> void register(Class<T> messageClass, BiConsumer<Event, T> handler) {
+        try {
+            // message classes put themselves to Message.MSG_REGISTRY by static initializer
+            Class.forName(messageClass.getName(), true, messageClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        handlers.put(messageClass, (BiConsumer<Event, Message>) handler);
+    }
+
+    public void unregister(Class<? extends Message> messageClass) {
+        handlers.remove(messageClass);
+    }
+
+    /**
+     * Handler of events that match no registered class
+     */
+    public void setDefaultHandler(Consumer<Event> handler) {
+        defaultHandler = handler;
+    }
+
+    /**
+     * Put event to the queue of its shard, caller is blocked while the queue is full
+     *
+     * @return False if dispatcher is closed and event was discarded
+     */
+    public boolean dispatch(Event event) {
+        if (closed) {
+            return false;
+        }
+        Shard shard = shards[shardOf(shardKey(event))];
+        try {
+            shard.queue.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        shard.updateMaxDepth();
+        return true;
+    }
+
+    String shardKey(Event event) {
+        JSONObject payload = event.getJSONOBJECTFromJSON("message");
+        if (sharding == Sharding.BY_THREAD && payload != null) {
+            JSONObject thread = payload.optJSONObject("~thread");
+            if (thread != null && thread.has("thid")) {
+                return thread.optString("thid");
+            }
+        }
+        String senderVerkey = event.getStringFromJSON("sender_verkey");
+        if (senderVerkey != null && !senderVerkey.isEmpty()) {
+            return senderVerkey;
+        }
+        return event.getId();
+    }
+
+    int shardOf(String key) {
+        int hash = key != null ? key.hashCode() : 0;
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % shards.length;
+    }
+
+    void handle(Event event) {
+        Message message = event.message();
+        BiConsumer<Event, Message> handler = null;
+        if (message != null) {
+            for (Class<?> cls = message.getClass(); handler == null && Message.class.isAssignableFrom(cls); cls = cls.getSuperclass()) {
+                handler = handlers.get(cls);
+            }
+        }
+        if (handler != null) {
+            handler.accept(event, message);
+            return;
+        }
+        Consumer<Event> fallback = defaultHandler;
+        if (fallback != null) {
+            fallback.accept(event);
+        } else {
+            log.log(Level.WARNING, "No handler for event: " + event.getId());
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        requestMore();
+    }
+
+    @Override
+    public void onNext(Event item) {
+        synchronized (demandLock) {
+            if (outstanding > 0) {
+                outstanding--;
+            }
+        }
+        if (closed) {
+            return;
+        }
+        Shard shard = shards[shardOf(shardKey(item))];
+        shard.offer(item);
+        shard.updateMaxDepth();
+    }
+
+    /**
+     * Request as many events as the fullest shard can take besides outstanding ones
+     */
+    void requestMore() {
+        Flow.Subscription s = subscription;
+        if (s == null || closed) {
+            return;
+        }
+        long n;
+        synchronized (demandLock) {
+            long free = Long.MAX_VALUE;
+            for (Shard shard : shards) {
+                free = Math.min(free, shard.freeSpace());
+            }
+            n = free - outstanding;
+            if (n <= 0) {
+                return;
+            }
+            outstanding += n;
+        }
+        s.request(n);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.log(Level.WARNING, "Event stream failed: " + throwable.getMessage());
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    /**
+     * Stop workers, queued events are discarded
+     */
+    public void close() {
+        closed = true;
+        Flow.Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+        for (Shard shard : shards) {
+            shard.worker.interrupt();
+            synchronized (shard) {
+                shard.overflow.clear();
+                shard.queue.clear();
+            }
+        }
+    }
+
+    public int getShardsCount() {
+        return shards.length;
+    }
+
+    /**
+     * Count of events waiting in the queue of shard
+     */
+    public int getQueueDepth(int shard) {
+        return shards[shard].depth();
+    }
+
+    /**
+     * The largest queue depth of shard observed since creation
+     */
+    public int getMaxQueueDepth(int shard) {
+        return shards[shard].maxDepth.intValue();
+    }
+
+    /**
+     * Count of events handled by shard
+     */
+    public long getProcessedCount(int shard) {
+        return shards[shard].processed.get();
+    }
+
+    class Shard implements Runnable {
+        int capacity;
+        BlockingQueue<Event> queue;
+        // events of stream that didn't fit the queue, i.e. mixed with events put by dispatch(), guarded by this
+        Deque<Event> overflow = new ArrayDeque<>();
+        AtomicLong maxDepth = new AtomicLong(0);
+        AtomicLong processed = new AtomicLong(0);
+        Thread worker;
+
+        Shard(int index, int capacity) {
+            this.capacity = capacity;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.worker = new Thread(this, "EventDispatcher-" + index);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        /**
+         * Put event to the queue without blocking, event is kept in order if queue is full
+         */
+        synchronized void offer(Event event) {
+            if (overflow.isEmpty() && queue.offer(event)) {
+                return;
+            }
+            overflow.add(event);
+        }
+
+        synchronized void refill() {
+            while (!overflow.isEmpty() && queue.offer(overflow.peek())) {
+                overflow.poll();
+            }
+        }
+
+        synchronized int depth() {
+            return queue.size() + overflow.size();
+        }
+
+        synchronized long freeSpace() {
+            return queue.remainingCapacity() - overflow.size();
+        }
+
+        void updateMaxDepth() {
+            long depth = depth();
+            long max = maxDepth.get();
+            while (depth > max && !maxDepth.compareAndSet(max, depth)) {
+                max = maxDepth.get();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                Event event;
+                try {
+                    event = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (event == null) {
+                    continue;
+                }
+                // slot is free, next events are received while this one is handled
+                refill();
+                requestMore();
+                try {
+                    handle(event);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Event handler failed: " + event.getId(), e);
+                }
+                processed.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.sirius.sdk.agent;
+
+import com.sirius.sdk.base.Flow;
+import com.sirius.sdk.errors.sirius_exceptions.SiriusConnectionClosed;
+import com.sirius.sdk.messaging.Message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stream of listener events with demand-driven prefetch.
+ * <p>
+ * Up to prefetch events are pulled from agent connection ahead of consumer, no more reads are issued
+ * until consumer takes them, so slow consumer throttles the source down to the socket.
+ * Events are handed out in arrival order either to single subscriber (push, by its demand)
+ * or to {@link #poll(int, int)} caller (batches), stream can't be consumed both ways.
+ * Prefetched events are discarded on cancellation.
+ */
+public class EventStream implements Flow.Publisher<Event> {
+
+    public static final int DEF_PREFETCH = 16;
+
+    Listener listener;
+    int prefetch;
+    final Object lock = new Object();
+    Deque<CompletableFuture<Message>> pending = new ArrayDeque<>();
+    AtomicInteger wip = new AtomicInteger(0);
+    Flow.Subscriber<? super Event> subscriber;
+    long demand = 0;
+    boolean cancelled = false;
+    Throwable error;
+
+    public EventStream(Listener listener, int prefetch) {
+        if (prefetch <= 0) {
+            throw new RuntimeException("Prefetch must be > 0");
+        }
+        this.listener = listener;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Event> subscriber) {
+        boolean accepted;
+        synchronized (lock) {
+            accepted = this.subscriber == null && !cancelled;
+            if (accepted) {
+                this.subscriber = subscriber;
+            }
+        }
+        if (!accepted) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Event stream supports single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Requested count must be > 0"));
+                    return;
+                }
+                synchronized (lock) {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                EventStream.this.cancel();
+            }
+        });
+        fill();
+    }
+
+    /**
+     * Wait for the next event and take it with events that are already prefetched
+     *
+     * @param maxEvents  max size of the batch
+     * @param timeoutSec time to wait for the first event
+     * @return batch of events in arrival order, empty if nothing was received in timeout
+     */
+    public List<Event> poll(int maxEvents, int timeoutSec) throws SiriusConnectionClosed {
+        synchronized (lock) {
+            if (subscriber != null) {
+                throw new IllegalStateException("Event stream is consumed by subscriber");
+            }
+        }
+        List<Event> events = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutSec);
+        while (events.size() < maxEvents) {
+            fill();
+            CompletableFuture<Message> head;
+            synchronized (lock) {
+                if (cancelled) {
+                    break;
+                }
+                head = pending.peekFirst();
+            }
+            if (head == null) {
+                break;
+            }
+            Message message;
+            try {
+                if (events.isEmpty()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    message = head.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+                } else if (head.isDone()) {
+                    message = head.join();
+                } else {
+                    break;
+                }
+            } catch (TimeoutException e) {
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | CompletionException | CancellationException e) {
+                fail(e.getCause() != null ? e.getCause() : e);
+                break;
+            }
+            synchronized (lock) {
+                pending.remove(head);
+            }
+            if (message != null) {
+                events.add(listener.toEvent(message));
+            }
+        }
+        if (events.isEmpty()) {
+            Throwable cause;
+            synchronized (lock) {
+                cause = error;
+            }
+            if (cause != null) {
+                throw new SiriusConnectionClosed(cause.getMessage());
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Stop pulling events, prefetched events are discarded
+     */
+    public void cancel() {
+        List<CompletableFuture<Message>> dropped;
+        synchronized (lock) {
+            cancelled = true;
+            subscriber = null;
+            dropped = new ArrayList<>(pending);
+            pending.clear();
+        }
+        // pending reads are skipped by connection, so next events are not lost in abandoned futures
+        for (CompletableFuture<Message> future : dropped) {
+            future.cancel(false);
+        }
+    }
+
+    public boolean isCancelled() {
+        synchronized (lock) {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Count of events requested from connection and not consumed yet
+     */
+    public int getPrefetchedCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    void fill() {
+        List<CompletableFuture<Message>> issued = new ArrayList<>();
+        synchronized (lock) {
+            while (!cancelled && error == null && pending.size() < prefetch) {
+                CompletableFuture<Message> future;
+                try {
+                    future = listener.source.pull();
+                } catch (Exception e) {
+                    error = e;
+                    break;
+                }
+                pending.addLast(future);
+                issued.add(future);
+            }
+        }
+        // callbacks are attached outside of the lock: already completed futures run them inline
+        for (CompletableFuture<Message> future : issued) {
+            future.whenComplete((msg, e) -> drain());
+        }
+        if (issued.isEmpty()) {
+            drain();
+        }
+    }
+
+    void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            boolean consumed = false;
+            while (true) {
+                Flow.Subscriber<? super Event> s;
+                CompletableFuture<Message> head;
+                Throwable cause = null;
+                synchronized (lock) {
+                    s = subscriber;
+                    if (cancelled || s == null) {
+                        break;
+                    }
+                    head = pending.peekFirst();
+                    if (head == null) {
+                        cause = error;
+                        if (cause == null) {
+                            break;
+                        }
+                    } else if (!head.isDone() || (demand == 0 && !head.isCompletedExceptionally())) {
+                        break;
+                    }
+                }
+                if (cause == null) {
+                    Message message;
+                    try {
+                        message = head.join();
+                    } catch (CompletionException | CancellationException e) {
+                        cause = e.getCause() != null ? e.getCause() : e;
+                        message = null;
+                    }
+                    if (cause == null) {
+                        synchronized (lock) {
+                            if (cancelled || pending.peekFirst() != head) {
+                                break;
+                            }
+                            pending.pollFirst();
+                            if (message != null) {
+                                demand--;
+                            }
+                        }
+                        consumed = true;
+                        if (message != null) {
+                            s.onNext(listener.toEvent(message));
+                        }
+                        continue;
+                    }
+                }
+                cancel();
+                s.onError(cause);
+                break;
+            }
+            if (consumed) {
+                fill();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    void fail(Throwable cause) {
+        Flow.Subscriber<? super Event> s;
+        synchronized (lock) {
+            if (error == null) {
+                error = cause;
+            }
+            s = subscriber;
+        }
+        if (s != null) {
+            cancel();
+            s.onError(cause);
+        }
+    }
+}
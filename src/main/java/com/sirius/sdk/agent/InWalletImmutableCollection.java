@@ -1,8 +1,10 @@
 package com.sirius.sdk.agent;
 
+import com.sirius.sdk.agent.wallet.WalletSearchCursor;
 import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractNonSecrets;
 import com.sirius.sdk.agent.wallet.abstract_wallet.model.RetrieveRecordOptions;
 import com.sirius.sdk.storage.abstract_storage.AbstractImmutableCollection;
+import com.sirius.sdk.storage.abstract_storage.ImmutableCollectionHandle;
 import com.sirius.sdk.utils.Pair;
 import org.json.JSONObject;
 
@@ -11,8 +13,9 @@ import java.util.List;
 import java.util.UUID;
 
 public class InWalletImmutableCollection extends AbstractImmutableCollection {
-    int DEFAULT_FETCH_LIMIT = 1000;
-    String selectedDb;
+    public static final int DEFAULT_FETCH_LIMIT = 1000;
+    volatile int fetchLimit = DEFAULT_FETCH_LIMIT;
+    volatile String selectedDb;
 
     public InWalletImmutableCollection(AbstractNonSecrets storage) {
         this.storage = storage;
@@ -27,30 +30,98 @@ public class InWalletImmutableCollection extends AbstractImmutableCollection {
 
     @Override
     public void add(Object value, String tags) {
-        storage.addWalletRecord(selectedDb, UUID.randomUUID().toString(), value.toString(), tags);
+        add(selectedDb, value, tags);
     }
 
     @Override
     public Pair<List<Object>, Integer> fetch(String tags, Integer limit) {
+        return fetch(selectedDb, tags, limit);
+    }
+
+    @Override
+    public ImmutableCollectionHandle database(String name) {
+        return new ImmutableCollectionHandle() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void add(Object value, String tags) {
+                InWalletImmutableCollection.this.add(name, value, tags);
+            }
+
+            @Override
+            public boolean addIfAbsent(Object value, String tags, String query) {
+                // handles are created per call, check and add are serialized by the collection
+                synchronized (InWalletImmutableCollection.this) {
+                    if (InWalletImmutableCollection.this.fetch(name, query, 1).second > 0) {
+                        return false;
+                    }
+                    InWalletImmutableCollection.this.add(name, value, tags);
+                    return true;
+                }
+            }
+
+            @Override
+            public Pair<List<Object>, Integer> fetch(String tags, Integer limit) {
+                return InWalletImmutableCollection.this.fetch(name, tags, limit);
+            }
+        };
+    }
+
+    void add(String db, Object value, String tags) {
+        storage.addWalletRecord(db, UUID.randomUUID().toString(), value.toString(), tags);
+    }
+
+    Pair<List<Object>, Integer> fetch(String db, String tags, Integer limit) {
        if(limit == null){
-        limit=    DEFAULT_FETCH_LIMIT;
+        limit=    fetchLimit;
        }
-        Pair<List<String>,Integer> result = storage.walletSearch(selectedDb,tags,
+        Pair<List<String>,Integer> result = storage.walletSearch(db,tags,
                 new RetrieveRecordOptions(false,true,false),limit);
-        if(result.first!=null && result.first!= JSONObject.NULL){
-            List<Object> listValue = new ArrayList<>();
-            for(int i=0;i<result.first.size();i++){
-                Object object = result.first.get(i);
-                JSONObject jsonObject =  new JSONObject(object.toString());
-                 String values =  jsonObject.optString("value");
-                 if(values!=null){
-                     listValue.add(values);
-                 }
+        return new Pair<>(values(result.first), result.second);
+    }
+
+    /**
+     * Iterate values of the collection by pages, unlike {@link #fetch(String, Integer)} results are not limited
+     *
+     * @param sortTag plaintext tag that values were added with, pages are ranges of its values (see {@link WalletSearchCursor})
+     */
+    public WalletSearchCursor<Object> cursor(String tags, String sortTag, int pageSize) {
+        return cursor(selectedDb, tags, sortTag, pageSize);
+    }
+
+    public WalletSearchCursor<Object> cursor(String db, String tags, String sortTag, int pageSize) {
+        RetrieveRecordOptions options = new RetrieveRecordOptions(false, true, true);
+        JSONObject query = tags != null ? new JSONObject(tags) : null;
+        return new WalletSearchCursor<>((after, upTo, limit) -> storage.walletSearch(db,
+                WalletSearchCursor.rangeQuery(query, sortTag, after, upTo).toString(), options, limit),
+                sortTag, InWalletImmutableCollection::value, pageSize);
+    }
+
+    /**
+     * Max count of values fetched when limit is not set
+     */
+    public void setFetchLimit(int fetchLimit) {
+        this.fetchLimit = fetchLimit;
+    }
+
+    public int getFetchLimit() {
+        return fetchLimit;
+    }
+
+    static List<Object> values(List<String> records) {
+        List<Object> listValue = new ArrayList<>();
+        if (records != null && records != JSONObject.NULL) {
+            for (Object object : records) {
+                listValue.add(value(object.toString()));
             }
-            return new Pair<>(listValue, result.second);
-        }else{
-            return new Pair<>(new ArrayList<>(),result.second);
         }
+        return listValue;
     }
-}
 
+    static Object value(String record) {
+        return new JSONObject(record).optString("value");
+    }
+}
@@ -12,6 +12,7 @@ import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractLedger;
 import com.sirius.sdk.agent.wallet.abstract_wallet.model.AnonCredSchema;
 import com.sirius.sdk.agent.wallet.abstract_wallet.model.CacheOptions;
 import com.sirius.sdk.storage.abstract_storage.AbstractImmutableCollection;
+import com.sirius.sdk.storage.abstract_storage.ImmutableCollectionHandle;
 import com.sirius.sdk.utils.GsonUtils;
 import com.sirius.sdk.utils.Pair;
 import org.checkerframework.checker.units.qual.C;
@@ -45,16 +46,41 @@ public class Ledger {
     }
 
     public Schema loadSchema(String id, String submitterDid) {
-        String schemaString = cache.getSchema(name, submitterDid, id, new CacheOptions());
-        return new Schema(schemaString);
+        return cache.getSchemaObject(name, submitterDid, id, new CacheOptions());
     }
 
 
     public CredentialDefinition loadCredDef(String id, String submitterDid) {
-        String credDef = cache.getCredDef(name, submitterDid, id, new CacheOptions());
-        CredentialDefinition credentialDefinition = new CredentialDefinition().deserialize(credDef);
-        String tag = credentialDefinition.getTag();
-        return null;
+        return cache.getCredDefObject(name, submitterDid, id, new CacheOptions(),
+                credDefBody -> parseCredDef(credDefBody, submitterDid));
+    }
+
+    CredentialDefinition parseCredDef(String credDefBody, String submitterDid) {
+        JSONObject body = new JSONObject(credDefBody);
+        String tag = body.optString("tag");
+        int schemaSeqNo = Integer.parseInt(body.getString("schemaId"));
+        int credDefSeqNo = Integer.parseInt(body.getString("id").split(":")[3]) + 1;
+        String txnRequest = api.buildGetTxnRequest(submitterDid, null, schemaSeqNo);
+        JSONObject resp = new JSONObject(api.signAndSubmit(name, submitterDid, new JSONObject(txnRequest)));
+        if (!"REPLY".equals(resp.optString("op"))) {
+            Logger.getGlobal().log(Level.WARNING, "Failed to load schema of cred def " + body.getString("id"));
+            return null;
+        }
+        JSONObject txnData = resp.getJSONObject("result").getJSONObject("data");
+        JSONObject schemaData = txnData.getJSONObject("txn").getJSONObject("data").getJSONObject("data");
+        JSONObject txnMetadata = txnData.getJSONObject("txnMetadata");
+        String schemaId = txnMetadata.getString("txnId");
+        JSONObject schemaBody = new JSONObject();
+        schemaBody.put("name", schemaData.getString("name"));
+        schemaBody.put("version", schemaData.getString("version"));
+        schemaBody.put("attrNames", schemaData.getJSONArray("attr_names"));
+        schemaBody.put("id", schemaId);
+        schemaBody.put("seqNo", txnMetadata.getInt("seqNo"));
+        String[] idParts = schemaId.split(":");
+        schemaBody.put("ver", idParts[idParts.length - 1]);
+        Schema schema = new Schema(schemaBody.toString());
+        return new CredentialDefinition(tag, schema, new CredentialDefinition.Config(),
+                GsonUtils.toJsonObject(credDefBody), credDefSeqNo);
     }
 
     /*   async def load_cred_def(self, id_: str, submitter_did: str) -> CredentialDefinition:
@@ -119,45 +145,39 @@ public class Ledger {
     }
 
     public void ensureExistInStorage(Schema entity, String submitter_did) {
-     //   await self._storage.select_db(self.__db)
-       storage.selectDb(db);
+        ImmutableCollectionHandle storage = this.storage.database(db);
         JsonObject tagObject = new JsonObject();
         tagObject.addProperty("id", entity.getId());
         tagObject.addProperty("category", "schema");
 
-        Pair<List<Object>,Integer> count = storage.fetch(tagObject.toString());
-        if(count.second==0){
-            JsonObject tagUpdate = new JsonObject();
-            tagUpdate.addProperty("id", entity.getId());
-            tagUpdate.addProperty("name", entity.getName());
-            tagUpdate.addProperty("version", entity.getVersion());
-            tagUpdate.addProperty("submitter_did", submitter_did);
-            GsonUtils.updateJsonObject(tagObject, tagUpdate);
-            storage.add(entity.serializeToJsonObject().toString(),tagObject.toString());
-        }
+        String query = tagObject.toString();
+        JsonObject tagUpdate = new JsonObject();
+        tagUpdate.addProperty("id", entity.getId());
+        tagUpdate.addProperty("name", entity.getName());
+        tagUpdate.addProperty("version", entity.getVersion());
+        tagUpdate.addProperty("submitter_did", submitter_did);
+        GsonUtils.updateJsonObject(tagObject, tagUpdate);
+        storage.addIfAbsent(entity.serializeToJsonObject().toString(), tagObject.toString(), query);
     }
 
     public void ensureExistInStorage(CredentialDefinition entity, JsonObject searchTags) {
-        storage.selectDb(db);
+        ImmutableCollectionHandle storage = this.storage.database(db);
         JsonObject tagObject = new JsonObject();
         tagObject.addProperty("id", entity.getId());
         tagObject.addProperty("seq_no", String.valueOf(entity.getSeqNo()));
         tagObject.addProperty("category", "cred_def");
 
-        Pair<List<Object>, Integer> searchCount = storage.fetch(tagObject.toString());
-        if (searchCount.second == 0) {
-            JsonObject tagUpdate = new JsonObject();
-            tagUpdate.addProperty("id", entity.getId());
-            tagUpdate.addProperty("tag", entity.getTag());
-            tagUpdate.addProperty("schema_id", entity.getSchema().getId());
-            tagUpdate.addProperty("submitter_did", entity.getSubmitterDid());
-            GsonUtils.updateJsonObject(tagObject, tagUpdate);
-            if (searchTags != null) {
-                GsonUtils.updateJsonObject(tagObject, searchTags);
-            }
-            storage.add(entity.serialize(), tagObject.toString());
-
+        String query = tagObject.toString();
+        JsonObject tagUpdate = new JsonObject();
+        tagUpdate.addProperty("id", entity.getId());
+        tagUpdate.addProperty("tag", entity.getTag());
+        tagUpdate.addProperty("schema_id", entity.getSchema().getId());
+        tagUpdate.addProperty("submitter_did", entity.getSubmitterDid());
+        GsonUtils.updateJsonObject(tagObject, tagUpdate);
+        if (searchTags != null) {
+            GsonUtils.updateJsonObject(tagObject, searchTags);
         }
+        storage.addIfAbsent(entity.serialize(), tagObject.toString(), query);
     }
 
     public void ensureExistInStorage(CredentialDefinition entity) {
@@ -168,8 +188,7 @@ public class Ledger {
 
     public Schema ensureSchemaExists(AnonCredSchema schema,String submitterDid){
         try{
-            String schemaString = cache.getSchema(name,submitterDid,schema.getId(), new CacheOptions());
-            Schema ledgerSchema = new Schema(schemaString);
+            Schema ledgerSchema = cache.getSchemaObject(name,submitterDid,schema.getId(), new CacheOptions());
             ensureExistInStorage(ledgerSchema,submitterDid);
             return ledgerSchema;
         }catch (Exception e){
@@ -191,7 +210,7 @@ public class Ledger {
         filters.setVersion(version);
         filters.setSubmitterDid(submitterDid);
 
-        Pair<List<Object>,Integer> results = storage.fetch(filters.getTags().serialize());
+        Pair<List<Object>,Integer> results = storage.database(db).fetch(filters.getTags().serialize());
         List<Schema> schemaList = new ArrayList<>();
         if(results!=null){
            List<Object> objects =  results.first;
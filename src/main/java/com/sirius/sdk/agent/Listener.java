@@ -23,34 +23,7 @@ public class Listener {
 
     public CompletableFuture<Event> getOne() {
         try {
-            return source.pull().thenApply(msg -> {
-                if (msg.messageObjectHasKey("message")) {
-                    JSONObject messObj = msg.getJSONOBJECTFromJSON("message");
-                    Pair<Boolean, Message> result = null;
-                    try {
-                        result = Message.restoreMessageInstance(messObj.toString());
-                    } catch (NoSuchMethodException e) {
-                        e.printStackTrace();
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    } catch (InvocationTargetException e) {
-                        e.printStackTrace();
-                    } catch (InstantiationException e) {
-                        e.printStackTrace();
-                    }
-                    if (result.first) {
-                        //    msg['message'] = message
-                    } else {
-                        //    msg['message'] = Message(msg['message'])*/
-                    }
-                }
-                String theirVerkey = msg.getStringFromJSON("sender_verkey");
-                Pairwise pairwise = null;
-                if (pairwiseResolver != null && theirVerkey != null) {
-                    pairwise = pairwiseResolver.loadForVerkey(theirVerkey);
-                }
-                return new Event(pairwise, msg.serialize());
-            });
+            return source.pull().thenApply(this::toEvent);
         } catch (SiriusConnectionClosed siriusConnectionClosed) {
             siriusConnectionClosed.printStackTrace();
         } catch (SiriusInvalidPayloadStructure siriusInvalidPayloadStructure) {
@@ -60,4 +33,49 @@ public class Listener {
         return null;
     }
 
+    /**
+     * Stream of events with prefetch of {@link EventStream#DEF_PREFETCH} events
+     */
+    public EventStream stream() {
+        return stream(EventStream.DEF_PREFETCH);
+    }
+
+    /**
+     * Stream of events, consumed by subscriber demand or by batches
+     *
+     * @param prefetch max count of events pulled from connection ahead of consumer
+     */
+    public EventStream stream(int prefetch) {
+        return new EventStream(this, prefetch);
+    }
+
+    Event toEvent(Message msg) {
+        if (msg.messageObjectHasKey("message")) {
+            JSONObject messObj = msg.getJSONOBJECTFromJSON("message");
+            Pair<Boolean, Message> result = null;
+            try {
+                result = Message.restoreMessageInstance(messObj.toString());
+            } catch (NoSuchMethodException e) {
+                e.printStackTrace();
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            } catch (InstantiationException e) {
+                e.printStackTrace();
+            }
+            if (result.first) {
+                //    msg['message'] = message
+            } else {
+                //    msg['message'] = Message(msg['message'])*/
+            }
+        }
+        String theirVerkey = msg.getStringFromJSON("sender_verkey");
+        Pairwise pairwise = null;
+        if (pairwiseResolver != null && theirVerkey != null) {
+            pairwise = pairwiseResolver.loadForVerkey(theirVerkey);
+        }
+        return new Event(pairwise, msg.serialize());
+    }
+
 }
@@ -7,6 +7,7 @@ import com.sirius.sdk.utils.Pair;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class WalletPairwiseList extends AbstractPairwiseList {
@@ -100,6 +101,28 @@ public class WalletPairwiseList extends AbstractPairwiseList {
         }
     }
 
+    /**
+     * Load all pairwise of the wallet
+     */
+    public List<Pairwise> listPairwise() {
+        List<Pairwise> pairwiseList = new ArrayList<>();
+        List<Object> items = apiPairwise.listPairwise();
+        if (items == null) {
+            return pairwiseList;
+        }
+        for (Object item : items) {
+            JSONObject itemObj = item instanceof JSONObject ? (JSONObject) item : new JSONObject(item.toString());
+            Object metadata = itemObj.opt("metadata");
+            if (metadata instanceof String) {
+                metadata = new JSONObject((String) metadata);
+            }
+            if (metadata instanceof JSONObject) {
+                pairwiseList.add(restorePairwise((JSONObject) metadata));
+            }
+        }
+        return pairwiseList;
+    }
+
     @Override
     public Pairwise loadForVerkey(String theirVerkey) {
         JSONObject tagsObj = new JSONObject();
@@ -0,0 +1,350 @@
+package com.sirius.sdk.agent.aries_rfc.feature_0037_present_proof;
+
+import com.sirius.sdk.agent.Ledger;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractAnonCreds;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractCache;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.CacheOptions;
+import com.sirius.sdk.hub.Context;
+import com.sirius.sdk.utils.LruCache;
+import com.sirius.sdk.utils.Pair;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies many presentations concurrently, i.e. presentations received by {@link StateMachineVerifier}-like
+ * flows of many provers.
+ * <p>
+ * Every proof passes two stages: schemas and credential definitions it references are resolved in parallel,
+ * artifact that is referenced by several proofs is fetched once; then proof is verified by pool of workers,
+ * so count of concurrent verifierVerifyProof calls is bounded. Latency of every stage is measured.
+ * <p>
+ * Submitters are blocked while max count of proofs is in progress.
+ */
+public class BatchVerifier implements AutoCloseable {
+
+    public static final int DEF_RESOLVE_THREADS = 8;
+    public static final int DEF_MAX_IN_FLIGHT = 1024;
+    public static final int DEF_ARTIFACTS_CACHE_SIZE = 1024;
+
+    public enum Stage {
+        /**
+         * Resolving of schemas and credential definitions of the proof
+         */
+        RESOLVE,
+        /**
+         * Waiting for free verification worker
+         */
+        QUEUE,
+        /**
+         * verifierVerifyProof call
+         */
+        VERIFY,
+        /**
+         * Whole verification of the proof
+         */
+        TOTAL
+    }
+
+    static class StageStats {
+        AtomicLong count = new AtomicLong(0);
+        AtomicLong totalNanos = new AtomicLong(0);
+        AtomicLong maxNanos = new AtomicLong(0);
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+    }
+
+    AbstractAnonCreds anoncreds;
+    AbstractCache cache;
+    String poolName;
+    String submitterDid;
+    ExecutorService resolveExecutor;
+    ExecutorService verifyExecutor;
+    Semaphore inFlight;
+    // artifacts that are being resolved, key is kind + id
+    ConcurrentHashMap<String, CompletableFuture<JSONObject>> resolving = new ConcurrentHashMap<>();
+    LruCache<String, JSONObject> resolved;
+    StageStats[] stats;
+    AtomicLong artifactsRequested = new AtomicLong(0);
+    AtomicLong artifactsFetched = new AtomicLong(0);
+    AtomicLong verified = new AtomicLong(0);
+    AtomicLong failed = new AtomicLong(0);
+    // verifications that are not completed yet, they are failed on close
+    Set<CompletableFuture<Boolean>> pending = ConcurrentHashMap.newKeySet();
+    volatile boolean closed = false;
+
+    /**
+     * @param anoncreds      verifies proofs
+     * @param cache          source of schemas and credential definitions
+     * @param poolName       ledger of artifacts
+     * @param submitterDid   DID of the verifier
+     * @param maxConcurrency max count of proofs that are verified at the same time
+     * @param resolveThreads max count of artifacts that are fetched at the same time
+     * @param maxInFlight    max count of submitted proofs that are not verified yet
+     */
+    public BatchVerifier(AbstractAnonCreds anoncreds, AbstractCache cache, String poolName, String submitterDid,
+                         int maxConcurrency, int resolveThreads, int maxInFlight) {
+        if (maxConcurrency <= 0 || resolveThreads <= 0 || maxInFlight <= 0) {
+            throw new RuntimeException("Concurrency limits must be > 0");
+        }
+        this.anoncreds = anoncreds;
+        this.cache = cache;
+        this.poolName = poolName;
+        this.submitterDid = submitterDid;
+        this.resolveExecutor = Executors.newFixedThreadPool(resolveThreads, daemonFactory("BatchVerifier-resolve-"));
+        this.verifyExecutor = Executors.newFixedThreadPool(maxConcurrency, daemonFactory("BatchVerifier-verify-"));
+        this.inFlight = new Semaphore(maxInFlight);
+        this.resolved = new LruCache<>(DEF_ARTIFACTS_CACHE_SIZE);
+        this.stats = new StageStats[Stage.values().length];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new StageStats();
+        }
+    }
+
+    public BatchVerifier(Context context, Ledger ledger, String submitterDid, int maxConcurrency) {
+        this(context.agent.getWallet().getAnoncreds(), context.agent.getWallet().getLedgerCache(), ledger.getName(),
+                submitterDid, maxConcurrency, DEF_RESOLVE_THREADS, DEF_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Submit proof for verification, caller is blocked while max count of proofs is in flight
+     *
+     * @param proofRequest Hyperledger Indy compatible proof-request
+     * @param proof        proof of presentation, see {@link PresentationMessage#proof()}
+     * @return future of verification result, completed exceptionally if artifacts were not resolved
+     * or verifier was closed before verification completed
+     * @throws IllegalStateException if verifier is closed
+     */
+    public CompletableFuture<Boolean> submit(JSONObject proofRequest, JSONObject proof) {
+        checkOpen();
+        inFlight.acquireUninterruptibly();
+        long started = System.nanoTime();
+        CompletableFuture<Boolean> result;
+        try {
+            checkOpen();
+            result = resolveArtifacts(proof).thenCompose(artifacts -> {
+                long resolvedAt = System.nanoTime();
+                stats[Stage.RESOLVE.ordinal()].record(resolvedAt - started);
+                return CompletableFuture.supplyAsync(() -> {
+                    long verifyStarted = System.nanoTime();
+                    stats[Stage.QUEUE.ordinal()].record(verifyStarted - resolvedAt);
+                    boolean success = anoncreds.verifierVerifyProof(proofRequest, proof,
+                            artifacts[0], artifacts[1], new JSONObject(), new JSONObject());
+                    stats[Stage.VERIFY.ordinal()].record(System.nanoTime() - verifyStarted);
+                    return success;
+                }, verifyExecutor);
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        pending.add(result);
+        if (closed) {
+            // close() might iterate pending before the result was added
+            result.completeExceptionally(closedError());
+        }
+        return result.whenComplete((success, e) -> {
+            pending.remove(result);
+            inFlight.release();
+            stats[Stage.TOTAL.ordinal()].record(System.nanoTime() - started);
+            if (e != null) {
+                failed.incrementAndGet();
+            } else {
+                verified.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Verify proofs and wait for all results
+     *
+     * @param proofs proof request and proof pairs
+     * @return verification results in order of proofs, false for proofs that failed to verify
+     */
+    public List<Boolean> verifyAll(List<Pair<JSONObject, JSONObject>> proofs) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (Pair<JSONObject, JSONObject> proof : proofs) {
+            futures.add(submit(proof.first, proof.second));
+        }
+        List<Boolean> results = new ArrayList<>();
+        for (CompletableFuture<Boolean> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                results.add(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Stop workers, proofs that are in progress are completed exceptionally, next submits are rejected
+     */
+    @Override
+    public void close() {
+        closed = true;
+        resolveExecutor.shutdownNow();
+        verifyExecutor.shutdownNow();
+        // tasks dropped by the executors never complete their futures
+        for (CompletableFuture<JSONObject> artifact : resolving.values()) {
+            artifact.completeExceptionally(closedError());
+        }
+        for (CompletableFuture<Boolean> result : pending) {
+            result.completeExceptionally(closedError());
+        }
+    }
+
+    public long getCount(Stage stage) {
+        return stats[stage.ordinal()].count.get();
+    }
+
+    public double getAverageLatencyMs(Stage stage) {
+        StageStats stageStats = stats[stage.ordinal()];
+        long count = stageStats.count.get();
+        return count == 0 ? 0 : stageStats.totalNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxLatencyMs(Stage stage) {
+        return stats[stage.ordinal()].maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Count of artifact references of all submitted proofs
+     */
+    public long getArtifactsRequestedCount() {
+        return artifactsRequested.get();
+    }
+
+    /**
+     * Count of artifacts fetched from the cache, the rest of references were de-duplicated
+     */
+    public long getArtifactsFetchedCount() {
+        return artifactsFetched.get();
+    }
+
+    public long getVerifiedCount() {
+        return verified.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return schemas and credential definitions json objects keyed by their ids
+     */
+    CompletableFuture<JSONObject[]> resolveArtifacts(JSONObject proof) {
+        JSONArray identifiers = proof.optJSONArray("identifiers");
+        Map<String, CompletableFuture<JSONObject>> schemas = new LinkedHashMap<>();
+        Map<String, CompletableFuture<JSONObject>> credDefs = new LinkedHashMap<>();
+        if (identifiers != null) {
+            for (Object o : identifiers) {
+                JSONObject identifier = (JSONObject) o;
+                String schemaId = identifier.optString("schema_id", "");
+                String credDefId = identifier.optString("cred_def_id", "");
+                if (!schemaId.isEmpty() && !schemas.containsKey(schemaId)) {
+                    schemas.put(schemaId, artifact("schema", schemaId));
+                }
+                if (!credDefId.isEmpty() && !credDefs.containsKey(credDefId)) {
+                    credDefs.put(credDefId, artifact("cred_def", credDefId));
+                }
+            }
+        }
+        List<CompletableFuture<JSONObject>> all = new ArrayList<>(schemas.values());
+        all.addAll(credDefs.values());
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).thenApply(ignored ->
+                new JSONObject[]{collect(schemas), collect(credDefs)});
+    }
+
+    private CompletableFuture<JSONObject> artifact(String kind, String id) {
+        artifactsRequested.incrementAndGet();
+        String key = kind + ':' + id;
+        JSONObject cached = resolved.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<JSONObject> mine = new CompletableFuture<>();
+        CompletableFuture<JSONObject> running = resolving.putIfAbsent(key, mine);
+        if (running != null) {
+            return running;
+        }
+        artifactsFetched.incrementAndGet();
+        CompletableFuture<JSONObject> fetched;
+        try {
+            fetched = CompletableFuture.supplyAsync(() -> {
+                String json = kind.equals("schema") ?
+                        cache.getSchema(poolName, submitterDid, id, new CacheOptions()) :
+                        cache.getCredDef(poolName, submitterDid, id, new CacheOptions());
+                if (json == null) {
+                    throw new RuntimeException("Failed to resolve " + kind + " " + id);
+                }
+                return new JSONObject(json);
+            }, resolveExecutor);
+        } catch (RejectedExecutionException e) {
+            resolving.remove(key, mine);
+            mine.completeExceptionally(e);
+            return mine;
+        }
+        fetched.whenComplete((value, e) -> {
+            if (value != null) {
+                resolved.put(key, value);
+            }
+            resolving.remove(key, mine);
+            if (e != null) {
+                mine.completeExceptionally(e);
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw closedError();
+        }
+    }
+
+    private static IllegalStateException closedError() {
+        return new IllegalStateException("Verifier is closed");
+    }
+
+    private static JSONObject collect(Map<String, CompletableFuture<JSONObject>> futures) {
+        JSONObject result = new JSONObject();
+        for (Map.Entry<String, CompletableFuture<JSONObject>> entry : futures.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().join());
+        }
+        return result;
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger(0);
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
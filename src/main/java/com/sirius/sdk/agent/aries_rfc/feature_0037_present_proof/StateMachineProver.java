@@ -126,9 +126,9 @@ public class StateMachineProver extends BaseVerifyStateMachine {
         for (JSONObject credInfo : allInfos) {
             String schemaId = credInfo.getString("schema_id");
             String credDefId = credInfo.getString("cred_def_id");
-            JSONObject schema = new JSONObject(context.agent.getWallet().getCache().getSchema(poolName, this.verifier.getMe().getDid(), schemaId, opts));
+            JSONObject schema = new JSONObject(context.agent.getWallet().getLedgerCache().getSchema(poolName, this.verifier.getMe().getDid(), schemaId, opts));
             res.schemas.put(schemaId, schema);
-            JSONObject credDef = new JSONObject(context.agent.getWallet().getCache().getCredDef(poolName, this.verifier.getMe().getDid(), credDefId, opts));
+            JSONObject credDef = new JSONObject(context.agent.getWallet().getLedgerCache().getCredDef(poolName, this.verifier.getMe().getDid(), credDefId, opts));
             res.credentialDefs.put(credDefId, credDef);
         }
 
@@ -115,12 +115,12 @@ public class StateMachineVerifier extends BaseVerifyStateMachine {
 
                 if (!schemaId.isEmpty() && !schemas.has(schemaId)) {
                     schemas.put(schemaId, new JSONObject(
-                            context.agent.getWallet().getCache().getSchema(poolname, prover.getMe().getDid(), schemaId, opts)));
+                            context.agent.getWallet().getLedgerCache().getSchema(poolname, prover.getMe().getDid(), schemaId, opts)));
                 }
 
                 if (!credDefId.isEmpty() && !credentialDefs.has(credDefId)) {
                     credentialDefs.put(credDefId, new JSONObject(
-                            context.agent.getWallet().getCache().getCredDef(poolname, prover.getMe().getDid(), credDefId, opts)));
+                            context.agent.getWallet().getLedgerCache().getCredDef(poolname, prover.getMe().getDid(), credDefId, opts)));
                 }
             }
 
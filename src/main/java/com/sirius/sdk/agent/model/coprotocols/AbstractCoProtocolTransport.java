@@ -1,6 +1,8 @@
 package com.sirius.sdk.agent.model.coprotocols;
 
 import com.sirius.sdk.agent.AgentRPC;
+import com.sirius.sdk.agent.AgentRPCPool;
+import com.sirius.sdk.agent.CoProtocolDemultiplexer;
 import com.sirius.sdk.agent.Event;
 import com.sirius.sdk.errors.sirius_exceptions.*;
 import com.sirius.sdk.messaging.Message;
@@ -43,6 +45,9 @@ public abstract class AbstractCoProtocolTransport {
     List<String> pleaseAckIds = new ArrayList<>();
     boolean checkVerkeys = false;
     boolean checkProtocols = true;
+    AgentRPCPool pool = null;
+    boolean sharedConnection = false;
+    CoProtocolDemultiplexer.Subscription inbox = null;
 
     /**
      * Should be called in Descendant
@@ -71,6 +76,7 @@ public abstract class AbstractCoProtocolTransport {
         this.protocols = new ArrayList<>();
         this.checkProtocols = false;
         started = true;
+        openInbox();
     }
 
     public void start(List<String> protocols) {
@@ -79,6 +85,7 @@ public abstract class AbstractCoProtocolTransport {
         if (protocols.isEmpty())
             this.checkProtocols = false;
         started = true;
+        openInbox();
     }
 
     public void start(List<String> protocols, int timeToLiveSec) {
@@ -86,12 +93,106 @@ public abstract class AbstractCoProtocolTransport {
         this.timeToLiveSec = timeToLiveSec;
         this.dieTimestamp = new Date(System.currentTimeMillis() + this.timeToLiveSec * 1000L);
         started = true;
+        openInbox();
     }
 
+    /**
+     * Stop transport and release its connection. Stopping already stopped transport does nothing,
+     * since released connection may be leased to other co-protocol already.
+     */
     public void stop() {
+        if (!started) {
+            return;
+        }
         this.dieTimestamp = null;
         started = false;
         cleanupContext();
+        closeInbox();
+        releaseConnection();
+    }
+
+    /**
+     * Connection of transport was leased from the pool, it is returned to the pool on {@link #stop()}
+     * so transport must not be used after stop.
+     */
+    public void setPool(AgentRPCPool pool) {
+        setPool(pool, false);
+    }
+
+    /**
+     * @param pool   pool the connection was leased from
+     * @param shared connection is shared with other co-protocols
+     */
+    public void setPool(AgentRPCPool pool, boolean shared) {
+        this.pool = pool;
+        this.sharedConnection = shared;
+    }
+
+    /**
+     * Subscribe to events of this co-protocol in the router of connection
+     *
+     * @return subscription or null if co-protocol reads all events of connection
+     */
+    protected CoProtocolDemultiplexer.Subscription subscribe(CoProtocolDemultiplexer router) {
+        return null;
+    }
+
+    /**
+     * Release route of the thread in the router of connection
+     *
+     * @return True if no other co-protocol of connection is routed by the thread, so it may be unsubscribed on server side
+     */
+    protected boolean releaseThreadRoute(String thid) {
+        return inbox == null || inbox.removeThread(thid);
+    }
+
+    /**
+     * Release routes of the sender in the router of connection
+     *
+     * @return protocols that are not routed to other co-protocols of connection, so they may be unsubscribed
+     * on server side; null if all of them are still in use
+     */
+    protected List<String> releaseSenderRoutes(String senderVerkey, List<String> protocols) {
+        if (inbox == null) {
+            return protocols;
+        }
+        List<String> released = inbox.removeSender(senderVerkey);
+        if (released.isEmpty()) {
+            return null;
+        }
+        return released.contains(CoProtocolDemultiplexer.ANY_PROTOCOL) ? protocols : released;
+    }
+
+    private void openInbox() {
+        if (inbox == null) {
+            inbox = subscribe(rpc.getCoProtocols());
+        }
+    }
+
+    private void closeInbox() {
+        if (inbox != null) {
+            inbox.close();
+            inbox = null;
+        }
+    }
+
+    private Message readEvent(int timeout) throws SiriusInvalidPayloadStructure {
+        if (inbox != null) {
+            return inbox.read(timeout);
+        }
+        return rpc.getCoProtocols().readDefault(timeout);
+    }
+
+    private void releaseConnection() {
+        if (pool != null) {
+            AgentRPCPool leasedFrom = pool;
+            pool = null;
+            if (sharedConnection) {
+                leasedFrom.releaseShared(rpc);
+            } else {
+                leasedFrom.release(rpc);
+            }
+        }
     }
 
     private void cleanupContext(Message message) {
@@ -107,7 +208,15 @@ public abstract class AbstractCoProtocolTransport {
     }
 
     private void cleanupContext() {
-        this.rpc.stopProtocolWithThreads(pleaseAckIds, true);
+        List<String> released = new ArrayList<>();
+        for (String ackId : pleaseAckIds) {
+            if (releaseThreadRoute(ackId)) {
+                released.add(ackId);
+            }
+        }
+        if (!released.isEmpty()) {
+            this.rpc.stopProtocolWithThreads(released, true);
+        }
         pleaseAckIds.clear();
     }
 
@@ -121,6 +230,9 @@ public abstract class AbstractCoProtocolTransport {
             int ttl = this.timeToLiveSec;
             rpc.startProtocolWithThreads(Collections.singletonList(ackMessageId), ttl);
             pleaseAckIds.add(ackMessageId);
+            if (inbox != null) {
+                inbox.addThread(ackMessageId);
+            }
         }
     }
 
@@ -129,12 +241,13 @@ public abstract class AbstractCoProtocolTransport {
             throw new SiriusPendingOperation("You must Setup protocol instance at first");
         }
 
-        rpc.setTimeout(timeToLiveSec);
         setupContext(message);
 
         Message event = null;
         try {
-            event = rpc.sendMessage(message, Collections.singletonList(theirVK), endpoint, myVerkey, routingKeys, true);
+            // connection may be shared with other co-protocols: pass timeout explicitly
+            rpc.sendMessage(message, Collections.singletonList(theirVK), endpoint, myVerkey, routingKeys, false, timeToLiveSec);
+            event = readEvent(timeToLiveSec);
         } catch (SiriusConnectionClosed siriusConnectionClosed) {
             siriusConnectionClosed.printStackTrace();
         } catch (SiriusRPCError siriusRPCError) {
@@ -188,7 +301,7 @@ public abstract class AbstractCoProtocolTransport {
     }
 
     public Message getOne() throws SiriusInvalidPayloadStructure {
-        return rpc.readProtocolMessage();
+        return readEvent(rpc.getTimeout());
     }
 
     public void send(Message message) throws SiriusPendingOperation {
@@ -196,11 +309,10 @@ public abstract class AbstractCoProtocolTransport {
             throw new SiriusPendingOperation("You must Setup protocol instance at first");
         }
 
-        rpc.setTimeout(timeToLiveSec);
         setupContext(message);
 
         try {
-            rpc.sendMessage(message, Collections.singletonList(theirVK), endpoint, myVerkey, routingKeys, false);
+            rpc.sendMessage(message, Collections.singletonList(theirVK), endpoint, myVerkey, routingKeys, false, timeToLiveSec);
         } catch (SiriusConnectionClosed siriusConnectionClosed) {
             siriusConnectionClosed.printStackTrace();
         } catch (SiriusRPCError siriusRPCError) {
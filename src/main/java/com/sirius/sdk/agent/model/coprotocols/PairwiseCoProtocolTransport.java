@@ -1,6 +1,7 @@
 package com.sirius.sdk.agent.model.coprotocols;
 
 import com.sirius.sdk.agent.AgentRPC;
+import com.sirius.sdk.agent.CoProtocolDemultiplexer;
 import com.sirius.sdk.agent.model.pairwise.Pairwise;
 
 import java.util.List;
@@ -35,7 +36,19 @@ public class PairwiseCoProtocolTransport extends AbstractCoProtocolTransport {
 
     @Override
     public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        // unsubscribe before connection is released, unless other co-protocols of connection still use the routes
+        List<String> released = releaseSenderRoutes(pairwise.getTheir().getVerkey(), protocols);
+        if (released != null) {
+            this.rpc.stopProtocolForP2P(myVerkey, pairwise.getTheir().getVerkey(), released, true);
+        }
         super.stop();
-        this.rpc.stopProtocolForP2P(myVerkey, pairwise.getTheir().getVerkey(), protocols, true);
+    }
+
+    @Override
+    protected CoProtocolDemultiplexer.Subscription subscribe(CoProtocolDemultiplexer router) {
+        return router.subscribeP2P(pairwise.getTheir().getVerkey(), protocols);
     }
 }
@@ -1,6 +1,7 @@
 package com.sirius.sdk.agent.model.coprotocols;
 
 import com.sirius.sdk.agent.AgentRPC;
+import com.sirius.sdk.agent.CoProtocolDemultiplexer;
 import com.sirius.sdk.agent.model.pairwise.TheirEndpoint;
 
 import java.util.List;
@@ -37,7 +38,19 @@ public class TheirEndpointCoProtocolTransport extends AbstractCoProtocolTranspor
 
     @Override
     public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        // unsubscribe before connection is released, unless other co-protocols of connection still use the routes
+        List<String> released = releaseSenderRoutes(endpoint.getVerkey(), protocols);
+        if (released != null) {
+            this.rpc.stopProtocolForP2P(myVerkey, endpoint.getVerkey(), released, true);
+        }
         super.stop();
-        this.rpc.stopProtocolForP2P(myVerkey, endpoint.getVerkey(), protocols, true);
+    }
+
+    @Override
+    protected CoProtocolDemultiplexer.Subscription subscribe(CoProtocolDemultiplexer router) {
+        return router.subscribeP2P(endpoint.getVerkey(), protocols);
     }
 }
@@ -1,6 +1,7 @@
 package com.sirius.sdk.agent.model.coprotocols;
 
 import com.sirius.sdk.agent.AgentRPC;
+import com.sirius.sdk.agent.CoProtocolDemultiplexer;
 import com.sirius.sdk.agent.model.pairwise.Pairwise;
 
 import java.util.ArrayList;
@@ -49,4 +50,19 @@ public class ThreadBasedCoProtocolTransport extends AbstractCoProtocolTransport{
         this.rpc.startProtocolWithThreading(thid, timeToLiveSec);
     }
 
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        if (releaseThreadRoute(thid)) {
+            this.rpc.stopProtocolWithThreading(thid, true);
+        }
+        super.stop();
+    }
+
+    @Override
+    protected CoProtocolDemultiplexer.Subscription subscribe(CoProtocolDemultiplexer router) {
+        return router.subscribeThread(thid);
+    }
 }
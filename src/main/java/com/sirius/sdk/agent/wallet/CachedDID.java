@@ -0,0 +1,300 @@
+package com.sirius.sdk.agent.wallet;
+
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractDID;
+import com.sirius.sdk.utils.LruCache;
+import com.sirius.sdk.utils.Pair;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read-through cache of DID lookups: verkeys, metadata and endpoints.
+ * <p>
+ * Every lookup has its own time to live, missing values (null results) are cached for negative TTL,
+ * so repeated resolving of unknown DID doesn't cost RPC either. Writes that go through this instance
+ * invalidate cached values of the DID, writes made to the wallet directly become visible after TTL.
+ */
+public class CachedDID extends AbstractDID {
+
+    public static final int DEF_SIZE = 1024;
+    public static final int DEF_TTL_SEC = 300;
+    public static final int DEF_NEGATIVE_TTL_SEC = 10;
+    static final int GENERATION_STRIPES = 256;
+
+    public enum Lookup {
+        KEY_FOR_LOCAL_DID,
+        KEY_FOR_DID,
+        DID_METADATA,
+        ENDPOINT_FOR_DID
+    }
+
+    static class Entry {
+        Object value;
+        long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    AbstractDID delegate;
+    LruCache<String, Entry>[] caches;
+    long[] ttlMillis;
+    long negativeTtlMillis;
+    AtomicLong[] hits;
+    AtomicLong[] misses;
+    // pool names that appeared in lookups, cached values of DID are dropped for each of them
+    Set<String> poolNames = ConcurrentHashMap.newKeySet();
+    // invalidation counters of DIDs (striped by hash): value loaded while DID was invalidated is not cached
+    AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * @param delegate       source of DID information
+     * @param size           max count of cached values per lookup
+     * @param ttlSec         time to live of cached values, may be changed per lookup by {@link #setTtl}
+     * @param negativeTtlSec time to live of missing values, 0 disables negative caching
+     */
+    @SuppressWarnings("unchecked")
+    public CachedDID(AbstractDID delegate, int size, int ttlSec, int negativeTtlSec) {
+        this.delegate = delegate;
+        int count = Lookup.values().length;
+        this.caches = new LruCache[count];
+        this.ttlMillis = new long[count];
+        this.hits = new AtomicLong[count];
+        this.misses = new AtomicLong[count];
+        for (int i = 0; i < count; i++) {
+            caches[i] = new LruCache<>(size);
+            ttlMillis[i] = TimeUnit.SECONDS.toMillis(ttlSec);
+            hits[i] = new AtomicLong(0);
+            misses[i] = new AtomicLong(0);
+        }
+        this.negativeTtlMillis = TimeUnit.SECONDS.toMillis(negativeTtlSec);
+    }
+
+    public CachedDID(AbstractDID delegate) {
+        this(delegate, DEF_SIZE, DEF_TTL_SEC, DEF_NEGATIVE_TTL_SEC);
+    }
+
+    /**
+     * Time to live of values of the lookup, 0 disables caching of the lookup
+     */
+    public void setTtl(Lookup lookup, int ttlSec) {
+        ttlMillis[lookup.ordinal()] = TimeUnit.SECONDS.toMillis(ttlSec);
+        caches[lookup.ordinal()].clear();
+    }
+
+    @Override
+    public Pair<String, String> createAndStoreMyDid(String did, String seed, Boolean cid) {
+        Pair<String, String> result = delegate.createAndStoreMyDid(did, seed, cid);
+        // DID may be negatively cached before it was created
+        invalidate(did);
+        if (result != null) {
+            invalidate(result.first);
+        }
+        return result;
+    }
+
+    @Override
+    public void storeTheirDid(String did, String verkey) {
+        delegate.storeTheirDid(did, verkey);
+        invalidate(did, Lookup.KEY_FOR_LOCAL_DID, Lookup.KEY_FOR_DID);
+    }
+
+    @Override
+    public void setDidMetadata(String did, String metadata) {
+        delegate.setDidMetadata(did, metadata);
+        invalidate(did, Lookup.DID_METADATA);
+    }
+
+    @Override
+    public List<Object> listMyDidsWithMeta() {
+        return delegate.listMyDidsWithMeta();
+    }
+
+    @Override
+    public String getDidMetadata(String did) {
+        return (String) lookup(Lookup.DID_METADATA, did, null, () -> delegate.getDidMetadata(did));
+    }
+
+    @Override
+    public String keyForLocalDid(String did) {
+        return (String) lookup(Lookup.KEY_FOR_LOCAL_DID, did, null, () -> delegate.keyForLocalDid(did));
+    }
+
+    @Override
+    public String keyForDid(String poolName, String did) {
+        return (String) lookup(Lookup.KEY_FOR_DID, did, poolName, () -> delegate.keyForDid(poolName, did));
+    }
+
+    @Override
+    public String createKey(String seed) {
+        return delegate.createKey(seed);
+    }
+
+    @Override
+    public String replaceKeysStart(String did, String seed) {
+        return delegate.replaceKeysStart(did, seed);
+    }
+
+    @Override
+    public void replaceKeysApply(String did) {
+        delegate.replaceKeysApply(did);
+        invalidate(did, Lookup.KEY_FOR_LOCAL_DID, Lookup.KEY_FOR_DID);
+    }
+
+    @Override
+    public void setKeyMetadata(String verkey, String metadata) {
+        delegate.setKeyMetadata(verkey, metadata);
+    }
+
+    @Override
+    public String getKeyMetadata(String verkey) {
+        return delegate.getKeyMetadata(verkey);
+    }
+
+    @Override
+    public void setEndpointForDid(String did, String address, String transportKey) {
+        delegate.setEndpointForDid(did, address, transportKey);
+        invalidate(did, Lookup.ENDPOINT_FOR_DID);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Pair<String, String> getEndpointForDid(String pooName, String did) {
+        return (Pair<String, String>) lookup(Lookup.ENDPOINT_FOR_DID, did, pooName, () -> delegate.getEndpointForDid(pooName, did));
+    }
+
+    @Override
+    public Object getMyDidMeta(String did) {
+        return delegate.getMyDidMeta(did);
+    }
+
+    @Override
+    public String abbreviateVerKey(String did, String fullVerkey) {
+        return delegate.abbreviateVerKey(did, fullVerkey);
+    }
+
+    @Override
+    public String qualifyDid(String did, String method) {
+        String qualified = delegate.qualifyDid(did, method);
+        invalidate(did);
+        invalidate(qualified);
+        return qualified;
+    }
+
+    /**
+     * Drop all cached values of the DID
+     */
+    public void invalidate(String did) {
+        invalidate(did, Lookup.values());
+    }
+
+    public void invalidate(String did, Lookup... lookups) {
+        if (did == null) {
+            return;
+        }
+        synchronized (generations) {
+            generations.incrementAndGet(stripe(did));
+            for (Lookup lookup : lookups) {
+                LruCache<String, Entry> cache = caches[lookup.ordinal()];
+                cache.remove(key(did, null));
+                for (String poolName : poolNames) {
+                    cache.remove(key(did, poolName));
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (generations) {
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                generations.incrementAndGet(i);
+            }
+            for (LruCache<String, Entry> cache : caches) {
+                cache.clear();
+            }
+        }
+    }
+
+    public long getHits() {
+        long count = 0;
+        for (AtomicLong counter : hits) {
+            count += counter.get();
+        }
+        return count;
+    }
+
+    public long getMisses() {
+        long count = 0;
+        for (AtomicLong counter : misses) {
+            count += counter.get();
+        }
+        return count;
+    }
+
+    public long getHits(Lookup lookup) {
+        return hits[lookup.ordinal()].get();
+    }
+
+    public long getMisses(Lookup lookup) {
+        return misses[lookup.ordinal()].get();
+    }
+
+    public AbstractDID getDelegate() {
+        return delegate;
+    }
+
+    interface Loader {
+        Object load();
+    }
+
+    private Object lookup(Lookup lookup, String did, String poolName, Loader loader) {
+        int i = lookup.ordinal();
+        if (did == null || ttlMillis[i] <= 0) {
+            return loader.load();
+        }
+        if (poolName != null) {
+            poolNames.add(poolName);
+        }
+        String key = key(did, poolName);
+        LruCache<String, Entry> cache = caches[i];
+        Entry entry = cache.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.expiresAt > now) {
+            hits[i].incrementAndGet();
+            return entry.value;
+        }
+        if (entry != null) {
+            cache.remove(key);
+        }
+        misses[i].incrementAndGet();
+        int stripe = stripe(did);
+        long generation = generations.get(stripe);
+        Object value = loader.load();
+        synchronized (generations) {
+            if (generations.get(stripe) != generation) {
+                // DID was invalidated while loading, loaded value may be stale
+                return value;
+            }
+            if (value != null) {
+                cache.put(key, new Entry(value, now + ttlMillis[i]));
+            } else if (negativeTtlMillis > 0) {
+                cache.put(key, new Entry(null, now + Math.min(negativeTtlMillis, ttlMillis[i])));
+            }
+        }
+        return value;
+    }
+
+    private static int stripe(String did) {
+        return (did.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private static String key(String did, String poolName) {
+        return poolName != null ? poolName + '\u0000' + did : did;
+    }
+}
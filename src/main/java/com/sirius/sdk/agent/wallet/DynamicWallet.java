@@ -2,8 +2,11 @@ package com.sirius.sdk.agent.wallet;
 
 import com.sirius.sdk.agent.AgentRPC;
 import com.sirius.sdk.agent.RemoteParams;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractCache;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractDID;
 import com.sirius.sdk.agent.wallet.impl.*;
 import com.sirius.sdk.errors.sirius_exceptions.*;
+import com.sirius.sdk.storage.abstract_storage.KeyValueHandle;
 import org.json.JSONObject;
 
 import java.util.HashMap;
@@ -12,8 +15,12 @@ import java.util.Map;
 public class DynamicWallet {
     AnonCredsProxy anoncreds;
     DIDProxy did;
+    // DID API used by SDK: cached decorator of did if cache is enabled
+    AbstractDID cachedDid;
     CryptoProxy crypto;
     CacheProxy cache;
+    // schema and cred def cache used by SDK: local cache in front of the agent one if it is enabled
+    AbstractCache ledgerCache;
     LedgerProxy ledger;
     AgentRPC rpc;
     PairwiseProxy pairwise;
@@ -22,8 +29,10 @@ public class DynamicWallet {
     public DynamicWallet(AgentRPC agentRPC) {
         this.rpc = agentRPC;
         did = new DIDProxy(rpc);
+        cachedDid = did;
         crypto = new CryptoProxy(rpc);
         cache = new CacheProxy(rpc);
+        ledgerCache = cache;
         pairwise = new PairwiseProxy(rpc);
         nonSecrets = new NonSecretsProxy(rpc);
         ledger = new LedgerProxy(rpc);
@@ -32,18 +41,68 @@ public class DynamicWallet {
 
 
 
+    /**
+     * DID API of the wallet, calls made through it bypass the cache of {@link #getCachedDid()}
+     */
     public DIDProxy getDid() {
         return did;
     }
 
+    /**
+     * DID API that resolves through the cache enabled by {@link #enableDidCache(int, int, int)},
+     * {@link #getDid()} if cache is not enabled
+     */
+    public AbstractDID getCachedDid() {
+        return cachedDid;
+    }
+
+    /**
+     * Wrap DID API of the wallet by local cache, see {@link CachedDID}
+     */
+    public CachedDID enableDidCache(int size, int ttlSec, int negativeTtlSec) {
+        if (cachedDid instanceof CachedDID) {
+            return (CachedDID) cachedDid;
+        }
+        CachedDID cachedDID = new CachedDID(did, size, ttlSec, negativeTtlSec);
+        cachedDid = cachedDID;
+        return cachedDID;
+    }
+
     public CryptoProxy getCrypto() {
         return crypto;
     }
 
+    /**
+     * Schema and credential definition cache of the agent, calls made through it bypass the local cache
+     * of {@link #getLedgerCache()}
+     */
     public CacheProxy getCache() {
         return cache;
     }
 
+    /**
+     * Schema and credential definition cache enabled by {@link #enableLedgerCache(int, KeyValueHandle)},
+     * {@link #getCache()} if local cache is not enabled
+     */
+    public AbstractCache getLedgerCache() {
+        return ledgerCache;
+    }
+
+    /**
+     * Wrap schema and credential definition cache of the agent by local one, see {@link TwoTierCache}
+     *
+     * @param size max count of artifacts of every kind kept on heap
+     * @param l2   persistent tier, may be null
+     */
+    public TwoTierCache enableLedgerCache(int size, KeyValueHandle l2) {
+        if (ledgerCache instanceof TwoTierCache) {
+            return (TwoTierCache) ledgerCache;
+        }
+        TwoTierCache twoTierCache = new TwoTierCache(cache, size, l2);
+        ledgerCache = twoTierCache;
+        return twoTierCache;
+    }
+
     public LedgerProxy getLedger() {
         return ledger;
     }
@@ -0,0 +1,296 @@
+package com.sirius.sdk.agent.wallet;
+
+import com.sirius.sdk.agent.model.ledger.CredentialDefinition;
+import com.sirius.sdk.agent.model.ledger.Schema;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractCache;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.CacheOptions;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.PurgeOptions;
+import com.sirius.sdk.storage.abstract_storage.KeyValueHandle;
+import com.sirius.sdk.utils.LruCache;
+import org.json.JSONObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local cache of schemas and credential definitions in front of agent-side cache.
+ * <p>
+ * Ledger artifacts are immutable, so cached entries have no TTL: they live until evicted from L1 (on-heap LRU
+ * that also keeps parsed objects) or purged. Optional L2 is persistent key-value storage, so artifacts survive restart.
+ * Concurrent loads of the same artifact are coalesced into single agent call.
+ * <p>
+ * {@link CacheOptions} are honored: noCache skips local tiers, noStore doesn't put loaded json to them,
+ * minFresh skips entries that are older, noUpdate is passed to agent on local miss.
+ */
+public class TwoTierCache extends AbstractCache {
+
+    public static final int DEF_SIZE = 1024;
+
+    enum Kind {SCHEMA, CRED_DEF}
+
+    static class Entry {
+        String json;
+        long storedAt;
+        volatile Object parsed;
+
+        Entry(String json, long storedAt) {
+            this.json = json;
+            this.storedAt = storedAt;
+        }
+    }
+
+    Logger log = Logger.getLogger(TwoTierCache.class.getName());
+    AbstractCache delegate;
+    KeyValueHandle l2;
+    LruCache<String, Entry>[] l1;
+    // entries stored before this time are purged, per kind
+    AtomicLong[] purgedBefore;
+    ConcurrentHashMap<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    AtomicLong l1Hits = new AtomicLong(0);
+    AtomicLong l2Hits = new AtomicLong(0);
+    AtomicLong misses = new AtomicLong(0);
+    AtomicLong coalesced = new AtomicLong(0);
+
+    /**
+     * @param delegate agent-side cache
+     * @param size     max count of artifacts of every kind in L1
+     * @param l2       persistent tier, may be null
+     */
+    @SuppressWarnings("unchecked")
+    public TwoTierCache(AbstractCache delegate, int size, KeyValueHandle l2) {
+        this.delegate = delegate;
+        this.l2 = l2;
+        int count = Kind.values().length;
+        this.l1 = new LruCache[count];
+        this.purgedBefore = new AtomicLong[count];
+        for (Kind kind : Kind.values()) {
+            l1[kind.ordinal()] = new LruCache<>(size);
+            purgedBefore[kind.ordinal()] = new AtomicLong(loadPurgedBefore(kind));
+        }
+    }
+
+    public TwoTierCache(AbstractCache delegate) {
+        this(delegate, DEF_SIZE, null);
+    }
+
+    @Override
+    public String getSchema(String poolName, String submitter_did, String id, CacheOptions options) {
+        Entry entry = entry(Kind.SCHEMA, poolName, submitter_did, id, options);
+        return entry != null ? entry.json : null;
+    }
+
+    @Override
+    public String getCredDef(String poolName, String submitter_did, String id, CacheOptions options) {
+        Entry entry = entry(Kind.CRED_DEF, poolName, submitter_did, id, options);
+        return entry != null ? entry.json : null;
+    }
+
+    @Override
+    public Schema getSchemaObject(String poolName, String submitterDid, String id, CacheOptions options) {
+        Entry entry = entry(Kind.SCHEMA, poolName, submitterDid, id, options);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.parsed == null) {
+            entry.parsed = new Schema(entry.json);
+        }
+        return (Schema) entry.parsed;
+    }
+
+    @Override
+    public CredentialDefinition getCredDefObject(String poolName, String submitterDid, String id, CacheOptions options,
+                                                 Function<String, CredentialDefinition> parser) {
+        Entry entry = entry(Kind.CRED_DEF, poolName, submitterDid, id, options);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.parsed == null) {
+            entry.parsed = parser.apply(entry.json);
+        }
+        return (CredentialDefinition) entry.parsed;
+    }
+
+    @Override
+    public void purgeSchemaCache(PurgeOptions options) {
+        purge(Kind.SCHEMA, options);
+        delegate.purgeSchemaCache(options);
+    }
+
+    @Override
+    public void purgeCredDefCache(PurgeOptions options) {
+        purge(Kind.CRED_DEF, options);
+        delegate.purgeCredDefCache(options);
+    }
+
+    public long getL1Hits() {
+        return l1Hits.get();
+    }
+
+    public long getL2Hits() {
+        return l2Hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Count of loads that waited for concurrent load of the same artifact instead of calling agent
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public AbstractCache getDelegate() {
+        return delegate;
+    }
+
+    Entry entry(Kind kind, String poolName, String submitterDid, String id, CacheOptions options) {
+        if (options == null) {
+            options = new CacheOptions();
+        }
+        String key = key(kind, poolName, id);
+        if (options.isNoCache()) {
+            misses.incrementAndGet();
+            return load(kind, poolName, submitterDid, id, options, key);
+        }
+        Entry entry = cached(kind, key, options.getMinFresh());
+        if (entry != null) {
+            return entry;
+        }
+        misses.incrementAndGet();
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = loading.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            entry = load(kind, poolName, submitterDid, id, options, key);
+            mine.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    private Entry load(Kind kind, String poolName, String submitterDid, String id, CacheOptions options, String key) {
+        String json = kind == Kind.SCHEMA ?
+                delegate.getSchema(poolName, submitterDid, id, options) :
+                delegate.getCredDef(poolName, submitterDid, id, options);
+        if (json == null) {
+            return null;
+        }
+        Entry entry = new Entry(json, System.currentTimeMillis());
+        if (!options.isNoStore()) {
+            l1[kind.ordinal()].put(key, entry);
+            if (l2 != null) {
+                try {
+                    l2.set(key, new JSONObject().put("stored_at", entry.storedAt).put("json", json).toString());
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Failed to store " + key + " to L2", e);
+                }
+            }
+        }
+        return entry;
+    }
+
+    private Entry cached(Kind kind, String key, int minFresh) {
+        LruCache<String, Entry> cache = l1[kind.ordinal()];
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            if (isValid(kind, entry, minFresh)) {
+                l1Hits.incrementAndGet();
+                return entry;
+            }
+            if (isPurged(kind, entry)) {
+                cache.remove(key);
+            }
+        }
+        if (l2 == null) {
+            return null;
+        }
+        Object stored;
+        try {
+            stored = l2.get(key);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Failed to read " + key + " from L2", e);
+            return null;
+        }
+        if (stored == null) {
+            return null;
+        }
+        JSONObject storedObj = new JSONObject(stored.toString());
+        entry = new Entry(storedObj.getString("json"), storedObj.getLong("stored_at"));
+        if (isPurged(kind, entry)) {
+            l2.delete(key);
+            return null;
+        }
+        cache.put(key, entry);
+        if (!isValid(kind, entry, minFresh)) {
+            return null;
+        }
+        l2Hits.incrementAndGet();
+        return entry;
+    }
+
+    private boolean isValid(Kind kind, Entry entry, int minFresh) {
+        if (isPurged(kind, entry)) {
+            return false;
+        }
+        return minFresh < 0 || System.currentTimeMillis() - entry.storedAt <= minFresh * 1000L;
+    }
+
+    private boolean isPurged(Kind kind, Entry entry) {
+        return entry.storedAt < purgedBefore[kind.ordinal()].get();
+    }
+
+    private void purge(Kind kind, PurgeOptions options) {
+        int maxAge = options != null ? options.getMaxAge() : -1;
+        long now = System.currentTimeMillis();
+        long threshold = maxAge < 0 ? now + 1 : now - maxAge * 1000L;
+        purgedBefore[kind.ordinal()].accumulateAndGet(threshold, Math::max);
+        if (maxAge < 0) {
+            l1[kind.ordinal()].clear();
+        }
+        if (l2 != null) {
+            // L2 has no enumeration, entries older than threshold are dropped when they are read
+            try {
+                l2.set(purgedKey(kind), String.valueOf(purgedBefore[kind.ordinal()].get()));
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Failed to store purge threshold to L2", e);
+            }
+        }
+    }
+
+    private long loadPurgedBefore(Kind kind) {
+        if (l2 == null) {
+            return 0;
+        }
+        Object stored = l2.get(purgedKey(kind));
+        return stored != null ? Long.parseLong(stored.toString()) : 0;
+    }
+
+    private static String purgedKey(Kind kind) {
+        return "purged_before:" + kind.name();
+    }
+
+    private static String key(Kind kind, String poolName, String id) {
+        return kind.name() + ':' + poolName + ':' + id;
+    }
+}
@@ -0,0 +1,243 @@
+package com.sirius.sdk.agent.wallet;
+
+import com.sirius.sdk.utils.Pair;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Iterates wallet search results page by page with keyset paging.
+ * <p>
+ * Agent search has no offset and no ordering, so results are walked by ranges of the sort tag value:
+ * every page is the complete set of results with sort tag in (previous page bound, page bound],
+ * so each search request transfers at most page size records, and pages neither overlap nor skip results.
+ * When the range holds more results than page size it is narrowed to the value of a returned
+ * result and requested again. Sort tag must be plaintext (comparable by $gt/$lte in the query language),
+ * present in every result and unique enough: more than page size results with the same value can not be paged.
+ * <p>
+ * Next page is requested in background as soon as caller starts to handle current one,
+ * so at most two pages are held in memory regardless of total count of results.
+ */
+public class WalletSearchCursor<T> implements Iterator<T>, AutoCloseable {
+
+    public static final int DEF_PAGE_SIZE = 100;
+
+    public interface RangeFetcher {
+        /**
+         * Search results with sort tag value in range (after, upTo]
+         *
+         * @param after exclusive lower bound, null if not bounded
+         * @param upTo  inclusive upper bound, null if not bounded
+         * @param limit max count of results to return
+         * @return results in any order and total count of results in the range (null if unknown)
+         */
+        Pair<List<String>, Integer> fetch(String after, String upTo, int limit);
+    }
+
+    static class Page {
+        List<String> records;
+        String upTo;
+        Integer totalCount;
+    }
+
+    RangeFetcher fetcher;
+    String sortTag;
+    Function<String, T> mapper;
+    int pageSize;
+    Executor executor;
+    List<String> page = new ArrayList<>();
+    int position = 0;
+    String lastKey = null;
+    Integer totalCount = null;
+    boolean exhausted = false;
+    boolean closed = false;
+    CompletableFuture<Page> nextPage;
+    int pagesCount = 0;
+
+    /**
+     * @param sortTag  tag of results that pages are ordered by
+     * @param mapper   converts search result to the item of cursor
+     * @param executor runs prefetch of next page, null means common pool
+     */
+    public WalletSearchCursor(RangeFetcher fetcher, String sortTag, Function<String, T> mapper, int pageSize, Executor executor) {
+        if (pageSize <= 0) {
+            throw new RuntimeException("Page size must be > 0");
+        }
+        this.fetcher = fetcher;
+        this.sortTag = sortTag;
+        this.mapper = mapper;
+        this.pageSize = pageSize;
+        this.executor = executor != null ? executor : ForkJoinPool.commonPool();
+    }
+
+    public WalletSearchCursor(RangeFetcher fetcher, String sortTag, Function<String, T> mapper, int pageSize) {
+        this(fetcher, sortTag, mapper, pageSize, null);
+    }
+
+    /**
+     * Restrict query to the range (after, upTo] of sort tag
+     *
+     * @param query wallet query, null or empty means all records
+     */
+    public static JSONObject rangeQuery(JSONObject query, String sortTag, String after, String upTo) {
+        List<JSONObject> conditions = new ArrayList<>();
+        if (query != null && query.length() > 0) {
+            conditions.add(query);
+        }
+        if (after != null) {
+            conditions.add(new JSONObject().put(sortTag, new JSONObject().put("$gt", after)));
+        }
+        if (upTo != null) {
+            conditions.add(new JSONObject().put(sortTag, new JSONObject().put("$lte", upTo)));
+        }
+        if (conditions.isEmpty()) {
+            return new JSONObject();
+        }
+        if (conditions.size() == 1) {
+            return conditions.get(0);
+        }
+        return new JSONObject().put("$and", new JSONArray(conditions));
+    }
+
+    /**
+     * Value of the tag in search result: wallet records keep it in tags, other results may have it on top level
+     */
+    public static String tagValue(String result, String tag) {
+        JSONObject object = new JSONObject(result);
+        JSONObject tags = object.optJSONObject("tags");
+        String value = tags != null && tags.has(tag) ? tags.optString(tag, null) : object.optString(tag, null);
+        if (value == null) {
+            throw new RuntimeException("Search result has no sort tag " + tag);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (position >= page.size()) {
+            if (closed || (exhausted && nextPage == null)) {
+                return false;
+            }
+            if (nextPage == null) {
+                prefetch();
+            }
+            Page result;
+            try {
+                result = nextPage.join();
+            } catch (CompletionException e) {
+                nextPage = null;
+                exhausted = true;
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+            nextPage = null;
+            accept(result);
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = mapper.apply(page.get(position++));
+        if (nextPage == null && !exhausted && !closed) {
+            prefetch();
+        }
+        return item;
+    }
+
+    /**
+     * Drop rest of results, page that is being fetched is discarded
+     */
+    @Override
+    public void close() {
+        closed = true;
+        page = new ArrayList<>();
+        position = 0;
+        if (nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+    }
+
+    /**
+     * Total count of results reported by the wallet, null if no page was fetched yet or count is unknown
+     */
+    public Integer getTotalCount() {
+        return totalCount;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getFetchedPagesCount() {
+        return pagesCount;
+    }
+
+    private void prefetch() {
+        String after = lastKey;
+        nextPage = CompletableFuture.supplyAsync(() -> fetchPage(after), executor);
+    }
+
+    Page fetchPage(String after) {
+        Page page = new Page();
+        String upTo = null;
+        while (true) {
+            Pair<List<String>, Integer> result = fetcher.fetch(after, upTo, pageSize);
+            List<String> records = result.first != null ? new ArrayList<>(result.first) : new ArrayList<>();
+            int count = result.second != null ? result.second : records.size();
+            if (after == null && upTo == null) {
+                page.totalCount = result.second;
+            }
+            if (records.size() >= count) {
+                page.records = records;
+                page.upTo = upTo;
+                return page;
+            }
+            if (records.isEmpty()) {
+                throw new RuntimeException("Wallet reported " + count + " results but returned none");
+            }
+            // range is larger than page: narrow it to about half of page, keys of returned results are its sample
+            List<String> keys = new ArrayList<>();
+            for (String record : records) {
+                keys.add(tagValue(record, sortTag));
+            }
+            keys.sort(Comparator.naturalOrder());
+            int index = (int) ((long) keys.size() * pageSize / (2L * count));
+            String bound = keys.get(Math.min(index, keys.size() - 1));
+            if (bound.equals(upTo)) {
+                throw new RuntimeException("More than " + pageSize + " results have " + sortTag + " = " + bound);
+            }
+            upTo = bound;
+        }
+    }
+
+    private void accept(Page result) {
+        pagesCount++;
+        if (result.totalCount != null) {
+            totalCount = result.totalCount;
+        }
+        page = result.records;
+        position = 0;
+        if (result.upTo == null) {
+            exhausted = true;
+        } else {
+            lastKey = result.upTo;
+        }
+    }
+}
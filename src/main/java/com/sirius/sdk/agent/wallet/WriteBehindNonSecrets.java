@@ -0,0 +1,566 @@
+package com.sirius.sdk.agent.wallet;
+
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractNonSecrets;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.RetrieveRecordOptions;
+import com.sirius.sdk.utils.Pair;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind layer of non-secrets API: mutations are buffered and applied to the wallet by batches
+ * in background, so bulk import doesn't wait for RPC round trip of every record.
+ * <p>
+ * Mutations of the same record are coalesced (i.e. added record with updated value and tags is sent as single add,
+ * added and then deleted record is not sent at all) and applied in order they were made.
+ * Batches are flushed one after another, records of the batch are applied by executor in parallel,
+ * so their calls are pipelined over the agent connection.
+ * Reads see pending writes: record added by this layer is answered locally, other pending records and searched
+ * types are flushed before read.
+ * <p>
+ * Writers are blocked while count of pending records exceeds the limit.
+ * <p>
+ * Failed wallet calls are collected, including those made by background flushing, and thrown by the next
+ * {@link #flush()} or {@link #close()} as {@link FlushError}. When adding of record fails its later mutations
+ * are not applied.
+ */
+public class WriteBehindNonSecrets extends AbstractNonSecrets {
+
+    public static final int DEF_MAX_BATCH_SIZE = 64;
+    public static final int DEF_LINGER_MS = 50;
+    public static final int DEF_MAX_PENDING = 4096;
+
+    enum OpType {ADD, UPDATE_VALUE, UPDATE_TAGS, ADD_TAGS, DELETE_TAGS, DELETE}
+
+    static class Op {
+        OpType type;
+        String value;
+        JSONObject tags;
+        List<String> tagNames;
+
+        Op(OpType type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * Mutations that failed to apply to the wallet, each failure has the wallet error as its cause
+     */
+    public static class FlushError extends RuntimeException {
+        private static final long serialVersionUID = -3170452731618920466L;
+
+        final List<RuntimeException> failures;
+
+        FlushError(List<RuntimeException> failures) {
+            super(failures.size() + " write-behind mutations failed, first: " + failures.get(0).getMessage(), failures.get(0));
+            this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+            for (int i = 1; i < failures.size(); i++) {
+                addSuppressed(failures.get(i));
+            }
+        }
+
+        public List<RuntimeException> getFailures() {
+            return failures;
+        }
+    }
+
+    static class PendingRecord {
+        String type;
+        String id;
+        List<Op> ops = new ArrayList<>();
+
+        PendingRecord(String type, String id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        Op added() {
+            return !ops.isEmpty() && ops.get(0).type == OpType.ADD ? ops.get(0) : null;
+        }
+
+        Op last() {
+            return ops.isEmpty() ? null : ops.get(ops.size() - 1);
+        }
+    }
+
+    Logger log = Logger.getLogger(WriteBehindNonSecrets.class.getName());
+    AbstractNonSecrets delegate;
+    int maxBatchSize;
+    int lingerMs;
+    int maxPending;
+    Executor executor;
+    final ReentrantLock lock = new ReentrantLock();
+    final Condition changed = lock.newCondition();
+    final ReentrantLock flushLock = new ReentrantLock();
+    LinkedHashMap<String, PendingRecord> pending = new LinkedHashMap<>();
+    long firstPendingAt = 0;
+    boolean closed = false;
+    Thread flusher;
+    // failures that were not thrown to the caller yet
+    final List<RuntimeException> failures = new ArrayList<>();
+
+    AtomicLong batches = new AtomicLong(0);
+    AtomicLong flushedOps = new AtomicLong(0);
+    AtomicLong failedOps = new AtomicLong(0);
+    AtomicLong flushNanos = new AtomicLong(0);
+    AtomicLong maxFlushNanos = new AtomicLong(0);
+
+    /**
+     * @param delegate     non-secrets API of the wallet
+     * @param maxBatchSize max count of records flushed by single batch
+     * @param lingerMs     pending record is flushed not later than this time after it was written
+     * @param maxPending   writers are blocked while this count of records is pending
+     * @param executor     applies records of batch in parallel, null applies them by flusher thread
+     */
+    public WriteBehindNonSecrets(AbstractNonSecrets delegate, int maxBatchSize, int lingerMs, int maxPending, Executor executor) {
+        if (maxBatchSize <= 0 || maxPending <= 0) {
+            throw new RuntimeException("Batch size and pending limit must be > 0");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+        this.maxPending = maxPending;
+        this.executor = executor;
+        this.flusher = new Thread(this::runFlusher, "WriteBehindNonSecrets-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public WriteBehindNonSecrets(AbstractNonSecrets delegate) {
+        this(delegate, DEF_MAX_BATCH_SIZE, DEF_LINGER_MS, DEF_MAX_PENDING, null);
+    }
+
+    @Override
+    public void addWalletRecord(String type, String id, String value, String tags) {
+        mutate(type, id, record -> {
+            Op op = new Op(OpType.ADD);
+            op.value = value;
+            op.tags = tags != null ? new JSONObject(tags) : null;
+            record.ops.add(op);
+        });
+    }
+
+    @Override
+    public void updateWalletRecordValue(String type, String id, String value) {
+        mutate(type, id, record -> {
+            Op added = record.added();
+            Op last = record.last();
+            if (added != null && record.ops.size() == 1) {
+                added.value = value;
+            } else if (last != null && last.type == OpType.UPDATE_VALUE) {
+                last.value = value;
+            } else {
+                Op op = new Op(OpType.UPDATE_VALUE);
+                op.value = value;
+                record.ops.add(op);
+            }
+        });
+    }
+
+    @Override
+    public void updateWalletRecordTags(String type, String id, String tags) {
+        JSONObject tagsObj = tags != null ? new JSONObject(tags) : new JSONObject();
+        mutate(type, id, record -> {
+            // replacing tags supersedes previous tag changes
+            record.ops.removeIf(op -> op.type == OpType.ADD_TAGS || op.type == OpType.DELETE_TAGS || op.type == OpType.UPDATE_TAGS);
+            Op added = record.added();
+            if (added != null) {
+                added.tags = tagsObj;
+            } else {
+                Op op = new Op(OpType.UPDATE_TAGS);
+                op.tags = tagsObj;
+                record.ops.add(op);
+            }
+        });
+    }
+
+    @Override
+    public void addWalletRecordTags(String type, String id, String tags) {
+        JSONObject tagsObj = tags != null ? new JSONObject(tags) : new JSONObject();
+        mutate(type, id, record -> {
+            Op target = record.added();
+            Op last = record.last();
+            if (target == null && last != null && (last.type == OpType.UPDATE_TAGS || last.type == OpType.ADD_TAGS)) {
+                target = last;
+            }
+            if (target != null) {
+                if (target.tags == null) {
+                    target.tags = new JSONObject();
+                }
+                for (String name : tagsObj.keySet()) {
+                    target.tags.put(name, tagsObj.get(name));
+                }
+            } else {
+                Op op = new Op(OpType.ADD_TAGS);
+                op.tags = tagsObj;
+                record.ops.add(op);
+            }
+        });
+    }
+
+    @Override
+    public void deleteWalletRecord(String type, String id, List<String> tagNames) {
+        mutate(type, id, record -> {
+            Op added = record.added();
+            if (added != null && record.ops.size() == 1) {
+                if (added.tags != null) {
+                    for (String name : tagNames) {
+                        added.tags.remove(name);
+                    }
+                }
+            } else {
+                Op op = new Op(OpType.DELETE_TAGS);
+                op.tagNames = new ArrayList<>(tagNames);
+                record.ops.add(op);
+            }
+        });
+    }
+
+    @Override
+    public void deleteWalletRecord(String type, String id) {
+        mutate(type, id, record -> {
+            boolean createdHere = record.added() != null;
+            record.ops.clear();
+            if (!createdHere) {
+                record.ops.add(new Op(OpType.DELETE));
+            }
+        });
+    }
+
+    @Override
+    public String getWalletRecord(String type, String id, RetrieveRecordOptions options) {
+        lock.lock();
+        try {
+            PendingRecord record = pending.get(key(type, id));
+            if (record != null && record.ops.size() == 1 && record.added() != null) {
+                return localRecord(type, id, record.added(), options);
+            }
+        } finally {
+            lock.unlock();
+        }
+        flushRecords(type, id);
+        return delegate.getWalletRecord(type, id, options);
+    }
+
+    @Override
+    public Pair<List<String>, Integer> walletSearch(String type, String query, RetrieveRecordOptions options, int limit) {
+        flushRecords(type, null);
+        return delegate.walletSearch(type, query, options, limit);
+    }
+
+    /**
+     * Apply all pending mutations to the wallet
+     *
+     * @throws FlushError if some mutations failed since previous flush, including failures of background flushing
+     */
+    public void flush() {
+        flushRecords(null, null);
+        throwFailures();
+    }
+
+    /**
+     * Flush pending mutations and stop background flushing, next mutations are rejected
+     *
+     * @throws FlushError if some mutations failed since previous flush
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flush();
+        } finally {
+            flusher.interrupt();
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBatchesCount() {
+        return batches.get();
+    }
+
+    /**
+     * Count of calls made to the wallet
+     */
+    public long getFlushedOpsCount() {
+        return flushedOps.get();
+    }
+
+    public long getFailedOpsCount() {
+        return failedOps.get();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) flushedOps.get() / count;
+    }
+
+    public double getAverageFlushLatencyMs() {
+        long count = batches.get();
+        return count == 0 ? 0 : flushNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxFlushLatencyMs() {
+        return maxFlushNanos.get() / 1e6;
+    }
+
+    interface Mutation {
+        void apply(PendingRecord record);
+    }
+
+    void mutate(String type, String id, Mutation mutation) {
+        String key = key(type, id);
+        lock.lock();
+        try {
+            while (!closed && pending.size() >= maxPending && !pending.containsKey(key)) {
+                changed.signalAll();
+                changed.awaitUninterruptibly();
+            }
+            if (closed) {
+                throw new IllegalStateException("Write-behind non-secrets is closed");
+            }
+            PendingRecord record = pending.get(key);
+            if (record == null) {
+                record = new PendingRecord(type, id);
+                pending.put(key, record);
+                if (pending.size() == 1) {
+                    firstPendingAt = System.nanoTime();
+                }
+            }
+            mutation.apply(record);
+            if (record.ops.isEmpty()) {
+                pending.remove(key);
+            }
+            if (pending.size() >= maxBatchSize) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flush batches until there are no pending records of the type/id, null matches any
+     */
+    void flushRecords(String type, String id) {
+        flushLock.lock();
+        try {
+            while (true) {
+                List<PendingRecord> batch = takeBatch(type, id);
+                if (batch.isEmpty()) {
+                    return;
+                }
+                apply(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private List<PendingRecord> takeBatch(String type, String id) {
+        lock.lock();
+        try {
+            boolean matched = type == null;
+            if (!matched) {
+                for (PendingRecord record : pending.values()) {
+                    if (record.type.equals(type) && (id == null || record.id.equals(id))) {
+                        matched = true;
+                        break;
+                    }
+                }
+            }
+            List<PendingRecord> batch = new ArrayList<>();
+            if (!matched) {
+                return batch;
+            }
+            // records are taken in order of their first mutation, so earlier writes are never overtaken
+            Iterator<PendingRecord> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            firstPendingAt = System.nanoTime();
+            changed.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(List<PendingRecord> batch) {
+        long started = System.nanoTime();
+        int ops = 0;
+        if (executor == null) {
+            for (PendingRecord record : batch) {
+                ops += applyRecord(record);
+            }
+        } else {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (PendingRecord record : batch) {
+                futures.add(CompletableFuture.supplyAsync(() -> applyRecord(record), executor));
+            }
+            for (CompletableFuture<Integer> future : futures) {
+                ops += future.join();
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        batches.incrementAndGet();
+        flushedOps.addAndGet(ops);
+        flushNanos.addAndGet(elapsed);
+        long max = maxFlushNanos.get();
+        while (elapsed > max && !maxFlushNanos.compareAndSet(max, elapsed)) {
+            max = maxFlushNanos.get();
+        }
+    }
+
+    private void throwFailures() {
+        List<RuntimeException> thrown;
+        synchronized (failures) {
+            if (failures.isEmpty()) {
+                return;
+            }
+            thrown = new ArrayList<>(failures);
+            failures.clear();
+        }
+        throw new FlushError(thrown);
+    }
+
+    private int applyRecord(PendingRecord record) {
+        int count = 0;
+        for (int i = 0; i < record.ops.size(); i++) {
+            Op op = record.ops.get(i);
+            try {
+                switch (op.type) {
+                    case ADD:
+                        delegate.addWalletRecord(record.type, record.id, op.value, op.tags != null ? op.tags.toString() : null);
+                        break;
+                    case UPDATE_VALUE:
+                        delegate.updateWalletRecordValue(record.type, record.id, op.value);
+                        break;
+                    case UPDATE_TAGS:
+                        delegate.updateWalletRecordTags(record.type, record.id, op.tags.toString());
+                        break;
+                    case ADD_TAGS:
+                        delegate.addWalletRecordTags(record.type, record.id, op.tags.toString());
+                        break;
+                    case DELETE_TAGS:
+                        delegate.deleteWalletRecord(record.type, record.id, op.tagNames);
+                        break;
+                    case DELETE:
+                        delegate.deleteWalletRecord(record.type, record.id);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (RuntimeException e) {
+                failedOps.incrementAndGet();
+                String message = "Write-behind " + op.type + " of record " + record.type + "/" + record.id + " failed";
+                int skipped = op.type == OpType.ADD ? record.ops.size() - i - 1 : 0;
+                if (skipped > 0) {
+                    message += ", " + skipped + " later mutations are skipped";
+                }
+                log.log(Level.WARNING, message, e);
+                synchronized (failures) {
+                    failures.add(new RuntimeException(message, e));
+                }
+                if (op.type == OpType.ADD) {
+                    // later mutations target the record that was not created
+                    return count + 1;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private void runFlusher() {
+        while (true) {
+            lock.lock();
+            try {
+                while (!closed && !isDue()) {
+                    if (pending.isEmpty()) {
+                        changed.awaitUninterruptibly();
+                    } else {
+                        long waitNanos = firstPendingAt + TimeUnit.MILLISECONDS.toNanos(lingerMs) - System.nanoTime();
+                        if (waitNanos > 0) {
+                            changed.awaitNanos(waitNanos);
+                        }
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            flushLock.lock();
+            try {
+                List<PendingRecord> batch = takeBatch(null, null);
+                if (!batch.isEmpty()) {
+                    apply(batch);
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private boolean isDue() {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        return pending.size() >= maxBatchSize
+                || System.nanoTime() - firstPendingAt >= TimeUnit.MILLISECONDS.toNanos(lingerMs);
+    }
+
+    private static String localRecord(String type, String id, Op added, RetrieveRecordOptions options) {
+        JSONObject record = new JSONObject();
+        record.put("id", id);
+        if (options.isRetrieveType()) {
+            record.put("type", type);
+        }
+        if (options.isRetrieveValue()) {
+            record.put("value", added.value);
+        }
+        if (options.isRetrieveTags()) {
+            record.put("tags", added.tags != null ? new JSONObject(added.tags.toString()) : new JSONObject());
+        }
+        return record.toString();
+    }
+
+    private static String key(String type, String id) {
+        return type + '\u0000' + id;
+    }
+}
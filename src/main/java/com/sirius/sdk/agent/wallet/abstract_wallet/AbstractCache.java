@@ -1,8 +1,12 @@
 package com.sirius.sdk.agent.wallet.abstract_wallet;
 
+import com.sirius.sdk.agent.model.ledger.CredentialDefinition;
+import com.sirius.sdk.agent.model.ledger.Schema;
 import com.sirius.sdk.agent.wallet.abstract_wallet.model.CacheOptions;
 import com.sirius.sdk.agent.wallet.abstract_wallet.model.PurgeOptions;
 
+import java.util.function.Function;
+
 public abstract class AbstractCache {
     /**
      *     Gets schema json data for specified schema id.
@@ -60,6 +64,25 @@ public abstract class AbstractCache {
      */
     public abstract String getCredDef(String poolName, String submitter_did, String id, CacheOptions options);
 
+    /**
+     * Parsed schema, see {@link #getSchema(String, String, String, CacheOptions)}.
+     * Caching implementations may return the same instance to all callers.
+     */
+    public Schema getSchemaObject(String poolName, String submitterDid, String id, CacheOptions options) {
+        return new Schema(getSchema(poolName, submitterDid, id, options));
+    }
+
+    /**
+     * Parsed credential definition, see {@link #getCredDef(String, String, String, CacheOptions)}.
+     * Caching implementations may return the same instance to all callers.
+     *
+     * @param parser builds credential definition of its json
+     */
+    public CredentialDefinition getCredDefObject(String poolName, String submitterDid, String id, CacheOptions options,
+                                                 Function<String, CredentialDefinition> parser) {
+        return parser.apply(getCredDef(poolName, submitterDid, id, options));
+    }
+
     /**
      *  Purge schema cache.
      *
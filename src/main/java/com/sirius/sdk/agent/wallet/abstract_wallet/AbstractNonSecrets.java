@@ -1,9 +1,12 @@
 package com.sirius.sdk.agent.wallet.abstract_wallet;
 
+import com.sirius.sdk.agent.wallet.WalletSearchCursor;
 import com.sirius.sdk.utils.Pair;
 import com.sirius.sdk.agent.wallet.abstract_wallet.model.RetrieveRecordOptions;
+import org.json.JSONObject;
 
 import java.util.List;
+import java.util.function.Function;
 
 public abstract  class AbstractNonSecrets {
     /**
@@ -136,4 +139,19 @@ public abstract  class AbstractNonSecrets {
     public  Pair<List<String>,Integer> walletSearch(String type,String query,RetrieveRecordOptions options){
         return walletSearch(type,query,options,1);
     }
+
+    /**
+     * Iterate wallet records by pages of given size with keyset paging over the sort tag,
+     * see {@link WalletSearchCursor}. Records are retrieved with tags. Next page is fetched while caller handles current one
+     * @param sortTag plaintext tag that every matched record has, its values should be unique
+     */
+    public WalletSearchCursor<String> walletSearchCursor(String type, String query, RetrieveRecordOptions options, String sortTag, int pageSize) {
+        RetrieveRecordOptions withTags = options != null ?
+                new RetrieveRecordOptions(options.isRetrieveType(), options.isRetrieveValue(), true) :
+                new RetrieveRecordOptions(false, true, true);
+        JSONObject queryObject = query != null ? new JSONObject(query) : null;
+        return new WalletSearchCursor<>((after, upTo, limit) -> walletSearch(type,
+                WalletSearchCursor.rangeQuery(queryObject, sortTag, after, upTo).toString(), withTags, limit),
+                sortTag, Function.identity(), pageSize);
+    }
 }
@@ -1,9 +1,11 @@
 package com.sirius.sdk.agent.wallet.abstract_wallet;
 
+import com.sirius.sdk.agent.wallet.WalletSearchCursor;
 import com.sirius.sdk.utils.Pair;
 import org.json.JSONObject;
 
 import java.util.List;
+import java.util.function.Function;
 
 public abstract  class AbstractPairwise {
     /**
@@ -89,6 +91,17 @@ public abstract  class AbstractPairwise {
     public  Pair<List<String>,Integer> search(JSONObject tags){
         return search(tags,null);
     }
+
+    /**
+     * Iterate pairwise by pages of given size with keyset paging over the sort tag, see {@link WalletSearchCursor}.
+     * Next page is fetched while caller handles current one
+     * @param tags tags based query
+     * @param sortTag plaintext tag that every matched pairwise has, its values should be unique
+     */
+    public WalletSearchCursor<String> searchCursor(JSONObject tags, String sortTag, int pageSize) {
+        return new WalletSearchCursor<>((after, upTo, limit) -> search(WalletSearchCursor.rangeQuery(tags, sortTag, after, upTo), limit),
+                sortTag, Function.identity(), pageSize);
+    }
 }
 
 
@@ -29,6 +29,22 @@ public class CacheOptions implements JsonSerializable<CacheOptions> {
     public CacheOptions() {
     }
 
+    public boolean isNoCache() {
+        return noCache;
+    }
+
+    public boolean isNoUpdate() {
+        return noUpdate;
+    }
+
+    public boolean isNoStore() {
+        return noStore;
+    }
+
+    public int getMinFresh() {
+        return minFresh;
+    }
+
     @Override
     public String serialize() {
         Gson gson = new Gson();
@@ -15,6 +15,10 @@ public class PurgeOptions implements JsonSerializable<PurgeOptions> {
     public PurgeOptions() {
     }
 
+    public int getMaxAge() {
+        return maxAge;
+    }
+
     @Override
     public String serialize() {
         Gson gson = new Gson();
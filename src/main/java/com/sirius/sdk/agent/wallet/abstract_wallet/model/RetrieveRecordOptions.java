@@ -50,5 +50,17 @@ public class RetrieveRecordOptions implements JsonSerializable<RetrieveRecordOpt
         this.retrieveValue = true;
         this.retrieveTags = true;
     }
+
+    public boolean isRetrieveType() {
+        return retrieveType;
+    }
+
+    public boolean isRetrieveValue() {
+        return retrieveValue;
+    }
+
+    public boolean isRetrieveTags() {
+        return retrieveTags;
+    }
 }
 
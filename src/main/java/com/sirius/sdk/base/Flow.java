@@ -0,0 +1,42 @@
+package com.sirius.sdk.base;
+
+/**
+ * Publish-subscribe interfaces with demand-driven flow control.
+ * <p>
+ * Mirror java.util.concurrent.Flow (Java 9+) and Reactive Streams contracts, so SDK stays on Java 8
+ * and implementations can be bridged to them with method references.
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    public interface Publisher<T> {
+        /**
+         * Attach subscriber, its {@link Subscriber#onSubscribe(Subscription)} is called before any other signal
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+        /**
+         * Add n items to the demand of subscriber
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving items, pending items may be discarded
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,168 @@
+package com.sirius.sdk.base;
+
+import com.sirius.sdk.errors.sirius_exceptions.SiriusConnectionClosed;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Inbound frames buffer of single connection.
+ * <p>
+ * Every received frame is queued in FIFO order and handed out to readers in order they called {@link #read()}.
+ * Buffer is bounded: when it is full the producer (I/O thread) is blocked until readers consume frames,
+ * so backpressure is propagated to the socket instead of dropping data.
+ */
+public class InboundFrameDispatcher {
+
+    public static final int DEF_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Deque<byte[]> frames = new ArrayDeque<>();
+    private final Deque<CompletableFuture<byte[]>> waiters = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private boolean closed = false;
+
+    public InboundFrameDispatcher(int capacity) {
+        if (capacity <= 0) {
+            throw new RuntimeException("Capacity must be > 0");
+        }
+        this.capacity = capacity;
+    }
+
+    public InboundFrameDispatcher() {
+        this(DEF_CAPACITY);
+    }
+
+    /**
+     * Put received frame to the buffer or hand it to the first pending reader.
+     * Blocks caller while buffer is full.
+     *
+     * @param frame frame payload
+     * @return False if dispatcher was closed and frame was discarded
+     */
+    public boolean offer(byte[] frame) {
+        while (true) {
+            CompletableFuture<byte[]> waiter = null;
+            lock.lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                waiter = pollActiveWaiter();
+                if (waiter == null) {
+                    while (frames.size() >= capacity && !closed) {
+                        notFull.awaitUninterruptibly();
+                    }
+                    if (closed) {
+                        return false;
+                    }
+                    if (waiters.isEmpty()) {
+                        frames.addLast(frame);
+                        return true;
+                    }
+                    // reader arrived while we were waiting for space, try to hand frame directly
+                    continue;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // complete outside of lock: dependent stages may run in this thread
+            if (waiter.complete(frame)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Read next frame.
+     * <p>
+     * Reader that is not interested in result anymore (timeout for example) must cancel returned future,
+     * otherwise next frame will be delivered to it.
+     *
+     * @return future that is completed with next frame in arrival order
+     */
+    public CompletableFuture<byte[]> read() {
+        lock.lock();
+        try {
+            byte[] frame = frames.pollFirst();
+            if (frame != null) {
+                notFull.signal();
+                return CompletableFuture.completedFuture(frame);
+            }
+            CompletableFuture<byte[]> waiter = new CompletableFuture<>();
+            if (closed) {
+                waiter.completeExceptionally(new SiriusConnectionClosed("Connection closed"));
+            } else {
+                waiters.addLast(waiter);
+            }
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Count of frames that were received but not read yet
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return frames.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Allow dispatcher to accept frames again, for example after connection was reopened
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            closed = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close dispatcher: pending readers are completed with {@link SiriusConnectionClosed},
+     * frames that are already buffered are still available for reading.
+     */
+    public void close() {
+        Deque<CompletableFuture<byte[]>> pending;
+        lock.lock();
+        try {
+            closed = true;
+            pending = new ArrayDeque<>(waiters);
+            waiters.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (CompletableFuture<byte[]> waiter : pending) {
+            waiter.completeExceptionally(new SiriusConnectionClosed("Connection closed"));
+        }
+    }
+
+    private CompletableFuture<byte[]> pollActiveWaiter() {
+        CompletableFuture<byte[]> waiter = waiters.pollFirst();
+        while (waiter != null && waiter.isDone()) {
+            waiter = waiters.pollFirst();
+        }
+        return waiter;
+    }
+}
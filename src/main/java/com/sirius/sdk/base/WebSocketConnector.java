@@ -27,20 +27,28 @@ public class WebSocketConnector extends BaseConnector {
     String path;
     byte[] credentials;
     WebSocket webSocket;
+    InboundFrameDispatcher inbound;
 
-    public WebSocketConnector(int defTimeout, Charset encoding, String serverAddress, String path, byte[] credentials) {
+    public WebSocketConnector(int defTimeout, Charset encoding, String serverAddress, String path, byte[] credentials,
+                              int inboundCapacity) {
         this.defTimeout = defTimeout;
         this.encoding = encoding;
         this.serverAddress = serverAddress;
         this.path = path;
         this.credentials = credentials;
+        this.inbound = new InboundFrameDispatcher(inboundCapacity);
         initWebSocket();
     }
 
+    public WebSocketConnector(int defTimeout, Charset encoding, String serverAddress, String path, byte[] credentials) {
+        this(defTimeout, encoding, serverAddress, path, credentials, InboundFrameDispatcher.DEF_CAPACITY);
+    }
+
     public WebSocketConnector(String serverAddress, String path, byte[] credentials) {
         this.serverAddress = serverAddress;
         this.path = path;
         this.credentials = credentials;
+        this.inbound = new InboundFrameDispatcher();
         initWebSocket();
     }
 
@@ -63,6 +71,7 @@ public class WebSocketConnector extends BaseConnector {
         @Override
         public void onDisconnected(WebSocket webSocket, WebSocketFrame webSocketFrame, WebSocketFrame webSocketFrame1, boolean b) throws Exception {
             log.log(Level.INFO, "Disconnected");
+            inbound.close();
         }
 
         @Override
@@ -221,6 +230,7 @@ public class WebSocketConnector extends BaseConnector {
     @Override
     public void open() {
         if (!isOpen()) {
+            inbound.reset();
             try {
                 webSocket.connect();
             } catch (WebSocketException e) {
@@ -236,12 +246,15 @@ public class WebSocketConnector extends BaseConnector {
         }
     }
 
-    CompletableFuture<byte[]> readFuture = new CompletableFuture<>();
-
+    /**
+     * Read next inbound frame.
+     * <p>
+     * Frames are buffered by {@link InboundFrameDispatcher}, so concurrent readers receive them in arrival order
+     * without loss. Caller that gives up waiting must cancel returned future.
+     */
     @Override
     public CompletableFuture<byte[]> read() {
-        readFuture = new CompletableFuture<>();
-        return readFuture;
+        return inbound.read();
     }
 
 
@@ -251,8 +264,9 @@ public class WebSocketConnector extends BaseConnector {
             //  throw  new SiriusConnectionClosed();
         }
         if (frame != null) {
-            readFuture.complete(frame.getPayload());
-            return frame.getPayload();
+            byte[] payload = frame.getPayload();
+            inbound.offer(payload);
+            return payload;
         }
         return null;
    /*     try:
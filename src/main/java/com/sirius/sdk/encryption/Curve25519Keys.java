@@ -0,0 +1,111 @@
+package com.sirius.sdk.encryption;
+
+import com.goterl.lazycode.lazysodium.exceptions.SodiumException;
+import com.goterl.lazycode.lazysodium.interfaces.Sign;
+import com.goterl.lazycode.lazysodium.utils.Key;
+import com.sirius.sdk.naclJava.LibSodium;
+import com.sirius.sdk.utils.Base58;
+import com.sirius.sdk.utils.LruCache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Shared caches of key material of peers: Base58 forms of verkeys and their Curve25519 forms.
+ * Secret keys are never put to shared caches: only 32-byte keys are cached by {@link #decode(String)},
+ * 64-byte sigkeys are decoded on every call.
+ * <p>
+ * {@link #decode(String)} returns a copy of cached array, strings and keys returned by other methods
+ * are shared between callers and must not be modified.
+ */
+public class Curve25519Keys {
+
+    public static final int DEF_PEER_CACHE_SIZE = 4096;
+
+    static LruCache<String, byte[]> decodedKeys = new LruCache<>(DEF_PEER_CACHE_SIZE);
+    static LruCache<ByteBuffer, String> encodedKeys = new LruCache<>(DEF_PEER_CACHE_SIZE);
+    static LruCache<ByteBuffer, Key> curvePublicKeys = new LruCache<>(DEF_PEER_CACHE_SIZE);
+
+    /**
+     * Decode Base58 key, only verkeys are cached
+     *
+     * @return new array that caller may modify
+     */
+    public static byte[] decode(String b58) {
+        byte[] bytes = decodedKeys.get(b58);
+        if (bytes != null) {
+            return bytes.clone();
+        }
+        bytes = Base58.decode(b58);
+        if (bytes.length == Sign.PUBLICKEYBYTES) {
+            decodedKeys.put(b58, bytes.clone());
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode verkey to Base58
+     */
+    public static String encode(byte[] verkey) {
+        if (verkey.length != Sign.PUBLICKEYBYTES) {
+            return Base58.encode(verkey);
+        }
+        ByteBuffer cacheKey = ByteBuffer.wrap(verkey.clone());
+        String b58 = encodedKeys.get(cacheKey);
+        if (b58 == null) {
+            b58 = Base58.encode(verkey);
+            encodedKeys.put(cacheKey, b58);
+        }
+        return b58;
+    }
+
+    /**
+     * Convert Ed25519 public key to Curve25519 public key
+     */
+    public static Key toCurvePublicKey(byte[] edPublicKey) throws SodiumException {
+        ByteBuffer cacheKey = ByteBuffer.wrap(edPublicKey.clone());
+        Key curve = curvePublicKeys.get(cacheKey);
+        if (curve == null) {
+            byte[] curveBytes = new byte[Sign.CURVE25519_PUBLICKEYBYTES];
+            boolean isOk = LibSodium.getInstance().getPrimitives().convertPublicKeyEd25519ToCurve25519(curveBytes, edPublicKey);
+            if (!isOk) {
+                throw new SodiumException("Could not convert this public key.");
+            }
+            curve = Key.fromBytes(curveBytes);
+            curvePublicKeys.put(cacheKey, curve);
+        }
+        return curve;
+    }
+
+    /**
+     * Convert Ed25519 secret key to Curve25519 secret key, result is not cached
+     */
+    public static Key toCurveSecretKey(byte[] edSecretKey) throws SodiumException {
+        byte[] curveBytes = new byte[Sign.CURVE25519_SECRETKEYBYTES];
+        boolean isOk = LibSodium.getInstance().getPrimitives().convertSecretKeyEd25519ToCurve25519(curveBytes, edSecretKey);
+        if (!isOk) {
+            throw new SodiumException("Could not convert this secret key.");
+        }
+        return Key.fromBytes(curveBytes);
+    }
+
+    /**
+     * Change bounds of shared caches, cached entries are dropped
+     */
+    public static void setPeerCacheSize(int size) {
+        decodedKeys = new LruCache<>(size);
+        encodedKeys = new LruCache<>(size);
+        curvePublicKeys = new LruCache<>(size);
+    }
+
+    public static LruCache<ByteBuffer, Key> getCurvePublicKeysCache() {
+        return curvePublicKeys;
+    }
+
+    public static LruCache<String, byte[]> getDecodedKeysCache() {
+        return decodedKeys;
+    }
+
+    public static LruCache<ByteBuffer, String> getEncodedKeysCache() {
+        return encodedKeys;
+    }
+}
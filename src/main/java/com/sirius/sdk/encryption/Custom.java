@@ -8,6 +8,7 @@ import com.goterl.lazycode.lazysodium.utils.KeyPair;
 
 import com.sirius.sdk.errors.sirius_exceptions.SiriusCryptoError;
 import com.sirius.sdk.naclJava.LibSodium;
+import com.sirius.sdk.naclJava.RandomBuffer;
 import com.sirius.sdk.utils.Base58;
 
 
@@ -108,7 +109,7 @@ public class Custom {
      */
     public byte[] randomSeed() {
 
-        return LibSodium.getInstance().getLazySodium().randomBytesBuf(SecretBox.KEYBYTES);
+        return RandomBuffer.getInstance().nextBytes(SecretBox.KEYBYTES);
 
         //   return new Random().randomBytes(Sodium.crypto_secretbox_keybytes());
     }
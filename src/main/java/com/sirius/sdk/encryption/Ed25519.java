@@ -10,8 +10,10 @@ import com.sirius.sdk.errors.sirius_exceptions.SiriusFieldValueError;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidType;
 import com.sirius.sdk.naclJava.CryptoAead;
 import com.sirius.sdk.naclJava.LibSodium;
+import com.sirius.sdk.naclJava.RandomBuffer;
+import com.sirius.sdk.utils.Base64Url;
+import com.sirius.sdk.utils.LruCache;
 
-import java.io.ByteArrayOutputStream;
 import java.lang.String;
 
 
@@ -21,14 +23,95 @@ import org.json.JSONObject;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 
 public class Ed25519 {
     Custom custom = new Custom();
+    // Curve25519 forms of own secret keys, kept per instance and never shared
+    LruCache<ByteBuffer, Key> curveSecretKeys = new LruCache<>(16);
+    // crypto_box shared keys keyed by (their Curve25519 public key, my Curve25519 secret key)
+    LruCache<ByteBuffer, byte[]> sharedKeys;
 
+    public static final int DEF_SHARED_KEYS_CACHE_SIZE = 1024;
+    public static final int DEF_PARALLEL_PACK_THRESHOLD = 8;
+
+    Executor packExecutor = null;
+    int parallelPackThreshold = DEF_PARALLEL_PACK_THRESHOLD;
+
+    public Ed25519() {
+        this(DEF_SHARED_KEYS_CACHE_SIZE);
+    }
+
+    /**
+     * @param sharedKeysCacheSize count of peers whose crypto_box shared keys are kept
+     */
+    public Ed25519(int sharedKeysCacheSize) {
+        sharedKeys = new LruCache<>(sharedKeysCacheSize);
+    }
+
+    /**
+     * Decode Base58 key, decoded verkeys are cached
+     *
+     * @return new array that caller may modify
+     */
     public byte[] ensureIsBytes(String b58_or_bytes) {
-        return custom.b58ToBytes(b58_or_bytes);
+        return Curve25519Keys.decode(b58_or_bytes);
+    }
+
+    /**
+     * Curve25519 public key of Ed25519 verkey, cached in the shared peers cache
+     */
+    public Key toCurve25519PublicKey(byte[] verkey) throws SodiumException {
+        return Curve25519Keys.toCurvePublicKey(verkey);
+    }
+
+    /**
+     * Curve25519 secret key of Ed25519 sigkey, cached in this instance
+     */
+    public Key toCurve25519SecretKey(byte[] sigkey) throws SodiumException {
+        ByteBuffer cacheKey = ByteBuffer.wrap(sigkey.clone());
+        Key curve = curveSecretKeys.get(cacheKey);
+        if (curve == null) {
+            curve = Curve25519Keys.toCurveSecretKey(sigkey);
+            curveSecretKeys.put(cacheKey, curve);
+        }
+        return curve;
+    }
+
+    /**
+     * Precomputed crypto_box key for Curve25519 pair of (their public key, my secret key),
+     * so Authcrypt to frequent peers needs no scalar multiplication per message
+     */
+    public byte[] sharedKey(KeyPair curveKeyPair) throws SodiumException {
+        byte[] publicKey = curveKeyPair.getPublicKey().getAsBytes();
+        byte[] secretKey = curveKeyPair.getSecretKey().getAsBytes();
+        byte[] pair = new byte[publicKey.length + secretKey.length];
+        System.arraycopy(publicKey, 0, pair, 0, publicKey.length);
+        System.arraycopy(secretKey, 0, pair, publicKey.length, secretKey.length);
+        ByteBuffer cacheKey = ByteBuffer.wrap(pair);
+        byte[] sharedKey = sharedKeys.get(cacheKey);
+        if (sharedKey == null) {
+            sharedKey = new CryptoAead().cryptoBoxBeforeNm(curveKeyPair);
+            sharedKeys.put(cacheKey, sharedKey);
+        }
+        return sharedKey;
+    }
+
+    public LruCache<ByteBuffer, byte[]> getSharedKeysCache() {
+        return sharedKeys;
+    }
+
+    /**
+     * Convert Ed25519 key pair to Curve25519 key pair using caches
+     */
+    public KeyPair toCurve25519KeyPair(KeyPair keyPair) throws SodiumException {
+        return new KeyPair(toCurve25519PublicKey(keyPair.getPublicKey().getAsBytes()),
+                toCurve25519SecretKey(keyPair.getSecretKey().getAsBytes()));
     }
 
     /**
@@ -48,57 +131,93 @@ public class Ed25519 {
             throw new SiriusCryptoError("Both verkey and sigkey needed to authenticated encrypt message");
         }
 
-        Key cek = LibSodium.getInstance().getLazySecretStream().cryptoSecretStreamKeygen();
-
-        JSONArray recips = new JSONArray();
-        byte[] enc_cek = null;
-        byte[] enc_sender = null;
-        byte[] nonce = null;
-        for (byte[] target_vk : to_verkeys) {
-            KeyPair keyPairToConvert = new KeyPair(Key.fromBytes(target_vk), Key.fromBytes(from_sigkey));
-            KeyPair convertedKeyPair = LibSodium.getInstance().getLazySodium().convertKeyPairEd25519ToCurve25519(keyPairToConvert);
-            Key target_pk = convertedKeyPair.getPublicKey();
-            if (from_verkey != null) {
-                String sender_vk = custom.bytesToB58(from_verkey);
-                enc_sender = new CryptoAead().cryptoBoxSeal(sender_vk, target_pk);
-                nonce = LibSodium.getInstance().getLazySodium().randomBytesBuf(Box.NONCEBYTES);
-                enc_cek =    new CryptoAead().cryptoBox(cek.getAsBytes(), nonce, convertedKeyPair);
-            } else {
-                enc_sender = null;
-                nonce = null;
-                enc_cek =  new CryptoAead().cryptoBoxSeal(cek.getAsBytes(), target_pk);
+        Key cek = RandomBuffer.getInstance().nextKey(SecretStream.KEYBYTES);
+
+        // sender keys are the same for all recipients
+        String sender_vk = from_verkey != null ? Curve25519Keys.encode(from_verkey) : null;
+        Key sender_sk = from_sigkey != null ? toCurve25519SecretKey(from_sigkey) : null;
+        String[] recips = new String[to_verkeys.size()];
+        Executor executor = packExecutor;
+        if (executor != null && to_verkeys.size() >= parallelPackThreshold) {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>(to_verkeys.size());
+            for (int i = 0; i < to_verkeys.size(); i++) {
+                final int index = i;
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        recips[index] = buildRecipient(to_verkeys.get(index), cek, sender_vk, sender_sk);
+                    } catch (SodiumException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor));
             }
-
-            JSONObject jsonObject = new JSONObject();
-            jsonObject.put("encrypted_key", custom.bytesToB64(enc_cek, true));
-            JSONObject headerObject = new JSONObject();
-            headerObject.put("kid", custom.bytesToB58(target_vk));
-            if (enc_sender == null) {
-                headerObject.put("sender", enc_sender);
-            } else {
-                headerObject.put("sender", custom.bytesToB64(enc_sender, true));
+            try {
+                CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof SodiumException) {
+                    throw (SodiumException) e.getCause();
+                }
+                throw e;
             }
-            if (nonce == null) {
-                headerObject.put("iv", nonce);
-            } else {
-                headerObject.put("iv", custom.bytesToB64(nonce, true));
+        } else {
+            for (int i = 0; i < to_verkeys.size(); i++) {
+                recips[i] = buildRecipient(to_verkeys.get(i), cek, sender_vk, sender_sk);
             }
-            jsonObject.put("header", headerObject);
-            recips.put(jsonObject);
         }
 
-        JSONObject data = new JSONObject();
-        data.put("enc", "xchacha20poly1305_ietf");
-        data.put("typ", "JWM/1.0");
-        if (from_verkey != null) {
-            data.put("alg", "Authcrypt");
-        } else {
-            data.put("alg", "Anoncrypt");
+        // field order is the same as JSONObject.toString() produced
+        StringBuilder data = new StringBuilder(64 + recips.length * 256);
+        data.append("{\"recipients\":[");
+        for (int i = 0; i < recips.length; i++) {
+            if (i > 0) {
+                data.append(',');
+            }
+            data.append(recips[i]);
         }
-        data.put("recipients", recips);
+        data.append("],\"typ\":\"JWM/1.0\",\"enc\":\"xchacha20poly1305_ietf\",\"alg\":\"");
+        data.append(from_verkey != null ? "Authcrypt" : "Anoncrypt");
+        data.append("\"}");
         return new Pair<>(data.toString(), cek);
+    }
 
+    /**
+     * Wrap CEK for single recipient
+     *
+     * @return JSON of recipient block. All values are base58/base64url so they need no escaping
+     */
+    String buildRecipient(byte[] target_vk, Key cek, String sender_vk, Key sender_sk) throws SodiumException {
+        Key target_pk = toCurve25519PublicKey(target_vk);
+        byte[] enc_cek;
+        byte[] enc_sender = null;
+        byte[] nonce = null;
+        if (sender_vk != null) {
+            enc_sender = new CryptoAead().cryptoBoxSeal(sender_vk, target_pk);
+            nonce = RandomBuffer.getInstance().nextBytes(Box.NONCEBYTES);
+            enc_cek = new CryptoAead().cryptoBoxAfterNm(cek.getAsBytes(), nonce, sharedKey(new KeyPair(target_pk, sender_sk)));
+        } else {
+            enc_cek = new CryptoAead().cryptoBoxSeal(cek.getAsBytes(), target_pk);
+        }
+        StringBuilder recip = new StringBuilder(256);
+        recip.append("{\"encrypted_key\":\"").append(custom.bytesToB64(enc_cek, true)).append("\",\"header\":{");
+        if (enc_sender != null) {
+            recip.append("\"sender\":\"").append(custom.bytesToB64(enc_sender, true)).append("\",");
+        }
+        recip.append("\"kid\":\"").append(Curve25519Keys.encode(target_vk)).append('"');
+        if (nonce != null) {
+            recip.append(",\"iv\":\"").append(custom.bytesToB64(nonce, true)).append('"');
+        }
+        recip.append("}}");
+        return recip.toString();
+    }
 
+    /**
+     * Wrap CEK for recipients in parallel when their count is not less than threshold
+     *
+     * @param executor  executor for recipients wrapping, null disables parallel mode
+     * @param threshold min count of recipients for parallel mode
+     */
+    public void setPackExecutor(Executor executor, int threshold) {
+        this.packExecutor = executor;
+        this.parallelPackThreshold = threshold;
     }
 
 
@@ -114,6 +233,7 @@ public class Ed25519 {
 
     public DecryptModel locate_pack_recipient_key(List<JSONObject> recipients, KeyPair keyPair) throws SiriusFieldValueError, SodiumException {
         List<String> not_found = new ArrayList<>();
+        String my_vk_b58 = Curve25519Keys.encode(keyPair.getPublicKey().getAsBytes());
         for (JSONObject recip : recipients) {
             if (recip == null || !recip.has("header") || !recip.has("encrypted_key")) {
                 throw new SiriusFieldValueError("Invalid recipient header");
@@ -122,11 +242,11 @@ public class Ed25519 {
             JSONObject headerObj = recip.getJSONObject("header");
             String recip_vk_b58 = headerObj.getString("kid");
 
-            if (!custom.bytesToB58(keyPair.getPublicKey().getAsBytes()).equals(recip_vk_b58)) {
+            if (!my_vk_b58.equals(recip_vk_b58)) {
                 not_found.add(recip_vk_b58);
                 continue;
             }
-            KeyPair convertedKeyPair = LibSodium.getInstance().getLazySodium().convertKeyPairEd25519ToCurve25519(keyPair);
+            KeyPair convertedKeyPair = toCurve25519KeyPair(keyPair);
             byte[] encrypted_key = custom.b64ToBytes(recip.getString("encrypted_key"), true);
             String iv = headerObj.optString("iv");
             String sender = headerObj.optString("sender");
@@ -144,13 +264,10 @@ public class Ed25519 {
             if(nonce!=null && enc_sender!=null){
 
                 sender_vk = new CryptoAead().cryptoBoxSealOpen(enc_sender, convertedKeyPair);
-                byte[] senderBytes = custom.b58ToBytes(new String(sender_vk,StandardCharsets.US_ASCII));
-                Key senderKey = Key.fromBytes(senderBytes);
-                KeyPair senderKeyPair = new KeyPair(senderKey,senderKey);
-                KeyPair senderConvertedKeyPair = LibSodium.getInstance().getLazySodium().convertKeyPairEd25519ToCurve25519(senderKeyPair);
-                Key sender_pk = senderConvertedKeyPair.getPublicKey();
+                byte[] senderBytes = ensureIsBytes(new String(sender_vk,StandardCharsets.US_ASCII));
+                Key sender_pk = toCurve25519PublicKey(senderBytes);
                 KeyPair openKeyPair = new KeyPair(sender_pk,convertedKeyPair.getSecretKey());
-                cek =   new CryptoAead().cryptoBoxOpen(encrypted_key,nonce,openKeyPair);
+                cek = new CryptoAead().cryptoBoxOpenAfterNm(encrypted_key, nonce, sharedKey(openKeyPair));
             }else{
                 sender_vk = null;
                 cek = new CryptoAead().cryptoBoxSealOpen(encrypted_key, convertedKeyPair);
@@ -174,38 +291,12 @@ public class Ed25519 {
             String message, String add_data, Key key
     ) {
 
-        byte[] nonce = LibSodium.getInstance().getLazySodium().randomBytesBuf(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
-        byte[] bytesOutput =  new CryptoAead().encrypt(message, add_data, nonce, key, AEAD.Method.CHACHA20_POLY1305_IETF);
-    //    String outputHex = LibSodium.getInstance().getLazyAaed().encrypt(message, add_data, nonce, key, AEAD.Method.CHACHA20_POLY1305_IETF);
-   //    byte[] outputBytes = LazySodium.toBin(outputHex);
-     //   String output = new String(outputBytes,StandardCharsets.US_ASCII);
-        int mlen = message.length();
-
-        ByteArrayOutputStream bObj = new ByteArrayOutputStream();
-        bObj.reset();
-
-
-        int i=0;
-        for (byte byteOut :bytesOutput ){
-            i++;
-            bObj.write(byteOut);
-            if(i==mlen){
-                break;
-            }
-        }
-        byte[]  ciphertext =   bObj.toByteArray();
-        ByteArrayOutputStream bObj2 = new ByteArrayOutputStream();
-        bObj2.reset();
-        int z=0;
-        for (byte byteOut :bytesOutput ){
-            z++;
-            if(z<=mlen){
-                continue;
-            }
-            bObj2.write(byteOut);
-        }
-        byte[] tag = bObj2.toByteArray();
-        //String tag = output.substring(mlen);
+        byte[] nonce = RandomBuffer.getInstance().nextBytes(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+        byte[] messageBytes = message.getBytes(StandardCharsets.US_ASCII);
+        byte[] additionalData = add_data == null ? null : add_data.getBytes(StandardCharsets.US_ASCII);
+        byte[] bytesOutput = new CryptoAead().encrypt(messageBytes, additionalData, nonce, key);
+        byte[] ciphertext = Arrays.copyOfRange(bytesOutput, 0, messageBytes.length);
+        byte[] tag = Arrays.copyOfRange(bytesOutput, messageBytes.length, bytesOutput.length);
         return new EncryptModel(ciphertext, nonce, tag);
 
     }
@@ -259,24 +350,62 @@ public class Ed25519 {
             toVerKeysBytes.add(to_verkeys);
         }
 
-        byte[] from_verkey = ensureIsBytes(fromVerkey);
-        byte[] from_sigkey = ensureIsBytes(fromSigkey);
+        byte[] from_verkey = fromVerkey != null ? ensureIsBytes(fromVerkey) : null;
+        byte[] from_sigkey = fromSigkey != null ? ensureIsBytes(fromSigkey) : null;
+        return packMessage(message, toVerKeysBytes, from_verkey, from_sigkey);
+    }
+
+    /**
+     * Overload of {@link #packMessage(String, List, String, String)} for keys that are already decoded
+     */
+    public String packMessage(String message,
+                              List<byte[]> toVerkeys,
+                              byte[] from_verkey,
+                              byte[] from_sigkey
+    ) throws SiriusCryptoError, SodiumException {
+        Pair<String, Key> stringKeyPair = prepare_pack_recipient_keys(toVerkeys, from_verkey, from_sigkey);
+        // base64 of recipients is both additional data and "protected" field
+        byte[] recips_b64 = Base64Url.encode(stringKeyPair.first.getBytes(StandardCharsets.US_ASCII));
+        byte[] messageBytes = message.getBytes(StandardCharsets.US_ASCII);
+        byte[] nonce = RandomBuffer.getInstance().nextBytes(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+        byte[] combined = new CryptoAead().encrypt(messageBytes, recips_b64, nonce, stringKeyPair.second);
+        return buildEnvelope(recips_b64, nonce, combined, messageBytes.length);
+    }
 
-        Pair<String, Key> stringKeyPair = prepare_pack_recipient_keys(toVerKeysBytes, from_verkey, from_sigkey);
-        String recips_json = stringKeyPair.first;
-        String recips_b64 = custom.bytesToB64(recips_json.getBytes(StandardCharsets.US_ASCII), true);
+    // Order of fields is the same as JSONObject.toString() produced for the envelope
+    private static final byte[] ENVELOPE_CIPHERTEXT = "{\"ciphertext\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ENVELOPE_PROTECTED = "\",\"protected\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ENVELOPE_TAG = "\",\"tag\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ENVELOPE_IV = "\",\"iv\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ENVELOPE_END = "\"}".getBytes(StandardCharsets.US_ASCII);
 
-        EncryptModel model = encryptPlaintext(message, recips_b64, stringKeyPair.second);
+    /**
+     * Serialize JWE envelope to single buffer, ciphertext and tag are encoded directly from the slices of
+     * AEAD output. Base64url alphabet needs no JSON escaping.
+     */
+    static String buildEnvelope(byte[] recipsB64, byte[] nonce, byte[] combined, int ciphertextLen) {
+        int tagLen = combined.length - ciphertextLen;
+        int size = ENVELOPE_CIPHERTEXT.length + Base64Url.encodedLength(ciphertextLen)
+                + ENVELOPE_PROTECTED.length + recipsB64.length
+                + ENVELOPE_TAG.length + Base64Url.encodedLength(tagLen)
+                + ENVELOPE_IV.length + Base64Url.encodedLength(nonce.length)
+                + ENVELOPE_END.length;
+        byte[] out = new byte[size];
+        int pos = put(ENVELOPE_CIPHERTEXT, out, 0);
+        pos += Base64Url.encode(combined, 0, ciphertextLen, out, pos);
+        pos = put(ENVELOPE_PROTECTED, out, pos);
+        pos = put(recipsB64, out, pos);
+        pos = put(ENVELOPE_TAG, out, pos);
+        pos += Base64Url.encode(combined, ciphertextLen, tagLen, out, pos);
+        pos = put(ENVELOPE_IV, out, pos);
+        pos += Base64Url.encode(nonce, 0, nonce.length, out, pos);
+        put(ENVELOPE_END, out, pos);
+        return new String(out, StandardCharsets.US_ASCII);
+    }
 
-        String nonce64 = custom.bytesToB64(model.nonce, true);
-        String ciphertext64 = custom.bytesToB64(model.ciphertext, true);
-        String tag64 = custom.bytesToB64(model.tag, true);
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("protected", recips_b64);
-        jsonObject.put("iv", nonce64);
-        jsonObject.put("ciphertext", ciphertext64);
-        jsonObject.put("tag", tag64);
-        return jsonObject.toString();
+    private static int put(byte[] src, byte[] dst, int pos) {
+        System.arraycopy(src, 0, dst, pos, src.length);
+        return pos + src.length;
     }
 
 
@@ -300,13 +429,20 @@ public class Ed25519 {
         byte[] my_sigkey = ensureIsBytes(mySigkey);
 
         KeyPair keyPair = new KeyPair(Key.fromBytes(my_verkey), Key.fromBytes(my_sigkey));
+        return unpackMessage(encMessage, keyPair);
+    }
+
+    /**
+     * Overload of {@link #unpackMessage(String, String, String)} for Ed25519 key pair that is already decoded
+     */
+    public UnpackModel unpackMessage(String encMessage, KeyPair keyPair) throws SiriusInvalidType {
         String error = "";
         try {
             error = "Expected dictionary";
             JSONObject encMessJson = new JSONObject(encMessage);
             error = "Invalid packed message";
             String protected_bin = encMessJson.getString("protected");
-            byte[] recips_json = custom.b64ToBytes(protected_bin, true);
+            byte[] recips_json = Base64Url.decode(protected_bin);
             error = "Invalid packed message recipients";
             JSONObject recips_outer = new JSONObject(new String(recips_json));
 
@@ -329,19 +465,14 @@ public class Ed25519 {
                 throw new SiriusFieldValueError("Sender public key not provided for Authcrypt message");
             }
 
-            String chiperText = encMessJson.getString("ciphertext");
-            String ivNonce = encMessJson.getString("iv");
-              String tagTExt =   encMessJson.getString("tag");
-
-            byte[] ciphertext = custom.b64ToBytes(encMessJson.getString("ciphertext"), true);
-            byte[] nonce = custom.b64ToBytes(ivNonce, true);
-            byte[] tag = custom.b64ToBytes(encMessJson.getString("tag"), true);
-
-            byte[] allByteArray = new byte[ciphertext.length + tag.length];
-            ByteBuffer buff = ByteBuffer.wrap(allByteArray);
-            buff.put(ciphertext);
-            buff.put(tag);
-            byte[] combined = buff.array();
+            // ciphertext and tag are decoded directly to the single AEAD input buffer
+            String ciphertext = encMessJson.getString("ciphertext");
+            String tag = encMessJson.getString("tag");
+            byte[] nonce = Base64Url.decode(encMessJson.getString("iv"));
+            int ciphertextLen = Base64Url.decodedLength(ciphertext);
+            byte[] combined = new byte[ciphertextLen + Base64Url.decodedLength(tag)];
+            Base64Url.decode(ciphertext, combined, 0);
+            Base64Url.decode(tag, combined, ciphertextLen);
 
             String message = decryptPlaintext(combined, protected_bin.getBytes(StandardCharsets.US_ASCII),
                     nonce, decryptModel.cek);
@@ -1,14 +1,13 @@
 package com.sirius.sdk.encryption;
 
 import com.goterl.lazycode.lazysodium.exceptions.SodiumException;
+import com.goterl.lazycode.lazysodium.utils.Key;
 import com.goterl.lazycode.lazysodium.utils.KeyPair;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusCryptoError;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidType;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Pairwise static connection compatible with Indy SDK
@@ -19,6 +18,11 @@ public class P2PConnection {
     String fromSigKey;
     String theirVerKey;
     Ed25519 ed25519;
+    // key material is static for the life of connection: decoded once
+    byte[] fromVerkeyBytes;
+    byte[] fromSigKeyBytes;
+    List<byte[]> theirVerKeysBytes;
+    KeyPair keyPair;
     /**
      * @param fromVerkey  verkey for encrypt/decrypt operations
      * @param fromSigKey  sigkey for encrypt/decrypt operations
@@ -29,7 +33,17 @@ public class P2PConnection {
         this.fromSigKey = fromSigKey;
         this.theirVerKey = theirVerKey;
         ed25519 =  new Ed25519();
-
+        fromVerkeyBytes = ed25519.ensureIsBytes(fromVerkey);
+        fromSigKeyBytes = ed25519.ensureIsBytes(fromSigKey);
+        theirVerKeysBytes = Collections.singletonList(ed25519.ensureIsBytes(theirVerKey));
+        keyPair = new KeyPair(Key.fromBytes(fromVerkeyBytes), Key.fromBytes(fromSigKeyBytes));
+        try {
+            // pre-derive Curve25519 keys
+            ed25519.toCurve25519KeyPair(keyPair);
+            ed25519.toCurve25519PublicKey(theirVerKeysBytes.get(0));
+        } catch (SodiumException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -40,10 +54,8 @@ public class P2PConnection {
      */
 
     public String pack(String message) {
-        List<String> toVerKeys = new ArrayList<>();
-        toVerKeys.add(theirVerKey);
         try {
-            return ed25519.packMessage(message, toVerKeys, fromVerkey, fromSigKey);
+            return ed25519.packMessage(message, theirVerKeysBytes, fromVerkeyBytes, fromSigKeyBytes);
         } catch (SiriusCryptoError siriusCryptoError) {
             siriusCryptoError.printStackTrace();
         } catch (SodiumException e) {
@@ -63,7 +75,7 @@ public class P2PConnection {
      */
     public String unpack(String encMessage) {
         try {
-            UnpackModel unpackModel = ed25519.unpackMessage(encMessage,fromVerkey,fromSigKey);
+            UnpackModel unpackModel = ed25519.unpackMessage(encMessage, keyPair);
             return unpackModel.getMessage();
         } catch (SiriusInvalidType siriusInvalidType) {
             siriusInvalidType.printStackTrace();
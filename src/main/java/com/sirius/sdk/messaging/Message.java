@@ -9,6 +9,7 @@ import com.sirius.sdk.base.JsonSerializable;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidMessage;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidMessageClass;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidType;
+import com.sirius.sdk.naclJava.RandomBuffer;
 import com.sirius.sdk.utils.GsonUtils;
 import com.sirius.sdk.utils.Pair;
 import com.sirius.sdk.utils.Triple;
@@ -180,7 +181,7 @@ public class Message implements JsonSerializable<Message> {
     }
 
     public static String generateId() {
-        return UUID.randomUUID().toString();
+        return RandomBuffer.getInstance().nextUuid();
     }
 
     @Override
@@ -11,7 +11,6 @@ import com.sirius.sdk.errors.sirius_exceptions.SiriusFieldValueError;
 import com.sirius.sdk.utils.Base58;
 
 
-import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 
 public class CryptoAead {
@@ -27,9 +26,8 @@ public class CryptoAead {
         byte[] keyBytes = k.getAsBytes();
         byte[] messageBytes;
         if (method.equals(com.goterl.lazycode.lazysodium.interfaces.AEAD.Method.CHACHA20_POLY1305_IETF)) {
-            messageBytes = new byte[cipher.length - 16];
-            long[] mlen = new long[messageBytes.length];
-            LibSodium.getInstance().getNativeAaed().cryptoAeadChaCha20Poly1305IetfDecrypt(messageBytes, null, nSec, cipher, (long) cipher.length, additionalDataBytes, additionalBytesLen, nPub, keyBytes);
+            messageBytes = new byte[cipher.length - AEAD.CHACHA20POLY1305_IETF_ABYTES];
+            LibSodium.getInstance().getPrimitives().aeadChaCha20Poly1305IetfDecrypt(messageBytes, cipher, (long) cipher.length, additionalDataBytes, additionalBytesLen, nPub, keyBytes);
             return messageBytes;
         }
         return null;
@@ -40,12 +38,25 @@ public class CryptoAead {
     public byte[] cryptoBoxSeal(byte[] messageBytes, Key publicKey) throws SodiumException {
         byte[] keyBytes = publicKey.getAsBytes();
         byte[] cipher = new byte[48 + messageBytes.length];
-        if (!LibSodium.getInstance().getNativeBox().cryptoBoxSeal(cipher, messageBytes, (long)messageBytes.length, keyBytes)) {
+        if (!LibSodium.getInstance().getPrimitives().boxSeal(cipher, messageBytes, (long)messageBytes.length, keyBytes)) {
             throw new SodiumException("Could not encrypt message.");
         } else {
             return cipher;
         }
     }
+    /**
+     * Encrypt with CHACHA20_POLY1305_IETF
+     *
+     * @return ciphertext followed by 16 bytes tag in single array
+     */
+    public byte[] encrypt(byte[] messageBytes, byte[] additionalData, byte[] nPub, Key k) {
+        byte[] additionalDataBytes = additionalData == null ? new byte[0] : additionalData;
+        byte[] cipherBytes = new byte[messageBytes.length + AEAD.CHACHA20POLY1305_IETF_ABYTES];
+        LibSodium.getInstance().getPrimitives().aeadChaCha20Poly1305IetfEncrypt(cipherBytes, messageBytes, messageBytes.length,
+                additionalDataBytes, additionalDataBytes.length, nPub, k.getAsBytes());
+        return cipherBytes;
+    }
+
     public byte[] encrypt(String m, String additionalData, byte[] nPub, Key k, com.goterl.lazycode.lazysodium.interfaces.AEAD.Method method) {
         return this.encrypt(m, additionalData, (byte[])null, nPub, k, method);
     }
@@ -65,74 +76,71 @@ public class CryptoAead {
     }
 
 
+    /**
+     * crypto_box without zero padding: result is MAC followed by ciphertext, the same bytes as
+     * crypto_box output without 16 leading zero bytes
+     */
     public byte[] cryptoBox(byte[] messageBytes, byte[] nonce, KeyPair keyPair) throws SodiumException {
-        ByteArrayOutputStream bObj = new ByteArrayOutputStream();
-        bObj.reset();
-        byte[] cipherBytesPadding = new byte[32];
-        for (byte cipherBytesPadding1 :cipherBytesPadding ){
-            bObj.write(cipherBytesPadding1);
-        }
-        for (byte mesByte : messageBytes ){
-            bObj.write(mesByte);
-        }
-        byte[] cipherBytes = new byte[32 + messageBytes.length];
-        byte[] messageBytesPadded = bObj.toByteArray();
-        boolean res = LibSodium.getInstance().getNativeBox().cryptoBox(cipherBytes, messageBytesPadded, (long)messageBytesPadded.length, nonce, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
+        byte[] cipherBytes = new byte[Box.MACBYTES + messageBytes.length];
+        boolean res = LibSodium.getInstance().getPrimitives().boxEasy(cipherBytes, messageBytes, (long) messageBytes.length, nonce, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
         if (!res) {
             throw new SodiumException("Could not encrypt your message.");
-        } else {
-            ByteArrayOutputStream bObj2 = new ByteArrayOutputStream();
-            bObj2.reset();
-            int i=0;
-            for (byte mesByte : cipherBytes ){
-                if(i<=15){
-                    i++;
-                    continue;
-                }
-                bObj2.write(mesByte);
-
-            }
-            byte[] message16 = bObj2.toByteArray();
-            return message16;
-
-            //return new String(cipherBytes);
         }
+        return cipherBytes;
     }
 
+    /**
+     * Open message made by {@link #cryptoBox(byte[], byte[], KeyPair)}
+     */
     public byte[] cryptoBoxOpen(byte[] cipherText, byte[] nonce, KeyPair keyPair) throws SodiumException {
-        byte[] message = new byte[cipherText.length + 16];
-        byte[] cipherBytesPadding = new byte[16];
-        ByteArrayOutputStream bObj = new ByteArrayOutputStream();
-        bObj.reset();
+        if (cipherText.length < Box.MACBYTES) {
+            throw new SodiumException("Could not decrypt your message.");
+        }
+        byte[] message = new byte[cipherText.length - Box.MACBYTES];
+        boolean res = LibSodium.getInstance().getPrimitives().boxOpenEasy(message, cipherText, (long) cipherText.length, nonce, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
+        if (!res) {
+            throw new SodiumException("Could not decrypt your message.");
+        }
+        return message;
+    }
 
-        for (byte cipherBytesPadding1 :cipherBytesPadding ){
-            bObj.write(cipherBytesPadding1);
+    /**
+     * Precompute crypto_box shared key of (their public key, my secret key)
+     */
+    public byte[] cryptoBoxBeforeNm(KeyPair keyPair) throws SodiumException {
+        byte[] sharedKey = new byte[Box.BEFORENMBYTES];
+        boolean res = LibSodium.getInstance().getPrimitives().boxBeforeNm(sharedKey, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
+        if (!res) {
+            throw new SodiumException("Could not compute shared key.");
         }
-        for (byte mesByte : cipherText ){
-            bObj.write(mesByte);
+        return sharedKey;
+    }
+
+    /**
+     * The same as {@link #cryptoBox(byte[], byte[], KeyPair)} with precomputed shared key
+     */
+    public byte[] cryptoBoxAfterNm(byte[] messageBytes, byte[] nonce, byte[] sharedKey) throws SodiumException {
+        byte[] cipherBytes = new byte[Box.MACBYTES + messageBytes.length];
+        boolean res = LibSodium.getInstance().getPrimitives().boxEasyAfterNm(cipherBytes, messageBytes, (long) messageBytes.length, nonce, sharedKey);
+        if (!res) {
+            throw new SodiumException("Could not encrypt your message.");
         }
-        byte[] padded = bObj.toByteArray();
+        return cipherBytes;
+    }
 
-        boolean res =  LibSodium.getInstance().getNativeBox().cryptoBoxOpen(message, padded, (long)padded.length, nonce, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
+    /**
+     * The same as {@link #cryptoBoxOpen(byte[], byte[], KeyPair)} with precomputed shared key
+     */
+    public byte[] cryptoBoxOpenAfterNm(byte[] cipherText, byte[] nonce, byte[] sharedKey) throws SodiumException {
+        if (cipherText.length < Box.MACBYTES) {
+            throw new SodiumException("Could not decrypt your message.");
+        }
+        byte[] message = new byte[cipherText.length - Box.MACBYTES];
+        boolean res = LibSodium.getInstance().getPrimitives().boxOpenEasyAfterNm(message, cipherText, (long) cipherText.length, nonce, sharedKey);
         if (!res) {
             throw new SodiumException("Could not decrypt your message.");
-        } else {
-           // new byte[32]{message}
-            ByteArrayOutputStream bObj2 = new ByteArrayOutputStream();
-            bObj2.reset();
-            int i=0;
-            for (byte mesByte : message ){
-                if(i<=31){
-                    i++;
-                    continue;
-                }
-                bObj2.write(mesByte);
-
-            }
-
-            byte[] messageAfter32 = bObj2.toByteArray();
-            return messageAfter32;
         }
+        return message;
     }
 
     public byte[] cryptoBoxSeal(String messageString, Key publicKey) throws SodiumException {
@@ -141,7 +149,7 @@ public class CryptoAead {
         int _mlen = message.length;
         int _clen = 48 + _mlen;
         byte[] ciphertext = new byte[_clen];
-        if (!LibSodium.getInstance().getNativeBox().cryptoBoxSeal(ciphertext, message, (long)_mlen, keyBytes)) {
+        if (!LibSodium.getInstance().getPrimitives().boxSeal(ciphertext, message, (long)_mlen, keyBytes)) {
             throw new SodiumException("Could not encrypt message.");
         } else {
             return ciphertext;
@@ -154,7 +162,7 @@ public class CryptoAead {
         int _mlen = _clen - 48;
 
         byte[] plaintext = new byte[_mlen];
-        boolean res = LibSodium.getInstance().getNativeBox().cryptoBoxSealOpen(plaintext, cipherText, (long)_clen, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
+        boolean res = LibSodium.getInstance().getPrimitives().boxSealOpen(plaintext, cipherText, (long)_clen, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
         if (!res) {
             throw new SodiumException("Could not decrypt your message.");
         } else {
@@ -168,7 +176,7 @@ public class CryptoAead {
         int _mlen = _clen - 48;
 
         byte[] plaintext = new byte[_mlen];
-        boolean res = LibSodium.getInstance().getNativeBox().cryptoBoxSealOpen(plaintext, cipherText, (long)_clen, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
+        boolean res = LibSodium.getInstance().getPrimitives().boxSealOpen(plaintext, cipherText, (long)_clen, keyPair.getPublicKey().getAsBytes(), keyPair.getSecretKey().getAsBytes());
         if (!res) {
             throw new SodiumException("Could not decrypt your message.");
         } else {
@@ -176,5 +184,21 @@ public class CryptoAead {
         }
     }
 
+    /**
+     * Detached Ed25519 signature of message
+     */
+    public byte[] cryptoSignDetached(byte[] message, byte[] secretKey) throws SodiumException {
+        byte[] signature = new byte[Sign.BYTES];
+        if (!LibSodium.getInstance().getPrimitives().signDetached(signature, message, (long) message.length, secretKey)) {
+            throw new SodiumException("Could not sign your message.");
+        }
+        return signature;
+    }
 
-}
\ No newline at end of file
+    /**
+     * Verify detached Ed25519 signature
+     */
+    public boolean cryptoSignVerifyDetached(byte[] signature, byte[] message, byte[] publicKey) {
+        return LibSodium.getInstance().getPrimitives().signVerifyDetached(signature, message, (long) message.length, publicKey);
+    }
+}
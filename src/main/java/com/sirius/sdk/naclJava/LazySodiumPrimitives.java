@@ -0,0 +1,90 @@
+package com.sirius.sdk.naclJava;
+
+import com.goterl.lazycode.lazysodium.LazySodiumJava;
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+
+/**
+ * Primitives called via LazySodium wrappers of {@link com.goterl.lazycode.lazysodium.SodiumJava}
+ */
+public class LazySodiumPrimitives implements SodiumPrimitives {
+
+    LazySodiumJava lazySodium;
+
+    public LazySodiumPrimitives(LazySodiumJava lazySodium) {
+        this.lazySodium = lazySodium;
+    }
+
+    @Override
+    public boolean aeadChaCha20Poly1305IetfEncrypt(byte[] c, byte[] m, long mLen, byte[] ad, long adLen, byte[] nPub, byte[] k) {
+        return lazySodium.cryptoAeadChaCha20Poly1305IetfEncrypt(c, null, m, mLen, ad, adLen, null, nPub, k);
+    }
+
+    @Override
+    public boolean aeadChaCha20Poly1305IetfDecrypt(byte[] m, byte[] c, long cLen, byte[] ad, long adLen, byte[] nPub, byte[] k) {
+        return lazySodium.cryptoAeadChaCha20Poly1305IetfDecrypt(m, null, null, c, cLen, ad, adLen, nPub, k);
+    }
+
+    @Override
+    public boolean boxEasy(byte[] c, byte[] m, long mLen, byte[] nonce, byte[] pk, byte[] sk) {
+        return lazySodium.cryptoBoxEasy(c, m, mLen, nonce, pk, sk);
+    }
+
+    @Override
+    public boolean boxOpenEasy(byte[] m, byte[] c, long cLen, byte[] nonce, byte[] pk, byte[] sk) {
+        return lazySodium.cryptoBoxOpenEasy(m, c, cLen, nonce, pk, sk);
+    }
+
+    @Override
+    public boolean boxBeforeNm(byte[] k, byte[] pk, byte[] sk) {
+        return lazySodium.cryptoBoxBeforeNm(k, pk, sk);
+    }
+
+    @Override
+    public boolean boxEasyAfterNm(byte[] c, byte[] m, long mLen, byte[] nonce, byte[] k) {
+        return lazySodium.cryptoBoxEasyAfterNm(c, m, mLen, nonce, k);
+    }
+
+    @Override
+    public boolean boxOpenEasyAfterNm(byte[] m, byte[] c, long cLen, byte[] nonce, byte[] k) {
+        return lazySodium.cryptoBoxOpenEasyAfterNm(m, c, cLen, nonce, k);
+    }
+
+    @Override
+    public boolean boxSeal(byte[] c, byte[] m, long mLen, byte[] pk) {
+        return lazySodium.cryptoBoxSeal(c, m, mLen, pk);
+    }
+
+    @Override
+    public boolean boxSealOpen(byte[] m, byte[] c, long cLen, byte[] pk, byte[] sk) {
+        return lazySodium.cryptoBoxSealOpen(m, c, cLen, pk, sk);
+    }
+
+    @Override
+    public boolean signDetached(byte[] sig, byte[] m, long mLen, byte[] sk) {
+        return lazySodium.cryptoSignDetached(sig, m, mLen, sk);
+    }
+
+    @Override
+    public boolean signVerifyDetached(byte[] sig, byte[] m, long mLen, byte[] pk) {
+        return lazySodium.cryptoSignVerifyDetached(sig, m, (int) mLen, pk);
+    }
+
+    @Override
+    public boolean convertPublicKeyEd25519ToCurve25519(byte[] curve, byte[] ed) {
+        return lazySodium.convertPublicKeyEd25519ToCurve25519(curve, ed);
+    }
+
+    @Override
+    public boolean convertSecretKeyEd25519ToCurve25519(byte[] curve, byte[] ed) {
+        return lazySodium.convertSecretKeyEd25519ToCurve25519(curve, ed);
+    }
+
+    @Override
+    public void randomBytes(Pointer buffer, int size) {
+        byte[] bytes = lazySodium.randomBytesBuf(size);
+        buffer.write(0, bytes, 0, size);
+        Arrays.fill(bytes, (byte) 0);
+    }
+}
@@ -1,14 +1,34 @@
 package com.sirius.sdk.naclJava;
 
+import co.libly.resourceloader.SharedLibraryLoader;
 import com.goterl.lazycode.lazysodium.LazySodiumJava;
 import com.goterl.lazycode.lazysodium.SodiumJava;
 import com.goterl.lazycode.lazysodium.interfaces.*;
 
 import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class LibSodium {
 
+    /**
+     * Binding of primitives returned by {@link #getPrimitives()}
+     */
+    public enum Binding {
+        /**
+         * Calls via LazySodium wrappers
+         */
+        LAZY_SODIUM,
+        /**
+         * Direct-mapped static natives of {@link SodiumDirect}
+         */
+        DIRECT
+    }
+
     private static volatile LibSodium mInstance;
+    private static volatile Binding binding = Binding.DIRECT;
+
+    Logger log = Logger.getLogger(LibSodium.class.getName());
 
     public LazySodiumJava getLazySodium() {
         return lazySodium;
@@ -81,9 +101,50 @@ public class LibSodium {
         return (KeyDerivation.Lazy) getLazySodium();
     }
     private LazySodiumJava lazySodium;
+    private SodiumPrimitives lazyPrimitives;
+    private volatile SodiumPrimitives directPrimitives;
 
     private LibSodium() {
         lazySodium = new LazySodiumJava(new SodiumJava(), StandardCharsets.US_ASCII);
+        lazyPrimitives = new LazySodiumPrimitives(lazySodium);
+    }
+
+    /**
+     * Primitives of pack/unpack path in the current binding mode.
+     * If direct mapping is not available primitives are called via LazySodium.
+     */
+    public SodiumPrimitives getPrimitives() {
+        if (binding == Binding.DIRECT) {
+            SodiumPrimitives direct = directPrimitives;
+            if (direct == null) {
+                direct = registerDirect();
+            }
+            return direct;
+        }
+        return lazyPrimitives;
+    }
+
+    private synchronized SodiumPrimitives registerDirect() {
+        if (directPrimitives == null) {
+            try {
+                directPrimitives = new SodiumDirect(SharedLibraryLoader.get().getLibraryPath());
+            } catch (Throwable e) {
+                log.log(Level.WARNING, "Direct mapping of sodium is not available, LazySodium is used: " + e.getMessage());
+                directPrimitives = lazyPrimitives;
+            }
+        }
+        return directPrimitives;
+    }
+
+    /**
+     * Switch binding of primitives for all callers
+     */
+    public static void setBinding(Binding mode) {
+        binding = mode;
+    }
+
+    public static Binding getBinding() {
+        return binding;
     }
 
     public static LibSodium getInstance() {
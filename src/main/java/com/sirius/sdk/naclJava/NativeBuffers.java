@@ -0,0 +1,74 @@
+package com.sirius.sdk.naclJava;
+
+import com.sun.jna.Memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-thread scratch native memory for sodium calls: arguments are written to the scratch buffer once
+ * and passed as pointers, so JNA does not copy every array argument to native memory and back.
+ * <p>
+ * Scratch buffer grows by powers of two up to max pooled size, larger requests get temporary memory.
+ * Buffer is zeroed on release because it holds keys and plaintexts.
+ */
+public class NativeBuffers {
+
+    public static final int DEF_MAX_POOLED_SIZE = 1 << 20;
+    static final int MIN_SIZE = 4096;
+
+    static volatile boolean enabled = true;
+    static volatile int maxPooledSize = DEF_MAX_POOLED_SIZE;
+    static final ThreadLocal<Memory> scratch = new ThreadLocal<>();
+    static final AtomicLong allocations = new AtomicLong(0);
+
+    /**
+     * Native memory of at least size bytes. It must be released by {@link #release(Memory, long)}
+     * in the same thread and must not be retained after release.
+     */
+    public static Memory acquire(long size) {
+        if (size > maxPooledSize) {
+            allocations.incrementAndGet();
+            return new Memory(Math.max(size, 1));
+        }
+        Memory memory = scratch.get();
+        if (memory == null || memory.size() < size) {
+            long capacity = MIN_SIZE;
+            while (capacity < size) {
+                capacity <<= 1;
+            }
+            memory = new Memory(capacity);
+            scratch.set(memory);
+            allocations.incrementAndGet();
+        }
+        return memory;
+    }
+
+    /**
+     * Zero first used bytes of memory
+     */
+    public static void release(Memory memory, long used) {
+        memory.clear(Math.min(used, memory.size()));
+    }
+
+    /**
+     * Enable or disable use of scratch buffers by {@link SodiumDirect} array methods
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setMaxPooledSize(int size) {
+        maxPooledSize = size;
+    }
+
+    /**
+     * Count of native memory allocations made by the scratch buffers
+     */
+    public static long getAllocationsCount() {
+        return allocations.get();
+    }
+}
@@ -0,0 +1,137 @@
+package com.sirius.sdk.naclJava;
+
+import com.goterl.lazycode.lazysodium.utils.Key;
+import com.sun.jna.Memory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Source of nonces, keys and ids: random bytes are generated by randombytes_buf into large native buffer
+ * in one call and handed out from it. While one buffer is consumed the other one is refilled in background.
+ * <p>
+ * Handed out bytes are zeroed in the buffer.
+ */
+public class RandomBuffer {
+
+    public static final int DEF_BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static volatile RandomBuffer instance;
+
+    Logger log = Logger.getLogger(RandomBuffer.class.getName());
+    final int size;
+    final Object lock = new Object();
+    Memory current;
+    Memory next;
+    int position;
+    Future<?> refill;
+    ExecutorService refiller;
+
+    public RandomBuffer(int size) {
+        this.size = size;
+        this.current = new Memory(size);
+        this.next = new Memory(size);
+        this.refiller = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "RandomBuffer-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fill(current);
+        refill = refiller.submit(() -> fill(next));
+    }
+
+    public static RandomBuffer getInstance() {
+        if (instance == null) {
+            synchronized (RandomBuffer.class) {
+                if (instance == null) {
+                    instance = new RandomBuffer(DEF_BUFFER_SIZE);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Fill slice of array with random bytes
+     */
+    public void nextBytes(byte[] bytes, int offset, int length) {
+        if (length > size) {
+            Memory memory = new Memory(length);
+            fill(memory);
+            memory.read(0, bytes, offset, length);
+            memory.clear();
+            return;
+        }
+        synchronized (lock) {
+            while (length > 0) {
+                if (position == size) {
+                    swap();
+                }
+                int count = Math.min(length, size - position);
+                current.read(position, bytes, offset, count);
+                current.setMemory(position, count, (byte) 0);
+                position += count;
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+
+    public byte[] nextBytes(int length) {
+        byte[] bytes = new byte[length];
+        nextBytes(bytes, 0, length);
+        return bytes;
+    }
+
+    /**
+     * Random symmetric key, the same as made by *_keygen functions of sodium
+     */
+    public Key nextKey(int length) {
+        return Key.fromBytes(nextBytes(length));
+    }
+
+    /**
+     * Random (version 4) UUID string
+     */
+    public String nextUuid() {
+        byte[] bytes = new byte[16];
+        nextBytes(bytes, 0, bytes.length);
+        bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40);
+        bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80);
+        char[] chars = new char[36];
+        int c = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (i == 4 || i == 6 || i == 8 || i == 10) {
+                chars[c++] = '-';
+            }
+            chars[c++] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[c++] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    private void swap() {
+        try {
+            refill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fill(next);
+        } catch (ExecutionException e) {
+            log.log(Level.WARNING, "Background refill of random buffer failed, buffer is refilled in place", e.getCause());
+            fill(next);
+        }
+        Memory consumed = current;
+        current = next;
+        next = consumed;
+        position = 0;
+        refill = refiller.submit(() -> fill(consumed));
+    }
+
+    private void fill(Memory memory) {
+        LibSodium.getInstance().getPrimitives().randomBytes(memory, (int) memory.size());
+    }
+}
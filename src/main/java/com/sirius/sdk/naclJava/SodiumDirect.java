@@ -0,0 +1,271 @@
+package com.sirius.sdk.naclJava;
+
+import com.goterl.lazycode.lazysodium.interfaces.AEAD;
+import com.goterl.lazycode.lazysodium.interfaces.Box;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Direct-mapped bindings of sodium primitives: static native methods are registered by {@link Native#register(Class, String)},
+ * so calls skip LazySodium wrappers and dispatch of instance natives of {@link com.goterl.lazycode.lazysodium.Sodium}.
+ * Methods are bound to the library already loaded by SodiumJava.
+ * <p>
+ * Array arguments of aead and afternm box calls are passed via {@link NativeBuffers} scratch memory,
+ * overloads taking {@link Pointer} work on native memory of the caller.
+ */
+public class SodiumDirect implements SodiumPrimitives {
+
+    private static boolean registered = false;
+
+    static native int sodium_init();
+
+    static native int crypto_aead_chacha20poly1305_ietf_encrypt(byte[] c, long[] cLen, byte[] m, long mLen,
+                                                                 byte[] ad, long adLen, byte[] nSec, byte[] nPub, byte[] k);
+
+    static native int crypto_aead_chacha20poly1305_ietf_decrypt(byte[] m, long[] mLen, byte[] nSec, byte[] c, long cLen,
+                                                                 byte[] ad, long adLen, byte[] nPub, byte[] k);
+
+    static native int crypto_aead_chacha20poly1305_ietf_encrypt(Pointer c, Pointer cLen, Pointer m, long mLen,
+                                                                 Pointer ad, long adLen, Pointer nSec, Pointer nPub, Pointer k);
+
+    static native int crypto_aead_chacha20poly1305_ietf_decrypt(Pointer m, Pointer mLen, Pointer nSec, Pointer c, long cLen,
+                                                                 Pointer ad, long adLen, Pointer nPub, Pointer k);
+
+    static native int crypto_box_easy_afternm(Pointer c, Pointer m, long mLen, Pointer nonce, Pointer k);
+
+    static native int crypto_box_open_easy_afternm(Pointer m, Pointer c, long cLen, Pointer nonce, Pointer k);
+
+    static native void randombytes_buf(Pointer buffer, int size);
+
+    static native int crypto_box_easy(byte[] c, byte[] m, long mLen, byte[] nonce, byte[] pk, byte[] sk);
+
+    static native int crypto_box_open_easy(byte[] m, byte[] c, long cLen, byte[] nonce, byte[] pk, byte[] sk);
+
+    static native int crypto_box_beforenm(byte[] k, byte[] pk, byte[] sk);
+
+    static native int crypto_box_easy_afternm(byte[] c, byte[] m, long mLen, byte[] nonce, byte[] k);
+
+    static native int crypto_box_open_easy_afternm(byte[] m, byte[] c, long cLen, byte[] nonce, byte[] k);
+
+    static native int crypto_box_seal(byte[] c, byte[] m, long mLen, byte[] pk);
+
+    static native int crypto_box_seal_open(byte[] m, byte[] c, long cLen, byte[] pk, byte[] sk);
+
+    static native int crypto_sign_detached(byte[] sig, long[] sigLen, byte[] m, long mLen, byte[] sk);
+
+    static native int crypto_sign_verify_detached(byte[] sig, byte[] m, long mLen, byte[] pk);
+
+    static native int crypto_sign_ed25519_pk_to_curve25519(byte[] curve, byte[] ed);
+
+    static native int crypto_sign_ed25519_sk_to_curve25519(byte[] curve, byte[] ed);
+
+    /**
+     * Register native methods in the library
+     *
+     * @param libraryPath path or name of loaded sodium library
+     */
+    public SodiumDirect(String libraryPath) {
+        synchronized (SodiumDirect.class) {
+            if (!registered) {
+                Native.register(SodiumDirect.class, libraryPath);
+                if (sodium_init() == -1) {
+                    throw new IllegalStateException("Sodium library could not be initialised properly.");
+                }
+                registered = true;
+            }
+        }
+    }
+
+    @Override
+    public boolean aeadChaCha20Poly1305IetfEncrypt(byte[] c, byte[] m, long mLen, byte[] ad, long adLen, byte[] nPub, byte[] k) {
+        if (!NativeBuffers.isEnabled()) {
+            return crypto_aead_chacha20poly1305_ietf_encrypt(c, null, m, mLen, ad, adLen, null, nPub, k) == 0;
+        }
+        long cLen = mLen + AEAD.CHACHA20POLY1305_IETF_ABYTES;
+        long size = k.length + nPub.length + adLen + mLen + cLen;
+        Memory buffer = NativeBuffers.acquire(size);
+        try {
+            long offset = 0;
+            Pointer kPtr = put(buffer, offset, k, k.length);
+            offset += k.length;
+            Pointer nPubPtr = put(buffer, offset, nPub, nPub.length);
+            offset += nPub.length;
+            Pointer adPtr = ad == null ? null : put(buffer, offset, ad, adLen);
+            offset += adLen;
+            Pointer mPtr = put(buffer, offset, m, mLen);
+            offset += mLen;
+            Pointer cPtr = at(buffer, offset);
+            if (!aeadChaCha20Poly1305IetfEncrypt(cPtr, mPtr, mLen, adPtr, adLen, nPubPtr, kPtr)) {
+                return false;
+            }
+            cPtr.read(0, c, 0, (int) cLen);
+            return true;
+        } finally {
+            NativeBuffers.release(buffer, size);
+        }
+    }
+
+    @Override
+    public boolean aeadChaCha20Poly1305IetfDecrypt(byte[] m, byte[] c, long cLen, byte[] ad, long adLen, byte[] nPub, byte[] k) {
+        if (!NativeBuffers.isEnabled() || cLen < AEAD.CHACHA20POLY1305_IETF_ABYTES) {
+            return crypto_aead_chacha20poly1305_ietf_decrypt(m, null, null, c, cLen, ad, adLen, nPub, k) == 0;
+        }
+        long mLen = cLen - AEAD.CHACHA20POLY1305_IETF_ABYTES;
+        long size = k.length + nPub.length + adLen + cLen + mLen;
+        Memory buffer = NativeBuffers.acquire(size);
+        try {
+            long offset = 0;
+            Pointer kPtr = put(buffer, offset, k, k.length);
+            offset += k.length;
+            Pointer nPubPtr = put(buffer, offset, nPub, nPub.length);
+            offset += nPub.length;
+            Pointer adPtr = ad == null ? null : put(buffer, offset, ad, adLen);
+            offset += adLen;
+            Pointer cPtr = put(buffer, offset, c, cLen);
+            offset += cLen;
+            Pointer mPtr = at(buffer, offset);
+            if (!aeadChaCha20Poly1305IetfDecrypt(mPtr, cPtr, cLen, adPtr, adLen, nPubPtr, kPtr)) {
+                return false;
+            }
+            mPtr.read(0, m, 0, (int) mLen);
+            return true;
+        } finally {
+            NativeBuffers.release(buffer, size);
+        }
+    }
+
+    /**
+     * Encrypt message placed in native memory, ciphertext followed by tag is written to c
+     */
+    public boolean aeadChaCha20Poly1305IetfEncrypt(Pointer c, Pointer m, long mLen, Pointer ad, long adLen, Pointer nPub, Pointer k) {
+        return crypto_aead_chacha20poly1305_ietf_encrypt(c, null, m, mLen, ad, adLen, null, nPub, k) == 0;
+    }
+
+    /**
+     * Decrypt ciphertext followed by tag placed in native memory, message is written to m
+     */
+    public boolean aeadChaCha20Poly1305IetfDecrypt(Pointer m, Pointer c, long cLen, Pointer ad, long adLen, Pointer nPub, Pointer k) {
+        return crypto_aead_chacha20poly1305_ietf_decrypt(m, null, null, c, cLen, ad, adLen, nPub, k) == 0;
+    }
+
+    @Override
+    public boolean boxEasy(byte[] c, byte[] m, long mLen, byte[] nonce, byte[] pk, byte[] sk) {
+        return crypto_box_easy(c, m, mLen, nonce, pk, sk) == 0;
+    }
+
+    @Override
+    public boolean boxOpenEasy(byte[] m, byte[] c, long cLen, byte[] nonce, byte[] pk, byte[] sk) {
+        return crypto_box_open_easy(m, c, cLen, nonce, pk, sk) == 0;
+    }
+
+    @Override
+    public boolean boxBeforeNm(byte[] k, byte[] pk, byte[] sk) {
+        return crypto_box_beforenm(k, pk, sk) == 0;
+    }
+
+    @Override
+    public boolean boxEasyAfterNm(byte[] c, byte[] m, long mLen, byte[] nonce, byte[] k) {
+        if (!NativeBuffers.isEnabled()) {
+            return crypto_box_easy_afternm(c, m, mLen, nonce, k) == 0;
+        }
+        long cLen = mLen + Box.MACBYTES;
+        long size = k.length + nonce.length + mLen + cLen;
+        Memory buffer = NativeBuffers.acquire(size);
+        try {
+            Pointer kPtr = put(buffer, 0, k, k.length);
+            Pointer noncePtr = put(buffer, k.length, nonce, nonce.length);
+            Pointer mPtr = put(buffer, k.length + nonce.length, m, mLen);
+            Pointer cPtr = at(buffer, k.length + nonce.length + mLen);
+            if (!boxEasyAfterNm(cPtr, mPtr, mLen, noncePtr, kPtr)) {
+                return false;
+            }
+            cPtr.read(0, c, 0, (int) cLen);
+            return true;
+        } finally {
+            NativeBuffers.release(buffer, size);
+        }
+    }
+
+    @Override
+    public boolean boxOpenEasyAfterNm(byte[] m, byte[] c, long cLen, byte[] nonce, byte[] k) {
+        if (!NativeBuffers.isEnabled() || cLen < Box.MACBYTES) {
+            return crypto_box_open_easy_afternm(m, c, cLen, nonce, k) == 0;
+        }
+        long mLen = cLen - Box.MACBYTES;
+        long size = k.length + nonce.length + cLen + mLen;
+        Memory buffer = NativeBuffers.acquire(size);
+        try {
+            Pointer kPtr = put(buffer, 0, k, k.length);
+            Pointer noncePtr = put(buffer, k.length, nonce, nonce.length);
+            Pointer cPtr = put(buffer, k.length + nonce.length, c, cLen);
+            Pointer mPtr = at(buffer, k.length + nonce.length + cLen);
+            if (!boxOpenEasyAfterNm(mPtr, cPtr, cLen, noncePtr, kPtr)) {
+                return false;
+            }
+            mPtr.read(0, m, 0, (int) mLen);
+            return true;
+        } finally {
+            NativeBuffers.release(buffer, size);
+        }
+    }
+
+    /**
+     * The same as {@link #boxEasyAfterNm(byte[], byte[], long, byte[], byte[])} for arguments placed in native memory
+     */
+    public boolean boxEasyAfterNm(Pointer c, Pointer m, long mLen, Pointer nonce, Pointer k) {
+        return crypto_box_easy_afternm(c, m, mLen, nonce, k) == 0;
+    }
+
+    /**
+     * The same as {@link #boxOpenEasyAfterNm(byte[], byte[], long, byte[], byte[])} for arguments placed in native memory
+     */
+    public boolean boxOpenEasyAfterNm(Pointer m, Pointer c, long cLen, Pointer nonce, Pointer k) {
+        return crypto_box_open_easy_afternm(m, c, cLen, nonce, k) == 0;
+    }
+
+    @Override
+    public boolean boxSeal(byte[] c, byte[] m, long mLen, byte[] pk) {
+        return crypto_box_seal(c, m, mLen, pk) == 0;
+    }
+
+    @Override
+    public boolean boxSealOpen(byte[] m, byte[] c, long cLen, byte[] pk, byte[] sk) {
+        return crypto_box_seal_open(m, c, cLen, pk, sk) == 0;
+    }
+
+    @Override
+    public boolean signDetached(byte[] sig, byte[] m, long mLen, byte[] sk) {
+        return crypto_sign_detached(sig, null, m, mLen, sk) == 0;
+    }
+
+    @Override
+    public boolean signVerifyDetached(byte[] sig, byte[] m, long mLen, byte[] pk) {
+        return crypto_sign_verify_detached(sig, m, mLen, pk) == 0;
+    }
+
+    @Override
+    public boolean convertPublicKeyEd25519ToCurve25519(byte[] curve, byte[] ed) {
+        return crypto_sign_ed25519_pk_to_curve25519(curve, ed) == 0;
+    }
+
+    @Override
+    public boolean convertSecretKeyEd25519ToCurve25519(byte[] curve, byte[] ed) {
+        return crypto_sign_ed25519_sk_to_curve25519(curve, ed) == 0;
+    }
+
+    @Override
+    public void randomBytes(Pointer buffer, int size) {
+        randombytes_buf(buffer, size);
+    }
+
+    private static Pointer put(Memory buffer, long offset, byte[] bytes, long length) {
+        buffer.write(offset, bytes, 0, (int) length);
+        return at(buffer, offset);
+    }
+
+    // plain pointer: Memory.share() creates tracked SharedMemory which is much more expensive
+    private static Pointer at(Memory buffer, long offset) {
+        return new Pointer(Pointer.nativeValue(buffer) + offset);
+    }
+}
@@ -0,0 +1,38 @@
+package com.sirius.sdk.naclJava;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Sodium primitives used on pack/unpack path. Arguments are the same as of native sodium functions,
+ * result is True if native call succeeded.
+ */
+public interface SodiumPrimitives {
+
+    boolean aeadChaCha20Poly1305IetfEncrypt(byte[] c, byte[] m, long mLen, byte[] ad, long adLen, byte[] nPub, byte[] k);
+
+    boolean aeadChaCha20Poly1305IetfDecrypt(byte[] m, byte[] c, long cLen, byte[] ad, long adLen, byte[] nPub, byte[] k);
+
+    boolean boxEasy(byte[] c, byte[] m, long mLen, byte[] nonce, byte[] pk, byte[] sk);
+
+    boolean boxOpenEasy(byte[] m, byte[] c, long cLen, byte[] nonce, byte[] pk, byte[] sk);
+
+    boolean boxBeforeNm(byte[] k, byte[] pk, byte[] sk);
+
+    boolean boxEasyAfterNm(byte[] c, byte[] m, long mLen, byte[] nonce, byte[] k);
+
+    boolean boxOpenEasyAfterNm(byte[] m, byte[] c, long cLen, byte[] nonce, byte[] k);
+
+    boolean boxSeal(byte[] c, byte[] m, long mLen, byte[] pk);
+
+    boolean boxSealOpen(byte[] m, byte[] c, long cLen, byte[] pk, byte[] sk);
+
+    boolean signDetached(byte[] sig, byte[] m, long mLen, byte[] sk);
+
+    boolean signVerifyDetached(byte[] sig, byte[] m, long mLen, byte[] pk);
+
+    boolean convertPublicKeyEd25519ToCurve25519(byte[] curve, byte[] ed);
+
+    boolean convertSecretKeyEd25519ToCurve25519(byte[] curve, byte[] ed);
+
+    void randomBytes(Pointer buffer, int size);
+}
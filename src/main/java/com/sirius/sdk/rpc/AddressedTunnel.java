@@ -11,6 +11,7 @@ import org.json.JSONObject;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -64,23 +65,39 @@ public class AddressedTunnel {
      */
     public Message receive(int timeout) throws SiriusInvalidPayloadStructure {
         byte[] payload = new byte[0];
+        CompletableFuture<byte[]> feat = input.read();
         try {
-            payload = input.read().get(timeout, TimeUnit.SECONDS);
+            payload = feat.get(timeout, TimeUnit.SECONDS);
         } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            e.printStackTrace();
+            // release reader slot so the next frame is not delivered to abandoned future
+            if (!feat.cancel(false) && !feat.isCompletedExceptionally()) {
+                payload = feat.join();
+            } else {
+                e.printStackTrace();
+            }
         }
+        return decode(payload);
+    }
+
+    /**
+     * Restore message from received packet.
+     *
+     * @param payload received packet
+     * @return message
+     */
+    public Message decode(byte[] payload) throws SiriusInvalidPayloadStructure {
         try {
-         String payloadString = new String(payload, StandardCharsets.US_ASCII);
+            String payloadString = new String(payload, StandardCharsets.US_ASCII);
             JSONObject jsonObject = new JSONObject(payloadString);
             if (jsonObject.has("protected")) {
-                String unpacked = p2p.unpack(new String(payload, StandardCharsets.US_ASCII));
+                String unpacked = p2p.unpack(payloadString);
                 log.log(Level.INFO, "Received protected message. Unpacked: " + unpacked);
                 context.setEncrypted(true);
                 return new Message(unpacked);
             } else {
                 context.setEncrypted(false);
-                log.log(Level.INFO, "Received message: " + payload);
-                return new Message(new String(payload, StandardCharsets.US_ASCII));
+                log.log(Level.INFO, "Received message: " + payloadString);
+                return new Message(payloadString);
             }
         } catch (Exception e) {
             e.printStackTrace();
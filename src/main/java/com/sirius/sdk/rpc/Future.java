@@ -11,13 +11,12 @@ import com.sirius.sdk.errors.sirius_exceptions.SiriusPendingOperation;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusPromiseContextException;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusValueEmpty;
 import com.sirius.sdk.messaging.Message;
+import com.sirius.sdk.naclJava.RandomBuffer;
 import com.sirius.sdk.utils.Pair;
 import com.sirius.sdk.utils.Triple;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.UUID;
-
 /**
  * "Futures and Promises pattern.
  * (http://dist-prog-book.com/chapter/2/futures.html)
@@ -46,7 +45,7 @@ public class Future {
      */
     public Future(AddressedTunnel addressedTunnel) {
         this.tunnel = addressedTunnel;
-        id = UUID.randomUUID().toString();
+        id = RandomBuffer.getInstance().nextUuid();
     }
 
 
@@ -71,6 +70,14 @@ public class Future {
         return new FuturePromise(id, tunnel.address, expirationTime);
     }
 
+    public String getId() {
+        return id;
+    }
+
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
     /**
      * "Wait for response
      *
@@ -87,45 +94,11 @@ public class Future {
 
         try {
             Message message = tunnel.receive(timeout);
-            String payload = message.serialize();
-            //(payload.get('~thread', {}).get('thid', None) == self.__id
-            JSONObject threadObj = message.getJSONOBJECTFromJSON("~thread");
-            String threadId = null;
-            if (threadObj != null) {
-                threadId = threadObj.getString("thid");
-            }
-            boolean isType = MSG_TYPE.equals(message.getType());
-            boolean isTypeId = id.equals(threadId);
-            if (MSG_TYPE.equals(message.getType()) && id.equals(threadId)) {
-                JSONObject exception = message.getJSONOBJECTFromJSON("exception");
-                if (exception == null) {
-                    Object value = message.getObjectFromJSON("value");
-                    boolean is_tuple = message.getBooleanFromJSON("is_tuple");
-                    boolean is_bytes = message.getBooleanFromJSON("is_bytes");
-                    if (is_tuple) {
-                        if (((JSONArray) value).length() == 2) {
-                            this.value = new Pair<Object, Object>(((JSONArray) value).get(0), ((JSONArray) value).get(1));
-                        } else if (((JSONArray) value).length() == 3) {
-                            this.value = new Triple<Object, Object, Object>(((JSONArray) value).get(0), ((JSONArray) value).get(1), ((JSONArray) value).get(2));
-                        } else {
-                            this.value = value;
-                        }
-                    } else if (is_bytes) {
-                        Custom custom = new Custom();
-                        this.value = custom.b64ToBytes(value.toString(), false);
-                    } else {
-                        this.value = value;
-                    }
-                } else {
-                    this.exception = exception;
-                }
-                readOk = true;
+            if (tryResolve(message)) {
                 return true;
             } else {
                 System.out.println("Unexpected payload" + message.serialize() + "Expected id: " + id);
             }
-
-
         } catch (SiriusInvalidPayloadStructure siriusInvalidPayloadStructure) {
             siriusInvalidPayloadStructure.printStackTrace();
         }
@@ -133,6 +106,59 @@ public class Future {
         return false;
     }
 
+    /**
+     * Extract thread id of response message
+     *
+     * @param message message received from server-side
+     * @return thread id if message is response for some future, else null
+     */
+    public static String responseId(Message message) {
+        if (!MSG_TYPE.equals(message.getType())) {
+            return null;
+        }
+        JSONObject threadObj = message.getJSONOBJECTFromJSON("~thread");
+        if (threadObj != null) {
+            return threadObj.optString("thid", null);
+        }
+        return null;
+    }
+
+    /**
+     * Accept response message if it is addressed to this future
+     *
+     * @param message message received from server-side
+     * @return True if message is response for this future
+     */
+    public boolean tryResolve(Message message) {
+        if (!id.equals(responseId(message))) {
+            return false;
+        }
+        JSONObject exception = message.getJSONOBJECTFromJSON("exception");
+        if (exception == null) {
+            Object value = message.getObjectFromJSON("value");
+            boolean is_tuple = message.getBooleanFromJSON("is_tuple");
+            boolean is_bytes = message.getBooleanFromJSON("is_bytes");
+            if (is_tuple) {
+                if (((JSONArray) value).length() == 2) {
+                    this.value = new Pair<Object, Object>(((JSONArray) value).get(0), ((JSONArray) value).get(1));
+                } else if (((JSONArray) value).length() == 3) {
+                    this.value = new Triple<Object, Object, Object>(((JSONArray) value).get(0), ((JSONArray) value).get(1), ((JSONArray) value).get(2));
+                } else {
+                    this.value = value;
+                }
+            } else if (is_bytes) {
+                Custom custom = new Custom();
+                this.value = custom.b64ToBytes(value.toString(), false);
+            } else {
+                this.value = value;
+            }
+        } else {
+            this.exception = exception;
+        }
+        readOk = true;
+        return true;
+    }
+
     /**
      * Get response value.
      *
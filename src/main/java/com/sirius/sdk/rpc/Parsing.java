@@ -33,13 +33,49 @@ public class Parsing {
         }
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("@type", msgType);
-        jsonObject.put("@id", UUID.randomUUID().toString());
+        jsonObject.put("@id", Message.generateId());
         jsonObject.put("@promise", future.promise().serializeToJSONObject());
         JSONObject paramsObject = incapsulateParam(params);
         jsonObject.put("params", paramsObject);
         return new Message(jsonObject.toString());
     }
 
+    public static final String MSG_TYPE_BATCH = "did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/sirius_rpc/1.0/batch";
+
+    /**
+     * Coalesce several RPC packets to single envelope, every packet keeps its own @promise
+     * so responses may be routed back independently.
+     *
+     * @param messages RPC service packets
+     * @return batch envelope
+     */
+    public static Message buildBatch(List<Message> messages) {
+        JSONArray messagesArray = new JSONArray();
+        for (Message message : messages) {
+            messagesArray.put(message.getMessageObj());
+        }
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("@type", MSG_TYPE_BATCH);
+        jsonObject.put("@id", Message.generateId());
+        jsonObject.put("messages", messagesArray);
+        return new Message(jsonObject.toString());
+    }
+
+    /**
+     * Extract packets from batch envelope.
+     *
+     * @param batch batch envelope
+     * @return packets in the order they were put in envelope
+     */
+    public static List<Message> unpackBatch(Message batch) {
+        List<Message> messages = new ArrayList<>();
+        JSONArray messagesArray = batch.getJSONArrayFromJSON("messages", new JSONArray());
+        for (int i = 0; i < messagesArray.length(); i++) {
+            messages.add(new Message(messagesArray.getJSONObject(i).toString()));
+        }
+        return messages;
+    }
+
 
     public static final Map<String, Class> CLS_MAP = new HashMap<String, Class>() {
         {
@@ -0,0 +1,171 @@
+package com.sirius.sdk.rpc;
+
+import com.sirius.sdk.messaging.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client-side batching stage for RPC packets.
+ * <p>
+ * Packets posted in short period of time are coalesced to single batch envelope (see {@link Parsing#buildBatch(List)})
+ * so the whole batch is packed once and sent as one frame. Batch is flushed when it reaches maxBatchSize
+ * or when lingerMs elapsed since the first packet of batch was posted.
+ * Encrypted and plain packets are batched separately.
+ */
+public class RequestBatcher {
+
+    public static final int DEF_MAX_BATCH_SIZE = 64;
+    public static final int DEF_LINGER_MS = 5;
+
+    Logger log = Logger.getLogger(RequestBatcher.class.getName());
+    AddressedTunnel tunnel;
+    int maxBatchSize;
+    int lingerMs;
+    Lane encrypted = new Lane(true);
+    Lane plain = new Lane(false);
+    ScheduledExecutorService scheduler;
+    volatile boolean closed = false;
+
+    /**
+     * @param tunnel       tunnel to post batches
+     * @param maxBatchSize flush batch when it contains this count of packets
+     * @param lingerMs     flush batch not later than this time after the first packet was posted
+     */
+    public RequestBatcher(AddressedTunnel tunnel, int maxBatchSize, int lingerMs) {
+        if (maxBatchSize <= 0) {
+            throw new RuntimeException("Batch size must be > 0");
+        }
+        this.tunnel = tunnel;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "RequestBatcher-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public RequestBatcher(AddressedTunnel tunnel) {
+        this(tunnel, DEF_MAX_BATCH_SIZE, DEF_LINGER_MS);
+    }
+
+    /**
+     * Put packet to the batch. Packets posted after {@link #close()} are written to the tunnel immediately.
+     *
+     * @param message packet to send
+     * @param encrypt do encryption
+     * @return future that is completed with True when the batch with this packet was written to the tunnel
+     */
+    public CompletableFuture<Boolean> post(Message message, boolean encrypt) {
+        return (encrypt ? encrypted : plain).add(message);
+    }
+
+    boolean postDirectly(Message message, boolean encrypt) {
+        try {
+            return tunnel.post(message, encrypt);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Posting failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Send all packets that are waiting in batches
+     */
+    public void flush() {
+        encrypted.flush();
+        plain.flush();
+    }
+
+    /**
+     * Flush pending batches and stop flush timer
+     */
+    public void close() {
+        // lanes check this flag under their lock, so nothing is added to a lane after the final flush
+        closed = true;
+        flush();
+        scheduler.shutdown();
+    }
+
+    class Lane {
+        boolean encrypt;
+        List<Message> messages = new ArrayList<>();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        ScheduledFuture<?> scheduledFlush = null;
+        // keeps batches of the lane in posting order
+        final Object postLock = new Object();
+
+        Lane(boolean encrypt) {
+            this.encrypt = encrypt;
+        }
+
+        CompletableFuture<Boolean> add(Message message) {
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            boolean full;
+            synchronized (this) {
+                if (closed) {
+                    result.complete(postDirectly(message, encrypt));
+                    return result;
+                }
+                messages.add(message);
+                results.add(result);
+                full = messages.size() >= maxBatchSize;
+                if (!full && scheduledFlush == null) {
+                    try {
+                        scheduledFlush = scheduler.schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // flush timer is gone, do not leave the packet waiting for it
+                        full = true;
+                    }
+                }
+            }
+            if (full) {
+                flush();
+            }
+            return result;
+        }
+
+        void flush() {
+            synchronized (postLock) {
+                List<Message> batch;
+                List<CompletableFuture<Boolean>> batchResults;
+                synchronized (this) {
+                    if (scheduledFlush != null) {
+                        scheduledFlush.cancel(false);
+                        scheduledFlush = null;
+                    }
+                    if (messages.isEmpty()) {
+                        return;
+                    }
+                    batch = messages;
+                    batchResults = results;
+                    messages = new ArrayList<>();
+                    results = new ArrayList<>();
+                }
+                boolean ok;
+                try {
+                    if (batch.size() == 1) {
+                        ok = tunnel.post(batch.get(0), encrypt);
+                    } else {
+                        ok = tunnel.post(Parsing.buildBatch(batch), encrypt);
+                    }
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Batch posting failed: " + e.getMessage());
+                    ok = false;
+                }
+                for (CompletableFuture<Boolean> result : batchResults) {
+                    result.complete(ok);
+                }
+            }
+        }
+    }
+}
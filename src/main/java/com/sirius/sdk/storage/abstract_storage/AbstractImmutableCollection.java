@@ -11,4 +11,47 @@ public abstract class AbstractImmutableCollection {
     public  Pair<List<Object>,Integer> fetch (String tags){
         return fetch(tags,null);
     }
+
+    /**
+     * Handle of the database that doesn't depend on {@link #selectDb(String)} state.
+     * Default implementation serializes calls of handles through selectDb,
+     * thread-safe collections return handles that are used concurrently.
+     */
+    public ImmutableCollectionHandle database(String name) {
+        AbstractImmutableCollection collection = this;
+        return new ImmutableCollectionHandle() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void add(Object value, String tags) {
+                synchronized (collection) {
+                    collection.selectDb(name);
+                    collection.add(value, tags);
+                }
+            }
+
+            @Override
+            public boolean addIfAbsent(Object value, String tags, String query) {
+                synchronized (collection) {
+                    collection.selectDb(name);
+                    if (collection.fetch(query, 1).second > 0) {
+                        return false;
+                    }
+                    collection.add(value, tags);
+                    return true;
+                }
+            }
+
+            @Override
+            public Pair<List<Object>, Integer> fetch(String tags, Integer limit) {
+                synchronized (collection) {
+                    collection.selectDb(name);
+                    return collection.fetch(tags, limit);
+                }
+            }
+        };
+    }
 }
@@ -5,4 +5,43 @@ public abstract class AbstractKeyValueStorage {
     public abstract void set(String key,Object value);
     public abstract Object get(String key);
     public abstract void delete(String key);
+
+    /**
+     * Handle of the database that doesn't depend on {@link #selectDb(String)} state.
+     * Default implementation serializes calls of handles through selectDb,
+     * thread-safe storages return handles that are used concurrently.
+     */
+    public KeyValueHandle database(String name) {
+        AbstractKeyValueStorage storage = this;
+        return new KeyValueHandle() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void set(String key, Object value) {
+                synchronized (storage) {
+                    storage.selectDb(name);
+                    storage.set(key, value);
+                }
+            }
+
+            @Override
+            public Object get(String key) {
+                synchronized (storage) {
+                    storage.selectDb(name);
+                    return storage.get(key);
+                }
+            }
+
+            @Override
+            public void delete(String key) {
+                synchronized (storage) {
+                    storage.selectDb(name);
+                    storage.delete(key);
+                }
+            }
+        };
+    }
 }
@@ -0,0 +1,44 @@
+package com.sirius.sdk.storage.abstract_storage;
+
+import com.sirius.sdk.utils.Pair;
+
+import java.util.List;
+
+/**
+ * Database of immutable collection bound to its name. Handle has no mutable state,
+ * so it may be shared between threads as long as its collection is thread-safe.
+ */
+public interface ImmutableCollectionHandle {
+
+    String getName();
+
+    void add(Object value, String tags);
+
+    Pair<List<Object>, Integer> fetch(String tags, Integer limit);
+
+    default Pair<List<Object>, Integer> fetch(String tags) {
+        return fetch(tags, null);
+    }
+
+    /**
+     * Add value unless the database has value matched by the query. Check and add are atomic:
+     * default implementation synchronizes on the handle, collections that return new handle per call
+     * or have their own locks override it.
+     *
+     * @param query WQL query of the values that make this one duplicate
+     * @return True if value was added
+     */
+    default boolean addIfAbsent(Object value, String tags, String query) {
+        synchronized (this) {
+            if (fetch(query, 1).second > 0) {
+                return false;
+            }
+            add(value, tags);
+            return true;
+        }
+    }
+
+    default boolean addIfAbsent(Object value, String tags) {
+        return addIfAbsent(value, tags, tags);
+    }
+}
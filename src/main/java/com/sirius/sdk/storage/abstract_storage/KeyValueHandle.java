@@ -0,0 +1,16 @@
+package com.sirius.sdk.storage.abstract_storage;
+
+/**
+ * Database of key-value storage bound to its name. Handle has no mutable state,
+ * so it may be shared between threads as long as its storage is thread-safe.
+ */
+public interface KeyValueHandle {
+
+    String getName();
+
+    void set(String key, Object value);
+
+    Object get(String key);
+
+    void delete(String key);
+}
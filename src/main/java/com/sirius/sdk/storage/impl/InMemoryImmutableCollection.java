@@ -1,54 +1,115 @@
 package com.sirius.sdk.storage.impl;
 
+import com.sirius.sdk.storage.abstract_storage.ImmutableCollectionHandle;
 import com.sirius.sdk.utils.Pair;
 import com.sirius.sdk.storage.abstract_storage.AbstractImmutableCollection;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Immutable collection kept in memory. Tags are parsed once on {@link #add(Object, String)} and indexed
+ * by {@link TagIndex}, so {@link #fetch(String, Integer)} evaluates WQL query without scanning records.
+ * <p>
+ * Collection is thread-safe: every database has its own read-write lock, so handles returned by
+ * {@link #database(String)} are fetched in parallel and writes to different databases don't contend.
+ */
 public class InMemoryImmutableCollection extends AbstractImmutableCollection {
 
-    Map<String, List<Pair<String, Object>>> databases = new HashMap<>();
-    List<Pair<String, Object>> selectedDb;
+    Map<String, Database> databases = new ConcurrentHashMap<>();
+    volatile Database selectedDb;
+
+    static class Database implements ImmutableCollectionHandle {
+        final String name;
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final List<Object> values = new ArrayList<>();
+        final TagIndex index = new TagIndex();
+
+        Database(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void add(Object value, String tags) {
+            JSONObject tagsObj = tags != null ? new JSONObject(tags) : null;
+            lock.writeLock().lock();
+            try {
+                index.add(values.size(), tagsObj);
+                values.add(value);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean addIfAbsent(Object value, String tags, String query) {
+            JSONObject tagsObj = tags != null ? new JSONObject(tags) : null;
+            JSONObject queryObj = query != null ? new JSONObject(query) : new JSONObject();
+            lock.writeLock().lock();
+            try {
+                if (!index.query(queryObj).isEmpty()) {
+                    return false;
+                }
+                index.add(values.size(), tagsObj);
+                values.add(value);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public Pair<List<Object>, Integer> fetch(String tags, Integer limit) {
+            JSONObject query = tags != null ? new JSONObject(tags) : new JSONObject();
+            lock.readLock().lock();
+            try {
+                BitSet matched = index.query(query);
+                int count = matched.cardinality();
+                int max = limit != null && limit > 0 ? Math.min(limit, count) : count;
+                List<Object> result = new ArrayList<>(max);
+                for (int id = matched.nextSetBit(0); id >= 0 && result.size() < max; id = matched.nextSetBit(id + 1)) {
+                    result.add(values.get(id));
+                }
+                return new Pair<>(result, count);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
 
     @Override
     public void selectDb(String name) {
-        if (databases.containsKey(name)) {
-            selectedDb = databases.get(name);
-        } else {
-            List<Pair<String, Object>> newDb = new ArrayList<>();
-            databases.put(name, newDb);
-            selectedDb = newDb;
-        }
+        selectedDb = (Database) database(name);
+    }
+
+    @Override
+    public ImmutableCollectionHandle database(String name) {
+        return databases.computeIfAbsent(name, Database::new);
     }
 
     @Override
     public void add(Object value, String tags) {
-        Pair<String ,Object> item= new Pair<>(tags,value);
-        selectedDb.add(item);
+        selectedDb.add(value, tags);
     }
 
+    /**
+     * @param tags  WQL query
+     * @param limit max count of returned values, null or 0 returns all
+     * @return matched values in order of adding and total count of matched values
+     */
     @Override
     public Pair<List<Object>, Integer> fetch(String tags, Integer limit) {
-        List<Object> result = new ArrayList<>();
-        for(int i=0;i<selectedDb.size();i++){
-            Pair<String,Object> item = selectedDb.get(i);
-            JSONObject tagsObj = new JSONObject(tags);
-            JSONObject tagsItemObj = new JSONObject(item.first);
-            for(String key : tagsObj.keySet()){
-                String tag = tagsObj.getString(key);
-                if(tagsItemObj.has(key)){
-                    String itemTag = tagsItemObj.getString(key);
-                    if(itemTag.equals(tag)){
-                        result.add(item.second);
-                    }
-                }
-            }
-        }
-        return new Pair<>(result,result.size());
+        return selectedDb.fetch(tags, limit);
     }
 }
-
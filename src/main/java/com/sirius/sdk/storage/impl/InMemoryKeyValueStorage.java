@@ -1,27 +1,65 @@
 package com.sirius.sdk.storage.impl;
 
 import com.sirius.sdk.storage.abstract_storage.AbstractKeyValueStorage;
+import com.sirius.sdk.storage.abstract_storage.KeyValueHandle;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Thread-safe key-value storage kept in memory, handles returned by {@link #database(String)} are used concurrently.
+ * Null value removes the key.
+ */
 public class InMemoryKeyValueStorage extends AbstractKeyValueStorage {
-    Map<String, Map<String, Object>> databases = new HashMap<>();
-    Map<String, Object> selectedDb;
+    Map<String, Database> databases = new ConcurrentHashMap<>();
+    volatile Database selectedDb;
+
+    static class Database implements KeyValueHandle {
+        final String name;
+        final Map<String, Object> values = new ConcurrentHashMap<>();
+
+        Database(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void set(String key, Object value) {
+            if (value == null) {
+                values.remove(key);
+            } else {
+                values.put(key, value);
+            }
+        }
+
+        @Override
+        public Object get(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void delete(String key) {
+            values.remove(key);
+        }
+    }
+
     @Override
     public void selectDb(String name) {
-        if (databases.containsKey(name)) {
-            selectedDb = databases.get(name);
-        } else {
-            Map<String, Object> newDb = new HashMap<>();
-            databases.put(name, newDb);
-            selectedDb = newDb;
-        }
+        selectedDb = (Database) database(name);
+    }
+
+    @Override
+    public KeyValueHandle database(String name) {
+        return databases.computeIfAbsent(name, Database::new);
     }
 
     @Override
     public void set(String key, Object value) {
-        selectedDb.put(key, value);
+        selectedDb.set(key, value);
     }
 
     @Override
@@ -31,6 +69,6 @@ public class InMemoryKeyValueStorage extends AbstractKeyValueStorage {
 
     @Override
     public void delete(String key) {
-        selectedDb.remove(key);
+        selectedDb.delete(key);
     }
 }
@@ -0,0 +1,60 @@
+package com.sirius.sdk.storage.impl;
+
+import com.sirius.sdk.storage.abstract_storage.AbstractImmutableCollection;
+import com.sirius.sdk.storage.abstract_storage.ImmutableCollectionHandle;
+import com.sirius.sdk.utils.Pair;
+
+import java.util.List;
+
+/**
+ * Immutable collection persisted in local {@link MappedLogStore}
+ */
+public class MappedImmutableCollection extends AbstractImmutableCollection {
+
+    MappedLogStore store;
+    volatile String selectedDb;
+
+    public MappedImmutableCollection(MappedLogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void selectDb(String name) {
+        selectedDb = name;
+    }
+
+    @Override
+    public ImmutableCollectionHandle database(String name) {
+        return new ImmutableCollectionHandle() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void add(Object value, String tags) {
+                store.add(name, value, tags);
+            }
+
+            @Override
+            public boolean addIfAbsent(Object value, String tags, String query) {
+                return store.addIfAbsent(name, value, tags, query);
+            }
+
+            @Override
+            public Pair<List<Object>, Integer> fetch(String tags, Integer limit) {
+                return store.fetch(name, tags, limit);
+            }
+        };
+    }
+
+    @Override
+    public void add(Object value, String tags) {
+        store.add(selectedDb, value, tags);
+    }
+
+    @Override
+    public Pair<List<Object>, Integer> fetch(String tags, Integer limit) {
+        return store.fetch(selectedDb, tags, limit);
+    }
+}
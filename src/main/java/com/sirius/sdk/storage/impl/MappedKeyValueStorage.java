@@ -0,0 +1,62 @@
+package com.sirius.sdk.storage.impl;
+
+import com.sirius.sdk.storage.abstract_storage.AbstractKeyValueStorage;
+import com.sirius.sdk.storage.abstract_storage.KeyValueHandle;
+
+/**
+ * Key-value storage persisted in local {@link MappedLogStore}
+ */
+public class MappedKeyValueStorage extends AbstractKeyValueStorage {
+
+    MappedLogStore store;
+    volatile String selectedDb;
+
+    public MappedKeyValueStorage(MappedLogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void selectDb(String name) {
+        selectedDb = name;
+    }
+
+    @Override
+    public KeyValueHandle database(String name) {
+        return new KeyValueHandle() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void set(String key, Object value) {
+                store.set(name, key, value);
+            }
+
+            @Override
+            public Object get(String key) {
+                return store.get(name, key);
+            }
+
+            @Override
+            public void delete(String key) {
+                store.delete(name, key);
+            }
+        };
+    }
+
+    @Override
+    public void set(String key, Object value) {
+        store.set(selectedDb, key, value);
+    }
+
+    @Override
+    public Object get(String key) {
+        return store.get(selectedDb, key);
+    }
+
+    @Override
+    public void delete(String key) {
+        store.delete(selectedDb, key);
+    }
+}
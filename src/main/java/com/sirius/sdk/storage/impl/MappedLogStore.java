@@ -0,0 +1,566 @@
+package com.sirius.sdk.storage.impl;
+
+import com.sirius.sdk.utils.Pair;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent local storage: append-only log of fixed-size memory-mapped segments.
+ * <p>
+ * Record of segment: [int length][int crc32][byte op][payload], payload is UTF-8 JSON with database name,
+ * tags or key and value. Length is written last, torn record fails CRC check, so on open the log is replayed
+ * up to the last complete record and the rest is discarded.
+ * When segment is full it is sealed and its hint file is written: tags and keys of its records with their offsets
+ * without values, so sealed segments are indexed on open without reading values.
+ * Records are indexed in memory ({@link TagIndex} per collection, key to location per key-value database)
+ * and values are read from mapped segments on demand.
+ * <p>
+ * Values must be JSON-compatible: String, Number, Boolean, JSONObject or JSONArray.
+ * Records survive process crash once written, {@link #sync()} forces them to the device.
+ * <p>
+ * Segment size is the length of segment files, storage refuses to open with another size.
+ * Directory is locked while storage is open, so other processes can't append to it.
+ * <p>
+ * Store is thread-safe: reads run in parallel under shared lock, appends are serialized.
+ */
+public class MappedLogStore implements Closeable {
+
+    public static final int DEF_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    static final byte OP_ADD = 1;
+    static final byte OP_SET = 2;
+    static final byte OP_DELETE = 3;
+    static final int HEADER_SIZE = 9;
+    static final int HINT_MAGIC = 0x53524853;
+    static final String LOCK_FILE = "store.lock";
+
+    Logger log = Logger.getLogger(MappedLogStore.class.getName());
+    Path directory;
+    int segmentSize;
+    FileChannel lockChannel;
+    FileLock directoryLock;
+    List<MappedByteBuffer> segments = new ArrayList<>();
+    int position;
+    List<Hint> activeHints = new ArrayList<>();
+    Map<String, Collection> collections = new HashMap<>();
+    Map<String, Map<String, Long>> keyValues = new HashMap<>();
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+    boolean closed = false;
+
+    static class Collection {
+        List<Long> locations = new ArrayList<>();
+        TagIndex index = new TagIndex();
+    }
+
+    static class Hint {
+        byte op;
+        int offset;
+        String db;
+        String keyOrTags;
+
+        Hint(byte op, int offset, String db, String keyOrTags) {
+            this.op = op;
+            this.offset = offset;
+            this.db = db;
+            this.keyOrTags = keyOrTags;
+        }
+    }
+
+    /**
+     * Open storage in the directory, create it if not exists
+     *
+     * @param segmentSize size of segment file, max size of single record, must match size of existing segments
+     * @throws IOException if directory is used by another process, segments were created with another size
+     *                     or segment is corrupted
+     */
+    public MappedLogStore(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        lockDirectory();
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            unlockDirectory();
+            throw e;
+        }
+    }
+
+    public MappedLogStore(Path directory) throws IOException {
+        this(directory, DEF_SEGMENT_SIZE);
+    }
+
+    public void add(String db, Object value, String tags) {
+        checkName("db", db);
+        lock.writeLock().lock();
+        try {
+            addLocked(db, value, tags);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add value unless the collection has value matched by WQL query, atomically
+     *
+     * @return True if value was added
+     */
+    public boolean addIfAbsent(String db, Object value, String tags, String query) {
+        checkName("db", db);
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Collection collection = collections.get(db);
+            if (collection != null && !collection.index.query(query != null ? new JSONObject(query) : new JSONObject()).isEmpty()) {
+                return false;
+            }
+            addLocked(db, value, tags);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param limit max count of returned values, null or 0 returns all
+     * @return values matched by WQL query in order of adding and total count of matched values
+     */
+    public Pair<List<Object>, Integer> fetch(String db, String tags, Integer limit) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            Collection collection = collections.get(db);
+            if (collection == null) {
+                return new Pair<>(new ArrayList<>(), 0);
+            }
+            BitSet matched = collection.index.query(tags != null ? new JSONObject(tags) : new JSONObject());
+            int count = matched.cardinality();
+            int max = limit != null && limit > 0 ? Math.min(limit, count) : count;
+            List<Object> result = new ArrayList<>(max);
+            for (int id = matched.nextSetBit(0); id >= 0 && result.size() < max; id = matched.nextSetBit(id + 1)) {
+                result.add(readValue(collection.locations.get(id)));
+            }
+            return new Pair<>(result, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void set(String db, String key, Object value) {
+        checkName("db", db);
+        checkName("key", key);
+        lock.writeLock().lock();
+        try {
+            JSONObject payload = new JSONObject();
+            payload.put("db", db);
+            payload.put("key", key);
+            payload.put("value", value);
+            long location = append(OP_SET, payload);
+            activeHints.add(new Hint(OP_SET, offsetOf(location), db, key));
+            keyValues.computeIfAbsent(db, k -> new HashMap<>()).put(key, location);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Object get(String db, String key) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            Map<String, Long> values = keyValues.get(db);
+            Long location = values != null ? values.get(key) : null;
+            return location != null ? readValue(location) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void delete(String db, String key) {
+        checkName("db", db);
+        checkName("key", key);
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Map<String, Long> values = keyValues.get(db);
+            if (values == null || !values.containsKey(key)) {
+                return;
+            }
+            JSONObject payload = new JSONObject();
+            payload.put("db", db);
+            payload.put("key", key);
+            long location = append(OP_DELETE, payload);
+            activeHints.add(new Hint(OP_DELETE, offsetOf(location), db, key));
+            values.remove(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Force written records to the storage device
+     */
+    public void sync() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            segments.get(segments.size() - 1).force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getSegmentsCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            sync();
+            closed = true;
+            segments.clear();
+            collections.clear();
+            keyValues.clear();
+            unlockDirectory();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(String db, Object value, String tags) {
+        JSONObject tagsObj = tags != null ? new JSONObject(tags) : new JSONObject();
+        JSONObject payload = new JSONObject();
+        payload.put("db", db);
+        payload.put("tags", tagsObj);
+        payload.put("value", value);
+        long location = append(OP_ADD, payload);
+        activeHints.add(new Hint(OP_ADD, offsetOf(location), db, tagsObj.toString()));
+        indexAdd(db, tagsObj, location);
+    }
+
+    private long append(byte op, JSONObject payload) {
+        checkOpen();
+        byte[] data = payload.toString().getBytes(StandardCharsets.UTF_8);
+        int recordSize = HEADER_SIZE + data.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record of " + recordSize + " bytes exceeds segment size");
+        }
+        if (position + recordSize > segmentSize) {
+            seal();
+        }
+        int segment = segments.size() - 1;
+        MappedByteBuffer buffer = segments.get(segment);
+        int offset = position;
+        buffer.put(offset + 8, op);
+        slice(buffer, offset + HEADER_SIZE).put(data);
+        buffer.putInt(offset + 4, checksum(op, data));
+        buffer.putInt(offset, data.length);
+        position += recordSize;
+        return location(segment, offset);
+    }
+
+    private Object readValue(long location) {
+        MappedByteBuffer buffer = segments.get(segmentOf(location));
+        int offset = offsetOf(location);
+        int length = buffer.getInt(offset);
+        byte[] data = new byte[length];
+        slice(buffer, offset + HEADER_SIZE).get(data);
+        return new JSONObject(new String(data, StandardCharsets.UTF_8)).opt("value");
+    }
+
+    private void seal() {
+        int segment = segments.size() - 1;
+        segments.get(segment).force();
+        try {
+            writeHints(segment, activeHints);
+        } catch (IOException e) {
+            // segment is scanned on next open instead
+            log.log(Level.WARNING, "Hint file of segment " + segment + " was not written", e);
+        }
+        activeHints = new ArrayList<>();
+        try {
+            segments.add(map(segment + 1));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        position = 0;
+    }
+
+    private void lockDirectory() throws IOException {
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            directoryLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            directoryLock = null;
+        }
+        if (directoryLock == null) {
+            lockChannel.close();
+            lockChannel = null;
+            throw new IOException("Storage " + directory + " is used by another process");
+        }
+    }
+
+    private void unlockDirectory() {
+        if (lockChannel == null) {
+            return;
+        }
+        try {
+            // closing the channel releases the lock
+            lockChannel.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Lock of storage " + directory + " was not released", e);
+        }
+        lockChannel = null;
+        directoryLock = null;
+    }
+
+    private void recover() throws IOException {
+        int segment = 0;
+        while (Files.exists(segmentPath(segment))) {
+            long size = Files.size(segmentPath(segment));
+            // segment file is created empty and extended by mapping, empty last segment is left by crash in between
+            boolean createdEmpty = size == 0 && !Files.exists(segmentPath(segment + 1));
+            if (size != segmentSize && !createdEmpty) {
+                throw new IOException("Segment " + segment + " has size " + size + ", storage is opened with segment size " + segmentSize);
+            }
+            segments.add(map(segment));
+            segment++;
+        }
+        if (segments.isEmpty()) {
+            segments.add(map(0));
+            position = 0;
+            return;
+        }
+        int last = segments.size() - 1;
+        for (int i = 0; i < last; i++) {
+            List<Hint> hints = readHints(i);
+            if (hints == null) {
+                hints = new ArrayList<>();
+                scan(i, hints);
+                writeHints(i, hints);
+            }
+            for (Hint hint : hints) {
+                replay(i, hint);
+            }
+        }
+        position = scan(last, activeHints);
+        for (Hint hint : activeHints) {
+            replay(last, hint);
+        }
+    }
+
+    /**
+     * Collect hints of complete records of segment. Torn tail, i.e. record that fits the segment
+     * but fails CRC check, is zeroed.
+     *
+     * @return offset after the last complete record
+     * @throws IOException if length of record exceeds the segment
+     */
+    private int scan(int segment, List<Hint> hints) throws IOException {
+        MappedByteBuffer buffer = segments.get(segment);
+        int offset = 0;
+        boolean torn = false;
+        while (offset + HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || offset + HEADER_SIZE + length > segmentSize) {
+                throw new IOException("Record of segment " + segment + " at " + offset + " has invalid length " + length);
+            }
+            byte op = buffer.get(offset + 8);
+            byte[] data = new byte[length];
+            slice(buffer, offset + HEADER_SIZE).get(data);
+            if (buffer.getInt(offset + 4) != checksum(op, data)) {
+                torn = true;
+                break;
+            }
+            JSONObject payload = new JSONObject(new String(data, StandardCharsets.UTF_8));
+            String keyOrTags = op == OP_ADD ? payload.getJSONObject("tags").toString() : payload.getString("key");
+            hints.add(new Hint(op, offset, payload.getString("db"), keyOrTags));
+            offset += HEADER_SIZE + length;
+        }
+        if (torn) {
+            log.log(Level.WARNING, "Incomplete record of segment " + segment + " at " + offset + " is discarded");
+            ByteBuffer tail = slice(buffer, offset);
+            byte[] zeros = new byte[Math.min(tail.remaining(), 64 * 1024)];
+            while (tail.hasRemaining()) {
+                tail.put(zeros, 0, Math.min(zeros.length, tail.remaining()));
+            }
+            buffer.force();
+        }
+        return offset;
+    }
+
+    private void replay(int segment, Hint hint) {
+        long location = location(segment, hint.offset);
+        switch (hint.op) {
+            case OP_ADD:
+                indexAdd(hint.db, new JSONObject(hint.keyOrTags), location);
+                break;
+            case OP_SET:
+                keyValues.computeIfAbsent(hint.db, k -> new HashMap<>()).put(hint.keyOrTags, location);
+                break;
+            case OP_DELETE:
+                Map<String, Long> values = keyValues.get(hint.db);
+                if (values != null) {
+                    values.remove(hint.keyOrTags);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void indexAdd(String db, JSONObject tags, long location) {
+        Collection collection = collections.computeIfAbsent(db, k -> new Collection());
+        collection.index.add(collection.locations.size(), tags);
+        collection.locations.add(location);
+    }
+
+    private void writeHints(int segment, List<Hint> hints) throws IOException {
+        Path tmp = hintPath(segment).resolveSibling(hintPath(segment).getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(HINT_MAGIC);
+            out.writeInt(hints.size());
+            for (Hint hint : hints) {
+                out.writeByte(hint.op);
+                out.writeInt(hint.offset);
+                writeString(out, hint.db);
+                writeString(out, hint.keyOrTags);
+            }
+            out.writeInt(HINT_MAGIC);
+        }
+        Files.move(tmp, hintPath(segment), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Hint> readHints(int segment) {
+        Path path = hintPath(segment);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != HINT_MAGIC) {
+                return null;
+            }
+            int count = in.readInt();
+            List<Hint> hints = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte op = in.readByte();
+                int offset = in.readInt();
+                hints.add(new Hint(op, offset, readString(in), readString(in)));
+            }
+            return in.readInt() == HINT_MAGIC ? hints : null;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Hint file of segment " + segment + " is broken, segment is scanned", e);
+            return null;
+        }
+    }
+
+    private MappedByteBuffer map(int segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%05d.log", segment));
+    }
+
+    private Path hintPath(int segment) {
+        return directory.resolve(String.format("segment-%05d.hint", segment));
+    }
+
+    // record without db or key can not be replayed, so it would make the store unopenable
+    private static void checkName(String name, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException(name + " must not be null");
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Storage is closed");
+        }
+    }
+
+    static ByteBuffer slice(MappedByteBuffer buffer, int offset) {
+        ByteBuffer view = buffer.duplicate();
+        // cast keeps Java 8 binary compatibility of Buffer.position
+        ((Buffer) view).position(offset);
+        return view;
+    }
+
+    static int checksum(byte op, byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(op);
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    static long location(int segment, int offset) {
+        return ((long) segment << 32) | (offset & 0xffffffffL);
+    }
+
+    static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,219 @@
+package com.sirius.sdk.storage.impl;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index of record tags: for every tag name and value keeps set of ids of records that have it.
+ * <p>
+ * Evaluates Indy WQL queries by set operations over the index without touching records:
+ * <pre>
+ * {"tag": "value"}                          equality, several keys of object are joined with $and
+ * {"tag": {"$neq"|"$gt"|"$gte"|"$lt"|"$lte"|"$like": "value"}}
+ * {"tag": {"$in": ["value1", "value2"]}}
+ * {"$and": [query, ...]}, {"$or": [query, ...]}, {"$not": query}
+ * </pre>
+ * Tag values are compared as strings. Record ids are dense non-negative ints assigned by caller.
+ * Not thread-safe.
+ */
+public class TagIndex {
+
+    Map<String, Map<String, BitSet>> index = new HashMap<>();
+    Map<String, BitSet> present = new HashMap<>();
+    BitSet records = new BitSet();
+
+    /**
+     * Index tags of the record
+     */
+    public void add(int id, JSONObject tags) {
+        if (tags != null) {
+            for (String name : tags.keySet()) {
+                add(id, name, tagValue(tags.get(name)));
+            }
+        }
+        records.set(id);
+    }
+
+    public void add(int id, String name, String value) {
+        index.computeIfAbsent(name, k -> new HashMap<>()).computeIfAbsent(value, k -> new BitSet()).set(id);
+        present.computeIfAbsent(name, k -> new BitSet()).set(id);
+        records.set(id);
+    }
+
+    /**
+     * Drop record from the index
+     */
+    public void remove(int id, JSONObject tags) {
+        records.clear(id);
+        if (tags == null) {
+            return;
+        }
+        for (String name : tags.keySet()) {
+            Map<String, BitSet> values = index.get(name);
+            if (values != null) {
+                BitSet ids = values.get(tagValue(tags.get(name)));
+                if (ids != null) {
+                    ids.clear(id);
+                }
+            }
+            BitSet ids = present.get(name);
+            if (ids != null) {
+                ids.clear(id);
+            }
+        }
+    }
+
+    /**
+     * Ids of records that match the query, in ascending order
+     */
+    public BitSet query(JSONObject wql) {
+        BitSet result = null;
+        for (String key : wql.keySet()) {
+            BitSet matched = evaluate(key, wql.get(key));
+            if (result == null) {
+                result = matched;
+            } else {
+                result.and(matched);
+            }
+        }
+        return result != null ? result : all();
+    }
+
+    /**
+     * Count of indexed records
+     */
+    public int size() {
+        return records.cardinality();
+    }
+
+    BitSet evaluate(String key, Object operand) {
+        switch (key) {
+            case "$and": {
+                BitSet result = all();
+                for (JSONObject subQuery : subQueries(operand)) {
+                    result.and(query(subQuery));
+                }
+                return result;
+            }
+            case "$or": {
+                BitSet result = new BitSet();
+                for (JSONObject subQuery : subQueries(operand)) {
+                    result.or(query(subQuery));
+                }
+                return result;
+            }
+            case "$not": {
+                BitSet result = all();
+                result.andNot(query((JSONObject) operand));
+                return result;
+            }
+            default:
+                if (operand instanceof JSONObject) {
+                    BitSet result = all();
+                    JSONObject predicates = (JSONObject) operand;
+                    for (String op : predicates.keySet()) {
+                        result.and(predicate(key, op, predicates.get(op)));
+                    }
+                    return result;
+                }
+                return eq(key, tagValue(operand));
+        }
+    }
+
+    BitSet predicate(String name, String op, Object operand) {
+        switch (op) {
+            case "$neq": {
+                BitSet result = copy(present.get(name));
+                result.andNot(eq(name, tagValue(operand)));
+                return result;
+            }
+            case "$in": {
+                BitSet result = new BitSet();
+                JSONArray values = (JSONArray) operand;
+                for (int i = 0; i < values.length(); i++) {
+                    result.or(eq(name, tagValue(values.get(i))));
+                }
+                return result;
+            }
+            case "$gt":
+            case "$gte":
+            case "$lt":
+            case "$lte": {
+                String bound = tagValue(operand);
+                BitSet result = new BitSet();
+                Map<String, BitSet> values = index.get(name);
+                if (values != null) {
+                    for (Map.Entry<String, BitSet> entry : values.entrySet()) {
+                        int cmp = entry.getKey().compareTo(bound);
+                        boolean matched = op.equals("$gt") ? cmp > 0 : op.equals("$gte") ? cmp >= 0 :
+                                op.equals("$lt") ? cmp < 0 : cmp <= 0;
+                        if (matched) {
+                            result.or(entry.getValue());
+                        }
+                    }
+                }
+                return result;
+            }
+            case "$like": {
+                Pattern pattern = likePattern(tagValue(operand));
+                BitSet result = new BitSet();
+                Map<String, BitSet> values = index.get(name);
+                if (values != null) {
+                    for (Map.Entry<String, BitSet> entry : values.entrySet()) {
+                        if (pattern.matcher(entry.getKey()).matches()) {
+                            result.or(entry.getValue());
+                        }
+                    }
+                }
+                return result;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported WQL operator " + op);
+        }
+    }
+
+    BitSet eq(String name, String value) {
+        Map<String, BitSet> values = index.get(name);
+        return copy(values != null ? values.get(value) : null);
+    }
+
+    BitSet all() {
+        return (BitSet) records.clone();
+    }
+
+    static BitSet copy(BitSet ids) {
+        return ids != null ? (BitSet) ids.clone() : new BitSet();
+    }
+
+    static JSONObject[] subQueries(Object operand) {
+        JSONArray array = (JSONArray) operand;
+        JSONObject[] result = new JSONObject[array.length()];
+        for (int i = 0; i < array.length(); i++) {
+            result[i] = array.getJSONObject(i);
+        }
+        return result;
+    }
+
+    static String tagValue(Object value) {
+        return String.valueOf(value);
+    }
+
+    static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : like.toCharArray()) {
+            if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
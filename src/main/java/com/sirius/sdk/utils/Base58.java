@@ -16,9 +16,8 @@
 
 package com.sirius.sdk.utils;
 
-import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * <p>Base58 is a way to encode Bitcoin addresses as numbers and letters. Note that this is not the same base58 as used by
@@ -51,6 +50,10 @@ public class Base58 {
         }
     }
 
+    // 58^5 fits int: number is processed by 5 base58 digits at a time
+    private static final int DIGITS_PER_LIMB = 5;
+    private static final long LIMB_BASE = 58L * 58 * 58 * 58 * 58;
+
     /**
      * Encodes the given bytes in base58. No checksum is appended.
      */
@@ -58,85 +61,142 @@ public class Base58 {
         if (input.length == 0) {
             return "";
         }
-        input = copyOfRange(input, 0, input.length);
         // Count leading zeroes.
         int zeroCount = 0;
         while (zeroCount < input.length && input[zeroCount] == 0) {
             ++zeroCount;
         }
-        // The actual encoding.
-        byte[] temp = new byte[input.length * 2];
-        int j = temp.length;
-
-        int startAt = zeroCount;
-        while (startAt < input.length) {
-            byte mod = divmod58(input, startAt);
-            if (input[startAt] == 0) {
-                ++startAt;
+        // Convert to base 58^5 little-endian limbs, input is consumed by 4 bytes at a time
+        int[] limbs = new int[(input.length - zeroCount) / 3 + 2];
+        int size = 0;
+        int i = zeroCount;
+        while (i < input.length) {
+            int end = Math.min(i + 4, input.length);
+            long carry = 0;
+            int shift = 0;
+            for (; i < end; i++) {
+                carry = carry << 8 | (input[i] & 0xFF);
+                shift += 8;
+            }
+            for (int k = 0; k < size; k++) {
+                carry += (long) limbs[k] << shift;
+                limbs[k] = (int) (carry % LIMB_BASE);
+                carry /= LIMB_BASE;
+            }
+            while (carry != 0) {
+                limbs[size++] = (int) (carry % LIMB_BASE);
+                carry /= LIMB_BASE;
             }
-            temp[--j] = (byte) ALPHABET[mod];
         }
 
+        char[] temp = new char[zeroCount + size * DIGITS_PER_LIMB];
+        int j = temp.length;
+        for (int k = 0; k < size; k++) {
+            int limb = limbs[k];
+            for (int d = 0; d < DIGITS_PER_LIMB; d++) {
+                temp[--j] = ALPHABET[limb % 58];
+                limb /= 58;
+            }
+        }
         // Strip extra '1' if there are some after decoding.
         while (j < temp.length && temp[j] == ALPHABET[0]) {
             ++j;
         }
         // Add as many leading '1' as there were leading zeros.
         while (--zeroCount >= 0) {
-            temp[--j] = (byte) ALPHABET[0];
+            temp[--j] = ALPHABET[0];
         }
-
-        byte[] output = copyOfRange(temp, j, temp.length);
-        String string = new String(output, StandardCharsets.US_ASCII);
-        if (string.length() > 22 && string.startsWith("1")) {
-            string = string.substring(1);
+        if (temp.length - j > 22 && temp[j] == ALPHABET[0]) {
+            ++j;
         }
-        return string;
+        return new String(temp, j, temp.length - j);
+    }
+
+    /**
+     * Max count of bytes encoded by base58 string of given length
+     */
+    public static int maxDecodedLength(int length) {
+        // log(58) / log(256) < 0.733
+        return (int) (length * 733L / 1000) + 1;
     }
 
     public static byte[] decode(String input) throws IllegalArgumentException {
         if (input.length() == 0) {
             return new byte[0];
         }
-        byte[] input58 = new byte[input.length()];
-        // Transform the String to a base58 byte sequence
-        for (int i = 0; i < input.length(); ++i) {
-            char c = input.charAt(i);
-
-            int digit58 = -1;
-            if (c >= 0 && c < 128) {
-                digit58 = INDEXES[c];
-            }
-            if (digit58 < 0) {
-                throw new IllegalArgumentException("Illegal character " + c + " at " + i);
-            }
-
-            input58[i] = (byte) digit58;
+        // every leading '1' is a whole zero byte, only the rest of digits is packed
+        int zeroCount = 0;
+        while (zeroCount < input.length() && input.charAt(zeroCount) == ALPHABET[0]) {
+            ++zeroCount;
         }
+        byte[] output = new byte[zeroCount + maxDecodedLength(input.length() - zeroCount)];
+        int length = decode(input, output, 0);
+        return length == output.length ? output : Arrays.copyOf(output, length);
+    }
+
+    /**
+     * Decode base58 string to the given array without intermediate allocations
+     *
+     * @param input  base58 string
+     * @param output destination array
+     * @param offset position of the first decoded byte in output
+     * @return count of decoded bytes
+     * @throws IllegalArgumentException if input is not base58 or output has no room for decoded bytes
+     */
+    public static int decode(CharSequence input, byte[] output, int offset) throws IllegalArgumentException {
+        int length = input.length();
         // Count leading zeroes
         int zeroCount = 0;
-        while (zeroCount < input58.length && input58[zeroCount] == 0) {
+        while (zeroCount < length && input.charAt(zeroCount) == ALPHABET[0]) {
             ++zeroCount;
         }
-        // The encoding
-        byte[] temp = new byte[input.length()];
-        int j = temp.length;
-
-        int startAt = zeroCount;
-        while (startAt < input58.length) {
-            byte mod = divmod256(input58, startAt);
-            if (input58[startAt] == 0) {
-                ++startAt;
+        int start = offset + zeroCount;
+        if (start > output.length) {
+            throw new IllegalArgumentException("Output buffer is too small");
+        }
+        // Accumulate number in output[start, start + size) as little-endian bytes, input is consumed by 5 digits at a time.
+        // Intermediate values never exceed the result, so they always fit into the room of the result
+        int size = 0;
+        int i = zeroCount;
+        while (i < length) {
+            int end = Math.min(i + DIGITS_PER_LIMB, length);
+            long carry = 0;
+            long multiplier = 1;
+            for (; i < end; i++) {
+                carry = carry * 58 + digit(input.charAt(i), i);
+                multiplier *= 58;
+            }
+            for (int k = start; k < start + size; k++) {
+                carry += (output[k] & 0xFF) * multiplier;
+                output[k] = (byte) carry;
+                carry >>>= 8;
+            }
+            while (carry != 0) {
+                if (start + size >= output.length) {
+                    throw new IllegalArgumentException("Output buffer is too small");
+                }
+                output[start + size++] = (byte) carry;
+                carry >>>= 8;
             }
-
-            temp[--j] = mod;
         }
-        // Do no add extra leading zeroes, move j to first non null byte.
-        while (j < temp.length && temp[j] == 0) {
-            ++j;
+        Arrays.fill(output, offset, start, (byte) 0);
+        for (int l = start, r = start + size - 1; l < r; l++, r--) {
+            byte b = output[l];
+            output[l] = output[r];
+            output[r] = b;
         }
+        return zeroCount + size;
+    }
 
-        return copyOfRange(temp, j - zeroCount, temp.length);
+    private static int digit(char c, int position) {
+        int digit58 = -1;
+        if (c < 128) {
+            digit58 = INDEXES[c];
+        }
+        if (digit58 < 0) {
+            throw new IllegalArgumentException("Illegal character " + c + " at " + position);
+        }
+        return digit58;
     }
 
     public static BigInteger decodeToBigInteger(String input) throws IllegalArgumentException {
@@ -163,46 +223,4 @@ public class Base58 {
         
         return bytes;
     }*/
-
-
-    //
-    // number -> number / 58, returns number % 58
-    //
-    private static byte divmod58(byte[] number, int startAt) {
-        int remainder = 0;
-        for (int i = startAt; i < number.length; i++) {
-            int digit256 = (int) number[i] & 0xFF;
-            int temp = remainder * 256 + digit256;
-
-            number[i] = (byte) (temp / 58);
-
-            remainder = temp % 58;
-        }
-
-        return (byte) remainder;
-    }
-
-    //
-    // number -> number / 256, returns number % 256
-    //
-    private static byte divmod256(byte[] number58, int startAt) {
-        int remainder = 0;
-        for (int i = startAt; i < number58.length; i++) {
-            int digit58 = (int) number58[i] & 0xFF;
-            int temp = remainder * 58 + digit58;
-
-            number58[i] = (byte) (temp / 256);
-
-            remainder = temp % 256;
-        }
-
-        return (byte) remainder;
-    }
-
-    private static byte[] copyOfRange(byte[] source, int from, int to) {
-        byte[] range = new byte[to - from];
-        System.arraycopy(source, from, range, 0, range.length);
-
-        return range;
-    }
-}
\ No newline at end of file
+}
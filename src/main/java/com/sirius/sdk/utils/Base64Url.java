@@ -0,0 +1,129 @@
+package com.sirius.sdk.utils;
+
+import java.util.Arrays;
+
+/**
+ * URL-safe base64 codec working on array slices: encodes to/decodes from the given offset of existing buffer,
+ * so envelope can be assembled without intermediate copies.
+ * Encoding is padded with '=' (as java.util.Base64 url encoder), decoding accepts both padded and unpadded input.
+ */
+public class Base64Url {
+
+    static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    static final int[] INDEXES = new int[128];
+
+    static {
+        Arrays.fill(INDEXES, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            INDEXES[ALPHABET[i]] = i;
+        }
+    }
+
+    /**
+     * Length of padded encoding of len bytes
+     */
+    public static int encodedLength(int len) {
+        return (len + 2) / 3 * 4;
+    }
+
+    /**
+     * Encode slice of src to dst starting from dstOffset
+     *
+     * @return count of written bytes
+     */
+    public static int encode(byte[] src, int offset, int len, byte[] dst, int dstOffset) {
+        int end = offset + len;
+        int d = dstOffset;
+        int i = offset;
+        for (; i + 2 < end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[d++] = ALPHABET[(bits >>> 18) & 0x3f];
+            dst[d++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[d++] = ALPHABET[(bits >>> 6) & 0x3f];
+            dst[d++] = ALPHABET[bits & 0x3f];
+        }
+        int rest = end - i;
+        if (rest == 1) {
+            int bits = (src[i] & 0xff) << 16;
+            dst[d++] = ALPHABET[(bits >>> 18) & 0x3f];
+            dst[d++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[d++] = '=';
+            dst[d++] = '=';
+        } else if (rest == 2) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8;
+            dst[d++] = ALPHABET[(bits >>> 18) & 0x3f];
+            dst[d++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[d++] = ALPHABET[(bits >>> 6) & 0x3f];
+            dst[d++] = '=';
+        }
+        return d - dstOffset;
+    }
+
+    public static byte[] encode(byte[] src) {
+        byte[] dst = new byte[encodedLength(src.length)];
+        encode(src, 0, src.length, dst, 0);
+        return dst;
+    }
+
+    /**
+     * Count of bytes encoded in src
+     */
+    public static int decodedLength(CharSequence src) {
+        int len = src.length();
+        while (len > 0 && src.charAt(len - 1) == '=') {
+            len--;
+        }
+        int rest = len % 4;
+        if (rest == 1) {
+            throw new IllegalArgumentException("Invalid base64 length");
+        }
+        return len / 4 * 3 + (rest == 0 ? 0 : rest - 1);
+    }
+
+    /**
+     * Decode src to dst starting from dstOffset
+     *
+     * @return count of written bytes
+     */
+    public static int decode(CharSequence src, byte[] dst, int dstOffset) {
+        int len = src.length();
+        while (len > 0 && src.charAt(len - 1) == '=') {
+            len--;
+        }
+        int d = dstOffset;
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < len; i++) {
+            char c = src.charAt(i);
+            int value = c < 128 ? INDEXES[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Illegal base64 character " + c);
+            }
+            bits = bits << 6 | value;
+            count++;
+            if (count == 4) {
+                dst[d++] = (byte) (bits >> 16);
+                dst[d++] = (byte) (bits >> 8);
+                dst[d++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            dst[d++] = (byte) (bits >> 4);
+        } else if (count == 3) {
+            dst[d++] = (byte) (bits >> 10);
+            dst[d++] = (byte) (bits >> 2);
+        } else if (count == 1) {
+            throw new IllegalArgumentException("Invalid base64 length");
+        }
+        return d - dstOffset;
+    }
+
+    public static byte[] decode(CharSequence src) {
+        byte[] dst = new byte[decodedLength(src)];
+        decode(src, dst, 0);
+        return dst;
+    }
+}
@@ -0,0 +1,100 @@
+package com.sirius.sdk.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Thread-safe bounded cache, the least recently used entry is evicted when capacity is exceeded.
+ */
+public class LruCache<K, V> {
+
+    int capacity;
+    LinkedHashMap<K, V> map;
+    AtomicLong hits = new AtomicLong(0);
+    AtomicLong misses = new AtomicLong(0);
+
+    public LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new RuntimeException("Capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return cached value or null
+     */
+    public V get(K key) {
+        V value;
+        synchronized (this) {
+            value = map.get(key);
+        }
+        if (value != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        synchronized (this) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Return cached value or compute and cache it. Value is computed outside of the lock,
+     * so concurrent callers may compute the same value.
+     *
+     * @param loader compute value, null result is not cached
+     */
+    public V computeIfAbsent(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public V remove(K key) {
+        synchronized (this) {
+            return map.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this) {
+            return map.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,151 @@
+import com.sirius.sdk.agent.AgentRPC;
+import com.sirius.sdk.agent.AgentRPCPool;
+import com.sirius.sdk.errors.sirius_exceptions.SiriusTimeoutRPC;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestAgentRPCPool {
+
+    static class StubRPC extends AgentRPC {
+        boolean open = true;
+
+        StubRPC() {
+            super("http://localhost", new byte[0], null, 30);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    @Test
+    public void testReuseReleased() throws Exception {
+        AtomicInteger created = new AtomicInteger(0);
+        AgentRPCPool pool = new AgentRPCPool(() -> {
+            created.incrementAndGet();
+            return new StubRPC();
+        }, 2, 60, 1, 30);
+        AgentRPC first = pool.lease();
+        first.setTimeout(5);
+        pool.release(first);
+        AgentRPC second = pool.lease();
+        Assert.assertSame(first, second);
+        Assert.assertEquals(30, second.getTimeout());
+        Assert.assertEquals(1, created.get());
+        pool.close();
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        AgentRPCPool pool = new AgentRPCPool(StubRPC::new, 2, 60, 1, 30);
+        AgentRPC first = pool.lease();
+        pool.lease();
+        try {
+            pool.lease();
+            Assert.fail();
+        } catch (SiriusTimeoutRPC ignored) {
+        }
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            pool.release(first);
+        });
+        releaser.start();
+        Assert.assertSame(first, pool.lease());
+        releaser.join();
+        Assert.assertEquals(2, pool.getTotalCount());
+        pool.close();
+    }
+
+    @Test
+    public void testClosedConnectionIsDropped() throws Exception {
+        AgentRPCPool pool = new AgentRPCPool(StubRPC::new, 2, 60, 1, 30);
+        Assert.assertEquals(2, pool.warmUp(5));
+        Assert.assertEquals(2, pool.getIdleCount());
+        AgentRPC broken = pool.lease();
+        AgentRPC healthy = pool.lease();
+        broken.close();
+        pool.release(broken);
+        pool.release(healthy);
+        Assert.assertEquals(1, pool.getTotalCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+        // idle connection was closed by server-side: it is replaced with new one
+        healthy.close();
+        AgentRPC fresh = pool.lease();
+        Assert.assertNotSame(healthy, fresh);
+        Assert.assertTrue(fresh.isOpen());
+        Assert.assertEquals(1, pool.getTotalCount());
+        pool.close();
+    }
+
+    @Test
+    public void testDoubleRelease() throws Exception {
+        AgentRPCPool pool = new AgentRPCPool(StubRPC::new, 2, 60, 1, 30);
+        AgentRPC open = pool.lease();
+        AgentRPC closed = pool.lease();
+        closed.close();
+        pool.release(open);
+        pool.release(open);
+        pool.release(closed);
+        pool.release(closed);
+        pool.release(new StubRPC());
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(1, pool.getTotalCount());
+        AgentRPC first = pool.lease();
+        AgentRPC second = pool.lease();
+        Assert.assertSame(open, first);
+        Assert.assertNotSame(first, second);
+        pool.close();
+    }
+
+    @Test
+    public void testIdleReaping() throws Exception {
+        AgentRPCPool pool = new AgentRPCPool(StubRPC::new, 4, 1, 1, 30);
+        AgentRPC rpc = pool.lease();
+        pool.release(rpc);
+        Assert.assertEquals(1, pool.getIdleCount());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getIdleCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(0, pool.getTotalCount());
+        Assert.assertFalse(rpc.isOpen());
+        pool.close();
+    }
+
+    @Test
+    public void testShared() throws Exception {
+        AtomicInteger created = new AtomicInteger(0);
+        AgentRPCPool pool = new AgentRPCPool(() -> {
+            created.incrementAndGet();
+            return new StubRPC();
+        }, 2, 60, 1, 30);
+        pool.setSharedSize(2);
+        List<AgentRPC> leased = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            leased.add(pool.leaseShared());
+        }
+        Assert.assertEquals(2, created.get());
+        Assert.assertEquals(100, pool.getSharedLeasesCount());
+        for (AgentRPC rpc : leased) {
+            pool.releaseShared(rpc);
+        }
+        Assert.assertEquals(0, pool.getSharedLeasesCount());
+        AgentRPC rpc = leased.get(0);
+        pool.close();
+        Assert.assertFalse(rpc.isOpen());
+    }
+}
@@ -0,0 +1,284 @@
+import com.sirius.sdk.agent.aries_rfc.feature_0037_present_proof.BatchVerifier;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractAnonCreds;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractCache;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.AnonCredSchema;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.CacheOptions;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.PurgeOptions;
+import com.sirius.sdk.utils.Pair;
+import com.sirius.sdk.utils.Triple;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestBatchVerifier {
+
+    static class StubAnonCreds extends AbstractAnonCreds {
+        AtomicInteger concurrent = new AtomicInteger(0);
+        AtomicInteger maxConcurrent = new AtomicInteger(0);
+
+        @Override
+        public boolean verifierVerifyProof(JSONObject proofRequest, JSONObject proof, JSONObject schemas, JSONObject credentialDefs, JSONObject revRegDefs, JSONObject revRegs) {
+            int current = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            concurrent.decrementAndGet();
+            // proof is valid if all its artifacts were passed
+            for (Object o : proof.getJSONArray("identifiers")) {
+                JSONObject identifier = (JSONObject) o;
+                if (!schemas.has(identifier.getString("schema_id")) || !credentialDefs.has(identifier.getString("cred_def_id"))) {
+                    return false;
+                }
+            }
+            return proof.optBoolean("valid", true);
+        }
+
+        @Override
+        public Pair<String, AnonCredSchema> issuerCreateSchema(String issuerDid, String name, String version, List<String> attrs) {
+            return null;
+        }
+
+        @Override
+        public Pair<String, String> issuerCreateAndStoreCredentialDef(String issuerDid, Object schema, String tag, String signatureType, Object config) {
+            return null;
+        }
+
+        @Override
+        public String issuerRotateCredentialDefStart(String credDefId, String config) {
+            return null;
+        }
+
+        @Override
+        public void issuerRotateCredentialDefApply(String credDefId) {
+        }
+
+        @Override
+        public Triple<String, String, String> issuerCreateAndStoreRevocReg(String issuerDid, String revocDefType, String tag, String credDefId, String config, int tailsWriterHandle) {
+            return null;
+        }
+
+        @Override
+        public JSONObject issuerCreateCredentialOffer(String credDefId) {
+            return null;
+        }
+
+        @Override
+        public Triple<JSONObject, String, JSONObject> issuerCreateCredential(JSONObject credOffer, JSONObject credReq, JSONObject credValues, String revRegId, Integer blobStorageReaderHandle) {
+            return null;
+        }
+
+        @Override
+        public String issuerRevokeCredential(Integer blobStorageReaderHandle, String revRegId, String credRevocId) {
+            return null;
+        }
+
+        @Override
+        public String issuerMergeRevocationRegistryDeltas(String revRegDelta, String otherRevRegDelta) {
+            return null;
+        }
+
+        @Override
+        public String proverCreateMasterSecret(String masterSecretName) {
+            return null;
+        }
+
+        @Override
+        public Pair<JSONObject, JSONObject> proverCreateCredentialReq(String proverDid, JSONObject credOffer, JSONObject credDef, String masterSecretId) {
+            return null;
+        }
+
+        @Override
+        public void proverSetCredentialAttrTagPolicy(String credDefId, String taAttrs, boolean retroactive) {
+        }
+
+        @Override
+        public String proverGetCredentialAttrTagPolicy(String credDefId) {
+            return null;
+        }
+
+        @Override
+        public String proverStoreCredential(String credId, JSONObject credReqMetadata, JSONObject cred, JSONObject credDef, String revReqDef) {
+            return null;
+        }
+
+        @Override
+        public String proverGetCredential(String credDefId) {
+            return null;
+        }
+
+        @Override
+        public void proverDeleteCredential(String credId) {
+        }
+
+        @Override
+        public List<String> proverGetCredentials(String filters) {
+            return null;
+        }
+
+        @Override
+        public List<String> proverSearchCredential(String query) {
+            return null;
+        }
+
+        @Override
+        public String proverGetCredentialsForProofReq(String proofRequest) {
+            return null;
+        }
+
+        @Override
+        public JSONObject proverSearchCredentialsForProofReq(JSONObject proofRequest, String extraQuery, int limitReferents) {
+            return null;
+        }
+
+        @Override
+        public JSONObject proverCreateProof(JSONObject proofReq, JSONObject requestedCredentials, String masterSecretName, JSONObject schemas, JSONObject credentialDefs, JSONObject revStates) {
+            return null;
+        }
+
+        @Override
+        public String createRevocation(int blobStorageReaderHandle, String revRegDef, String revRegDelta, int timestamp, String credRevId) {
+            return null;
+        }
+
+        @Override
+        public String updateRevocationState(int blobStorageReaderHandle, String revState, String revRegDef, String revRegDelta, int timestamp, String credRevId) {
+            return null;
+        }
+
+        @Override
+        public String generateNonce() {
+            return null;
+        }
+
+        @Override
+        public String toUnqualified(String entity) {
+            return null;
+        }
+    }
+
+    static class StubCache extends AbstractCache {
+        AtomicInteger calls = new AtomicInteger(0);
+
+        @Override
+        public String getSchema(String poolName, String submitter_did, String id, CacheOptions options) {
+            calls.incrementAndGet();
+            return new JSONObject().put("id", id).toString();
+        }
+
+        @Override
+        public String getCredDef(String poolName, String submitter_did, String id, CacheOptions options) {
+            calls.incrementAndGet();
+            if (id.startsWith("missing")) {
+                return null;
+            }
+            return new JSONObject().put("id", id).toString();
+        }
+
+        @Override
+        public void purgeSchemaCache(PurgeOptions options) {
+        }
+
+        @Override
+        public void purgeCredDefCache(PurgeOptions options) {
+        }
+    }
+
+    static JSONObject proof(String credDefId, boolean valid) {
+        JSONArray identifiers = new JSONArray();
+        identifiers.put(new JSONObject().put("schema_id", "schema1").put("cred_def_id", credDefId));
+        identifiers.put(new JSONObject().put("schema_id", "schema2").put("cred_def_id", "cred_def_common"));
+        return new JSONObject().put("identifiers", identifiers).put("valid", valid);
+    }
+
+    @Test
+    public void testBatchVerification() {
+        StubAnonCreds anoncreds = new StubAnonCreds();
+        StubCache cache = new StubCache();
+        BatchVerifier verifier = new BatchVerifier(anoncreds, cache, "pool", "did", 4, 8, 16);
+        List<Pair<JSONObject, JSONObject>> proofs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            proofs.add(new Pair<>(new JSONObject(), proof("cred_def" + (i % 5), i % 10 != 0)));
+        }
+        List<Boolean> results = verifier.verifyAll(proofs);
+        verifier.close();
+
+        Assert.assertEquals(100, results.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i % 10 != 0, results.get(i));
+        }
+        // 2 schemas, 5 distinct cred defs and 1 common cred def are fetched once
+        Assert.assertEquals(8, cache.calls.get());
+        Assert.assertEquals(8, verifier.getArtifactsFetchedCount());
+        Assert.assertEquals(400, verifier.getArtifactsRequestedCount());
+        Assert.assertTrue(anoncreds.maxConcurrent.get() <= 4);
+        Assert.assertEquals(100, verifier.getVerifiedCount());
+        Assert.assertEquals(100, verifier.getCount(BatchVerifier.Stage.VERIFY));
+        Assert.assertEquals(100, verifier.getCount(BatchVerifier.Stage.TOTAL));
+        Assert.assertTrue(verifier.getAverageLatencyMs(BatchVerifier.Stage.VERIFY) >= 5);
+        Assert.assertTrue(verifier.getMaxLatencyMs(BatchVerifier.Stage.TOTAL) >= verifier.getAverageLatencyMs(BatchVerifier.Stage.VERIFY));
+    }
+
+    @Test
+    public void testUnresolvedArtifact() {
+        StubAnonCreds anoncreds = new StubAnonCreds();
+        BatchVerifier verifier = new BatchVerifier(anoncreds, new StubCache(), "pool", "did", 2, 2, 4);
+        List<Pair<JSONObject, JSONObject>> proofs = new ArrayList<>();
+        proofs.add(new Pair<>(new JSONObject(), proof("missing", true)));
+        proofs.add(new Pair<>(new JSONObject(), proof("cred_def", true)));
+        List<Boolean> results = verifier.verifyAll(proofs);
+        verifier.close();
+        Assert.assertFalse(results.get(0));
+        Assert.assertTrue(results.get(1));
+        Assert.assertEquals(1, verifier.getFailedCount());
+    }
+
+    @Test
+    public void testCloseFailsPendingProofs() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StubCache cache = new StubCache() {
+            @Override
+            public String getSchema(String poolName, String submitter_did, String id, CacheOptions options) {
+                resolving.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+                return super.getSchema(poolName, submitter_did, id, options);
+            }
+        };
+        // single resolve thread: the rest of artifacts are queued and dropped on close
+        BatchVerifier verifier = new BatchVerifier(new StubAnonCreds(), cache, "pool", "did", 1, 1, 2);
+        CompletableFuture<Boolean> first = verifier.submit(new JSONObject(), proof("cred_def1", true));
+        CompletableFuture<Boolean> second = verifier.submit(new JSONObject(), proof("cred_def2", true));
+        Assert.assertTrue(resolving.await(5, TimeUnit.SECONDS));
+        verifier.close();
+        release.countDown();
+        for (CompletableFuture<Boolean> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException ignored) {
+            }
+        }
+        Assert.assertEquals(2, verifier.getFailedCount());
+        try {
+            verifier.submit(new JSONObject(), proof("cred_def1", true));
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+    }
+}
@@ -0,0 +1,186 @@
+import com.sirius.sdk.agent.DecodeStage;
+import com.sirius.sdk.base.InboundFrameDispatcher;
+import com.sirius.sdk.errors.sirius_exceptions.SiriusConnectionClosed;
+import com.sirius.sdk.messaging.Message;
+import helpers.InMemoryChannel;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class TestChannels {
+
+    @Test
+    public void testFramesAreQueuedInOrder() throws Exception {
+        InMemoryChannel channel = new InMemoryChannel();
+        for (int i = 0; i < 100; i++) {
+            channel.write(("frame-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < 100; i++) {
+            byte[] frame = channel.read().get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("frame-" + i, new String(frame, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testManyWaiters() throws Exception {
+        InMemoryChannel channel = new InMemoryChannel();
+        List<CompletableFuture<byte[]>> waiters = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            waiters.add(channel.read());
+        }
+        // abandoned reader must not steal frame
+        waiters.get(3).cancel(false);
+        for (int i = 0; i < 9; i++) {
+            channel.write(("frame-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        int expected = 0;
+        for (int i = 0; i < 10; i++) {
+            if (i == 3) {
+                continue;
+            }
+            byte[] frame = waiters.get(i).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("frame-" + expected, new String(frame, StandardCharsets.UTF_8));
+            expected++;
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        InboundFrameDispatcher dispatcher = new InboundFrameDispatcher(2);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                dispatcher.offer(String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        producer.start();
+        for (int i = 0; i < 1000; i++) {
+            byte[] frame = dispatcher.read().get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(String.valueOf(i), new String(frame, StandardCharsets.UTF_8));
+            Assert.assertTrue(dispatcher.size() <= 2);
+        }
+        producer.join();
+    }
+
+    @Test
+    public void testCloseReleasesWaiters() throws Exception {
+        InboundFrameDispatcher dispatcher = new InboundFrameDispatcher();
+        CompletableFuture<byte[]> waiter = dispatcher.read();
+        dispatcher.close();
+        try {
+            waiter.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SiriusConnectionClosed);
+        }
+        Assert.assertFalse(dispatcher.offer(new byte[]{1}));
+    }
+
+    @Test
+    public void testDecodeStageKeepsArrivalOrder() throws Exception {
+        InMemoryChannel channel = new InMemoryChannel();
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        Set<String> decodingThreads = Collections.synchronizedSet(new HashSet<>());
+        Random random = new Random(1);
+        DecodeStage stage = new DecodeStage(channel, data -> {
+            decodingThreads.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(random.nextInt(5));
+            } catch (InterruptedException ignored) {
+            }
+            JSONObject payload = new JSONObject(new String(data, StandardCharsets.UTF_8));
+            payload.put("@type", "did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/test/1.0/event");
+            return new Message(payload.toString());
+        }, workers, 8);
+        try {
+            List<CompletableFuture<Message>> early = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                early.add(stage.read());
+            }
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    channel.write(("{\"seq\": " + i + "}").getBytes(StandardCharsets.UTF_8));
+                }
+            }, "io-thread");
+            producer.start();
+            for (int i = 0; i < 200; i++) {
+                CompletableFuture<Message> next = i < early.size() ? early.get(i) : stage.read();
+                Message message = next.get(5, TimeUnit.SECONDS);
+                Assert.assertEquals(i, message.getMessageObj().getInt("seq"));
+            }
+            producer.join();
+            Assert.assertFalse(decodingThreads.contains("io-thread"));
+            Assert.assertTrue(decodingThreads.size() > 1);
+
+            //STAGE STOPS READING WHILE IT IS FULL
+            for (int i = 0; i < 20; i++) {
+                channel.write(("{\"seq\": " + i + "}").getBytes(StandardCharsets.UTF_8));
+            }
+            Assert.assertEquals(0, stage.read().get(5, TimeUnit.SECONDS).getMessageObj().getInt("seq"));
+            Assert.assertTrue(stage.size() <= 8);
+            for (int i = 1; i < 20; i++) {
+                Assert.assertEquals(i, stage.read().get(5, TimeUnit.SECONDS).getMessageObj().getInt("seq"));
+            }
+
+            //CLOSED CHANNEL FAILS PENDING READER
+            CompletableFuture<Message> pending = stage.read();
+            channel.close();
+            try {
+                pending.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof SiriusConnectionClosed);
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void testDecodeStageReaderCancelledWhileDecoding() throws Exception {
+        InMemoryChannel channel = new InMemoryChannel();
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        CountDownLatch decodingStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DecodeStage stage = new DecodeStage(channel, data -> {
+            decodingStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            JSONObject payload = new JSONObject(new String(data, StandardCharsets.UTF_8));
+            payload.put("@type", "did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/test/1.0/event");
+            return new Message(payload.toString());
+        }, workers, 8);
+        try {
+            CompletableFuture<Message> gaveUp = stage.read();
+            channel.write("{\"seq\": 0}".getBytes(StandardCharsets.UTF_8));
+            Assert.assertTrue(decodingStarted.await(5, TimeUnit.SECONDS));
+            gaveUp.cancel(false);
+            CompletableFuture<Message> next = stage.read();
+            release.countDown();
+            Assert.assertEquals(0, next.get(5, TimeUnit.SECONDS).getMessageObj().getInt("seq"));
+
+            //MESSAGE WAITS FOR READER WHEN ALL READERS GAVE UP
+            CompletableFuture<Message> another = stage.read();
+            another.cancel(false);
+            channel.write("{\"seq\": 1}".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(1, stage.read().get(5, TimeUnit.SECONDS).getMessageObj().getInt("seq"));
+        } finally {
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import com.sirius.sdk.agent.AgentRPC;
+import com.sirius.sdk.agent.AgentRPCPool;
+import com.sirius.sdk.agent.CoProtocolDemultiplexer;
+import com.sirius.sdk.agent.model.coprotocols.TheirEndpointCoProtocolTransport;
+import com.sirius.sdk.agent.model.coprotocols.ThreadBasedCoProtocolTransport;
+import com.sirius.sdk.agent.model.pairwise.TheirEndpoint;
+import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidPayloadStructure;
+import com.sirius.sdk.messaging.Message;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestCoProtocolDemultiplexer {
+
+    static Message event(String sender, String type, String thid) {
+        JSONObject payload = new JSONObject();
+        payload.put("@type", type);
+        payload.put("@id", java.util.UUID.randomUUID().toString());
+        if (thid != null) {
+            payload.put("~thread", new JSONObject().put("thid", thid));
+        }
+        JSONObject event = new JSONObject();
+        event.put("@type", "did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/sirius_rpc/1.0/event");
+        event.put("@id", java.util.UUID.randomUUID().toString());
+        event.put("message", payload);
+        event.put("sender_verkey", sender);
+        event.put("recipient_verkey", "MY_VERKEY");
+        return new Message(event.toString());
+    }
+
+    static final String PING = "did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/trust_ping/1.0/ping";
+    static final String ISSUE = "https://didcomm.org/issue-credential/1.0/offer-credential";
+
+    @Test
+    public void testRouteByThread() throws Exception {
+        CoProtocolDemultiplexer router = new CoProtocolDemultiplexer();
+        List<CoProtocolDemultiplexer.Subscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            subscriptions.add(router.subscribeThread("thread-" + i));
+        }
+        for (int i = 999; i >= 0; i--) {
+            Assert.assertTrue(router.route(event("SENDER", PING, "thread-" + i)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            Message message = subscriptions.get(i).read(1);
+            Assert.assertEquals("thread-" + i, message.getJSONOBJECTFromJSON("message").getJSONObject("~thread").getString("thid"));
+            Assert.assertEquals(0, subscriptions.get(i).size());
+        }
+    }
+
+    @Test
+    public void testRouteBySenderAndProtocol() throws Exception {
+        CoProtocolDemultiplexer router = new CoProtocolDemultiplexer();
+        CoProtocolDemultiplexer.Subscription pings = router.subscribeP2P("SENDER", Collections.singletonList("trust_ping"));
+        CoProtocolDemultiplexer.Subscription any = router.subscribeP2P("SENDER", Collections.emptyList());
+        CoProtocolDemultiplexer.Subscription other = router.subscribeP2P("OTHER", Arrays.asList("trust_ping", "issue-credential"));
+
+        router.route(event("SENDER", PING, null));
+        router.route(event("SENDER", ISSUE, null));
+        router.route(event("OTHER", ISSUE, null));
+        Assert.assertFalse(router.route(event("UNKNOWN", PING, null)));
+
+        Assert.assertEquals(PING, pings.read(1).getJSONOBJECTFromJSON("message").getString("@type"));
+        Assert.assertEquals(ISSUE, any.read(1).getJSONOBJECTFromJSON("message").getString("@type"));
+        Assert.assertEquals(ISSUE, other.read(1).getJSONOBJECTFromJSON("message").getString("@type"));
+        Assert.assertEquals("UNKNOWN", router.readDefault(1).getStringFromJSON("sender_verkey"));
+    }
+
+    @Test
+    public void testThreadHasPriorityAndClose() throws Exception {
+        CoProtocolDemultiplexer router = new CoProtocolDemultiplexer();
+        CoProtocolDemultiplexer.Subscription p2p = router.subscribeP2P("SENDER", Collections.emptyList());
+        CoProtocolDemultiplexer.Subscription thread = router.subscribeThread("thread-1");
+        router.route(event("SENDER", PING, "thread-1"));
+        Assert.assertEquals(1, thread.size());
+        Assert.assertEquals(0, p2p.size());
+
+        thread.close();
+        p2p.close();
+        Assert.assertEquals(0, router.getRoutesCount());
+        Assert.assertFalse(router.route(event("SENDER", PING, "thread-1")));
+        try {
+            thread.read(0);
+            Assert.fail();
+        } catch (SiriusInvalidPayloadStructure ignored) {
+        }
+    }
+
+    @Test
+    public void testSharedRoutesAreCounted() throws Exception {
+        CoProtocolDemultiplexer router = new CoProtocolDemultiplexer();
+        CoProtocolDemultiplexer.Subscription first = router.subscribeThread("thread-1");
+        CoProtocolDemultiplexer.Subscription second = router.subscribeThread("thread-1");
+        Assert.assertEquals(2, router.getThreadHolders("thread-1"));
+        router.route(event("SENDER", PING, "thread-1"));
+        Assert.assertEquals(1, first.size());
+
+        Assert.assertFalse(first.removeThread("thread-1"));
+        Assert.assertTrue(router.route(event("SENDER", PING, "thread-1")));
+        Assert.assertEquals(1, second.size());
+        Assert.assertTrue(second.removeThread("thread-1"));
+        Assert.assertEquals(0, router.getRoutesCount());
+
+        CoProtocolDemultiplexer.Subscription pings = router.subscribeP2P("SENDER", Collections.singletonList("trust_ping"));
+        CoProtocolDemultiplexer.Subscription both = router.subscribeP2P("SENDER", Arrays.asList("trust_ping", "issue-credential"));
+        Assert.assertEquals(Collections.singletonList("issue-credential"), both.removeSender("SENDER"));
+        Assert.assertTrue(router.route(event("SENDER", PING, null)));
+        Assert.assertEquals(1, pings.size());
+        Assert.assertEquals(Collections.singletonList("trust_ping"), pings.removeSender("SENDER"));
+        Assert.assertEquals(0, router.getRoutesCount());
+    }
+
+    static class RecordingRPC extends AgentRPC {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingRPC() {
+            super("http://localhost", new byte[0], null, 30);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void startProtocolWithThreading(String thid, int timeToLiveSec) {
+            calls.add("start " + thid);
+        }
+
+        @Override
+        public void stopProtocolWithThreading(String thid, boolean offResponse) {
+            calls.add("stop " + thid);
+        }
+
+        @Override
+        public void stopProtocolWithThreads(List<String> threads, boolean offResponse) {
+        }
+
+        @Override
+        public void startProtocolForP2P(String senderVerkey, String recipientVerkey, List<String> protocols, int timeToLiveSec) {
+            calls.add("start " + recipientVerkey + " " + protocols);
+        }
+
+        @Override
+        public void stopProtocolForP2P(String senderVerkey, String recipientVerkey, List<String> protocols, boolean offResponse) {
+            calls.add("stop " + recipientVerkey + " " + protocols);
+        }
+    }
+
+    @Test
+    public void testTransportsShareLeasedConnection() throws Exception {
+        AgentRPCPool pool = new AgentRPCPool(RecordingRPC::new, 1, 60, 1, 30);
+        pool.setSharedSize(1);
+        RecordingRPC rpc = (RecordingRPC) pool.leaseShared();
+        Assert.assertSame(rpc, pool.leaseShared());
+        TheirEndpoint endpoint = new TheirEndpoint("http://their", "THEIR_VERKEY");
+        TheirEndpointCoProtocolTransport first = new TheirEndpointCoProtocolTransport("MY_VERKEY", endpoint, rpc);
+        TheirEndpointCoProtocolTransport second = new TheirEndpointCoProtocolTransport("MY_VERKEY", endpoint, rpc);
+        first.setPool(pool, true);
+        second.setPool(pool, true);
+        first.start(Collections.singletonList("trust_ping"));
+        second.start(Collections.singletonList("trust_ping"));
+        Assert.assertEquals(2, pool.getSharedLeasesCount());
+
+        first.stop();
+        Assert.assertFalse(rpc.calls.contains("stop THEIR_VERKEY [trust_ping]"));
+        CoProtocolDemultiplexer router = rpc.getCoProtocols();
+        Assert.assertTrue(router.route(event("THEIR_VERKEY", PING, null)));
+        Assert.assertEquals(1, router.getRoutesCount());
+
+        second.stop();
+        Assert.assertTrue(rpc.calls.contains("stop THEIR_VERKEY [trust_ping]"));
+        Assert.assertEquals(0, router.getRoutesCount());
+        Assert.assertEquals(0, pool.getSharedLeasesCount());
+
+        ThreadBasedCoProtocolTransport thread1 = new ThreadBasedCoProtocolTransport("thread-1", null, rpc, null);
+        ThreadBasedCoProtocolTransport thread2 = new ThreadBasedCoProtocolTransport("thread-1", null, rpc, null);
+        thread1.start();
+        thread2.start();
+        Assert.assertEquals(2, router.getThreadHolders("thread-1"));
+        thread2.stop();
+        Assert.assertFalse(rpc.calls.contains("stop thread-1"));
+        Assert.assertEquals(1, router.getThreadHolders("thread-1"));
+        thread1.stop();
+        Assert.assertTrue(rpc.calls.contains("stop thread-1"));
+        Assert.assertEquals(0, router.getRoutesCount());
+        pool.close();
+    }
+}
@@ -0,0 +1,197 @@
+import com.sirius.sdk.agent.wallet.CachedDID;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractDID;
+import com.sirius.sdk.utils.Pair;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestDidCache {
+
+    static class StubDID extends AbstractDID {
+        Map<String, String> keys = new HashMap<>();
+        Map<String, String> metadata = new HashMap<>();
+        Map<String, Pair<String, String>> endpoints = new HashMap<>();
+        AtomicInteger calls = new AtomicInteger(0);
+
+        @Override
+        public Pair<String, String> createAndStoreMyDid(String did, String seed, Boolean cid) {
+            keys.put(did, "verkey-" + did);
+            return new Pair<>(did, "verkey-" + did);
+        }
+
+        @Override
+        public void storeTheirDid(String did, String verkey) {
+            keys.put(did, verkey);
+        }
+
+        @Override
+        public void setDidMetadata(String did, String metadata) {
+            this.metadata.put(did, metadata);
+        }
+
+        @Override
+        public List<Object> listMyDidsWithMeta() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public String getDidMetadata(String did) {
+            calls.incrementAndGet();
+            return metadata.get(did);
+        }
+
+        @Override
+        public String keyForLocalDid(String did) {
+            calls.incrementAndGet();
+            return keys.get(did);
+        }
+
+        @Override
+        public String keyForDid(String poolName, String did) {
+            calls.incrementAndGet();
+            return keys.get(did);
+        }
+
+        @Override
+        public String createKey(String seed) {
+            return null;
+        }
+
+        @Override
+        public String replaceKeysStart(String did, String seed) {
+            return null;
+        }
+
+        @Override
+        public void replaceKeysApply(String did) {
+            keys.put(did, keys.get(did) + "-rotated");
+        }
+
+        @Override
+        public void setKeyMetadata(String verkey, String metadata) {
+        }
+
+        @Override
+        public String getKeyMetadata(String verkey) {
+            return null;
+        }
+
+        @Override
+        public void setEndpointForDid(String did, String address, String transportKey) {
+            endpoints.put(did, new Pair<>(address, transportKey));
+        }
+
+        @Override
+        public Pair<String, String> getEndpointForDid(String pooName, String did) {
+            calls.incrementAndGet();
+            return endpoints.get(did);
+        }
+
+        @Override
+        public Object getMyDidMeta(String did) {
+            return null;
+        }
+
+        @Override
+        public String abbreviateVerKey(String did, String fullVerkey) {
+            return fullVerkey;
+        }
+
+        @Override
+        public String qualifyDid(String did, String method) {
+            return method + ":" + did;
+        }
+    }
+
+    @Test
+    public void testCacheAndInvalidation() {
+        StubDID stub = new StubDID();
+        CachedDID cached = new CachedDID(stub, 100, 60, 60);
+        stub.storeTheirDid("did1", "verkey1");
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("verkey1", cached.keyForLocalDid("did1"));
+            Assert.assertEquals("verkey1", cached.keyForDid("pool1", "did1"));
+        }
+        Assert.assertEquals(2, stub.calls.get());
+        Assert.assertEquals(8, cached.getHits());
+        Assert.assertEquals(2, cached.getMisses());
+        Assert.assertEquals(4, cached.getHits(CachedDID.Lookup.KEY_FOR_DID));
+
+        cached.replaceKeysApply("did1");
+        Assert.assertEquals("verkey1-rotated", cached.keyForLocalDid("did1"));
+        Assert.assertEquals("verkey1-rotated", cached.keyForDid("pool1", "did1"));
+
+        cached.storeTheirDid("did1", "verkey2");
+        Assert.assertEquals("verkey2", cached.keyForDid("pool1", "did1"));
+
+        cached.setDidMetadata("did1", "meta1");
+        Assert.assertEquals("meta1", cached.getDidMetadata("did1"));
+        cached.setDidMetadata("did1", "meta2");
+        Assert.assertEquals("meta2", cached.getDidMetadata("did1"));
+
+        cached.setEndpointForDid("did1", "http://a", "key");
+        Assert.assertEquals("http://a", cached.getEndpointForDid("pool1", "did1").first);
+        cached.setEndpointForDid("did1", "http://b", "key");
+        Assert.assertEquals("http://b", cached.getEndpointForDid("pool1", "did1").first);
+    }
+
+    @Test
+    public void testNegativeCaching() {
+        StubDID stub = new StubDID();
+        CachedDID cached = new CachedDID(stub, 100, 60, 60);
+        Assert.assertNull(cached.keyForLocalDid("unknown"));
+        Assert.assertNull(cached.keyForLocalDid("unknown"));
+        Assert.assertEquals(1, stub.calls.get());
+
+        cached.createAndStoreMyDid("unknown", null, null);
+        Assert.assertEquals("verkey-unknown", cached.keyForLocalDid("unknown"));
+
+        CachedDID noNegative = new CachedDID(stub, 100, 60, 0);
+        stub.calls.set(0);
+        noNegative.getDidMetadata("other");
+        noNegative.getDidMetadata("other");
+        Assert.assertEquals(2, stub.calls.get());
+    }
+
+    @Test
+    public void testPerLookupTtl() {
+        StubDID stub = new StubDID();
+        CachedDID cached = new CachedDID(stub);
+        cached.setTtl(CachedDID.Lookup.DID_METADATA, 0);
+        stub.setDidMetadata("did1", "meta");
+        cached.getDidMetadata("did1");
+        cached.getDidMetadata("did1");
+        cached.keyForLocalDid("did1");
+        cached.keyForLocalDid("did1");
+        Assert.assertEquals(3, stub.calls.get());
+    }
+
+    @Test
+    public void testInvalidationDuringLoad() {
+        CachedDID[] cached = new CachedDID[1];
+        StubDID stub = new StubDID() {
+            @Override
+            public String getDidMetadata(String did) {
+                String loaded = super.getDidMetadata(did);
+                if (calls.get() == 1) {
+                    // concurrent write lands while the value is loaded
+                    cached[0].setDidMetadata(did, "meta2");
+                }
+                return loaded;
+            }
+        };
+        cached[0] = new CachedDID(stub, 100, 60, 60);
+        stub.setDidMetadata("did1", "meta1");
+        Assert.assertEquals("meta1", cached[0].getDidMetadata("did1"));
+        // stale value was not cached
+        Assert.assertEquals("meta2", cached[0].getDidMetadata("did1"));
+        Assert.assertEquals("meta2", cached[0].getDidMetadata("did1"));
+        Assert.assertEquals(2, stub.calls.get());
+    }
+}
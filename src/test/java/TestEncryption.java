@@ -1,19 +1,40 @@
 
 import com.goterl.lazycode.lazysodium.exceptions.SodiumException;
+import com.goterl.lazycode.lazysodium.interfaces.AEAD;
+import com.goterl.lazycode.lazysodium.utils.Key;
 import com.goterl.lazycode.lazysodium.utils.KeyPair;
+import com.sirius.sdk.encryption.Curve25519Keys;
 import com.sirius.sdk.encryption.Custom;
 import com.sirius.sdk.encryption.Ed25519;
+import com.sirius.sdk.encryption.P2PConnection;
 import com.sirius.sdk.encryption.UnpackModel;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusCryptoError;
 import com.sirius.sdk.errors.sirius_exceptions.SiriusInvalidType;
+import com.sirius.sdk.messaging.Message;
+import com.sirius.sdk.naclJava.CryptoAead;
+import com.sirius.sdk.naclJava.LibSodium;
+import com.sirius.sdk.naclJava.NativeBuffers;
+import com.sirius.sdk.naclJava.RandomBuffer;
+import com.sirius.sdk.naclJava.SodiumDirect;
+import com.sirius.sdk.utils.Base58;
+import com.sirius.sdk.utils.Base64Url;
 import com.sirius.sdk.utils.StringUtils;
+import helpers.LegacyBase58;
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TestEncryption {
     String seed1 = "000000000000000000000000000SEED1";
@@ -101,5 +122,378 @@ public class TestEncryption {
         }
     }
 
+    @Test
+    public void testKeysCache() throws Exception {
+        Custom custom = new Custom();
+        KeyPair keyPairRecipient = custom.createKeypair(seed1.getBytes(StandardCharsets.US_ASCII));
+        KeyPair keyPairSender = custom.createKeypair(seed2.getBytes(StandardCharsets.US_ASCII));
+        String verkeyRecipient = custom.bytesToB58(keyPairRecipient.getPublicKey().getAsBytes());
+        String sigkeyRecipient = custom.bytesToB58(keyPairRecipient.getSecretKey().getAsBytes());
+        String verkeySender = custom.bytesToB58(keyPairSender.getPublicKey().getAsBytes());
+        String sigkeySender = custom.bytesToB58(keyPairSender.getSecretKey().getAsBytes());
+
+        //CACHED CONVERSION IS EQUAL TO LIBSODIUM ONE
+        Ed25519 ed25519 = new Ed25519();
+        KeyPair expected = LibSodium.getInstance().getLazySodium().convertKeyPairEd25519ToCurve25519(keyPairSender);
+        for (int i = 0; i < 2; i++) {
+            KeyPair actual = ed25519.toCurve25519KeyPair(keyPairSender);
+            Assert.assertArrayEquals(expected.getPublicKey().getAsBytes(), actual.getPublicKey().getAsBytes());
+            Assert.assertArrayEquals(expected.getSecretKey().getAsBytes(), actual.getSecretKey().getAsBytes());
+        }
+
+        //CONNECTIONS WITH CACHED KEYS ARE COMPATIBLE
+        P2PConnection sender = new P2PConnection(verkeySender, sigkeySender, verkeyRecipient);
+        P2PConnection recipient = new P2PConnection(verkeyRecipient, sigkeyRecipient, verkeySender);
+        long hits = Curve25519Keys.getCurvePublicKeysCache().getHits();
+        String message = getTestMessage();
+        for (int i = 0; i < 10; i++) {
+            String packed = sender.pack(message);
+            Assert.assertEquals(message, recipient.unpack(packed));
+            Assert.assertEquals(message, ed25519.unpackMessage(packed, verkeyRecipient, sigkeyRecipient).getMessage());
+        }
+        Assert.assertTrue(Curve25519Keys.getCurvePublicKeysCache().getHits() >= hits + 20);
+
+        //SIGKEYS ARE NOT CACHED, CALLERS GET THEIR OWN COPIES
+        Assert.assertArrayEquals(keyPairSender.getSecretKey().getAsBytes(), Curve25519Keys.decode(sigkeySender));
+        Assert.assertNull(Curve25519Keys.getDecodedKeysCache().get(sigkeySender));
+        byte[] decoded = Curve25519Keys.decode(verkeySender);
+        Assert.assertNotNull(Curve25519Keys.getDecodedKeysCache().get(verkeySender));
+        Assert.assertNotSame(decoded, Curve25519Keys.decode(verkeySender));
+        decoded[0] ^= 1;
+        Assert.assertArrayEquals(keyPairSender.getPublicKey().getAsBytes(), Curve25519Keys.decode(verkeySender));
+    }
+
+    @Test
+    public void testEnvelopeCompatibility() throws Exception {
+        Custom custom = new Custom();
+        KeyPair keyPairRecipient = custom.createKeypair(seed1.getBytes(StandardCharsets.US_ASCII));
+        KeyPair keyPairSender = custom.createKeypair(seed2.getBytes(StandardCharsets.US_ASCII));
+        String verkeyRecipient = custom.bytesToB58(keyPairRecipient.getPublicKey().getAsBytes());
+        String verkeySender = custom.bytesToB58(keyPairSender.getPublicKey().getAsBytes());
+        String sigkeySender = custom.bytesToB58(keyPairSender.getSecretKey().getAsBytes());
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            large.append("credential-").append(i);
+        }
+        JSONObject content = new JSONObject();
+        content.put("content", large.toString());
+        String message = content.toString();
+
+        Ed25519 ed25519 = new Ed25519();
+        String packed = ed25519.packMessage(message, Collections.singletonList(verkeyRecipient), verkeySender, sigkeySender);
+        JSONObject envelope = new JSONObject(packed);
+        //SERIALIZATION IS THE SAME AS JSONObject ONE
+        JSONObject expected = new JSONObject();
+        expected.put("protected", envelope.getString("protected"));
+        expected.put("iv", envelope.getString("iv"));
+        expected.put("ciphertext", envelope.getString("ciphertext"));
+        expected.put("tag", envelope.getString("tag"));
+        Assert.assertEquals(expected.toString(), packed);
+        Assert.assertEquals(message.length(), custom.b64ToBytes(envelope.getString("ciphertext"), true).length);
+        Assert.assertEquals(16, custom.b64ToBytes(envelope.getString("tag"), true).length);
+
+        //BASE64URL IS THE SAME AS java.util.Base64
+        Random random = new Random(1);
+        for (int len = 0; len < 100; len++) {
+            byte[] bytes = new byte[len];
+            random.nextBytes(bytes);
+            String encoded = custom.bytesToB64(bytes, true);
+            Assert.assertEquals(encoded, new String(Base64Url.encode(bytes), StandardCharsets.US_ASCII));
+            Assert.assertArrayEquals(bytes, Base64Url.decode(encoded));
+            Assert.assertArrayEquals(bytes, Base64Url.decode(encoded.replace("=", "")));
+        }
+
+        //crypto_box_easy IS THE SAME AS PADDED crypto_box
+        KeyPair boxKeys = new KeyPair(Curve25519Keys.toCurvePublicKey(keyPairRecipient.getPublicKey().getAsBytes()),
+                Curve25519Keys.toCurveSecretKey(keyPairSender.getSecretKey().getAsBytes()));
+        byte[] nonce = new byte[24];
+        byte[] plain = "cek".getBytes(StandardCharsets.US_ASCII);
+        byte[] padded = new byte[32 + plain.length];
+        System.arraycopy(plain, 0, padded, 32, plain.length);
+        byte[] legacy = new byte[padded.length];
+        LibSodium.getInstance().getNativeBox().cryptoBox(legacy, padded, padded.length, nonce,
+                boxKeys.getPublicKey().getAsBytes(), boxKeys.getSecretKey().getAsBytes());
+        byte[] actual = new CryptoAead().cryptoBox(plain, nonce, boxKeys);
+        Assert.assertArrayEquals(Arrays.copyOfRange(legacy, 16, legacy.length), actual);
+
+        //UNPACK
+        String sigkeyRecipient = custom.bytesToB58(keyPairRecipient.getSecretKey().getAsBytes());
+        UnpackModel unpacked = ed25519.unpackMessage(packed, verkeyRecipient, sigkeyRecipient);
+        Assert.assertEquals(message, unpacked.getMessage());
+        Assert.assertEquals(verkeySender, unpacked.getSender_vk());
+    }
 
+    @Test
+    public void testSharedKeys() throws Exception {
+        Custom custom = new Custom();
+        KeyPair keyPairRecipient = custom.createKeypair(seed1.getBytes(StandardCharsets.US_ASCII));
+        KeyPair keyPairSender = custom.createKeypair(seed2.getBytes(StandardCharsets.US_ASCII));
+        String verkeyRecipient = custom.bytesToB58(keyPairRecipient.getPublicKey().getAsBytes());
+        String sigkeyRecipient = custom.bytesToB58(keyPairRecipient.getSecretKey().getAsBytes());
+        String verkeySender = custom.bytesToB58(keyPairSender.getPublicKey().getAsBytes());
+        String sigkeySender = custom.bytesToB58(keyPairSender.getSecretKey().getAsBytes());
+
+        //AFTERNM IS THE SAME AS crypto_box
+        Ed25519 ed25519 = new Ed25519(2);
+        KeyPair boxKeys = new KeyPair(Curve25519Keys.toCurvePublicKey(keyPairRecipient.getPublicKey().getAsBytes()),
+                Curve25519Keys.toCurveSecretKey(keyPairSender.getSecretKey().getAsBytes()));
+        byte[] nonce = LibSodium.getInstance().getLazySodium().randomBytesBuf(24);
+        byte[] plain = "content-encryption-key".getBytes(StandardCharsets.US_ASCII);
+        byte[] expected = new CryptoAead().cryptoBox(plain, nonce, boxKeys);
+        byte[] actual = new CryptoAead().cryptoBoxAfterNm(plain, nonce, ed25519.sharedKey(boxKeys));
+        Assert.assertArrayEquals(expected, actual);
+
+        //SHARED KEY IS COMPUTED ONCE PER PEER
+        Ed25519 sender = new Ed25519(2);
+        Ed25519 recipient = new Ed25519(2);
+        String message = getTestMessage();
+        for (int i = 0; i < 10; i++) {
+            String packed = sender.packMessage(message, Collections.singletonList(verkeyRecipient), verkeySender, sigkeySender);
+            Assert.assertEquals(message, recipient.unpackMessage(packed, verkeyRecipient, sigkeyRecipient).getMessage());
+        }
+        Assert.assertEquals(1, sender.getSharedKeysCache().size());
+        Assert.assertEquals(1, sender.getSharedKeysCache().getMisses());
+        Assert.assertEquals(9, sender.getSharedKeysCache().getHits());
+        Assert.assertEquals(1, recipient.getSharedKeysCache().getMisses());
+    }
+
+    @Test
+    public void testParallelPack() throws Exception {
+        Custom custom = new Custom();
+        KeyPair keyPairSender = custom.createKeypair(seed2.getBytes(StandardCharsets.US_ASCII));
+        String verkeySender = custom.bytesToB58(keyPairSender.getPublicKey().getAsBytes());
+        String sigkeySender = custom.bytesToB58(keyPairSender.getSecretKey().getAsBytes());
+        List<KeyPair> recipients = new ArrayList<>();
+        List<String> verkeys = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            KeyPair keyPair = custom.createKeypair(String.format("%032d", i).getBytes(StandardCharsets.US_ASCII));
+            recipients.add(keyPair);
+            verkeys.add(custom.bytesToB58(keyPair.getPublicKey().getAsBytes()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Ed25519 ed25519 = new Ed25519();
+            ed25519.setPackExecutor(executor, 2);
+            String message = getTestMessage();
+            for (String alg : Arrays.asList("Authcrypt", "Anoncrypt")) {
+                boolean auth = alg.equals("Authcrypt");
+                String packed = ed25519.packMessage(message, verkeys, auth ? verkeySender : null, auth ? sigkeySender : null);
+                String recips = new String(custom.b64ToBytes(new JSONObject(packed).getString("protected"), true), StandardCharsets.US_ASCII);
+                //SERIALIZATION IS THE SAME AS JSONObject ONE
+                Assert.assertEquals(new JSONObject(recips).toString(), recips);
+                Assert.assertEquals(alg, new JSONObject(recips).getString("alg"));
+                //RECIPIENTS ORDER IS PRESERVED
+                for (int i = 0; i < verkeys.size(); i++) {
+                    JSONObject header = new JSONObject(recips).getJSONArray("recipients").getJSONObject(i).getJSONObject("header");
+                    Assert.assertEquals(verkeys.get(i), header.getString("kid"));
+                    Assert.assertEquals(auth, header.has("sender"));
+                }
+                if (auth) {
+                    for (int i = 0; i < verkeys.size(); i++) {
+                        String sigkey = custom.bytesToB58(recipients.get(i).getSecretKey().getAsBytes());
+                        UnpackModel unpacked = new Ed25519().unpackMessage(packed, verkeys.get(i), sigkey);
+                        Assert.assertEquals(message, unpacked.getMessage());
+                        Assert.assertEquals(verkeySender, unpacked.getSender_vk());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBase58() throws Exception {
+        //SAME AS PREVIOUS IMPLEMENTATION, INCLUDING LEADING ZEROES
+        Random random = new Random(1);
+        for (int len = 0; len < 100; len++) {
+            for (int zeroes = 0; zeroes <= 6 && zeroes <= len; zeroes++) {
+                byte[] bytes = new byte[len];
+                random.nextBytes(bytes);
+                Arrays.fill(bytes, 0, zeroes, (byte) 0);
+                String encoded = LegacyBase58.encode(bytes);
+                Assert.assertEquals(encoded, Base58.encode(bytes));
+                Assert.assertArrayEquals(LegacyBase58.decode(encoded), Base58.decode(encoded));
+            }
+        }
+        Assert.assertEquals("", Base58.encode(new byte[0]));
+        Assert.assertEquals("111", Base58.encode(new byte[3]));
+        Assert.assertArrayEquals(new byte[3], Base58.decode("111"));
+        for (int ones = 1; ones <= 40; ones++) {
+            StringBuilder allOnes = new StringBuilder();
+            for (int i = 0; i < ones; i++) {
+                allOnes.append('1');
+            }
+            Assert.assertArrayEquals(LegacyBase58.decode(allOnes.toString()), Base58.decode(allOnes.toString()));
+            Assert.assertArrayEquals(LegacyBase58.decode(allOnes + "2"), Base58.decode(allOnes + "2"));
+        }
+        for (int zeroes = 4; zeroes <= 8; zeroes++) {
+            byte[] key = new byte[32];
+            random.nextBytes(key);
+            Arrays.fill(key, 0, zeroes, (byte) 0);
+            // encode drops one leading '1' of long strings as the previous implementation did, so canonical string is built here
+            StringBuilder canonical = new StringBuilder();
+            for (int i = 0; i < zeroes; i++) {
+                canonical.append('1');
+            }
+            canonical.append(Base58.encode(Arrays.copyOfRange(key, zeroes, key.length)));
+            Assert.assertArrayEquals(key, Base58.decode(canonical.toString()));
+            Assert.assertArrayEquals(LegacyBase58.decode(LegacyBase58.encode(key)), Base58.decode(LegacyBase58.encode(key)));
+        }
+
+        //DECODE TO CALLER-SUPPLIED ARRAY
+        Custom custom = new Custom();
+        KeyPair keyPair = custom.createKeypair(seed1.getBytes(StandardCharsets.US_ASCII));
+        String verkey = custom.bytesToB58(keyPair.getPublicKey().getAsBytes());
+        byte[] output = new byte[40];
+        Assert.assertEquals(32, Base58.decode(verkey, output, 8));
+        Assert.assertArrayEquals(keyPair.getPublicKey().getAsBytes(), Arrays.copyOfRange(output, 8, 40));
+        try {
+            Base58.decode(verkey, new byte[31], 0);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            Base58.decode("0OIl");
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        //ONLY VERKEYS ARE CACHED
+        String sigkey = custom.bytesToB58(keyPair.getSecretKey().getAsBytes());
+        Assert.assertArrayEquals(keyPair.getSecretKey().getAsBytes(), Curve25519Keys.decode(sigkey));
+        Assert.assertNull(Curve25519Keys.getDecodedKeysCache().get(sigkey));
+        Assert.assertArrayEquals(keyPair.getPublicKey().getAsBytes(), Curve25519Keys.decode(verkey));
+        Assert.assertEquals(verkey, Curve25519Keys.encode(keyPair.getPublicKey().getAsBytes()));
+        Assert.assertSame(Curve25519Keys.encode(keyPair.getPublicKey().getAsBytes()),
+                Curve25519Keys.encode(keyPair.getPublicKey().getAsBytes()));
+    }
+
+    @Test
+    public void testSodiumBindings() throws Exception {
+        Custom custom = new Custom();
+        KeyPair keyPairRecipient = custom.createKeypair(seed1.getBytes(StandardCharsets.US_ASCII));
+        KeyPair keyPairSender = custom.createKeypair(seed2.getBytes(StandardCharsets.US_ASCII));
+        String verkeyRecipient = custom.bytesToB58(keyPairRecipient.getPublicKey().getAsBytes());
+        String sigkeyRecipient = custom.bytesToB58(keyPairRecipient.getSecretKey().getAsBytes());
+        String verkeySender = custom.bytesToB58(keyPairSender.getPublicKey().getAsBytes());
+        String sigkeySender = custom.bytesToB58(keyPairSender.getSecretKey().getAsBytes());
+        String message = getTestMessage();
+        byte[] bytes = message.getBytes(StandardCharsets.US_ASCII);
+        LibSodium.Binding initial = LibSodium.getBinding();
+        try {
+            LibSodium.setBinding(LibSodium.Binding.DIRECT);
+            Assert.assertTrue(LibSodium.getInstance().getPrimitives() instanceof SodiumDirect);
+            String packedDirect = new Ed25519().packMessage(message, Collections.singletonList(verkeyRecipient), verkeySender, sigkeySender);
+            byte[] signatureDirect = new CryptoAead().cryptoSignDetached(bytes, keyPairSender.getSecretKey().getAsBytes());
+
+            LibSodium.setBinding(LibSodium.Binding.LAZY_SODIUM);
+            Assert.assertFalse(LibSodium.getInstance().getPrimitives() instanceof SodiumDirect);
+            //MESSAGES PACKED IN ONE MODE ARE UNPACKED IN ANOTHER ONE
+            Assert.assertEquals(message, new Ed25519().unpackMessage(packedDirect, verkeyRecipient, sigkeyRecipient).getMessage());
+            String packedLazy = new Ed25519().packMessage(message, Collections.singletonList(verkeyRecipient), verkeySender, sigkeySender);
+            byte[] signatureLazy = new CryptoAead().cryptoSignDetached(bytes, keyPairSender.getSecretKey().getAsBytes());
+            Assert.assertArrayEquals(signatureDirect, signatureLazy);
+
+            LibSodium.setBinding(LibSodium.Binding.DIRECT);
+            Assert.assertEquals(message, new Ed25519().unpackMessage(packedLazy, verkeyRecipient, sigkeyRecipient).getMessage());
+            Assert.assertTrue(new CryptoAead().cryptoSignVerifyDetached(signatureLazy, bytes, keyPairSender.getPublicKey().getAsBytes()));
+            bytes[0] ^= 1;
+            Assert.assertFalse(new CryptoAead().cryptoSignVerifyDetached(signatureLazy, bytes, keyPairSender.getPublicKey().getAsBytes()));
+        } finally {
+            LibSodium.setBinding(initial);
+        }
+    }
+
+    @Test
+    public void testNativeBuffers() throws Exception {
+        Custom custom = new Custom();
+        KeyPair keyPairRecipient = custom.createKeypair(seed1.getBytes(StandardCharsets.US_ASCII));
+        KeyPair keyPairSender = custom.createKeypair(seed2.getBytes(StandardCharsets.US_ASCII));
+        String verkeyRecipient = custom.bytesToB58(keyPairRecipient.getPublicKey().getAsBytes());
+        String sigkeyRecipient = custom.bytesToB58(keyPairRecipient.getSecretKey().getAsBytes());
+        String verkeySender = custom.bytesToB58(keyPairSender.getPublicKey().getAsBytes());
+        String sigkeySender = custom.bytesToB58(keyPairSender.getSecretKey().getAsBytes());
+        LibSodium.Binding initial = LibSodium.getBinding();
+        LibSodium.setBinding(LibSodium.Binding.DIRECT);
+        try {
+            //SCRATCH MEMORY GIVES THE SAME RESULT AS ARRAYS
+            CryptoAead crypto = new CryptoAead();
+            Key key = Key.fromBytes(new byte[32]);
+            byte[] nonce = new byte[12];
+            byte[] ad = "protected".getBytes(StandardCharsets.US_ASCII);
+            for (int len : new int[]{0, 1, 100, 5000}) {
+                byte[] message = new byte[len];
+                new Random(len).nextBytes(message);
+                NativeBuffers.setEnabled(false);
+                byte[] expected = crypto.encrypt(message, ad, nonce, key);
+                NativeBuffers.setEnabled(true);
+                byte[] actual = crypto.encrypt(message, ad, nonce, key);
+                Assert.assertArrayEquals(expected, actual);
+                Assert.assertArrayEquals(message, crypto.decrypt(actual, ad, nonce, key, AEAD.Method.CHACHA20_POLY1305_IETF));
+            }
+
+            //SCRATCH MEMORY IS REUSED
+            String message = getTestMessage();
+            Ed25519 ed25519 = new Ed25519();
+            ed25519.packMessage(message, Collections.singletonList(verkeyRecipient), verkeySender, sigkeySender);
+            long allocations = NativeBuffers.getAllocationsCount();
+            for (int i = 0; i < 10; i++) {
+                String packed = ed25519.packMessage(message, Collections.singletonList(verkeyRecipient), verkeySender, sigkeySender);
+                Assert.assertEquals(message, ed25519.unpackMessage(packed, verkeyRecipient, sigkeyRecipient).getMessage());
+            }
+            Assert.assertEquals(allocations, NativeBuffers.getAllocationsCount());
+
+            //LARGE MESSAGES GET TEMPORARY MEMORY
+            NativeBuffers.setMaxPooledSize(1024);
+            StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                large.append("credential-").append(i);
+            }
+            String packed = ed25519.packMessage(large.toString(), Collections.singletonList(verkeyRecipient), verkeySender, sigkeySender);
+            Assert.assertEquals(large.toString(), ed25519.unpackMessage(packed, verkeyRecipient, sigkeyRecipient).getMessage());
+            Assert.assertTrue(NativeBuffers.getAllocationsCount() > allocations);
+        } finally {
+            NativeBuffers.setEnabled(true);
+            NativeBuffers.setMaxPooledSize(NativeBuffers.DEF_MAX_POOLED_SIZE);
+            LibSodium.setBinding(initial);
+        }
+    }
+
+    @Test
+    public void testRandomBuffer() throws Exception {
+        //BUFFERS ARE SWAPPED AND REFILLED
+        RandomBuffer random = new RandomBuffer(64);
+        Set<String> chunks = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            byte[] bytes = random.nextBytes(24);
+            Assert.assertFalse(Arrays.equals(new byte[24], bytes));
+            Assert.assertTrue(chunks.add(Arrays.toString(bytes)));
+        }
+        Assert.assertEquals(100, random.nextBytes(100).length);
+
+        //IDS ARE UNIQUE UUIDS FROM CONCURRENT CALLERS
+        Set<String> ids = Collections.synchronizedSet(new HashSet<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    ids.add(Message.generateId());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(20000, ids.size());
+        for (String id : ids) {
+            UUID uuid = UUID.fromString(id);
+            Assert.assertEquals(4, uuid.version());
+            Assert.assertEquals(2, uuid.variant());
+            Assert.assertEquals(id, uuid.toString());
+        }
+    }
 }
@@ -0,0 +1,149 @@
+import com.sirius.sdk.agent.Event;
+import com.sirius.sdk.agent.EventDispatcher;
+import com.sirius.sdk.agent.aries_rfc.feature_0015_acks.Ack;
+import com.sirius.sdk.base.Flow;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestEventDispatcher {
+
+    static Event event(String sender, String thid, String type, int seq) {
+        JSONObject message = new JSONObject();
+        message.put("@type", type);
+        message.put("@id", "msg-" + sender + "-" + seq);
+        message.put("seq", seq);
+        if (thid != null) {
+            message.put("~thread", new JSONObject().put("thid", thid));
+        }
+        JSONObject event = new JSONObject();
+        event.put("@type", "https://didcomm.org/sirius_rpc/1.0/event");
+        event.put("@id", "event-" + sender + "-" + seq);
+        event.put("sender_verkey", sender);
+        event.put("message", message);
+        return new Event(null, event.toString());
+    }
+
+    @Test
+    public void testOrderPerSender() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(4);
+        int senders = 16;
+        int count = 200;
+        Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(senders * count);
+        dispatcher.setDefaultHandler(event -> {
+            handled.computeIfAbsent(event.getStringFromJSON("sender_verkey"), k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(event.getJSONOBJECTFromJSON("message").getInt("seq"));
+            done.countDown();
+        });
+        for (int i = 0; i < count; i++) {
+            for (int s = 0; s < senders; s++) {
+                Assert.assertTrue(dispatcher.dispatch(event("sender-" + s, null, "https://didcomm.org/trust_ping/1.0/ping", i)));
+            }
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(senders, handled.size());
+        for (List<Integer> sequence : handled.values()) {
+            Assert.assertEquals(count, sequence.size());
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(i, sequence.get(i).intValue());
+            }
+        }
+        long processed = 0;
+        for (int shard = 0; shard < dispatcher.getShardsCount(); shard++) {
+            processed += dispatcher.getProcessedCount(shard);
+            Assert.assertTrue(dispatcher.getMaxQueueDepth(shard) <= EventDispatcher.DEF_QUEUE_CAPACITY);
+        }
+        Assert.assertEquals(senders * count, processed);
+        dispatcher.close();
+        Assert.assertFalse(dispatcher.dispatch(event("sender-0", null, "https://didcomm.org/trust_ping/1.0/ping", 0)));
+    }
+
+    @Test
+    public void testHandlerByMessageClass() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(2, 16, EventDispatcher.Sharding.BY_THREAD);
+        CountDownLatch done = new CountDownLatch(2);
+        List<Object> acks = Collections.synchronizedList(new ArrayList<>());
+        List<Object> others = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.register(Ack.class, (event, ack) -> {
+            acks.add(ack);
+            done.countDown();
+        });
+        dispatcher.setDefaultHandler(event -> {
+            others.add(event);
+            done.countDown();
+        });
+        dispatcher.dispatch(event("sender", "thread-1", "https://didcomm.org/notification/1.0/ack", 0));
+        dispatcher.dispatch(event("sender", "thread-2", "https://didcomm.org/trust_ping/1.0/ping", 1));
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, acks.size());
+        Assert.assertTrue(acks.get(0) instanceof Ack);
+        Assert.assertEquals(1, others.size());
+        dispatcher.close();
+    }
+
+    @Test
+    public void testHotSenderDoesNotBlockStream() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(2, 4, EventDispatcher.Sharding.BY_SENDER);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.setDefaultHandler(event -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            handled.add(event.getJSONOBJECTFromJSON("message").getInt("seq"));
+        });
+        AtomicLong requested = new AtomicLong(0);
+        dispatcher.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        Assert.assertEquals(4, requested.get());
+
+        // every requested event goes to the same shard, its worker is stuck in the handler
+        int delivered = 0;
+        long deadline = System.currentTimeMillis() + 500;
+        while (System.currentTimeMillis() < deadline) {
+            while (delivered < requested.get()) {
+                dispatcher.onNext(event("hot", null, "https://didcomm.org/trust_ping/1.0/ping", delivered++));
+            }
+            Thread.sleep(10);
+        }
+        // queue of 4 and the event in the handler
+        Assert.assertEquals(5, delivered);
+        Assert.assertTrue(dispatcher.getMaxQueueDepth(0) + dispatcher.getMaxQueueDepth(1) <= 4);
+
+        release.countDown();
+        deadline = System.currentTimeMillis() + 10000;
+        while (delivered < 100 && System.currentTimeMillis() < deadline) {
+            while (delivered < requested.get() && delivered < 100) {
+                dispatcher.onNext(event("hot", null, "https://didcomm.org/trust_ping/1.0/ping", delivered++));
+            }
+            Thread.sleep(1);
+        }
+        while (handled.size() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(100, handled.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, handled.get(i).intValue());
+        }
+        dispatcher.close();
+    }
+}
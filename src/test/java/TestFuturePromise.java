@@ -3,14 +3,22 @@ import com.sirius.sdk.errors.sirius_exceptions.SiriusPendingOperation;
 import com.sirius.sdk.messaging.Message;
 import com.sirius.sdk.rpc.AddressedTunnel;
 import com.sirius.sdk.rpc.Future;
+import com.sirius.sdk.rpc.Parsing;
+import com.sirius.sdk.rpc.RequestBatcher;
 import com.sirius.sdk.utils.Pair;
 import helpers.ConfTest;
+import helpers.InMemoryRpcServer;
 import models.P2PModel;
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 public class TestFuturePromise {
 
     ConfTest confTest;
@@ -66,4 +74,66 @@ public class TestFuturePromise {
 
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        AddressedTunnel agent_to_sdk = p2pPair.first.getTunnel();
+        AddressedTunnel sdk_to_agent = p2pPair.second.getTunnel();
+        InMemoryRpcServer server = new InMemoryRpcServer(agent_to_sdk);
+        server.start();
+        RequestBatcher batcher = new RequestBatcher(sdk_to_agent, 10, 1000);
+        try {
+            List<Future> futures = new ArrayList<>();
+            List<Message> requests = new ArrayList<>();
+            List<CompletableFuture<Boolean>> posted = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Future future = new Future(sdk_to_agent);
+                Message request = Parsing.buildRequest("did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/sirius_rpc/1.0/test", future, null);
+                futures.add(future);
+                requests.add(request);
+                posted.add(batcher.post(request, true));
+            }
+            for (CompletableFuture<Boolean> isPosted : posted) {
+                Assert.assertTrue(isPosted.get(5, TimeUnit.SECONDS));
+            }
+
+            Message response = sdk_to_agent.receive(5);
+            Assert.assertEquals(Parsing.MSG_TYPE_BATCH, response.getType());
+            for (Message item : Parsing.unpackBatch(response)) {
+                for (Future future : futures) {
+                    future.tryResolve(item);
+                }
+            }
+            for (int i = 0; i < 10; i++) {
+                Assert.assertEquals(requests.get(i).getId(), futures.get(i).getValue().toString());
+            }
+            Assert.assertEquals(1, server.getFramesReceived());
+            Assert.assertEquals(10, server.getRequestsReceived());
+        } finally {
+            batcher.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testBatchPostAfterClose() throws Exception {
+        AddressedTunnel agent_to_sdk = p2pPair.first.getTunnel();
+        AddressedTunnel sdk_to_agent = p2pPair.second.getTunnel();
+        InMemoryRpcServer server = new InMemoryRpcServer(agent_to_sdk);
+        server.start();
+        RequestBatcher batcher = new RequestBatcher(sdk_to_agent, 10, 1000);
+        try {
+            batcher.close();
+            Future future = new Future(sdk_to_agent);
+            Message request = Parsing.buildRequest("did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/sirius_rpc/1.0/test", future, null);
+            Assert.assertTrue(batcher.post(request, true).get(5, TimeUnit.SECONDS));
+
+            Message response = sdk_to_agent.receive(5);
+            Assert.assertTrue(future.tryResolve(response));
+            Assert.assertEquals(request.getId(), future.getValue().toString());
+            Assert.assertEquals(1, server.getRequestsReceived());
+        } finally {
+            server.stop();
+        }
+    }
+
 }
@@ -0,0 +1,136 @@
+import com.sirius.sdk.agent.model.ledger.Schema;
+import com.sirius.sdk.agent.wallet.TwoTierCache;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractCache;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.CacheOptions;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.PurgeOptions;
+import com.sirius.sdk.storage.abstract_storage.KeyValueHandle;
+import com.sirius.sdk.storage.impl.InMemoryKeyValueStorage;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestLedgerCache {
+
+    static class StubCache extends AbstractCache {
+        AtomicInteger schemaCalls = new AtomicInteger(0);
+        AtomicInteger credDefCalls = new AtomicInteger(0);
+        AtomicInteger purges = new AtomicInteger(0);
+        CountDownLatch release;
+
+        @Override
+        public String getSchema(String poolName, String submitter_did, String id, CacheOptions options) {
+            schemaCalls.incrementAndGet();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            return new JSONObject().put("id", id).put("name", "schema").put("version", "1.0").put("ver", "1.0")
+                    .put("attrNames", new JSONArray().put("attr")).put("seqNo", 10).toString();
+        }
+
+        @Override
+        public String getCredDef(String poolName, String submitter_did, String id, CacheOptions options) {
+            credDefCalls.incrementAndGet();
+            return new JSONObject().put("id", id).put("tag", "tag").toString();
+        }
+
+        @Override
+        public void purgeSchemaCache(PurgeOptions options) {
+            purges.incrementAndGet();
+        }
+
+        @Override
+        public void purgeCredDefCache(PurgeOptions options) {
+            purges.incrementAndGet();
+        }
+    }
+
+    static final String SCHEMA_ID = "did:2:schema:1.0";
+
+    @Test
+    public void testL1AndOptions() throws InterruptedException {
+        StubCache stub = new StubCache();
+        TwoTierCache cache = new TwoTierCache(stub, 10, null);
+        Schema first = cache.getSchemaObject("pool", "did", SCHEMA_ID, new CacheOptions());
+        Schema second = cache.getSchemaObject("pool", "did", SCHEMA_ID, new CacheOptions());
+        Assert.assertSame(first, second);
+        Assert.assertEquals("schema", first.getName());
+        Assert.assertEquals(10, first.getSeqNo());
+        Assert.assertEquals(1, stub.schemaCalls.get());
+        Assert.assertEquals(1, cache.getL1Hits());
+
+        cache.getSchema("pool", "did", SCHEMA_ID, new CacheOptions(true, false, false, -1));
+        Assert.assertEquals(2, stub.schemaCalls.get());
+        Thread.sleep(20);
+        cache.getSchema("pool", "did", SCHEMA_ID, new CacheOptions(false, false, false, 0));
+        Assert.assertEquals(3, stub.schemaCalls.get());
+
+        cache.getCredDef("pool", "did", "cred1", new CacheOptions(false, false, true, -1));
+        cache.getCredDef("pool", "did", "cred1", new CacheOptions());
+        cache.getCredDef("pool", "did", "cred1", new CacheOptions());
+        Assert.assertEquals(2, stub.credDefCalls.get());
+
+        cache.purgeSchemaCache(new PurgeOptions());
+        Assert.assertEquals(1, stub.purges.get());
+        Assert.assertNotSame(first, cache.getSchemaObject("pool", "did", SCHEMA_ID, new CacheOptions()));
+        Assert.assertEquals(4, stub.schemaCalls.get());
+        Assert.assertEquals(2, stub.credDefCalls.get());
+    }
+
+    @Test
+    public void testPersistentTier() {
+        KeyValueHandle l2 = new InMemoryKeyValueStorage().database("ledger_cache");
+        StubCache stub = new StubCache();
+        new TwoTierCache(stub, 10, l2).getSchema("pool", "did", SCHEMA_ID, new CacheOptions());
+        Assert.assertEquals(1, stub.schemaCalls.get());
+
+        TwoTierCache restarted = new TwoTierCache(stub, 10, l2);
+        Assert.assertEquals(SCHEMA_ID, restarted.getSchemaObject("pool", "did", SCHEMA_ID, new CacheOptions()).getId());
+        Assert.assertEquals(1, stub.schemaCalls.get());
+        Assert.assertEquals(1, restarted.getL2Hits());
+
+        restarted.purgeSchemaCache(new PurgeOptions(-1));
+        TwoTierCache purged = new TwoTierCache(stub, 10, l2);
+        purged.getSchema("pool", "did", SCHEMA_ID, new CacheOptions());
+        Assert.assertEquals(2, stub.schemaCalls.get());
+    }
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws InterruptedException {
+        StubCache stub = new StubCache();
+        stub.release = new CountDownLatch(1);
+        TwoTierCache cache = new TwoTierCache(stub);
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger loaded = new AtomicInteger(0);
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                if (cache.getSchemaObject("pool", "did", SCHEMA_ID, new CacheOptions()) != null) {
+                    loaded.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getCoalescedCount() < 7 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        stub.release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        Assert.assertEquals(8, loaded.get());
+        Assert.assertEquals(1, stub.schemaCalls.get());
+        Assert.assertEquals(7, cache.getCoalescedCount());
+    }
+}
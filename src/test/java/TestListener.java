@@ -0,0 +1,126 @@
+import com.sirius.sdk.agent.AgentEvents;
+import com.sirius.sdk.agent.Event;
+import com.sirius.sdk.agent.EventStream;
+import com.sirius.sdk.agent.Listener;
+import com.sirius.sdk.base.Flow;
+import com.sirius.sdk.messaging.Message;
+import helpers.InMemoryChannel;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class TestListener {
+
+    static class StubEvents extends AgentEvents {
+        InMemoryChannel channel = new InMemoryChannel();
+
+        StubEvents() {
+            super("http://localhost", new byte[0], null, 30);
+        }
+
+        @Override
+        public CompletableFuture<Message> pull() {
+            CompletableFuture<byte[]> frame = channel.read();
+            CompletableFuture<Message> message = frame.thenApply(data -> new Message(new String(data, StandardCharsets.UTF_8)));
+            message.whenComplete((msg, e) -> {
+                if (e instanceof CancellationException) {
+                    frame.cancel(false);
+                }
+            });
+            return message;
+        }
+
+        void emit(int index) {
+            JSONObject event = new JSONObject();
+            event.put("@type", "https://didcomm.org/trust_ping/1.0/ping");
+            event.put("@id", "event-" + index);
+            channel.write(event.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    static class QueueSubscriber implements Flow.Subscriber<Event> {
+        Flow.Subscription subscription;
+        BlockingQueue<Event> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Event item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Test
+    public void testStreamByDemand() throws Exception {
+        StubEvents events = new StubEvents();
+        EventStream stream = new Listener(events, null).stream(4);
+        QueueSubscriber subscriber = new QueueSubscriber();
+        stream.subscribe(subscriber);
+        for (int i = 0; i < 50; i++) {
+            events.emit(i);
+        }
+        subscriber.subscription.request(3);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("event-" + i, subscriber.received.poll(5, TimeUnit.SECONDS).getId());
+        }
+        Thread.sleep(100);
+        Assert.assertTrue(subscriber.received.isEmpty());
+        Assert.assertTrue(stream.getPrefetchedCount() <= 4);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        for (int i = 3; i < 50; i++) {
+            Assert.assertEquals("event-" + i, subscriber.received.poll(5, TimeUnit.SECONDS).getId());
+        }
+
+        subscriber.subscription.cancel();
+        Assert.assertTrue(stream.isCancelled());
+        Assert.assertEquals(0, stream.getPrefetchedCount());
+        // reads of cancelled stream don't swallow next events
+        events.emit(50);
+        Assert.assertEquals("event-50", events.pull().get(5, TimeUnit.SECONDS).getId());
+        Assert.assertTrue(subscriber.received.isEmpty());
+    }
+
+    @Test
+    public void testPollBatches() throws Exception {
+        StubEvents events = new StubEvents();
+        EventStream stream = new Listener(events, null).stream();
+        for (int i = 0; i < 10; i++) {
+            events.emit(i);
+        }
+        List<Event> batch = stream.poll(4, 5);
+        Assert.assertEquals(4, batch.size());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals("event-" + i, batch.get(i).getId());
+        }
+        batch = stream.poll(100, 5);
+        Assert.assertEquals(6, batch.size());
+        Assert.assertEquals("event-4", batch.get(0).getId());
+        Assert.assertEquals("event-9", batch.get(5).getId());
+
+        Assert.assertTrue(stream.poll(100, 1).isEmpty());
+
+        stream.cancel();
+        Assert.assertTrue(stream.poll(100, 1).isEmpty());
+    }
+}
@@ -0,0 +1,124 @@
+import com.sirius.sdk.agent.AbstractPairwiseList;
+import com.sirius.sdk.agent.CachedPairwiseList;
+import com.sirius.sdk.agent.model.pairwise.Pairwise;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestPairwiseCache {
+
+    static class StubPairwiseList extends AbstractPairwiseList {
+        Map<String, Pairwise> byDid = new HashMap<>();
+        AtomicInteger loads = new AtomicInteger(0);
+
+        @Override
+        public void create(Pairwise pairwise) {
+            byDid.put(pairwise.getTheir().getDid(), pairwise);
+        }
+
+        @Override
+        public void update(Pairwise pairwise) {
+            byDid.put(pairwise.getTheir().getDid(), pairwise);
+        }
+
+        @Override
+        public boolean isExists(String theirDid) {
+            return byDid.containsKey(theirDid);
+        }
+
+        @Override
+        public void ensureExists(Pairwise pairwise) {
+            byDid.put(pairwise.getTheir().getDid(), pairwise);
+        }
+
+        @Override
+        public Pairwise loadForDid(String theirDid) {
+            loads.incrementAndGet();
+            return byDid.get(theirDid);
+        }
+
+        @Override
+        public Pairwise loadForVerkey(String theirVerkey) {
+            loads.incrementAndGet();
+            for (Pairwise pairwise : byDid.values()) {
+                if (theirVerkey.equals(pairwise.getTheir().getVerkey())) {
+                    return pairwise;
+                }
+            }
+            return null;
+        }
+    }
+
+    static Pairwise pairwise(String theirDid, String theirVerkey) {
+        return new Pairwise(new Pairwise.Me("myDid", "myVerkey"),
+                new Pairwise.Their(theirDid, "Label", "http://endpoint", theirVerkey), new JSONObject());
+    }
+
+    @Test
+    public void testReadThrough() {
+        StubPairwiseList wallet = new StubPairwiseList();
+        CachedPairwiseList cache = new CachedPairwiseList(wallet, 16, 60);
+        cache.create(pairwise("did1", "verkey1"));
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("did1", cache.loadForVerkey("verkey1").getTheir().getDid());
+        }
+        Assert.assertEquals(1, wallet.loads.get());
+        // both indexes are filled by single load
+        Assert.assertEquals("verkey1", cache.loadForDid("did1").getTheir().getVerkey());
+        Assert.assertEquals(1, wallet.loads.get());
+        Assert.assertTrue(cache.isExists("did1"));
+        Assert.assertEquals(11, cache.getHits());
+
+        // unknown sender is not cached
+        Assert.assertNull(cache.loadForVerkey("unknown"));
+        Assert.assertNull(cache.loadForVerkey("unknown"));
+        Assert.assertEquals(3, wallet.loads.get());
+    }
+
+    @Test
+    public void testInvalidation() {
+        StubPairwiseList wallet = new StubPairwiseList();
+        CachedPairwiseList cache = new CachedPairwiseList(wallet, 16, 60);
+        cache.ensureExists(pairwise("did1", "verkey1"));
+        Assert.assertNotNull(cache.loadForVerkey("verkey1"));
+
+        // their key is rotated
+        cache.update(pairwise("did1", "verkey2"));
+        Assert.assertNull(cache.loadForVerkey("verkey1"));
+        Assert.assertEquals("did1", cache.loadForVerkey("verkey2").getTheir().getDid());
+        Assert.assertEquals("verkey2", cache.loadForDid("did1").getTheir().getVerkey());
+    }
+
+    @Test
+    public void testExpirationAndPreload() throws Exception {
+        StubPairwiseList wallet = new StubPairwiseList();
+        wallet.create(pairwise("did1", "verkey1"));
+        wallet.create(pairwise("did2", "verkey2"));
+        CachedPairwiseList cache = new CachedPairwiseList(wallet, 16, 1);
+        Assert.assertEquals(2, cache.preload(Arrays.asList(wallet.byDid.get("did1"), wallet.byDid.get("did2"))));
+        Assert.assertNotNull(cache.loadForVerkey("verkey1"));
+        Assert.assertNotNull(cache.loadForDid("did2"));
+        Assert.assertEquals(0, wallet.loads.get());
+
+        Thread.sleep(1100);
+        Assert.assertNotNull(cache.loadForVerkey("verkey1"));
+        Assert.assertEquals(1, wallet.loads.get());
+    }
+
+    @Test
+    public void testBounded() {
+        StubPairwiseList wallet = new StubPairwiseList();
+        CachedPairwiseList cache = new CachedPairwiseList(wallet, 4, 60);
+        for (int i = 0; i < 10; i++) {
+            wallet.create(pairwise("did" + i, "verkey" + i));
+            cache.loadForVerkey("verkey" + i);
+        }
+        Assert.assertEquals(4, cache.size());
+    }
+}
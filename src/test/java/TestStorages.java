@@ -1,7 +1,13 @@
 import com.sirius.sdk.agent.Agent;
 import com.sirius.sdk.agent.InWalletImmutableCollection;
+import com.sirius.sdk.storage.abstract_storage.AbstractImmutableCollection;
+import com.sirius.sdk.storage.abstract_storage.ImmutableCollectionHandle;
+import com.sirius.sdk.storage.abstract_storage.KeyValueHandle;
 import com.sirius.sdk.storage.impl.InMemoryImmutableCollection;
 import com.sirius.sdk.storage.impl.InMemoryKeyValueStorage;
+import com.sirius.sdk.storage.impl.MappedImmutableCollection;
+import com.sirius.sdk.storage.impl.MappedKeyValueStorage;
+import com.sirius.sdk.storage.impl.MappedLogStore;
 import com.sirius.sdk.utils.Pair;
 import helpers.ConfTest;
 import org.json.JSONObject;
@@ -9,8 +15,19 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class TestStorages {
 
@@ -56,6 +73,273 @@ public class TestStorages {
         collection.fetch("{}",0);
     }
 
+    @Test
+    public void testInMemoryWqlQueries() {
+        InMemoryImmutableCollection collection = new InMemoryImmutableCollection();
+        collection.selectDb("db1");
+        for (int i = 0; i < 1000; i++) {
+            JSONObject tags = new JSONObject();
+            tags.put("category", i % 2 == 0 ? "schema" : "cred_def");
+            tags.put("id", "id-" + i);
+            tags.put("version", "1." + (i % 10));
+            collection.add("Value" + i, tags.toString());
+        }
+
+        Pair<List<Object>, Integer> fetched = collection.fetch("{\"category\": \"schema\", \"version\": \"1.2\"}");
+        Assert.assertEquals(100, fetched.second.intValue());
+        Assert.assertEquals("Value2", fetched.first.get(0));
+        Assert.assertEquals("Value12", fetched.first.get(1));
+
+        fetched = collection.fetch("{\"category\": \"schema\", \"version\": \"1.2\"}", 10);
+        Assert.assertEquals(100, fetched.second.intValue());
+        Assert.assertEquals(10, fetched.first.size());
+
+        fetched = collection.fetch("{\"$or\": [{\"id\": \"id-1\"}, {\"id\": \"id-2\"}, {\"id\": \"id-1\"}]}");
+        Assert.assertEquals(2, fetched.second.intValue());
+
+        fetched = collection.fetch("{\"id\": {\"$in\": [\"id-5\", \"id-6\", \"unknown\"]}}");
+        Assert.assertEquals(2, fetched.second.intValue());
+
+        fetched = collection.fetch("{\"$not\": {\"category\": \"schema\"}, \"version\": {\"$neq\": \"1.1\"}}");
+        Assert.assertEquals(400, fetched.second.intValue());
+
+        fetched = collection.fetch("{\"$and\": [{\"category\": \"schema\"}, {\"id\": {\"$like\": \"id-1%\"}}]}");
+        Assert.assertEquals(55, fetched.second.intValue());
+
+        fetched = collection.fetch("{\"version\": {\"$gte\": \"1.8\"}}");
+        Assert.assertEquals(200, fetched.second.intValue());
+
+        fetched = collection.fetch("{\"unknown\": \"value\"}");
+        Assert.assertEquals(0, fetched.second.intValue());
+        Assert.assertTrue(fetched.first.isEmpty());
+
+        Assert.assertEquals(1000, collection.fetch("{}").second.intValue());
+    }
+
+    @Test
+    public void testInMemoryConcurrentHandles() throws Exception {
+        InMemoryImmutableCollection collection = new InMemoryImmutableCollection();
+        InMemoryKeyValueStorage kv = new InMemoryKeyValueStorage();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String db = "ledger_storage_" + (t % 4);
+            String owner = "thread-" + t;
+            results.add(executor.submit(() -> {
+                ImmutableCollectionHandle handle = collection.database(db);
+                KeyValueHandle kvHandle = kv.database(db);
+                for (int i = 0; i < 500; i++) {
+                    handle.add(owner + "-" + i, "{\"owner\": \"" + owner + "\", \"seq\": \"" + i + "\"}");
+                    kvHandle.set(owner, i);
+                    Pair<List<Object>, Integer> fetched = handle.fetch("{\"owner\": \"" + owner + "\", \"seq\": \"" + i + "\"}");
+                    if (fetched.second != 1 || !fetched.first.get(0).equals(owner + "-" + i) || !kvHandle.get(owner).equals(i)) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            Assert.assertTrue(result.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        for (int d = 0; d < 4; d++) {
+            Assert.assertEquals(1000, collection.database("ledger_storage_" + d).fetch("{}").second.intValue());
+        }
+        // legacy API is adapter over the same databases
+        collection.selectDb("ledger_storage_0");
+        Assert.assertEquals(500, collection.fetch("{\"owner\": \"thread-4\"}").second.intValue());
+        kv.selectDb("ledger_storage_1");
+        Assert.assertEquals(499, kv.get("thread-5"));
+    }
+
+    @Test
+    public void testInMemoryAddIfAbsent() throws Exception {
+        checkAddIfAbsent(new InMemoryImmutableCollection());
+    }
+
+    @Test
+    public void testMappedAddIfAbsent() throws Exception {
+        MappedLogStore store = new MappedLogStore(Files.createTempDirectory("mapped-storage"), 64 * 1024);
+        checkAddIfAbsent(new MappedImmutableCollection(store));
+        store.close();
+    }
+
+    static void checkAddIfAbsent(AbstractImmutableCollection collection) throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String submitter = "did-" + t;
+            results.add(executor.submit(() -> {
+                // concurrent handles race to store the same schemas
+                int added = 0;
+                for (int i = 0; i < 100; i++) {
+                    String query = "{\"id\": \"schema-" + i + "\", \"category\": \"schema\"}";
+                    String tags = "{\"id\": \"schema-" + i + "\", \"category\": \"schema\", \"submitter_did\": \"" + submitter + "\"}";
+                    if (collection.database("ledger").addIfAbsent("schema-" + i, tags, query)) {
+                        added++;
+                    }
+                }
+                return added;
+            }));
+        }
+        int added = 0;
+        for (Future<Integer> result : results) {
+            added += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assert.assertEquals(100, added);
+        Assert.assertEquals(100, collection.database("ledger").fetch("{\"category\": \"schema\"}").second.intValue());
+        Assert.assertFalse(collection.database("ledger").addIfAbsent("schema-0", "{\"id\": \"schema-0\"}"));
+    }
+
+    @Test
+    public void testMappedStorageSurvivesReopen() throws Exception {
+        Path dir = Files.createTempDirectory("mapped-storage");
+        MappedLogStore store = new MappedLogStore(dir, 4096);
+        MappedImmutableCollection collection = new MappedImmutableCollection(store);
+        MappedKeyValueStorage kv = new MappedKeyValueStorage(store);
+        collection.selectDb("ledger");
+        for (int i = 0; i < 200; i++) {
+            collection.add("{\"id\": \"schema-" + i + "\"}", "{\"id\": \"schema-" + i + "\", \"category\": \"schema\"}");
+        }
+        kv.selectDb("db1");
+        kv.set("key1", "value1");
+        kv.set("key2", 1000);
+        kv.set("key1", "value2");
+        kv.delete("key2");
+        Assert.assertTrue(store.getSegmentsCount() > 1);
+        store.close();
+
+        // hint file of sealed segment is lost: segment is scanned
+        Files.delete(dir.resolve("segment-00000.hint"));
+
+        store = new MappedLogStore(dir, 4096);
+        collection = new MappedImmutableCollection(store);
+        kv = new MappedKeyValueStorage(store);
+        collection.selectDb("ledger");
+        Pair<List<Object>, Integer> fetched = collection.fetch("{\"category\": \"schema\"}", 10);
+        Assert.assertEquals(200, fetched.second.intValue());
+        Assert.assertEquals(10, fetched.first.size());
+        Assert.assertEquals("{\"id\": \"schema-0\"}", fetched.first.get(0));
+        fetched = collection.fetch("{\"id\": \"schema-150\"}");
+        Assert.assertEquals("{\"id\": \"schema-150\"}", fetched.first.get(0));
+        Assert.assertTrue(Files.exists(dir.resolve("segment-00000.hint")));
+
+        kv.selectDb("db1");
+        Assert.assertEquals("value2", kv.get("key1"));
+        Assert.assertNull(kv.get("key2"));
+        kv.selectDb("db2");
+        Assert.assertNull(kv.get("key1"));
+        store.close();
+    }
+
+    @Test
+    public void testMappedStorageDiscardsTornRecord() throws Exception {
+        Path dir = Files.createTempDirectory("mapped-storage");
+        MappedLogStore store = new MappedLogStore(dir, 4096);
+        MappedKeyValueStorage kv = new MappedKeyValueStorage(store);
+        kv.selectDb("db1");
+        kv.set("key1", "value1");
+        store.close();
+
+        // crash in the middle of the next record: header is written, payload is not
+        long end;
+        try (FileChannel channel = FileChannel.open(dir.resolve("segment-00000.log"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            end = 9 + ((ByteBuffer) header.flip()).getInt();
+            ByteBuffer torn = ByteBuffer.allocate(9);
+            torn.putInt(100).putInt(12345).put((byte) 2).flip();
+            channel.write(torn, end);
+        }
+
+        store = new MappedLogStore(dir, 4096);
+        kv = new MappedKeyValueStorage(store);
+        kv.selectDb("db1");
+        Assert.assertEquals("value1", kv.get("key1"));
+        kv.set("key2", "value2");
+        store.close();
+
+        store = new MappedLogStore(dir, 4096);
+        kv = new MappedKeyValueStorage(store);
+        kv.selectDb("db1");
+        Assert.assertEquals("value1", kv.get("key1"));
+        Assert.assertEquals("value2", kv.get("key2"));
+        store.close();
+    }
+
+    @Test
+    public void testMappedStorageChecksSegmentSize() throws Exception {
+        Path dir = Files.createTempDirectory("mapped-storage");
+        MappedLogStore store = new MappedLogStore(dir, 8192);
+        MappedKeyValueStorage kv = new MappedKeyValueStorage(store);
+        kv.selectDb("db1");
+        // record crosses the bound of smaller segment
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            value.append('x');
+        }
+        kv.set("key1", "value1");
+        kv.set("key2", value.toString());
+        store.close();
+
+        try {
+            new MappedLogStore(dir, 4096);
+            Assert.fail();
+        } catch (IOException ignored) {
+        }
+
+        store = new MappedLogStore(dir, 8192);
+        kv = new MappedKeyValueStorage(store);
+        kv.selectDb("db1");
+        Assert.assertEquals("value1", kv.get("key1"));
+        Assert.assertEquals(value.toString(), kv.get("key2"));
+        store.close();
+    }
+
+    @Test
+    public void testMappedStorageIsLocked() throws Exception {
+        Path dir = Files.createTempDirectory("mapped-storage");
+        MappedLogStore store = new MappedLogStore(dir, 4096);
+        try {
+            new MappedLogStore(dir, 4096);
+            Assert.fail();
+        } catch (IOException ignored) {
+        }
+        store.close();
+        new MappedLogStore(dir, 4096).close();
+    }
+
+    @Test
+    public void testMappedStorageRejectsNullNames() throws Exception {
+        Path dir = Files.createTempDirectory("mapped-storage");
+        MappedLogStore store = new MappedLogStore(dir, 4096);
+        try {
+            store.add(null, "value", null);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            store.set("db1", null, "value");
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+        store.set("db1", "key1", "value1");
+        store.close();
+        try {
+            store.delete("db1", "key1");
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+
+        store = new MappedLogStore(dir, 4096);
+        Assert.assertEquals("value1", store.get("db1", "key1"));
+        store.close();
+    }
+
     @Test
     public void testInWalletImmutableCollection(){
         //TODO test
@@ -0,0 +1,198 @@
+import com.sirius.sdk.agent.InWalletImmutableCollection;
+import com.sirius.sdk.agent.wallet.WalletSearchCursor;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractNonSecrets;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.RetrieveRecordOptions;
+import com.sirius.sdk.utils.Pair;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestWalletSearchCursor {
+
+    static class StubNonSecrets extends AbstractNonSecrets {
+        List<JSONObject> records = new ArrayList<>();
+        AtomicInteger searches = new AtomicInteger(0);
+        int maxReturned = 0;
+        Random random = new Random(1);
+
+        @Override
+        public void addWalletRecord(String type, String id, String value, String tags) {
+            records.add(new JSONObject().put("id", id).put("value", value)
+                    .put("tags", tags != null ? new JSONObject(tags) : new JSONObject()));
+        }
+
+        @Override
+        public void updateWalletRecordValue(String type, String id, String value) {
+        }
+
+        @Override
+        public void updateWalletRecordTags(String type, String id, String tags) {
+        }
+
+        @Override
+        public void addWalletRecordTags(String type, String id, String tags) {
+        }
+
+        @Override
+        public void deleteWalletRecord(String type, String id, List<String> tagNames) {
+        }
+
+        @Override
+        public void deleteWalletRecord(String type, String id) {
+        }
+
+        @Override
+        public String getWalletRecord(String type, String id, RetrieveRecordOptions options) {
+            return null;
+        }
+
+        @Override
+        public Pair<List<String>, Integer> walletSearch(String type, String query, RetrieveRecordOptions options, int limit) {
+            searches.incrementAndGet();
+            JSONObject queryObject = query != null ? new JSONObject(query) : new JSONObject();
+            List<String> found = new ArrayList<>();
+            for (JSONObject record : records) {
+                if (matches(queryObject, record.getJSONObject("tags"))) {
+                    found.add(record.toString());
+                }
+            }
+            // agent search does not order results
+            Collections.shuffle(found, random);
+            List<String> page = new ArrayList<>(found.subList(0, Math.min(limit, found.size())));
+            maxReturned = Math.max(maxReturned, page.size());
+            return new Pair<>(page, found.size());
+        }
+
+        static boolean matches(JSONObject query, JSONObject tags) {
+            for (String key : query.keySet()) {
+                Object condition = query.get(key);
+                if (key.equals("$and")) {
+                    JSONArray items = (JSONArray) condition;
+                    for (int i = 0; i < items.length(); i++) {
+                        if (!matches(items.getJSONObject(i), tags)) {
+                            return false;
+                        }
+                    }
+                    continue;
+                }
+                String value = tags.optString(key, null);
+                if (value == null) {
+                    return false;
+                }
+                if (condition instanceof JSONObject) {
+                    JSONObject range = (JSONObject) condition;
+                    if (range.has("$gt") && value.compareTo(range.getString("$gt")) <= 0) {
+                        return false;
+                    }
+                    if (range.has("$lte") && value.compareTo(range.getString("$lte")) > 0) {
+                        return false;
+                    }
+                } else if (!value.equals(condition)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static String seqTags(int i) {
+        return new JSONObject().put("~seq", String.format("%05d", i)).put("kind", i % 2 == 0 ? "even" : "odd").toString();
+    }
+
+    @Test
+    public void testPaging() {
+        StubNonSecrets storage = new StubNonSecrets();
+        for (int i = 0; i < 250; i++) {
+            storage.addWalletRecord("type", "id" + i, "value" + i, seqTags(i));
+        }
+        WalletSearchCursor<String> cursor = storage.walletSearchCursor("type", null, new RetrieveRecordOptions(false, true, false), "~seq", 20);
+        Set<String> ids = new HashSet<>();
+        while (cursor.hasNext()) {
+            Assert.assertTrue(ids.add(new JSONObject(cursor.next()).getString("id")));
+        }
+        Assert.assertEquals(250, ids.size());
+        Assert.assertEquals(250, cursor.getTotalCount().intValue());
+        // every request transfers at most page size records
+        Assert.assertEquals(20, storage.maxReturned);
+    }
+
+    @Test
+    public void testPagingWithQuery() {
+        StubNonSecrets storage = new StubNonSecrets();
+        for (int i = 0; i < 100; i++) {
+            storage.addWalletRecord("type", "id" + i, "value" + i, seqTags(i));
+        }
+        String query = new JSONObject().put("kind", "odd").toString();
+        WalletSearchCursor<String> cursor = storage.walletSearchCursor("type", query, null, "~seq", 7);
+        Set<String> values = new HashSet<>();
+        cursor.forEachRemaining(record -> Assert.assertTrue(values.add(new JSONObject(record).getString("value"))));
+        Assert.assertEquals(50, values.size());
+        Assert.assertTrue(values.contains("value99"));
+        Assert.assertFalse(values.contains("value98"));
+    }
+
+    @Test
+    public void testNotUniqueSortTag() {
+        StubNonSecrets storage = new StubNonSecrets();
+        for (int i = 0; i < 30; i++) {
+            storage.addWalletRecord("type", "id" + i, "value" + i, new JSONObject().put("~seq", "same").toString());
+        }
+        WalletSearchCursor<String> cursor = storage.walletSearchCursor("type", null, null, "~seq", 10);
+        try {
+            cursor.hasNext();
+            Assert.fail();
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    @Test
+    public void testClose() {
+        AtomicInteger requests = new AtomicInteger(0);
+        WalletSearchCursor<Integer> cursor = new WalletSearchCursor<>((after, upTo, limit) -> {
+            requests.incrementAndGet();
+            int from = after != null ? Integer.parseInt(after) + 1 : 0;
+            int to = upTo != null ? Integer.parseInt(upTo) : Integer.MAX_VALUE / 2;
+            List<String> page = new ArrayList<>();
+            for (int i = from; i < from + limit && i <= to; i++) {
+                page.add(new JSONObject().put("seq", String.format("%09d", i)).toString());
+            }
+            return new Pair<>(page, to - from + 1);
+        }, "seq", record -> Integer.parseInt(WalletSearchCursor.tagValue(record, "seq")), 10);
+        for (int i = 0; i < 15; i++) {
+            Assert.assertEquals(i, cursor.next().intValue());
+        }
+        cursor.close();
+        Assert.assertFalse(cursor.hasNext());
+        int requested = requests.get();
+        Assert.assertFalse(cursor.hasNext());
+        Assert.assertEquals(requested, requests.get());
+    }
+
+    @Test
+    public void testCollectionCursor() {
+        StubNonSecrets storage = new StubNonSecrets();
+        InWalletImmutableCollection collection = new InWalletImmutableCollection(storage);
+        collection.selectDb("db");
+        for (int i = 0; i < 25; i++) {
+            collection.add("value" + i, seqTags(i));
+        }
+        collection.setFetchLimit(10);
+        Assert.assertEquals(10, collection.fetch(null).first.size());
+
+        WalletSearchCursor<Object> cursor = collection.cursor(null, "~seq", 10);
+        Set<Object> values = new HashSet<>();
+        cursor.forEachRemaining(values::add);
+        Assert.assertEquals(25, values.size());
+        Assert.assertTrue(values.contains("value0"));
+        Assert.assertTrue(values.contains("value24"));
+    }
+}
@@ -0,0 +1,190 @@
+import com.sirius.sdk.agent.wallet.WriteBehindNonSecrets;
+import com.sirius.sdk.agent.wallet.abstract_wallet.AbstractNonSecrets;
+import com.sirius.sdk.agent.wallet.abstract_wallet.model.RetrieveRecordOptions;
+import com.sirius.sdk.utils.Pair;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestWriteBehindNonSecrets {
+
+    static class RecordingNonSecrets extends AbstractNonSecrets {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void addWalletRecord(String type, String id, String value, String tags) {
+            calls.add("add " + id + " " + value + " " + tags);
+        }
+
+        @Override
+        public void updateWalletRecordValue(String type, String id, String value) {
+            calls.add("value " + id + " " + value);
+        }
+
+        @Override
+        public void updateWalletRecordTags(String type, String id, String tags) {
+            calls.add("tags " + id + " " + tags);
+        }
+
+        @Override
+        public void addWalletRecordTags(String type, String id, String tags) {
+            calls.add("addTags " + id + " " + tags);
+        }
+
+        @Override
+        public void deleteWalletRecord(String type, String id, List<String> tagNames) {
+            calls.add("deleteTags " + id + " " + tagNames);
+        }
+
+        @Override
+        public void deleteWalletRecord(String type, String id) {
+            calls.add("delete " + id);
+        }
+
+        @Override
+        public String getWalletRecord(String type, String id, RetrieveRecordOptions options) {
+            calls.add("get " + id);
+            return null;
+        }
+
+        @Override
+        public Pair<List<String>, Integer> walletSearch(String type, String query, RetrieveRecordOptions options, int limit) {
+            calls.add("search " + type);
+            return new Pair<>(new ArrayList<>(), 0);
+        }
+    }
+
+    @Test
+    public void testCoalescing() {
+        RecordingNonSecrets wallet = new RecordingNonSecrets();
+        WriteBehindNonSecrets writeBehind = new WriteBehindNonSecrets(wallet, 100, 60000, 1000, null);
+        writeBehind.addWalletRecord("type", "1", "a", "{\"k\":\"v\"}");
+        writeBehind.updateWalletRecordValue("type", "1", "b");
+        writeBehind.addWalletRecordTags("type", "1", "{\"k2\":\"v2\"}");
+        writeBehind.deleteWalletRecord("type", "1", Arrays.asList("k"));
+        writeBehind.addWalletRecord("type", "2", "x", null);
+        writeBehind.deleteWalletRecord("type", "2");
+        writeBehind.updateWalletRecordValue("type", "3", "c");
+        writeBehind.updateWalletRecordValue("type", "3", "d");
+        writeBehind.deleteWalletRecord("type", "4");
+        Assert.assertEquals(3, writeBehind.getPendingCount());
+        Assert.assertTrue(wallet.calls.isEmpty());
+
+        writeBehind.flush();
+        Assert.assertEquals(Arrays.asList(
+                "add 1 b {\"k2\":\"v2\"}",
+                "value 3 d",
+                "delete 4"), wallet.calls);
+        Assert.assertEquals(0, writeBehind.getPendingCount());
+        Assert.assertEquals(1, writeBehind.getBatchesCount());
+        Assert.assertEquals(3, writeBehind.getFlushedOpsCount());
+        Assert.assertEquals(3.0, writeBehind.getAverageBatchSize(), 0.001);
+        writeBehind.close();
+    }
+
+    @Test
+    public void testReadYourWrites() {
+        RecordingNonSecrets wallet = new RecordingNonSecrets();
+        WriteBehindNonSecrets writeBehind = new WriteBehindNonSecrets(wallet, 100, 60000, 1000, null);
+        writeBehind.addWalletRecord("type", "1", "a", "{\"k\":\"v\"}");
+        String record = writeBehind.getWalletRecord("type", "1", new RetrieveRecordOptions(true, true, true));
+        JSONObject recordObj = new JSONObject(record);
+        Assert.assertEquals("a", recordObj.getString("value"));
+        Assert.assertEquals("type", recordObj.getString("type"));
+        Assert.assertEquals("v", recordObj.getJSONObject("tags").getString("k"));
+        Assert.assertTrue(wallet.calls.isEmpty());
+
+        // record that is not created by this layer is flushed before read
+        writeBehind.updateWalletRecordValue("type", "2", "b");
+        writeBehind.getWalletRecord("type", "2", new RetrieveRecordOptions(false, true, false));
+        Assert.assertEquals(Arrays.asList("add 1 a {\"k\":\"v\"}", "value 2 b", "get 2"), wallet.calls);
+
+        wallet.calls.clear();
+        writeBehind.addWalletRecord("other", "3", "c", null);
+        writeBehind.walletSearch("type", "{}", new RetrieveRecordOptions(), 10);
+        Assert.assertEquals(Arrays.asList("search type"), wallet.calls);
+        writeBehind.walletSearch("other", "{}", new RetrieveRecordOptions(), 10);
+        Assert.assertEquals(Arrays.asList("search type", "add 3 c null", "search other"), wallet.calls);
+        writeBehind.close();
+    }
+
+    @Test
+    public void testBackgroundFlushAndClose() throws InterruptedException {
+        RecordingNonSecrets wallet = new RecordingNonSecrets();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        WriteBehindNonSecrets writeBehind = new WriteBehindNonSecrets(wallet, 10, 20, 50, executor);
+        for (int i = 0; i < 200; i++) {
+            writeBehind.addWalletRecord("type", String.valueOf(i), "v", null);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writeBehind.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        writeBehind.close();
+        Assert.assertEquals(200, wallet.calls.size());
+        Assert.assertEquals(200, writeBehind.getFlushedOpsCount());
+        Assert.assertTrue(writeBehind.getBatchesCount() >= 20);
+        Assert.assertTrue(writeBehind.getAverageBatchSize() <= 10);
+        Assert.assertTrue(writeBehind.getMaxFlushLatencyMs() >= writeBehind.getAverageFlushLatencyMs());
+        try {
+            writeBehind.addWalletRecord("type", "late", "v", null);
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+        executor.shutdown();
+    }
+
+    static class FailingNonSecrets extends RecordingNonSecrets {
+        @Override
+        public void addWalletRecord(String type, String id, String value, String tags) {
+            if ("bad".equals(value)) {
+                throw new RuntimeException("Record " + id + " already exists");
+            }
+            super.addWalletRecord(type, id, value, tags);
+        }
+    }
+
+    @Test
+    public void testFailuresAreThrown() throws InterruptedException {
+        FailingNonSecrets wallet = new FailingNonSecrets();
+        WriteBehindNonSecrets writeBehind = new WriteBehindNonSecrets(wallet, 100, 60000, 1000, null);
+        writeBehind.deleteWalletRecord("type", "1");
+        writeBehind.addWalletRecord("type", "1", "bad", null);
+        writeBehind.updateWalletRecordValue("type", "1", "b");
+        writeBehind.addWalletRecord("type", "2", "bad", null);
+        writeBehind.addWalletRecord("type", "3", "c", null);
+        try {
+            writeBehind.flush();
+            Assert.fail();
+        } catch (WriteBehindNonSecrets.FlushError e) {
+            Assert.assertEquals(2, e.getFailures().size());
+            Assert.assertEquals("Record 1 already exists", e.getFailures().get(0).getCause().getMessage());
+        }
+        // update of record that was not added is skipped
+        Assert.assertEquals(Arrays.asList("delete 1", "add 3 c null"), wallet.calls);
+        Assert.assertEquals(2, writeBehind.getFailedOpsCount());
+        writeBehind.flush();
+
+        // failure of background flush is thrown by close
+        WriteBehindNonSecrets background = new WriteBehindNonSecrets(wallet, 1, 0, 1000, null);
+        background.addWalletRecord("type", "4", "bad", null);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (background.getFailedOpsCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        try {
+            background.close();
+            Assert.fail();
+        } catch (WriteBehindNonSecrets.FlushError e) {
+            Assert.assertEquals(1, e.getFailures().size());
+        }
+        writeBehind.close();
+    }
+}
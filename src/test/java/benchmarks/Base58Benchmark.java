@@ -0,0 +1,78 @@
+package benchmarks;
+
+import com.sirius.sdk.utils.Base58;
+import helpers.LegacyBase58;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base58 codec against previous implementation for verkey (32 bytes) and sigkey (64 bytes) sizes.
+ * <p>
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=benchmarks.Base58Benchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base58Benchmark {
+
+    @Param({"32", "64"})
+    int size;
+
+    byte[] bytes;
+    String encoded;
+    byte[] output;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(1).nextBytes(bytes);
+        encoded = Base58.encode(bytes);
+        output = new byte[size];
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base58.encode(bytes);
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        return LegacyBase58.encode(bytes);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return Base58.decode(encoded);
+    }
+
+    @Benchmark
+    public int decodeTo() {
+        return Base58.decode(encoded, output, 0);
+    }
+
+    @Benchmark
+    public byte[] decodeLegacy() {
+        return LegacyBase58.decode(encoded);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(Base58Benchmark.class.getSimpleName()).build()).run();
+    }
+}
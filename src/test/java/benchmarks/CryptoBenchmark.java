@@ -0,0 +1,110 @@
+package benchmarks;
+
+import com.goterl.lazycode.lazysodium.utils.Key;
+import com.goterl.lazycode.lazysodium.utils.KeyPair;
+import com.sirius.sdk.encryption.Custom;
+import com.sirius.sdk.encryption.Ed25519;
+import com.sirius.sdk.naclJava.CryptoAead;
+import com.sirius.sdk.naclJava.LibSodium;
+import com.sirius.sdk.naclJava.NativeBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sodium primitives and small-message pack/unpack by binding mode of {@link LibSodium} and use of {@link NativeBuffers}
+ * (the latter matters for DIRECT binding only). Allocation rate is reported by GC profiler.
+ * <p>
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=benchmarks.CryptoBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoBenchmark {
+
+    @Param({"LAZY_SODIUM", "DIRECT"})
+    LibSodium.Binding binding;
+
+    @Param({"false", "true"})
+    boolean nativeBuffers;
+
+    CryptoAead crypto = new CryptoAead();
+    Ed25519 ed25519 = new Ed25519();
+    byte[] message = "{\"@type\": \"did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/trust_ping/1.0/ping\"}".getBytes(StandardCharsets.US_ASCII);
+    byte[] nonce = new byte[24];
+    Key key;
+    byte[] sharedKey;
+    byte[] ciphertext;
+    List<String> verkeys;
+    String verkeySender;
+    String sigkeySender;
+    String verkeyRecipient;
+    String sigkeyRecipient;
+    String packed;
+
+    @Setup
+    public void setup() throws Exception {
+        LibSodium.setBinding(binding);
+        NativeBuffers.setEnabled(nativeBuffers);
+        Custom custom = new Custom();
+        KeyPair recipient = custom.createKeypair("000000000000000000000000000SEED1".getBytes(StandardCharsets.US_ASCII));
+        KeyPair sender = custom.createKeypair("000000000000000000000000000SEED2".getBytes(StandardCharsets.US_ASCII));
+        verkeyRecipient = custom.bytesToB58(recipient.getPublicKey().getAsBytes());
+        sigkeyRecipient = custom.bytesToB58(recipient.getSecretKey().getAsBytes());
+        verkeySender = custom.bytesToB58(sender.getPublicKey().getAsBytes());
+        sigkeySender = custom.bytesToB58(sender.getSecretKey().getAsBytes());
+        verkeys = Collections.singletonList(verkeyRecipient);
+        key = Key.fromBytes(new byte[32]);
+        ciphertext = crypto.encrypt(message, null, new byte[12], key);
+        sharedKey = crypto.cryptoBoxBeforeNm(ed25519.toCurve25519KeyPair(recipient));
+        packed = ed25519.packMessage(new String(message, StandardCharsets.US_ASCII), verkeys, verkeySender, sigkeySender);
+    }
+
+    @Benchmark
+    public byte[] aeadEncrypt() {
+        return crypto.encrypt(message, null, new byte[12], key);
+    }
+
+    @Benchmark
+    public byte[] aeadDecrypt() {
+        return crypto.decrypt(ciphertext, null, new byte[12], key, com.goterl.lazycode.lazysodium.interfaces.AEAD.Method.CHACHA20_POLY1305_IETF);
+    }
+
+    @Benchmark
+    public byte[] boxAfterNm() throws Exception {
+        return crypto.cryptoBoxAfterNm(message, nonce, sharedKey);
+    }
+
+    @Benchmark
+    public String pack() throws Exception {
+        return ed25519.packMessage(new String(message, StandardCharsets.US_ASCII), verkeys, verkeySender, sigkeySender);
+    }
+
+    @Benchmark
+    public String unpack() throws Exception {
+        return ed25519.unpackMessage(packed, verkeyRecipient, sigkeyRecipient).getMessage();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CryptoBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import com.goterl.lazycode.lazysodium.utils.KeyPair;
+import com.sirius.sdk.encryption.Custom;
+import com.sirius.sdk.encryption.Ed25519;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-recipient pack: sequential vs parallel wrapping of CEK by count of recipients.
+ * <p>
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=benchmarks.PackBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    int recipients;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    Ed25519 ed25519;
+    ExecutorService executor;
+    List<String> verkeys;
+    String verkeySender;
+    String sigkeySender;
+    String message = "{\"@type\": \"did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/test/1.0/message\", \"content\": \"broadcast\"}";
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Custom custom = new Custom();
+        KeyPair sender = custom.createKeypair("000000000000000000000000000SEED2".getBytes(StandardCharsets.US_ASCII));
+        verkeySender = custom.bytesToB58(sender.getPublicKey().getAsBytes());
+        sigkeySender = custom.bytesToB58(sender.getSecretKey().getAsBytes());
+        verkeys = new ArrayList<>();
+        for (int i = 0; i < recipients; i++) {
+            KeyPair keyPair = custom.createKeypair(String.format("%032d", i).getBytes(StandardCharsets.US_ASCII));
+            verkeys.add(custom.bytesToB58(keyPair.getPublicKey().getAsBytes()));
+        }
+        ed25519 = new Ed25519();
+        if (parallel) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            ed25519.setPackExecutor(executor, 2);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public String pack() throws Exception {
+        return ed25519.packMessage(message, verkeys, verkeySender, sigkeySender);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PackBenchmark.class.getSimpleName()).build()).run();
+    }
+}
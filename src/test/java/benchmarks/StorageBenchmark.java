@@ -0,0 +1,72 @@
+package benchmarks;
+
+import com.sirius.sdk.storage.impl.InMemoryImmutableCollection;
+import com.sirius.sdk.utils.Pair;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of ledger metadata in the collection filled with schemas and cred defs, as Ledger.ensureExistInStorage does.
+ * <p>
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=benchmarks.StorageBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Param({"1000", "100000"})
+    int records;
+
+    InMemoryImmutableCollection collection;
+    String byId;
+    String byName;
+
+    @Setup
+    public void setup() {
+        collection = new InMemoryImmutableCollection();
+        collection.selectDb("ledger");
+        for (int i = 0; i < records; i++) {
+            JSONObject tags = new JSONObject();
+            tags.put("id", "schema-" + i);
+            tags.put("category", i % 2 == 0 ? "schema" : "cred_def");
+            tags.put("name", "name-" + (i % 100));
+            tags.put("version", "1.0");
+            collection.add("{\"id\": \"schema-" + i + "\"}", tags.toString());
+        }
+        byId = "{\"id\": \"schema-" + (records / 2) + "\", \"category\": \"schema\"}";
+        byName = "{\"name\": \"name-7\", \"version\": \"1.0\"}";
+    }
+
+    @Benchmark
+    public Pair<List<Object>, Integer> fetchById() {
+        return collection.fetch(byId);
+    }
+
+    @Benchmark
+    public Pair<List<Object>, Integer> fetchByNameLimited() {
+        return collection.fetch(byName, 10);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(StorageBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -1,5 +1,6 @@
 package helpers;
 
+import com.sirius.sdk.base.InboundFrameDispatcher;
 import com.sirius.sdk.base.ReadOnlyChannel;
 import com.sirius.sdk.base.WriteOnlyChannel;
 
@@ -7,17 +8,28 @@ import java.util.concurrent.CompletableFuture;
 
 public class InMemoryChannel implements ReadOnlyChannel, WriteOnlyChannel {
 
+    InboundFrameDispatcher queue;
+
     public InMemoryChannel() {
+        queue = new InboundFrameDispatcher();
+    }
+
+    public InMemoryChannel(int capacity) {
+        queue = new InboundFrameDispatcher(capacity);
     }
 
     @Override
     public CompletableFuture<byte[]> read() {
-        return new  CompletableFuture<>();
+        return queue.read();
     }
 
     @Override
     public boolean write(byte[] data) {
-        return false;
+        return queue.offer(data);
+    }
+
+    public void close() {
+        queue.close();
     }
 
 /*    def __init__(self):
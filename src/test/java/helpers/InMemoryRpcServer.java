@@ -0,0 +1,82 @@
+package helpers;
+
+import com.sirius.sdk.messaging.Message;
+import com.sirius.sdk.rpc.AddressedTunnel;
+import com.sirius.sdk.rpc.Future;
+import com.sirius.sdk.rpc.Parsing;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in of Sirius RPC server for tests: answers every request with future message
+ * which value is @id of request. Batch envelopes are answered with batch envelopes.
+ */
+public class InMemoryRpcServer {
+
+    AddressedTunnel tunnel;
+    Thread thread;
+    volatile boolean running = false;
+    AtomicInteger framesReceived = new AtomicInteger(0);
+    AtomicInteger requestsReceived = new AtomicInteger(0);
+
+    public InMemoryRpcServer(AddressedTunnel tunnel) {
+        this.tunnel = tunnel;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(() -> {
+            while (running) {
+                Message request;
+                try {
+                    request = tunnel.receive(1);
+                } catch (Exception e) {
+                    continue;
+                }
+                framesReceived.incrementAndGet();
+                if (Parsing.MSG_TYPE_BATCH.equals(request.getType())) {
+                    List<Message> responses = new ArrayList<>();
+                    for (Message item : Parsing.unpackBatch(request)) {
+                        responses.add(buildResponse(item));
+                    }
+                    tunnel.post(Parsing.buildBatch(responses));
+                } else {
+                    tunnel.post(buildResponse(request));
+                }
+            }
+        }, "InMemoryRpcServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public int getFramesReceived() {
+        return framesReceived.get();
+    }
+
+    public int getRequestsReceived() {
+        return requestsReceived.get();
+    }
+
+    private Message buildResponse(Message request) {
+        requestsReceived.incrementAndGet();
+        JSONObject promise = request.getMessageObj().getJSONObject("@promise");
+        JSONObject response = new JSONObject();
+        response.put("@type", Future.MSG_TYPE);
+        response.put("@id", request.getId() + "-response");
+        response.put("is_tuple", false);
+        response.put("is_bytes", false);
+        response.put("value", request.getId());
+        response.put("exception", JSONObject.NULL);
+        JSONObject threadObject = new JSONObject();
+        threadObject.put("thid", promise.getString("id"));
+        response.put("~thread", threadObject);
+        return new Message(response.toString());
+    }
+}